@@ -1,5 +1,7 @@
 import com.chess.engine.board.Board;
 import com.chess.engine.board.FenUtils;
+import com.chess.engine.evaluation.EvalParams;
+import com.chess.engine.evaluation.Endgames;
 import com.chess.ui.ChessFrame;
 
 import javax.swing.SwingUtilities;
@@ -16,6 +18,13 @@ class Chess {
         String lastCastle = "2k1r2r/pbpp1pbp/5NpB/1P5N/1q1Q2n1/6P1/P1P1PPBP/R3K2R w KQ - 3 19";
         String almostPromote = "rnbqk1nr/ppppp1P1/5p2/8/8/8/PPPPP1PP/RNBQKBNR w KQkq - 0 5";
         String gameOver = "1kQ4B/p1p2p1p/1N4p1/1P5N/q5n1/4r1P1/P1P1PPBP/R3K2R b KQ - 0 12";
+
+        // Tuned evaluation weights, before any board is set up
+        EvalParams.loadDefault();
+
+        // Endgame bitbases, so the first search reaching an ending is not held up
+        Endgames.initialize();
+
         SwingUtilities.invokeLater(() -> new ChessFrame(new Board(almostPromote)));
     }
 }
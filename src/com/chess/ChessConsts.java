@@ -16,6 +16,8 @@ public final class ChessConsts {
     public final static int HISTORY_WIDTH = WINDOW_WIDTH - 750;
     public final static int HISTORY_HEIGHT = WINDOW_HEIGHT - 130;
 
+    public final static int ANALYSIS_WIDTH = 300;
+
     public final static int BOARD_WIDTH = WINDOW_WIDTH - 275;
     public final static int BOARD_HEIGHT = WINDOW_HEIGHT - 78;
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.chess.engine;
 
+import com.chess.engine.board.TimeControl;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -11,6 +13,13 @@ public class GameSettings {
     private boolean enableHighlighting = false;
     private boolean enableDebugging = false;
     private boolean enableCoordinateDisplay = false;
+    private String nnuePath = "";
+    private String evaluationPath = "";
+    private String bookPath = "";
+    private String tablebasePath = "";
+    private TimeControl timeControl = TimeControl.NONE;
+    private PlayerColor engineColor = null;
+    private boolean enablePondering = true;
 
     public static final GameSettings INSTANCE = getInstance();
 
@@ -44,6 +53,29 @@ public class GameSettings {
                     setEnableDebugging(Boolean.valueOf(line.substring(line.indexOf(":") + 1)));
                 } else if(line.startsWith("coordinates:")) {
                     setDisplayTilePositions(Boolean.valueOf(line.substring(line.indexOf(":") + 1)));
+                } else if(line.startsWith("nnue:")) {
+                    setNnuePath(line.substring(line.indexOf(":") + 1).trim());
+                } else if(line.startsWith("evaluation:")) {
+                    setEvaluationPath(line.substring(line.indexOf(":") + 1).trim());
+                } else if(line.startsWith("book:")) {
+                    setBookPath(line.substring(line.indexOf(":") + 1).trim());
+                } else if(line.startsWith("tablebases:")) {
+                    setTablebasePath(line.substring(line.indexOf(":") + 1).trim());
+                } else if(line.startsWith("engine:")) {
+                    String color = line.substring(line.indexOf(":") + 1).trim();
+                    try {
+                        setEngineColor(color.isEmpty() ? null : PlayerColor.valueOf(color.toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Engine color must be white, black or empty: " + color);
+                    }
+                } else if(line.startsWith("ponder:")) {
+                    setEnablePondering(Boolean.valueOf(line.substring(line.indexOf(":") + 1)));
+                } else if(line.startsWith("clock:")) {
+                    try {
+                        setTimeControl(TimeControl.parse(line.substring(line.indexOf(":") + 1)));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println(e.getMessage());
+                    }
                 }
             }
         } catch (IOException e) {
@@ -64,4 +96,32 @@ public class GameSettings {
     // Debugging for fixing problems
     public boolean isEnableDebugging() { return this.enableDebugging; }
     public void setEnableDebugging(boolean enabled) { this.enableDebugging = enabled; }
+
+    // Network file for the NNUE evaluation, empty to use the handcrafted evaluation
+    public String getNnuePath() { return this.nnuePath; }
+    public void setNnuePath(String path) { this.nnuePath = path; }
+
+    // Parameter file for the handcrafted evaluation, written by the tuner, empty to use the built in weights
+    public String getEvaluationPath() { return this.evaluationPath; }
+    public void setEvaluationPath(String path) { this.evaluationPath = path; }
+
+    // Polyglot opening book, empty for no book
+    public String getBookPath() { return this.bookPath; }
+    public void setBookPath(String path) { this.bookPath = path; }
+
+    // Directory of endgame tablebases, empty for the default directory
+    public String getTablebasePath() { return this.tablebasePath; }
+    public void setTablebasePath(String path) { this.tablebasePath = path; }
+
+    // Time control for new games, e.g. 300+2 (seconds), empty for no clock
+    public TimeControl getTimeControl() { return this.timeControl; }
+    public void setTimeControl(TimeControl timeControl) { this.timeControl = timeControl; }
+
+    // Color played by the engine, null when both sides are played by the user
+    public PlayerColor getEngineColor() { return this.engineColor; }
+    public void setEngineColor(PlayerColor color) { this.engineColor = color; }
+
+    // Whether the engine thinks on the user's time
+    public boolean isEnablePondering() { return this.enablePondering; }
+    public void setEnablePondering(boolean enabled) { this.enablePondering = enabled; }
 }
@@ -2,7 +2,10 @@ package com.chess.engine;
 
 import com.chess.ChessConsts;
 import com.chess.engine.board.Board;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.moves.MoveGenerator;
 import com.chess.engine.pieces.Piece;
+import com.chess.engine.pieces.PieceCode;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -87,6 +90,12 @@ public class Player {
      * @return {@code true} if has valid moves, {@code false} if no valid moves
      */
     public boolean hasValidMove(Board board) {
+        // For the side to move, stop at the first legal move rather than finding them all
+        HeadlessBoard position = board.getHeadlessBoard();
+        if(position.getSideToMove() == (isWhite() ? PieceCode.WHITE : PieceCode.BLACK)) {
+            return MoveGenerator.hasLegalMove(position);
+        }
+
         int fullMoves = board.getGameState().getFullMoves();
         Predicate<Piece> hasValidMoves = piece -> board.getValidMovesForPiece(fullMoves, piece)
                                                    .stream().findFirst().isPresent();
@@ -44,6 +44,14 @@ public class Position {
         return row;
     }
 
+    /**
+     * The square index of this position (a1 = 0, b1 = 1, ... h8 = 63)
+     * @return the index of this position on a 64 square board
+     */
+    public int getIndex() {
+        return row * 8 + column;
+    }
+
     /**
      * True if the position is a valid chess coordinate (A-H) and (0-7)
      * @return true if position is a valid chess coordinate
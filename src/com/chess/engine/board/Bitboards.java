@@ -0,0 +1,187 @@
+package com.chess.engine.board;
+
+/**
+ * Masks and helpers for bitboards, where bit n of a long represents square index n (a1 = 0, h8 = 63)
+ */
+public final class Bitboards {
+
+    private Bitboards() { /*Static construct*/ }
+
+    // Files and ranks
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long RANK_1 = 0xFFL;
+    public static final long[] FILES = new long[8];
+    public static final long[] RANKS = new long[8];
+
+    // Dark squares (a1 is dark)
+    public static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+
+    // Files either side of each file
+    public static final long[] ADJACENT_FILES = new long[8];
+
+    // Squares in front of a square on the same and adjacent files, indexed by [color][square]
+    public static final long[][] PASSED_PAWN_MASKS = new long[2][64];
+
+    // Squares in front of a square on the same file, indexed by [color][square]
+    public static final long[][] FORWARD_FILE_MASKS = new long[2][64];
+
+    // Squares attacked by a knight or king on each square
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+
+    // Squares attacked by a pawn of each color on each square, indexed by [color][square]
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // Rays from each square to the edge of the board, indexed by [direction][square]
+    // Directions 0-3 increase the square index (N, NE, NW, E) and 4-7 decrease it (S, SW, SE, W)
+    private static final int[][] DIRECTIONS = {
+            {0, 1}, {1, 1}, {-1, 1}, {1, 0}, {0, -1}, {-1, -1}, {1, -1}, {-1, 0}
+    };
+    private static final long[][] RAYS = new long[8][64];
+
+    // Squares strictly between two squares on the same rank, file or diagonal (empty otherwise), indexed by [from][to]
+    public static final long[][] BETWEEN = new long[64][64];
+
+    static {
+        for(int i = 0; i < 8; i++) {
+            FILES[i] = FILE_A << i;
+            RANKS[i] = RANK_1 << (i * 8);
+        }
+        for(int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for(int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int rank = square >>> 3;
+            long whiteFront = 0;
+            long blackFront = 0;
+            for(int r = rank + 1; r < 8; r++) whiteFront |= RANKS[r];
+            for(int r = rank - 1; r >= 0; r--) blackFront |= RANKS[r];
+            FORWARD_FILE_MASKS[0][square] = whiteFront & FILES[file];
+            FORWARD_FILE_MASKS[1][square] = blackFront & FILES[file];
+            PASSED_PAWN_MASKS[0][square] = whiteFront & (FILES[file] | ADJACENT_FILES[file]);
+            PASSED_PAWN_MASKS[1][square] = blackFront & (FILES[file] | ADJACENT_FILES[file]);
+
+            KNIGHT_ATTACKS[square] = offsets(square, new int[][] {
+                    {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2} });
+            KING_ATTACKS[square] = offsets(square, DIRECTIONS);
+            PAWN_ATTACKS[0][square] = offsets(square, new int[][] { {-1, 1}, {1, 1} });
+            PAWN_ATTACKS[1][square] = offsets(square, new int[][] { {-1, -1}, {1, -1} });
+
+            for(int dir = 0; dir < 8; dir++) {
+                int f = file + DIRECTIONS[dir][0];
+                int r = rank + DIRECTIONS[dir][1];
+                while(f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[dir][square] |= 1L << (r * 8 + f);
+                    f += DIRECTIONS[dir][0];
+                    r += DIRECTIONS[dir][1];
+                }
+            }
+        }
+        for(int square = 0; square < 64; square++) {
+            for(int dir = 0; dir < 8; dir++) {
+                long ray = RAYS[dir][square];
+                while(ray != 0) {
+                    int target = Long.numberOfTrailingZeros(ray);
+                    ray &= ray - 1;
+                    BETWEEN[square][target] = RAYS[dir][square] & ~RAYS[dir][target] & ~(1L << target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Squares reached from a square by each (file, rank) offset that stays on the board
+     */
+    private static long offsets(int square, int[][] offsets) {
+        long bitboard = 0;
+        for(int[] offset : offsets) {
+            int f = (square & 7) + offset[0];
+            int r = (square >>> 3) + offset[1];
+            if(f >= 0 && f < 8 && r >= 0 && r < 8) {
+                bitboard |= 1L << (r * 8 + f);
+            }
+        }
+        return bitboard;
+    }
+
+    /**
+     * Squares attacked along a ray, stopping at (and including) the first occupied square
+     * @param direction the direction index of the ray
+     * @param square the square the ray starts from
+     * @param occupied bitboard of occupied squares
+     * @return the bitboard of attacked squares
+     */
+    private static long rayAttacks(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if(blockers != 0) {
+            int blocker = direction < 4 ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            ray ^= RAYS[direction][blocker];
+        }
+        return ray;
+    }
+
+    /**
+     * Squares attacked by a bishop
+     * @param square the square of the bishop
+     * @param occupied bitboard of occupied squares
+     * @return the bitboard of attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return rayAttacks(1, square, occupied) | rayAttacks(2, square, occupied)
+                | rayAttacks(5, square, occupied) | rayAttacks(6, square, occupied);
+    }
+
+    /**
+     * Squares attacked by a rook
+     * @param square the square of the rook
+     * @param occupied bitboard of occupied squares
+     * @return the bitboard of attacked squares
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return rayAttacks(0, square, occupied) | rayAttacks(3, square, occupied)
+                | rayAttacks(4, square, occupied) | rayAttacks(7, square, occupied);
+    }
+
+    /**
+     * Squares attacked by a queen
+     * @param square the square of the queen
+     * @param occupied bitboard of occupied squares
+     * @return the bitboard of attacked squares
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return bishopAttacks(square, occupied) | rookAttacks(square, occupied);
+    }
+
+    /**
+     * Shift a bitboard one rank towards the opponent of the given color
+     * @param bitboard the bitboard to shift
+     * @param color the color moving forward (0 = white moves up, 1 = black moves down)
+     * @return the shifted bitboard
+     */
+    public static long forward(long bitboard, int color) {
+        return color == 0 ? bitboard << 8 : bitboard >>> 8;
+    }
+
+    /**
+     * Squares attacked by all pawns of a given color
+     * @param pawns the bitboard of pawns
+     * @param color the color of the pawns
+     * @return the bitboard of attacked squares
+     */
+    public static long pawnAttacks(long pawns, int color) {
+        long forward = forward(pawns, color);
+        return ((forward & ~FILES[0]) >>> 1) | ((forward & ~FILES[7]) << 1);
+    }
+
+    /**
+     * Chebyshev (king move) distance between two squares
+     * @param a the first square index
+     * @param b the second square index
+     * @return the number of king moves between the squares
+     */
+    public static int distance(int a, int b) {
+        return Math.max(Math.abs((a & 7) - (b & 7)), Math.abs((a >>> 3) - (b >>> 3)));
+    }
+}
@@ -5,11 +5,14 @@ import com.chess.engine.GameSettings;
 import com.chess.engine.Player;
 import com.chess.engine.PlayerColor;
 import com.chess.engine.Position;
+import com.chess.engine.evaluation.Endgames;
+import com.chess.engine.evaluation.Evaluation;
 import com.chess.engine.moves.Move;
 import com.chess.engine.moves.MoveHistory;
 import com.chess.engine.moves.MoveUtils;
 import com.chess.engine.pieces.King;
 import com.chess.engine.pieces.Piece;
+import com.chess.engine.pieces.PieceCode;
 
 import javax.swing.JLabel;
 import javax.swing.JLayeredPane;
@@ -19,13 +22,16 @@ import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.GridLayout;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -48,6 +54,23 @@ public class Board extends JPanel {
     private final GameState gameState;
     private final MoveHistory moveHistory;
 
+    // Headless copy of the position used by the engine (evaluation, hashing)
+    private final HeadlessBoard headlessBoard;
+
+    // Immutable copy of the game, replaced after every move, for threads other than the event dispatch thread
+    private volatile GamePosition position;
+
+    // Status of the current position, worked out when first asked for after each move
+    private GameStatus status = null;
+    private long statusKey;
+    private int statusPly;
+
+    // Told whenever the position changes through the UI: a move, undo / redo, new game or loaded fen
+    private final List<Runnable> positionListeners = new ArrayList<>();
+
+    // Plays one side against the user, only for a board with UI
+    private final EnginePlayer enginePlayer;
+
     // Create layered pane for dragging purposes
     private final JLayeredPane layeredPane = new JLayeredPane();
 
@@ -65,7 +88,24 @@ public class Board extends JPanel {
      * @param fen the fen string to present on a chessboard
      * @param withUI true if should UI be rendered, false if not
      */
-    private Board(String fen, boolean withUI) {
+    Board(String fen, boolean withUI) {
+        this(withUI, board -> board.loadBoardFromFen(fen));
+    }
+
+    /**
+     * Create a board without UI from a snapshot of a position
+     * @param snapshot the position to present on a chessboard
+     */
+    public Board(BoardSnapshot snapshot) {
+        this(false, board -> board.loadBoardFromSnapshot(snapshot));
+    }
+
+    /**
+     * Create a new board, loading its position before any UI is added
+     * @param withUI true if should UI be rendered, false if not
+     * @param loader loads the position into the new board
+     */
+    private Board(boolean withUI, Consumer<Board> loader) {
         super(new GridLayout(ChessConsts.NUM_TILE, ChessConsts.NUM_TILE));
 
         // Add our tiles
@@ -88,14 +128,18 @@ public class Board extends JPanel {
 
         // Initialize the current game state, move history and king positions
         this.gameState = new GameState();
-        this.moveHistory = new MoveHistory(this);
+        this.moveHistory = new MoveHistory(this, withUI);
         this.kingPositionMap = new HashMap<>(ChessConsts.NUM_PLAYERS);
+        this.headlessBoard = new HeadlessBoard();
 
-        // Load our board information from FEN string
-        this.loadBoardFromFen(fen);
+        // Load our board information
+        loader.accept(this);
 
         // Only add UI portion if desired
         if(withUI) {
+            // Only the displayed game is played against the clock
+            this.gameState.newGame(GameSettings.INSTANCE.getTimeControl());
+
             // TODO need to figure out how to add layout here for resizing
             //layeredPane.setLayout(new FlowLayout());
             this.setBounds(0, 0, ChessConsts.BOARD_WIDTH, ChessConsts.BOARD_HEIGHT);
@@ -111,24 +155,58 @@ public class Board extends JPanel {
 
             // Add the myself to our layered pane's default layer
             this.layeredPane.add(this, JLayeredPane.DEFAULT_LAYER);
+
+            // The engine starts thinking straight away if it is to move
+            this.enginePlayer = new EnginePlayer(this);
+        } else {
+            this.enginePlayer = null;
         }
     }
 
     /**
-     * Clone the other board to create another instance without UI
+     * Clone the other board to create another instance without UI, through a {@link BoardSnapshot}
      * @param otherBoard the board to clone
      */
     public Board(Board otherBoard) {
-        this(FenUtils.getFen(otherBoard), false);
+        this(BoardSnapshot.of(otherBoard));
     }
 
     /**
      * Reset the {@code Board} to Default Position
      */
     public void reset() {
+        loadFen(FenUtils.DEFAULT_POSITION);
+    }
+
+    /**
+     * Start a new game from the position represented by the fen string
+     * @param fen the fen string to load
+     * @throws IllegalArgumentException if the fen string could not be parsed, in which case the board is unchanged
+     */
+    public void loadFen(String fen) {
+        // Check the fen before anything is cleared
+        new HeadlessBoard(fen);
+
+        gameState.newGame(GameSettings.INSTANCE.getTimeControl());
         getMoveHistory().reset();
-        loadBoardFromFen(FenUtils.DEFAULT_POSITION);
+        loadBoardFromFen(fen);
         displayBoard();
+        firePositionChanged();
+    }
+
+    /**
+     * Add a listener told whenever the position changes through the UI, on the event dispatch thread
+     * @param listener the listener
+     */
+    public void addPositionListener(Runnable listener) {
+        positionListeners.add(listener);
+    }
+
+    /**
+     * Tell the position listeners the position has changed
+     */
+    public void firePositionChanged() {
+        positionListeners.forEach(Runnable::run);
     }
 
     /**
@@ -136,26 +214,65 @@ public class Board extends JPanel {
      * @param fen a valid fen string to update the board with. Providing an invalid fen will result in an error message.
      */
     private void loadBoardFromFen(final String fen) {
-
-        // Clear each player's pieces / captured pieces
-        getPlayers().values().forEach(player -> {
-            player.getPieces().clear();
-            player.getCapturedPieces().clear();
-        });
-
-        // Clear tiles / highlights on the board
-        getTileMap().clear();
+        clearBoard();
 
         try {
 
             // Load in the fen string
             FenUtils.loadFen(this, fen);
 
+            // Load the same position into the headless board
+            FenUtils.loadFen(this.headlessBoard, fen);
+            this.position = GamePosition.start(BoardSnapshot.of(this.headlessBoard));
+
         } catch (FenUtils.FenException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    /**
+     * Updates reference to game board and recreates it from a snapshot, without going through a fen string
+     * @param snapshot the position to update the board with
+     */
+    private void loadBoardFromSnapshot(final BoardSnapshot snapshot) {
+        clearBoard();
+
+        // Add tiles in the same order as from a fen string, rank 8 first
+        for(int row = 7; row >= 0; row--) {
+            for(int column = 0; column < 8; column++) {
+                Position position = new Position(row, column);
+                int piece = snapshot.getPiece(row * 8 + column);
+                if(piece == PieceCode.EMPTY) {
+                    getTileMap().put(position, new Tile(position));
+                } else {
+                    constructPiece(PieceCode.toChar(piece), position);
+                }
+            }
+        }
+
+        gameState.setPlayerTurn(getPlayers().get(snapshot.getSideToMove() == PieceCode.WHITE ? PlayerColor.WHITE : PlayerColor.BLACK));
+        gameState.unpack(snapshot.getState());
+        getPlayers().values().forEach(player -> generateMovesForPlayer(player, gameState.getFullMoves()));
+
+        this.headlessBoard.setSnapshot(snapshot);
+        this.position = GamePosition.start(snapshot);
+    }
+
+    /**
+     * Clear each player's pieces and the tiles before loading a position
+     */
+    private void clearBoard() {
+        // Clear each player's pieces / captured pieces
+        getPlayers().values().forEach(player -> {
+            player.getPieces().clear();
+            player.getCapturedPieces().clear();
+        });
+
+        // Clear tiles / highlights on the board
+        getTileMap().clear();
+        this.status = null;
+    }
+
     /**
      * Construct a game piece at the given position
      * @param ch the character representing the piece
@@ -261,7 +378,9 @@ public class Board extends JPanel {
         Set<Move> validMovesForPiece = validMovesForTurn.get(piece);
 
         if(validMovesForPiece == null) {
-            Predicate<Move> validMove = move -> MoveUtils.executeTestMove(this, move.getOrigin(), move.getDestination());
+            // Each test move is made on a copy of the position, all taken from one snapshot
+            BoardSnapshot snapshot = BoardSnapshot.of(this);
+            Predicate<Move> validMove = move -> MoveUtils.executeTestMove(snapshot, move.getOrigin(), move.getDestination());
             validMovesForPiece = getMovesForPiece(turn, piece).parallelStream().filter(validMove).collect(Collectors.toSet());
             validMovesForTurn.put(piece, validMovesForPiece);
         }
@@ -287,11 +406,50 @@ public class Board extends JPanel {
      */
     public MoveHistory getMoveHistory() { return this.moveHistory; }
 
+    /**
+     * The headless copy of this board's position, kept in sync as moves are executed
+     * @return the {@link HeadlessBoard} for the current board
+     */
+    public HeadlessBoard getHeadlessBoard() { return this.headlessBoard; }
+
+    /**
+     * The current position and the moves that led to it, as an immutable value any thread can read without locks.
+     * Unlike the rest of the board, which may be part way through a move, it always holds a whole position.
+     * @return the position published after the latest move
+     */
+    public GamePosition getPosition() { return this.position; }
+
+    /**
+     * Publish the position after a move has been made on the headless board, in a single write
+     * @param notation the notation of the move
+     */
+    public void publishMove(String notation) {
+        this.position = this.position.after(this.headlessBoard.getLastMove(), notation, BoardSnapshot.of(this.headlessBoard));
+    }
+
+    /**
+     * Debug check that the incrementally updated evaluation matches
+     * one computed from the tiles and pieces on this board, and that the game state matches the headless board's
+     * @throws IllegalStateException if the two do not match
+     */
+    public void verifyEvaluation() {
+        Evaluation full = Evaluation.compute(this);
+        if(!full.equals(headlessBoard.getEvaluation())) {
+            throw new IllegalStateException("Incremental evaluation [" + headlessBoard.getEvaluation()
+                    + "] does not match board evaluation [" + full + "] for " + FenUtils.getFen(this));
+        }
+        if(gameState.pack() != headlessBoard.packState()) {
+            throw new IllegalStateException("Game state [" + FenUtils.getFen(this) + "] does not match headless board ["
+                    + FenUtils.getFen(headlessBoard) + "]");
+        }
+    }
+
     /**
      * Undo the most recent move
      */
     public void undo() {
         moveHistory.undo();
+        firePositionChanged();
     }
 
     /**
@@ -299,8 +457,54 @@ public class Board extends JPanel {
      */
     public void redo() {
         moveHistory.redo();
+        firePositionChanged();
+    }
+
+    /**
+     * Take back the last moves of the game. The moves before them are replayed from the start position, and the
+     * clocks keep the time already used.
+     * @param plies the number of moves (by either side) to take back
+     * @return the number of moves taken back, fewer if the game has not had that many
+     */
+    public int takeBack(int plies) {
+        // Find the start position and the moves to keep by unmaking moves on a copy of the game
+        HeadlessBoard start = new HeadlessBoard(headlessBoard);
+        int count = Math.min(plies, start.getPly());
+        for(int i = 0; i < count; i++) {
+            start.unmakeMove();
+        }
+        int[] moves = new int[start.getPly()];
+        for(int i = moves.length - 1; i >= 0; i--) {
+            moves[i] = start.getLastMove();
+            start.unmakeMove();
+        }
+        if(count == 0) {
+            return 0;
+        }
+
+        // Generated moves belong to the pieces being replaced
+        movesForPlayers.values().forEach(Map::clear);
+        validMovesForPlayers.values().forEach(Map::clear);
+
+        gameState.resume();
+        getMoveHistory().reset();
+        loadBoardFromFen(FenUtils.getFen(start));
+        for(int move : moves) {
+            MoveUtils.executeActualMove(this, move, true);
+        }
+        gameState.getClock().takeBack(count, gameState.getPlayerTurn().getColor());
+
+        displayBoard();
+        firePositionChanged();
+        return count;
     }
 
+    /**
+     * The engine playing against the user
+     * @return the {@link EnginePlayer}, or {@code null} for a board without UI
+     */
+    public EnginePlayer getEnginePlayer() { return this.enginePlayer; }
+
     /**
      * Get the king position of the given player
      * @param player the {@link Player} to get the king position for
@@ -319,6 +523,19 @@ public class Board extends JPanel {
         kingPositionMap.put(player, newPosition);
     }
 
+    /**
+     * Tell the players how the game ended and offer a new game
+     * @param result how the game ended, following "Game ended in"
+     */
+    private void showGameOver(String result) {
+        int value = JOptionPane.showConfirmDialog(this,
+                "Game ended in " + result
+                        + "\nWould you like to start a new game?", "Game over", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if(value == 0) {
+            reset();
+        }
+    }
+
     /**
      * Initialize the game board
      * - All chess tiles
@@ -372,17 +589,30 @@ public class Board extends JPanel {
             this.add(tile, this.getComponents().length);
         });
 
-        // If player doesn't have valid moves, then the game is over
+        // If a player has run out of time, they lose unless their opponent could not possibly mate
+        GameClock clock = gameState.getClock();
+        PlayerColor flagged = clock.getFlagged();
+        if(!gameState.isGameOver() && flagged != null) {
+            clock.stop();
+            Player loser = getPlayers().get(flagged);
+            int winner = flagged == PlayerColor.WHITE ? PieceCode.BLACK : PieceCode.WHITE;
+            gameState.setLostOnTime(loser, !Endgames.hasMatingMaterial(headlessBoard, winner));
+            String name = loser.isWhite() ? "White" : "Black";
+            showGameOver(gameState.isDrawnOnTime() ? " a draw, " + name + " ran out of time but the opponent can not mate."
+                    : " " + name + " losing on time.");
+        }
+
+        // If player doesn't have valid moves, or the game is drawn by rule, then the game is over
         // TODO -> If the game is over before frame loads, then pane shows first..
-        if(!currentPlayer.hasValidMove(this)) {
-            gameState.setGameOver(MoveUtils.isKingInCheck(this,
-                    currentPlayer.opposite(this), currentPlayer) == null);
-
-            int value = JOptionPane.showConfirmDialog(this,
-                    "Game ended in " + (gameState.isStaleMate() ? " stale mate." : " check mate.")
-                            + "\nWould you like to start a new game?", "Game over", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
-            if(value == 0) {
-                reset();
+        else if(!gameState.isGameOver() && getStatus().isGameOver()) {
+            clock.stop();
+            GameStatus result = getStatus();
+            if(result == GameStatus.CHECKMATE || result == GameStatus.STALEMATE) {
+                gameState.setGameOver(result == GameStatus.STALEMATE);
+                showGameOver(" " + result.getDescription() + ".");
+            } else {
+                gameState.setDrawn(result.getDescription());
+                showGameOver(" a draw by " + result.getDescription() + ".");
             }
         }
 
@@ -390,6 +620,20 @@ public class Board extends JPanel {
         layeredPane.repaint();
     }
 
+    /**
+     * Whether the game goes on in the current position, and if not how it ended. Worked out from the headless board
+     * when first asked for after a move, and kept until the next one.
+     * @return the {@link GameStatus} of the current position
+     */
+    public GameStatus getStatus() {
+        if(status == null || statusKey != headlessBoard.getKey() || statusPly != headlessBoard.getPly()) {
+            status = GameStatus.of(headlessBoard);
+            statusKey = headlessBoard.getKey();
+            statusPly = headlessBoard.getPly();
+        }
+        return status;
+    }
+
     /**
      * Get the layered pane object which we use to drag pieces around on
      * @return the layered pane which our chessboard exists within
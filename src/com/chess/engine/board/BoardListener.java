@@ -38,11 +38,12 @@ class BoardListener implements MouseListener, MouseMotionListener {
     }
 
     /**
-     * Prevent Player from moving a piece if it is not their turn
+     * Prevent Player from moving a piece if it is not their turn, or the engine is playing that side
      * @return whether the {@code Player} can pickup a given piece
      */
     private boolean canPickupPiece() {
-        return originatingPiece != null && originatingPiece.getOwner().equals(board.getGameState().getPlayerTurn());
+        return originatingPiece != null && originatingPiece.getOwner().equals(board.getGameState().getPlayerTurn())
+                && !board.getEnginePlayer().isEngineToMove();
     }
 
     /*
@@ -0,0 +1,160 @@
+package com.chess.engine.board;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A flat copy of a position: the piece code of each square and the game state packed into primitives, without the
+ * tiles, players, move history or UI of a {@link Board}. Taking a snapshot and turning it back into a
+ * {@link HeadlessBoard} or a {@link Board} copies arrays rather than writing and parsing a fen string, so threads
+ * working on the game's position (legality checks, analysis, self-play) can each take a private copy cheaply.
+ * Snapshots are immutable, so one snapshot can be handed to any number of threads.
+ *
+ * Usage: BoardSnapshot [fen] [-iterations n], which times each way of copying a board in nanoseconds
+ */
+public final class BoardSnapshot {
+
+    // Piece code of each square
+    private final byte[] squares;
+
+    // Castling, en passant and move counters packed as a PackedState, and the side to move
+    private final long state;
+    private final int sideToMove;
+
+    // Zobrist key of the whole position and of the pawns only
+    private final long key;
+    private final long pawnKey;
+
+    private BoardSnapshot(HeadlessBoard board) {
+        this.squares = new byte[64];
+        for(int square = 0; square < 64; square++) {
+            this.squares[square] = (byte) board.getPiece(square);
+        }
+        this.state = board.packState();
+        this.sideToMove = board.getSideToMove();
+        this.key = board.getKey();
+        this.pawnKey = board.getPawnKey();
+    }
+
+    /**
+     * Take a snapshot of the current position of a headless board
+     * @param board the board, left unchanged
+     * @return the snapshot
+     */
+    public static BoardSnapshot of(HeadlessBoard board) {
+        return new BoardSnapshot(board);
+    }
+
+    /**
+     * Take a snapshot of the current position of a board, from the headless board it keeps in step
+     * @param board the board, left unchanged
+     * @return the snapshot
+     */
+    public static BoardSnapshot of(Board board) {
+        return new BoardSnapshot(board.getHeadlessBoard());
+    }
+
+    /**
+     * Create a headless board with the position, without move history
+     * @return a new headless board
+     */
+    public HeadlessBoard toHeadlessBoard() {
+        return new HeadlessBoard(this);
+    }
+
+    /**
+     * Create a board without UI with the position, without move history
+     * @return a new board
+     */
+    public Board toBoard() {
+        return new Board(this);
+    }
+
+    // Getters
+    public int getPiece(int square) { return this.squares[square]; }
+    public int getSideToMove() { return this.sideToMove; }
+    public int getCastling() { return PackedState.castling(this.state); }
+    public int getEpSquare() { return PackedState.epSquare(this.state); }
+    public int getHalfMoves() { return PackedState.halfMoves(this.state); }
+    public int getFullMoves() { return PackedState.fullMoves(this.state); }
+    public long getKey() { return this.key; }
+    public long getPawnKey() { return this.pawnKey; }
+    long getState() { return this.state; }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof BoardSnapshot)) {
+            return false;
+        }
+        BoardSnapshot other = (BoardSnapshot) o;
+        return this.key == other.key && this.state == other.state && this.sideToMove == other.sideToMove
+                && Arrays.equals(this.squares, other.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.key);
+    }
+
+    @Override
+    public String toString() {
+        return FenUtils.getFen(toHeadlessBoard());
+    }
+
+    public static void main(String[] args) {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        int iterations = 100_000;
+        boolean valid = true;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-iterations": iterations = Integer.parseInt(args[++i]); break;
+                default:
+                    if(args[i].startsWith("-")) {
+                        valid = false;
+                    } else {
+                        fen = args[i];
+                    }
+                    break;
+            }
+        }
+        if(!valid) {
+            System.err.println("Usage: BoardSnapshot [fen] [-iterations n]");
+            return;
+        }
+
+        HeadlessBoard headless = new HeadlessBoard(fen);
+        BoardSnapshot snapshot = BoardSnapshot.of(headless);
+        Board board = snapshot.toBoard();
+
+        // Each is run twice, the first time to warm up
+        for(int run = 0; run < 2; run++) {
+            boolean report = run == 1;
+            int count = iterations;
+            time("Snapshot of a headless board", count, report, () -> BoardSnapshot.of(headless));
+            time("Snapshot to a headless board", count, report, snapshot::toHeadlessBoard);
+            time("Copy of a headless board (with move history)", count, report, () -> new HeadlessBoard(headless));
+            time("Headless board through a fen string", count, report, () -> new HeadlessBoard(FenUtils.getFen(headless)));
+            time("Snapshot to a board", count / 10, report, snapshot::toBoard);
+            time("Board through a fen string", count / 10, report, () -> new Board(FenUtils.getFen(board), false));
+        }
+    }
+
+    /**
+     * Time one way of copying a board, printing the nanoseconds per copy
+     */
+    private static void time(String name, int iterations, boolean report, Supplier<Object> copy) {
+        Object last = null;
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            last = copy.get();
+        }
+        long nanos = System.nanoTime() - start;
+        if(report && last != null) {
+            System.out.printf("%-48s %,10.0f ns%n", name, (double) nanos / Math.max(1, iterations));
+        }
+    }
+}
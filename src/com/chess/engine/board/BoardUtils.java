@@ -15,19 +15,13 @@ public class BoardUtils {
     // This object can only reference one board at a time
     private BoardUtils() { /*Singleton*/ }
 
-    /*
-    * Return a position given a square index such as A8
-    */
-    static Position sqiToPosition(final String sqi) {
-        if("-".equals(sqi)) {
-            return null;
-        }
-
-        char colChar = sqi.charAt(0);
-        int col = colChar - 97;
-        char row = sqi.charAt(1);
-
-        return new Position(Integer.parseInt(row + ""), col);
+    /**
+     * Get the position of a square index, the reverse of {@link Position#getIndex()}
+     * @param index the square index (a1 = 0, b1 = 1, ... h8 = 63)
+     * @return the position of that square
+     */
+    public static Position indexToPosition(int index) {
+        return new Position(index / 8, index % 8);
     }
 
     /**
@@ -0,0 +1,216 @@
+package com.chess.engine.board;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.PlayerColor;
+import com.chess.engine.book.PolyglotBook;
+import com.chess.engine.moves.MoveUtils;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.search.Engine;
+
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays one side of the game on a {@link Board} against the user. Whenever the position changes and the engine is
+ * to move, its {@link Engine} searches on its own thread; the move found is handed to the event dispatch thread and
+ * executed through {@link MoveUtils} like a move made with the mouse, so the UI never waits for the search. After
+ * moving, the engine ponders on the user's time. While the game is in the opening book from the settings, if any,
+ * the engine plays book moves without searching. Any search can be cancelled (a new game, a take back, a change of
+ * side) without blocking for longer than the search takes to notice, and a move it still finds is then dropped.
+ * The time each move took to find, and how long it then took to appear on the board, are logged.
+ * All methods are called on the event dispatch thread.
+ */
+public class EnginePlayer {
+
+    // Time to think per move when the game has no clock
+    private static final long UNTIMED_MOVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Board board;
+    private final Engine engine = new Engine();
+
+    // Opening book from the settings, or null if none is set or it could not be opened
+    private PolyglotBook book = null;
+
+    // Color played by the engine, or null if the user plays both sides
+    private PlayerColor color;
+
+    // Counts searches started or cancelled, so a move from an earlier search is never played
+    private int generation = 0;
+
+    // Key of the position the engine is thinking about for its move, if thinking
+    private boolean thinking = false;
+    private long thinkingKey;
+
+    // Key of the position left to the user by the engine's last move, which it ponders on
+    private long ponderFromKey;
+
+    /**
+     * Create the engine player for a board, playing the color from the settings
+     * @param board the {@code Board} to play on
+     */
+    EnginePlayer(Board board) {
+        this.board = board;
+        this.color = GameSettings.INSTANCE.getEngineColor();
+        openBook(GameSettings.INSTANCE.getBookPath());
+        board.addPositionListener(this::positionChanged);
+        positionChanged();
+    }
+
+    /**
+     * Open the opening book for the engine to play from, searching every move if there is none
+     * @param bookPath the path of the Polyglot book, empty for no book
+     */
+    private void openBook(String bookPath) {
+        if(bookPath.isEmpty()) {
+            return;
+        }
+        try {
+            book = PolyglotBook.open(bookPath);
+            engine.setBook(book);
+        } catch (IOException e) {
+            System.out.println("Could not read opening book, playing without it: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Choose the color the engine plays, starting to think if it is now to move
+     * @param color the {@link PlayerColor} to play, or {@code null} to let the user play both sides
+     */
+    public void setColor(PlayerColor color) {
+        GameSettings.INSTANCE.setEngineColor(color);
+        this.color = color;
+        cancel();
+        positionChanged();
+    }
+
+    /**
+     * Take back the last move of the user, along with the engine's reply if it has made one.
+     * Stops the engine if it is thinking.
+     * @return {@code true} if any move was taken back
+     */
+    public boolean takeBack() {
+        cancel();
+
+        // Take back to the user's move, unless the engine made the only move of the game
+        PlayerColor lastMover = board.getGameState().getPlayerTurn().isWhite() ? PlayerColor.BLACK : PlayerColor.WHITE;
+        int plies = lastMover == color && board.getHeadlessBoard().getPly() > 1 ? 2 : 1;
+        return board.takeBack(plies) > 0;
+    }
+
+    /**
+     * Stop any search, dropping the move it would have played
+     */
+    public void cancel() {
+        generation++;
+        thinking = false;
+        engine.stop();
+    }
+
+    /**
+     * Whether the engine plays the side to move, in which case the user can not move
+     * @return {@code true} if it is the engine's turn
+     */
+    public boolean isEngineToMove() {
+        return color != null && color == board.getGameState().getPlayerTurn().getColor();
+    }
+
+    /**
+     * Start thinking if the engine is now to move, or stop if the game has moved on without it
+     */
+    private void positionChanged() {
+        HeadlessBoard position = board.getHeadlessBoard();
+        if(!isEngineToMove() || board.getGameState().isGameOver() || board.getStatus().isGameOver()) {
+            // Keep pondering, unless the position is no longer the one the engine left the user
+            if(thinking || engine.isPondering() && position.getKey() != ponderFromKey) {
+                cancel();
+            }
+            return;
+        }
+        if(thinking && thinkingKey == position.getKey()) {
+            return;
+        }
+        think(position);
+    }
+
+    /**
+     * Search for the engine's move on the worker thread, then play it on the event dispatch thread
+     */
+    private void think(HeadlessBoard position) {
+        int search = ++generation;
+        long key = position.getKey();
+        thinking = true;
+        thinkingKey = key;
+
+        // Under a clock the search manages its time; a search pondering on this position is converted instead
+        long start = System.nanoTime();
+        long hits = engine.getPonderHits();
+        long bookMoves = engine.getBookMoves();
+        GameClock clock = board.getGameState().getClock();
+        CompletableFuture<Integer> future;
+        if(clock.isTimed()) {
+            TimeControl timeControl = clock.getTimeControl();
+            future = engine.think(position, clock.getRemainingNanos(color), timeControl.getIncrementNanos(), timeControl.getDelayNanos());
+        } else {
+            future = engine.think(position, UNTIMED_MOVE_NANOS);
+        }
+        boolean ponderHit = engine.getPonderHits() > hits;
+        boolean bookMove = engine.getBookMoves() > bookMoves;
+
+        future.whenComplete((move, error) -> {
+            long found = System.nanoTime();
+            if(error != null) {
+                error.printStackTrace();
+                return;
+            }
+            SwingUtilities.invokeLater(() -> play(search, key, move, start, found, ponderHit, bookMove));
+        });
+    }
+
+    /**
+     * Play the move found by a search, if it is still wanted
+     */
+    private void play(int search, long key, int move, long start, long found, boolean ponderHit, boolean bookMove) {
+        if(search != generation || key != board.getHeadlessBoard().getKey() || board.getGameState().isGameOver()) {
+            return;
+        }
+        thinking = false;
+        if(move == PackedMove.NONE) {
+            return;
+        }
+
+        long received = System.nanoTime();
+        MoveUtils.executeActualMove(board, move, false);
+        board.displayBoard();
+        long shown = System.nanoTime();
+        System.out.printf("Engine played %s: thought %d ms%s, on the board %d ms later (%d ms waiting for the UI thread)%n",
+                PackedMove.toString(move), TimeUnit.NANOSECONDS.toMillis(found - start),
+                bookMove ? " (book)" : ponderHit ? " (ponder hit)" : "",
+                TimeUnit.NANOSECONDS.toMillis(shown - found), TimeUnit.NANOSECONDS.toMillis(received - found));
+
+        // Think about the expected reply while the user thinks, unless the game ended or moved on meanwhile
+        if(GameSettings.INSTANCE.isEnablePondering() && search == generation && !board.getGameState().isGameOver()) {
+            ponderFromKey = board.getHeadlessBoard().getKey();
+            engine.ponder(board.getHeadlessBoard());
+        }
+    }
+
+    /**
+     * Stop searching and release the engine's thread
+     */
+    public void close() {
+        cancel();
+        engine.close();
+        if(book != null) {
+            try {
+                book.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public Engine getEngine() { return this.engine; }
+    public PlayerColor getColor() { return this.color; }
+}
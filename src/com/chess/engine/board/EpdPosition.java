@@ -0,0 +1,105 @@
+package com.chess.engine.board;
+
+import com.chess.engine.moves.PackedMove;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A position read from an EPD line: the position as a fen string and its operations, e.g. the best moves
+ * ({@code bm}), moves to avoid ({@code am}) and the name of the position ({@code id}) of a test suite
+ */
+public class EpdPosition {
+
+    private final String fen;
+    private final Map<String, List<String>> operations;
+
+    EpdPosition(String fen, Map<String, List<String>> operations) {
+        this.fen = fen;
+        this.operations = Collections.unmodifiableMap(new LinkedHashMap<>(operations));
+    }
+
+    /**
+     * The position, with the move counters of the {@code hmvc} and {@code fmvn} operations if given
+     * @return a fen string
+     */
+    public String getFen() {
+        return this.fen;
+    }
+
+    public Map<String, List<String>> getOperations() {
+        return this.operations;
+    }
+
+    /**
+     * Get the operands of an operation
+     * @param opcode the opcode, e.g. "bm"
+     * @return the operands, without quotes, or an empty list if the position does not have the operation
+     */
+    public List<String> getOperands(String opcode) {
+        List<String> operands = this.operations.get(opcode);
+        return operands == null ? Collections.emptyList() : operands;
+    }
+
+    /**
+     * Get the first operand of an operation
+     * @param opcode the opcode, e.g. "id"
+     * @return the operand, or null if the position does not have the operation
+     */
+    public String getOperand(String opcode) {
+        List<String> operands = getOperands(opcode);
+        return operands.isEmpty() ? null : operands.get(0);
+    }
+
+    /**
+     * The name of the position
+     * @return the {@code id} operand, or null if there is none
+     */
+    public String getId() {
+        return getOperand("id");
+    }
+
+    /**
+     * The best moves of the position
+     * @return the {@code bm} moves, skipping any that are not legal
+     */
+    public int[] getBestMoves() {
+        return getMoves("bm");
+    }
+
+    /**
+     * The moves to avoid in the position
+     * @return the {@code am} moves, skipping any that are not legal
+     */
+    public int[] getAvoidMoves() {
+        return getMoves("am");
+    }
+
+    /**
+     * Get the operands of an operation as moves
+     * @param opcode the opcode of an operation with moves in standard algebraic notation as operands
+     * @return the legal moves among the operands
+     */
+    public int[] getMoves(String opcode) {
+        HeadlessBoard board = new HeadlessBoard(this.fen);
+        return getOperands(opcode).stream().mapToInt(san -> PGNUtils.parseSan(board, san))
+                .filter(move -> move != PackedMove.NONE).toArray();
+    }
+
+    @Override
+    public String toString() {
+        // The move counters are operations in EPD
+        StringBuilder sb = new StringBuilder(String.join(" ", Arrays.copyOf(this.fen.split(" "), 4)));
+        this.operations.forEach((opcode, operands) -> {
+            sb.append(' ').append(opcode);
+            for(String operand : operands) {
+                sb.append(' ').append(operand.matches("[^\\s;\"]+") ? operand : '"' + operand + '"');
+            }
+            sb.append(';');
+        });
+        return sb.toString();
+    }
+}
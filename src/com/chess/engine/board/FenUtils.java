@@ -3,6 +3,13 @@ package com.chess.engine.board;
 import com.chess.engine.Player;
 import com.chess.engine.PlayerColor;
 import com.chess.engine.Position;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class FenUtils {
 
@@ -52,10 +59,10 @@ public class FenUtils {
         gameState.setPlayerTurn(getPlayerTurn(board, tokens[1]));
 
         // Set castling ability
-        gameState.setCastlingAbility(getCastlingAbility(tokens[2]));
+        gameState.setCastling(getCastling(tokens[2]));
 
         // Set enpassant location
-        gameState.setEnpassantSquare(BoardUtils.sqiToPosition(tokens[3]));
+        gameState.setEpIndex(getEpSquare(tokens[3]));
 
         // Set half move counter
         gameState.setHalfMoves(getHalfMove(tokens[4]));
@@ -147,16 +154,10 @@ public class FenUtils {
         sb.append(' ').append(state.getPlayerTurn().toString());
 
         /*========== 3rd field : castles ==========*/
-        sb.append(' ');
-        sb.append(state.getCastles());
+        sb.append(' ').append(castlingToString(state.getCastling()));
 
         /*========== 4th field : ep square ==========*/
-        sb.append(' ');
-        Position epSq = state.getEPSquare();
-        if (epSq == null)
-            sb.append('-');
-        else
-            sb.append(epSq);
+        sb.append(' ').append(state.getEpIndex() < 0 ? "-" : PackedMove.squareName(state.getEpIndex()));
 
         /*========== 5th field : half move clock ==========*/
         sb.append(' ').append(state.getHalfMoves());
@@ -167,6 +168,188 @@ public class FenUtils {
         return sb.toString();
     }
 
+    /**
+     * Loads the given fen string into a headless board
+     * @param board the {@code HeadlessBoard} to load with given fen
+     * @param fen a valid FEN {@code String} for a standard chess game, or empty for the default position
+     */
+    static void loadFen(final HeadlessBoard board, final String fen) throws FenException {
+        String[] tokens = ("".equals(fen) ? DEFAULT_POSITION : fen).trim().split("\\s+");
+        if(tokens.length != 6) throw new FenException("Invalid fen string");
+
+        String[] ranks = tokens[0].split("/");
+        if(ranks.length != 8) throw new FenException("There should be exactly 8 cols.");
+
+        board.clear();
+
+        // Add game pieces
+        for(int rankCount = 0; rankCount < 8; rankCount++) {
+            int rowIndex = 7 - rankCount;
+            int file = 0;
+            for(char ch : ranks[rankCount].toCharArray()) {
+                if(Character.isDigit(ch)) {
+                    file += ch - '0';
+                } else {
+                    int piece = PieceCode.fromChar(ch);
+                    if(piece == PieceCode.EMPTY || file > 7) {
+                        throw new FenException("Malformed fen string: unexpected '" + ch + "' in " + ranks[rankCount]);
+                    }
+                    board.putPiece(piece, rowIndex * 8 + file++);
+                }
+            }
+            if(file != 8) throw new FenException("Malformed fen string: rank " + ranks[rankCount] + " does not have 8 files");
+        }
+
+        // Set player's move
+        int sideToMove;
+        if(PlayerColor.WHITE.toString().equals(tokens[1])) {
+            sideToMove = PieceCode.WHITE;
+        } else if(PlayerColor.BLACK.toString().equals(tokens[1])) {
+            sideToMove = PieceCode.BLACK;
+        } else {
+            throw new FenException("Malformed fen string: expected 'to play' as second field but found " + tokens[1]);
+        }
+
+        // Set castling ability
+        int castling = getCastling(tokens[2]);
+
+        // Set enpassant location
+        int epSquare = getEpSquare(tokens[3]);
+
+        try {
+            board.setState(sideToMove, castling, epSquare, getHalfMove(tokens[4]), getFullMove(tokens[5]));
+        } catch (NumberFormatException e) {
+            throw new FenException("Malformed fen string: bad move counters " + tokens[4] + " " + tokens[5]);
+        }
+    }
+
+    /**
+     * Parse a line of an EPD file: the first four fields of a fen string, followed by operations, each an opcode
+     * and its operands ending with a semicolon, e.g. {@code bm Qxf7+; id "test 1";}. Operands may be quoted to
+     * contain spaces. The move counters are taken from the {@code hmvc} and {@code fmvn} operations, or from the
+     * fifth and sixth fields if the line starts with a full fen string.
+     * @param line the EPD line
+     * @return the position and its operations
+     * @throws IllegalArgumentException if the position could not be parsed
+     */
+    public static EpdPosition parseEpd(final String line) {
+        String[] tokens = line.trim().split("\\s+", 7);
+        if(tokens.length < 4) throw new IllegalArgumentException("Invalid epd string: " + line);
+
+        // Some suites give a full fen string, so skip the move counters if present
+        int start = 4;
+        String halfMoves = "0";
+        String fullMoves = "1";
+        if(tokens.length >= 6 && tokens[4].matches("\\d+") && tokens[5].matches("\\d+")) {
+            halfMoves = tokens[4];
+            fullMoves = tokens[5];
+            start = 6;
+        }
+        String[] fields = line.trim().split("\\s+", start + 1);
+        Map<String, List<String>> operations = parseOperations(fields.length > start ? fields[start] : "");
+
+        halfMoves = operations.containsKey("hmvc") ? operations.get("hmvc").get(0) : halfMoves;
+        fullMoves = operations.containsKey("fmvn") ? operations.get("fmvn").get(0) : fullMoves;
+        String fen = String.join(" ", tokens[0], tokens[1], tokens[2], tokens[3], halfMoves, fullMoves);
+
+        // Check the position now rather than when it is first used
+        new HeadlessBoard(fen);
+        return new EpdPosition(fen, operations);
+    }
+
+    /**
+     * Split the operations of an EPD line into opcodes and operands
+     */
+    private static Map<String, List<String>> parseOperations(final String text) {
+        Map<String, List<String>> operations = new LinkedHashMap<>();
+        List<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        boolean quoted = false;
+        for(int i = 0; i <= text.length(); i++) {
+            char ch = i < text.length() ? text.charAt(i) : ';';
+            if(quoted) {
+                if(ch == '"') {
+                    quoted = false;
+                } else {
+                    word.append(ch);
+                }
+            } else if(ch == '"') {
+                word = word == null ? new StringBuilder() : word;
+                quoted = true;
+            } else if(Character.isWhitespace(ch) || ch == ';') {
+                if(word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+                if(ch == ';' && !words.isEmpty()) {
+                    operations.put(words.get(0), new ArrayList<>(words.subList(1, words.size())));
+                    words.clear();
+                }
+            } else {
+                word = word == null ? new StringBuilder() : word;
+                word.append(ch);
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Retrieve the fen string for a headless board
+     * @param board the {@code HeadlessBoard} to parse
+     * @return the {@code String} representation of the board and game state
+     */
+    public static String getFen(final HeadlessBoard board) {
+        StringBuilder sb = new StringBuilder();
+
+        /*========== 1st field : pieces ==========*/
+        for(int row = 7; row >= 0; row--) {
+            int blanks = 0;
+            for(int col = 0; col < 8; col++) {
+                int piece = board.getPiece(row * 8 + col);
+                if(piece == PieceCode.EMPTY) {
+                    blanks++;
+                } else {
+                    if(blanks > 0) {
+                        sb.append(blanks); blanks = 0;
+                    }
+                    sb.append(PieceCode.toChar(piece));
+                }
+            }
+            if(blanks > 0) sb.append(blanks);
+            if(row > 0) sb.append('/');
+        }
+
+        /*========== 2nd field : to play ==========*/
+        sb.append(' ').append(board.getSideToMove() == PieceCode.WHITE ? PlayerColor.WHITE : PlayerColor.BLACK);
+
+        /*========== 3rd field : castles ==========*/
+        sb.append(' ').append(castlingToString(board.getCastling()));
+
+        /*========== 4th field : ep square ==========*/
+        sb.append(' ').append(board.getEpSquare() < 0 ? "-" : PackedMove.squareName(board.getEpSquare()));
+
+        /*========== 5th and 6th field : half move clock and full move number ==========*/
+        sb.append(' ').append(board.getHalfMoves());
+        sb.append(' ').append(board.getFullMoves());
+
+        return sb.toString();
+    }
+
+    /**
+     * The castling field of a fen string
+     * @param castling the castling rights bits of a {@link HeadlessBoard}
+     * @return the rights as letters, e.g. "KQkq", or "-" for none
+     */
+    static String castlingToString(int castling) {
+        if(castling == 0) return "-";
+        StringBuilder sb = new StringBuilder(4);
+        if((castling & HeadlessBoard.WHITE_KING_SIDE) != 0) sb.append('K');
+        if((castling & HeadlessBoard.WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+        if((castling & HeadlessBoard.BLACK_KING_SIDE) != 0) sb.append('k');
+        if((castling & HeadlessBoard.BLACK_QUEEN_SIDE) != 0) sb.append('q');
+        return sb.toString();
+    }
+
     /**
      * Whose turn it is White or Black
      * @param board the board to check
@@ -183,9 +366,26 @@ public class FenUtils {
         }
     }
 
-    // Whether castling is allowed for a player
-    private static String getCastlingAbility(final String castles) {
-        return castles;
+    // Castling rights bits of the castling field
+    private static int getCastling(final String castles) {
+        int castling = 0;
+        castling |= castles.contains("K") ? HeadlessBoard.WHITE_KING_SIDE : 0;
+        castling |= castles.contains("Q") ? HeadlessBoard.WHITE_QUEEN_SIDE : 0;
+        castling |= castles.contains("k") ? HeadlessBoard.BLACK_KING_SIDE : 0;
+        castling |= castles.contains("q") ? HeadlessBoard.BLACK_QUEEN_SIDE : 0;
+        return castling;
+    }
+
+    // Square index of the en passant field, or -1 for none
+    private static int getEpSquare(final String epSquare) throws FenException {
+        if("-".equals(epSquare)) {
+            return -1;
+        }
+        if(epSquare.length() != 2 || epSquare.charAt(0) < 'a' || epSquare.charAt(0) > 'h'
+                || epSquare.charAt(1) < '1' || epSquare.charAt(1) > '8') {
+            throw new FenException("Malformed fen string: bad en passant square " + epSquare);
+        }
+        return (epSquare.charAt(1) - '1') * 8 + (epSquare.charAt(0) - 'a');
     }
 
     // Number of moves without a capture
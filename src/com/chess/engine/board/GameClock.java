@@ -0,0 +1,188 @@
+package com.chess.engine.board;
+
+import com.chess.engine.PlayerColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chess clock for both players. Time is accounted from {@link System#nanoTime()} when a move is made, so it
+ * is exact however often (or late) anything displays it; the time of the running side is worked out when
+ * asked for. The clocks start with the first move, and each move is charged its thinking time less the
+ * delay before the increment is added. A flag has fallen once a side's time reaches zero, which is noticed
+ * by whoever next asks, so the UI ticker and the game over check in {@link Board#displayBoard()} agree.
+ * Methods are synchronized as moves may come from a thread other than the one displaying the clock.
+ */
+public class GameClock {
+
+    // No clock is running
+    private static final int STOPPED = -1;
+
+    private TimeControl timeControl;
+
+    // Time left for each color (by ordinal) as of the start of the running side's move
+    private final long[] remainingNanos = new long[PlayerColor.values().length];
+
+    // Time left for the side that moved, after each move of the game
+    private final List<Long> history = new ArrayList<>();
+
+    // Ordinal of the color whose clock is running, and when its move started
+    private int running = STOPPED;
+    private long turnStart;
+
+    /**
+     * Create a clock for a game with the given time control
+     * @param timeControl the {@link TimeControl}, which may be {@link TimeControl#NONE}
+     */
+    public GameClock(TimeControl timeControl) {
+        reset(timeControl);
+    }
+
+    /**
+     * Set both clocks back to the start of a game
+     * @param timeControl the {@link TimeControl} for the new game
+     */
+    public synchronized void reset(TimeControl timeControl) {
+        this.timeControl = timeControl;
+        this.running = STOPPED;
+        this.history.clear();
+        for(int i = 0; i < remainingNanos.length; i++) {
+            remainingNanos[i] = timeControl.getBaseNanos();
+        }
+    }
+
+    /**
+     * A player has made a move: charge it to their clock, add the increment and start the opponent's clock
+     * @param mover the color of the player who moved
+     */
+    public synchronized void press(PlayerColor mover) {
+        long now = System.nanoTime();
+        int side = mover.ordinal();
+        if(running == side) {
+            remainingNanos[side] -= charge(now);
+        }
+        if(timeControl.isTimed() && remainingNanos[side] > 0) {
+            remainingNanos[side] += timeControl.getIncrementNanos();
+        }
+        history.add(remainingNanos[side]);
+
+        // A move made after the flag fell does not give the opponent's clock a start
+        running = timeControl.isTimed() && remainingNanos[side] > 0 ? side ^ 1 : STOPPED;
+        turnStart = now;
+    }
+
+    /**
+     * Stop the running clock, e.g. when the game is over
+     */
+    public synchronized void stop() {
+        if(running != STOPPED) {
+            remainingNanos[running] -= charge(System.nanoTime());
+            running = STOPPED;
+        }
+    }
+
+    /**
+     * Moves have been taken back: forget the clock times recorded for them and start the clock of the side now
+     * to move. Time already used is not given back.
+     * @param plies the number of moves taken back
+     * @param toMove the color to move after the moves are taken back
+     */
+    public synchronized void takeBack(int plies, PlayerColor toMove) {
+        long now = System.nanoTime();
+        if(running != STOPPED) {
+            remainingNanos[running] -= charge(now);
+        }
+        for(int i = 0; i < plies && !history.isEmpty(); i++) {
+            history.remove(history.size() - 1);
+        }
+
+        // As at the start of a game, the clocks wait for the first move
+        int side = toMove.ordinal();
+        running = timeControl.isTimed() && !history.isEmpty() && remainingNanos[side] > 0 ? side : STOPPED;
+        turnStart = now;
+    }
+
+    /**
+     * Time the running side has used beyond the delay
+     */
+    private long charge(long now) {
+        return Math.max(0, now - turnStart - timeControl.getDelayNanos());
+    }
+
+    /**
+     * Get the time a player has left, counting down if it is their move
+     * @param color the color of the player
+     * @return the remaining time in nanoseconds, which is zero or less once the flag has fallen
+     */
+    public synchronized long getRemainingNanos(PlayerColor color) {
+        int side = color.ordinal();
+        return running == side ? remainingNanos[side] - charge(System.nanoTime()) : remainingNanos[side];
+    }
+
+    /**
+     * Get the player whose flag has fallen
+     * @return the {@link PlayerColor} that has run out of time, or {@code null} if neither has (or the game is untimed)
+     */
+    public synchronized PlayerColor getFlagged() {
+        if(!timeControl.isTimed()) {
+            return null;
+        }
+        for(PlayerColor color : PlayerColor.values()) {
+            if(getRemainingNanos(color) <= 0) {
+                return color;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the color whose clock is counting down
+     * @return the running {@link PlayerColor}, or {@code null} if the clocks are stopped
+     */
+    public synchronized PlayerColor getRunning() {
+        return running == STOPPED ? null : PlayerColor.values()[running];
+    }
+
+    /**
+     * Get the time the player had left after a move, as recorded in PGN clock comments
+     * @param ply the index of the move in the game, starting from 0
+     * @return the remaining time in nanoseconds, or -1 if there is no such move
+     */
+    public synchronized long getRemainingAfterMove(int ply) {
+        return ply < history.size() ? history.get(ply) : -1;
+    }
+
+    public synchronized TimeControl getTimeControl() { return this.timeControl; }
+    public synchronized boolean isTimed() { return this.timeControl.isTimed(); }
+
+    /**
+     * Format a remaining time for display, with tenths of a second under 10 seconds
+     * @param nanos the time in nanoseconds
+     * @return e.g. "1:05:00", "4:59" or "0:09.4"
+     */
+    public static String format(long nanos) {
+        if(nanos <= 0) {
+            return "0:00";
+        }
+        long tenths = TimeUnit.NANOSECONDS.toMillis(nanos) / 100;
+        if(tenths < 100) {
+            return String.format("0:%02d.%d", tenths / 10, tenths % 10);
+        }
+        long seconds = tenths / 10;
+        if(seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * Format a remaining time as a PGN clock comment
+     * @param nanos the time in nanoseconds
+     * @return the comment, e.g. "[%clk 0:04:58]"
+     */
+    public static String formatPgnClock(long nanos) {
+        long seconds = Math.max(0, TimeUnit.NANOSECONDS.toSeconds(nanos));
+        return String.format("[%%clk %d:%02d:%02d]", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
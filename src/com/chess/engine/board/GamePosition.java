@@ -0,0 +1,116 @@
+package com.chess.engine.board;
+
+import com.chess.engine.moves.PackedMove;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable position of a game along with the moves that led to it. A {@link Board} publishes a new one after
+ * every move, so other threads (analysis, rendering, notation) can read the game without locks while it goes on.
+ * Each position refers to the one before it rather than copying the moves, so publishing a position only costs a
+ * {@link BoardSnapshot} and the earlier positions are shared by all that follow them.
+ */
+public final class GamePosition {
+
+    private final BoardSnapshot snapshot;
+
+    // Position before the last move, with the move and its notation, or null for the start of the game
+    private final GamePosition previous;
+    private final int lastMove;
+    private final String lastNotation;
+
+    // Number of moves since the start of the game
+    private final int ply;
+
+    private GamePosition(BoardSnapshot snapshot, GamePosition previous, int lastMove, String lastNotation) {
+        this.snapshot = snapshot;
+        this.previous = previous;
+        this.lastMove = lastMove;
+        this.lastNotation = lastNotation;
+        this.ply = previous != null ? previous.ply + 1 : 0;
+    }
+
+    /**
+     * The position a game starts from
+     * @param snapshot the start position
+     * @return a position without moves
+     */
+    public static GamePosition start(BoardSnapshot snapshot) {
+        return new GamePosition(snapshot, null, PackedMove.NONE, null);
+    }
+
+    /**
+     * The position after a move, sharing the moves before it with this position
+     * @param move the {@link PackedMove} played
+     * @param notation the notation of the move
+     * @param snapshot the position after the move
+     * @return the new position
+     */
+    public GamePosition after(int move, String notation, BoardSnapshot snapshot) {
+        return new GamePosition(snapshot, this, move, notation);
+    }
+
+    // Getters
+    public BoardSnapshot getSnapshot() { return this.snapshot; }
+    public GamePosition getPrevious() { return this.previous; }
+    public int getLastMove() { return this.lastMove; }
+    public String getLastNotation() { return this.lastNotation; }
+    public int getPly() { return this.ply; }
+
+    /**
+     * The position the game started from
+     * @return the first position of the game
+     */
+    public GamePosition getStart() {
+        GamePosition position = this;
+        while(position.previous != null) {
+            position = position.previous;
+        }
+        return position;
+    }
+
+    /**
+     * The moves of the game up to this position
+     * @return the {@link PackedMove}s from the start position, in the order played
+     */
+    public int[] getMoves() {
+        int[] moves = new int[this.ply];
+        for(GamePosition position = this; position.previous != null; position = position.previous) {
+            moves[position.ply - 1] = position.lastMove;
+        }
+        return moves;
+    }
+
+    /**
+     * The notation of the moves of the game up to this position
+     * @return the notation of each move from the start position, in the order played
+     */
+    public List<String> getNotation() {
+        List<String> notation = new ArrayList<>(this.ply);
+        for(GamePosition position = this; position.previous != null; position = position.previous) {
+            notation.add(position.lastNotation);
+        }
+        Collections.reverse(notation);
+        return notation;
+    }
+
+    /**
+     * Create a headless board with this position, replaying the game from its start so that the board can unmake
+     * the moves and spot repetitions
+     * @return a new headless board
+     */
+    public HeadlessBoard toHeadlessBoard() {
+        HeadlessBoard board = getStart().snapshot.toHeadlessBoard();
+        for(int move : getMoves()) {
+            board.makeMove(move);
+        }
+        return board;
+    }
+
+    @Override
+    public String toString() {
+        return this.snapshot.toString();
+    }
+}
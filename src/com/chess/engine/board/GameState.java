@@ -11,16 +11,26 @@ public class GameState {
     // Is the game stale mated
     private boolean stalemate;
 
+    // Player who ran out of time, if that ended the game, and whether it was a draw as the opponent could not mate
+    private Player flagged;
+    private boolean drawnOnTime;
+
+    // Rule the game was drawn by, such as threefold repetition, if that ended the game
+    private String drawReason;
+
     // Which player's turn it is
     private Player playerTurn;
 
-    // State of castling / en passant
-    private String castling;
-    private Position enPassant;
+    // Castling rights, as the HeadlessBoard castling bits, and the en passant square index (-1 for none)
+    private byte castling;
+    private byte epSquare;
 
     // Number of half moves / full moves
-    private int halfMoves;
-    private int fullMoves;
+    private short halfMoves;
+    private short fullMoves;
+
+    // Clocks for both players, untimed unless the board is set up for a timed game
+    private final GameClock clock;
 
     /**
      * Game state instance to hold game specific information
@@ -29,12 +39,14 @@ public class GameState {
         this.playerTurn = null;
         this.gameOver = false;
         this.stalemate = false;
-        this.castling = "";
-        this.enPassant = null;
+        this.castling = 0;
+        this.epSquare = -1;
         this.halfMoves = 0;
         this.fullMoves = 0;
-
-        // TODO - time controls
+        this.flagged = null;
+        this.drawnOnTime = false;
+        this.drawReason = null;
+        this.clock = new GameClock(TimeControl.NONE);
     }
 
     GameState(GameState other) {
@@ -42,29 +54,71 @@ public class GameState {
         this.gameOver = other.gameOver;
         this.stalemate = other.stalemate;
         this.castling = other.castling;
-        this.enPassant = other.enPassant;
+        this.epSquare = other.epSquare;
         this.halfMoves = other.halfMoves;
         this.fullMoves = other.fullMoves;
+        this.flagged = other.flagged;
+        this.drawnOnTime = other.drawnOnTime;
+        this.drawReason = other.drawReason;
+
+        // The clock belongs to the game rather than the position, so copies share it
+        this.clock = other.clock;
     }
 
     // Getters
     public Player getPlayerTurn() { return this.playerTurn; }
-    String getCastles() { return this.castling; }
-    public Position getEPSquare() { return this.enPassant; }
+    public int getCastling() { return this.castling; }
+    public int getEpIndex() { return this.epSquare; }
+    public Position getEPSquare() { return this.epSquare < 0 ? null : BoardUtils.indexToPosition(this.epSquare); }
     public int getFullMoves() { return this.fullMoves; }
     public int getHalfMoves() { return this.halfMoves; }
     boolean isStaleMate() { return this.stalemate; }
+    public boolean isGameOver() { return this.gameOver; }
+    public Player getFlagged() { return this.flagged; }
+    boolean isDrawnOnTime() { return this.drawnOnTime; }
+    String getDrawReason() { return this.drawReason; }
+    public GameClock getClock() { return this.clock; }
 
     // Setters
     public void setPlayerTurn(Player player) { this.playerTurn = player; }
-    public void setCastlingAbility(String castlingAbility) { this.castling = castlingAbility; }
-    public void setEnpassantSquare(Position enpassantSquare) { this.enPassant = enpassantSquare; }
-    public void setHalfMoves(int halfMoves) { this.halfMoves = halfMoves; }
-    public void setFullMoves(int fullMoves) { this.fullMoves = fullMoves; }
+    public void setCastling(int castling) { this.castling = (byte) castling; }
+    public void setEpIndex(int epSquare) { this.epSquare = (byte) epSquare; }
+    public void setEnpassantSquare(Position enpassantSquare) { this.epSquare = (byte) (enpassantSquare == null ? -1 : enpassantSquare.getIndex()); }
+    public void setHalfMoves(int halfMoves) { this.halfMoves = (short) halfMoves; }
+    public void setFullMoves(int fullMoves) { this.fullMoves = (short) fullMoves; }
     void setGameOver(boolean isStaleMate) {
         this.gameOver = true;
         this.stalemate = isStaleMate;
     }
+    void setLostOnTime(Player player, boolean isDrawn) {
+        this.gameOver = true;
+        this.flagged = player;
+        this.drawnOnTime = isDrawn;
+    }
+    void setDrawn(String reason) {
+        this.gameOver = true;
+        this.drawReason = reason;
+    }
+
+    /**
+     * Start a new game: clear the result and reset the clocks
+     * @param timeControl the {@link TimeControl} for the new game
+     */
+    void newGame(TimeControl timeControl) {
+        resume();
+        this.clock.reset(timeControl);
+    }
+
+    /**
+     * Carry on after moves are taken back: clear the result, but leave the clocks as they are
+     */
+    void resume() {
+        this.gameOver = false;
+        this.stalemate = false;
+        this.flagged = null;
+        this.drawnOnTime = false;
+        this.drawReason = null;
+    }
 
     /**
      * Check whether given Player can king side castle
@@ -72,7 +126,7 @@ public class GameState {
      * @return {@code true} if can king side castle, {@code false} if not
      */
     public boolean canCastleKingSide(Player player) {
-        return player.isWhite() ? castling.contains("K") : castling.contains("k");
+        return (castling & (player.isWhite() ? HeadlessBoard.WHITE_KING_SIDE : HeadlessBoard.BLACK_KING_SIDE)) != 0;
     }
 
     /**
@@ -81,7 +135,37 @@ public class GameState {
      * @return {@code true} if can queen side castle, {@code false} if not
      */
     public boolean canCastleQueenSide(Player player) {
-        return player.isWhite() ? castling.contains("Q") : castling.contains("q");
+        return (castling & (player.isWhite() ? HeadlessBoard.WHITE_QUEEN_SIDE : HeadlessBoard.BLACK_QUEEN_SIDE)) != 0;
+    }
+
+    /**
+     * Remove the castling rights lost by a move: those of a king moving, and of a rook moving from or captured on
+     * its starting square
+     * @param from the square index moved from
+     * @param to the square index moved to
+     */
+    public void updateCastling(int from, int to) {
+        this.castling &= HeadlessBoard.castlingMask(from) & HeadlessBoard.castlingMask(to);
+    }
+
+    /**
+     * Pack castling, en passant and move counters into one value, laid out as for the undo stack of a
+     * {@link HeadlessBoard}, so the two can be compared directly
+     * @return the packed state
+     */
+    public long pack() {
+        return PackedState.pack(this.castling, this.epSquare, this.halfMoves, this.fullMoves);
+    }
+
+    /**
+     * Restore castling, en passant and move counters from a packed value
+     * @param state the packed state
+     */
+    public void unpack(long state) {
+        this.castling = (byte) PackedState.castling(state);
+        this.epSquare = (byte) PackedState.epSquare(state);
+        this.halfMoves = (short) PackedState.halfMoves(state);
+        this.fullMoves = (short) PackedState.fullMoves(state);
     }
 
     /**
@@ -94,8 +178,11 @@ public class GameState {
                "Half Moves: " + getHalfMoves() + "\n" +
                "Player turn: " + getPlayerTurn() + "\n" +
                "EP Square: " + getEPSquare() + "\n" +
-               "Castling: " + getCastles() + "\n" +
+               "Castling: " + FenUtils.castlingToString(getCastling()) + "\n" +
                "Is stale mate: " + isStaleMate() + "\n" +
+               "Flag fallen: " + getFlagged() + "\n" +
+               "Draw by: " + getDrawReason() + "\n" +
+               "Time control: " + clock.getTimeControl() + "\n" +
                "Game over: " + this.gameOver;
     }
 }
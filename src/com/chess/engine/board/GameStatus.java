@@ -0,0 +1,57 @@
+package com.chess.engine.board;
+
+import com.chess.engine.evaluation.Endgames;
+import com.chess.engine.moves.MoveGenerator;
+
+/**
+ * Whether the game goes on in a position, and if not how it ended. Worked out once per position by
+ * {@link Board#getStatus()}, and shared by the move notation, the display and the game over dialog.
+ */
+public enum GameStatus {
+    ONGOING(null),
+    CHECK(null),
+    CHECKMATE("check mate"),
+    STALEMATE("stale mate"),
+    REPETITION("threefold repetition"),
+    FIFTY_MOVES("the fifty move rule"),
+    INSUFFICIENT_MATERIAL("insufficient material");
+
+    // How the game ended, or null if it goes on
+    private final String description;
+
+    GameStatus(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Work out the status of a position. Mate and stalemate come first, as mate on the hundredth half move
+     * still wins; only then is the game drawn by rule, which needs no claim.
+     * @param board the board, whose key history is used for repetitions (not changed)
+     * @return the status of its current position
+     */
+    public static GameStatus of(HeadlessBoard board) {
+        boolean inCheck = board.isInCheck();
+        if(!MoveGenerator.hasLegalMove(board)) {
+            return inCheck ? CHECKMATE : STALEMATE;
+        }
+        if(board.isRepetition(2)) {
+            return REPETITION;
+        }
+        if(board.getHalfMoves() >= 100) {
+            return FIFTY_MOVES;
+        }
+        if(Endgames.isInsufficientMaterial(board)) {
+            return INSUFFICIENT_MATERIAL;
+        }
+        return inCheck ? CHECK : ONGOING;
+    }
+
+    public boolean isGameOver() { return this.description != null; }
+    public boolean isDraw() { return isGameOver() && this != CHECKMATE; }
+
+    /**
+     * How the game ended, e.g. "check mate" or "threefold repetition" for a draw
+     * @return the description, or {@code null} if the game goes on
+     */
+    public String getDescription() { return this.description; }
+}
@@ -0,0 +1,576 @@
+package com.chess.engine.board;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.evaluation.Evaluation;
+import com.chess.engine.evaluation.NnueAccumulator;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * A board without any UI, used by the engine.
+ * Squares are indexed 0 (a1) to 63 (h8) and hold {@link PieceCode} values.
+ * Moves are executed and undone in place, keeping bitboards, Zobrist keys and the evaluation up to date incrementally.
+ */
+public class HeadlessBoard {
+
+    // Castling rights bits
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    // Castling rights kept after a piece moves from or to a given square
+    private static final int[] CASTLING_MASK = new int[64];
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[7] &= ~WHITE_KING_SIDE;
+        CASTLING_MASK[56] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_MASK[63] &= ~BLACK_KING_SIDE;
+    }
+
+    // Piece codes for each square
+    private final int[] squares = new int[64];
+
+    // Bitboard of squares occupied by each piece code, and by each color
+    private final long[] bitboards = new long[PieceCode.NUM_CODES];
+    private final long[] occupancy = new long[2];
+
+    // King square for each color
+    private final int[] kingSquares = new int[2];
+
+    // Zobrist key of the whole position and of the pawns only
+    private long key;
+    private long pawnKey;
+
+    // Game state
+    private int sideToMove;
+    private int castling;
+    private int epSquare;
+    private int halfMoves;
+    private int fullMoves;
+
+    // Material and piece-square evaluation, updated on every move
+    private Evaluation evaluation = new Evaluation();
+
+    // Hidden layer of the network when evaluating with NNUE, updated on every move (null when not in use)
+    private NnueAccumulator accumulator = null;
+
+    // Undo information for each move performed (move, captured piece, previous game state and keys)
+    private int[] moveStack = new int[256];
+    private int[] capturedStack = new int[256];
+    private long[] stateStack = new long[256];
+    private long[] keyStack = new long[256];
+    private long[] pawnKeyStack = new long[256];
+    private int ply = 0;
+
+    /**
+     * Create a headless board with the default starting position
+     */
+    public HeadlessBoard() {
+        this(FenUtils.DEFAULT_POSITION);
+    }
+
+    /**
+     * Create a headless board representing the given fen string
+     * @param fen a valid fen string
+     * @throws IllegalArgumentException if the fen string could not be parsed
+     */
+    public HeadlessBoard(String fen) {
+        setFen(fen);
+    }
+
+    /**
+     * Create a headless board from a snapshot of a position, without move history
+     * @param snapshot the position
+     */
+    public HeadlessBoard(BoardSnapshot snapshot) {
+        setSnapshot(snapshot);
+    }
+
+    /**
+     * Copy another headless board, including its move history
+     * @param other the board to copy
+     */
+    public HeadlessBoard(HeadlessBoard other) {
+        System.arraycopy(other.squares, 0, this.squares, 0, 64);
+        System.arraycopy(other.bitboards, 0, this.bitboards, 0, PieceCode.NUM_CODES);
+        this.occupancy[0] = other.occupancy[0];
+        this.occupancy[1] = other.occupancy[1];
+        this.key = other.key;
+        this.pawnKey = other.pawnKey;
+        this.kingSquares[0] = other.kingSquares[0];
+        this.kingSquares[1] = other.kingSquares[1];
+        this.sideToMove = other.sideToMove;
+        this.castling = other.castling;
+        this.epSquare = other.epSquare;
+        this.halfMoves = other.halfMoves;
+        this.fullMoves = other.fullMoves;
+        this.evaluation = new Evaluation(other.evaluation);
+        this.accumulator = other.accumulator != null ? new NnueAccumulator(other.accumulator) : null;
+        this.moveStack = Arrays.copyOf(other.moveStack, other.moveStack.length);
+        this.capturedStack = Arrays.copyOf(other.capturedStack, other.capturedStack.length);
+        this.stateStack = Arrays.copyOf(other.stateStack, other.stateStack.length);
+        this.keyStack = Arrays.copyOf(other.keyStack, other.keyStack.length);
+        this.pawnKeyStack = Arrays.copyOf(other.pawnKeyStack, other.pawnKeyStack.length);
+        this.ply = other.ply;
+    }
+
+    /**
+     * Whether the current position has occurred before, looking back only as far as the last capture or pawn move
+     * (which no earlier position can be repeated across). The keys of earlier positions are those kept to unmake
+     * moves, so each check costs at most half the half move clock in comparisons.
+     * @param times the number of earlier occurrences to look for: 1 to treat any repetition as a draw, as a search
+     *              does, or 2 for the threefold repetition that ends a game
+     * @return {@code true} if the position occurred at least that many times before
+     */
+    public boolean isRepetition(int times) {
+        // The same side must be to move, and it takes at least two moves each to return to a position
+        int earliest = Math.max(0, this.ply - this.halfMoves);
+        int found = 0;
+        for(int i = this.ply - 4; i >= earliest; i -= 2) {
+            if(this.keyStack[i] == this.key && ++found >= times) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace the current position with the one represented by the fen string
+     * @param fen a valid fen string, or empty for the default position
+     * @throws IllegalArgumentException if the fen string could not be parsed
+     */
+    public void setFen(String fen) {
+        try {
+            FenUtils.loadFen(this, fen);
+        } catch (FenUtils.FenException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replace the current position with a snapshot, without move history. The keys are taken from the snapshot
+     * rather than computed again.
+     * @param snapshot the position
+     */
+    public void setSnapshot(BoardSnapshot snapshot) {
+        clear();
+        for(int square = 0; square < 64; square++) {
+            int piece = snapshot.getPiece(square);
+            if(piece != PieceCode.EMPTY) {
+                putPiece(piece, square);
+            }
+        }
+        this.sideToMove = snapshot.getSideToMove();
+        unpackState(snapshot.getState());
+        this.key = snapshot.getKey();
+        this.pawnKey = snapshot.getPawnKey();
+    }
+
+    /**
+     * Replace the current position with a set of pieces, without castling rights or an en passant square.
+     * Cheaper than going through a fen string when setting up many positions.
+     * @param pieces piece code of each piece, which must include both kings
+     * @param squares square index of each piece
+     * @param count number of pieces
+     * @param sideToMove the color to move
+     */
+    public void setPosition(int[] pieces, int[] squares, int count, int sideToMove) {
+        clear();
+        for(int i = 0; i < count; i++) {
+            putPiece(pieces[i], squares[i]);
+        }
+        setState(sideToMove, 0, -1, 0, 1);
+    }
+
+    /**
+     * Remove all pieces and move history from the board
+     */
+    void clear() {
+        Arrays.fill(this.squares, PieceCode.EMPTY);
+        Arrays.fill(this.bitboards, 0L);
+        this.occupancy[0] = 0L;
+        this.occupancy[1] = 0L;
+        this.kingSquares[0] = -1;
+        this.kingSquares[1] = -1;
+        this.evaluation = new Evaluation();
+        this.accumulator = null;
+        this.ply = 0;
+    }
+
+    /**
+     * Put a piece on an empty square while setting up a position
+     * @param piece the piece code
+     * @param square the square index
+     */
+    void putPiece(int piece, int square) {
+        addPiece(piece, square);
+        if(PieceCode.type(piece) == PieceCode.KING) {
+            this.kingSquares[PieceCode.color(piece)] = square;
+        }
+    }
+
+    /**
+     * Set the game state while setting up a position
+     */
+    void setState(int sideToMove, int castling, int epSquare, int halfMoves, int fullMoves) {
+        this.sideToMove = sideToMove;
+        this.castling = castling;
+        this.epSquare = epSquare;
+        this.halfMoves = halfMoves;
+        this.fullMoves = fullMoves;
+        this.key = Zobrist.computeKey(this);
+        this.pawnKey = Zobrist.computePawnKey(this);
+    }
+
+    /**
+     * The castling rights kept after a piece moves from or to a square
+     * @param square the square index
+     * @return the castling bits of the rights that remain
+     */
+    public static int castlingMask(int square) {
+        return CASTLING_MASK[square];
+    }
+
+    // Getters
+    public int getPiece(int square) { return this.squares[square]; }
+    public int getKingSquare(int color) { return this.kingSquares[color]; }
+    public int getSideToMove() { return this.sideToMove; }
+    public int getCastling() { return this.castling; }
+    public int getEpSquare() { return this.epSquare; }
+    public int getHalfMoves() { return this.halfMoves; }
+    public int getFullMoves() { return this.fullMoves; }
+    public int getPly() { return this.ply; }
+    public long getKey() { return this.key; }
+    public long getPawnKey() { return this.pawnKey; }
+    public long getBitboard(int piece) { return this.bitboards[piece]; }
+    public long getOccupancy(int color) { return this.occupancy[color]; }
+    public long getOccupied() { return this.occupancy[0] | this.occupancy[1]; }
+    public Evaluation getEvaluation() { return this.evaluation; }
+    public NnueAccumulator getAccumulator() { return this.accumulator; }
+
+    /**
+     * Replace the material and piece-square totals, e.g. with totals for other evaluation weights
+     * @param evaluation the totals for the current position, which the board then keeps up to date
+     */
+    public void setEvaluation(Evaluation evaluation) {
+        this.evaluation = evaluation;
+    }
+
+    /**
+     * Start (or stop) keeping an NNUE accumulator up to date for this board
+     * @param accumulator the accumulator for the current position, or null to stop
+     */
+    public void setAccumulator(NnueAccumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * Whether a square is attacked by any piece of the given color
+     * @param square the square index
+     * @param byColor the color of the attacking pieces
+     * @return {@code true} if at least one piece of that color attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        long occupied = getOccupied();
+        long queens = this.bitboards[PieceCode.make(byColor, PieceCode.QUEEN)];
+        return (Bitboards.PAWN_ATTACKS[byColor ^ 1][square] & this.bitboards[PieceCode.make(byColor, PieceCode.PAWN)]) != 0
+                || (Bitboards.KNIGHT_ATTACKS[square] & this.bitboards[PieceCode.make(byColor, PieceCode.KNIGHT)]) != 0
+                || (Bitboards.KING_ATTACKS[square] & this.bitboards[PieceCode.make(byColor, PieceCode.KING)]) != 0
+                || (Bitboards.bishopAttacks(square, occupied) & (this.bitboards[PieceCode.make(byColor, PieceCode.BISHOP)] | queens)) != 0
+                || (Bitboards.rookAttacks(square, occupied) & (this.bitboards[PieceCode.make(byColor, PieceCode.ROOK)] | queens)) != 0;
+    }
+
+    /**
+     * Find the pieces of a color that attack a square
+     * @param square the square index
+     * @param byColor the color of the attacking pieces
+     * @param occupied bitboard of the squares that block sliding pieces
+     * @return the bitboard of the attacking pieces
+     */
+    public long attackersOf(int square, int byColor, long occupied) {
+        long queens = this.bitboards[PieceCode.make(byColor, PieceCode.QUEEN)];
+        return (Bitboards.PAWN_ATTACKS[byColor ^ 1][square] & this.bitboards[PieceCode.make(byColor, PieceCode.PAWN)])
+                | (Bitboards.KNIGHT_ATTACKS[square] & this.bitboards[PieceCode.make(byColor, PieceCode.KNIGHT)])
+                | (Bitboards.KING_ATTACKS[square] & this.bitboards[PieceCode.make(byColor, PieceCode.KING)])
+                | (Bitboards.bishopAttacks(square, occupied) & (this.bitboards[PieceCode.make(byColor, PieceCode.BISHOP)] | queens))
+                | (Bitboards.rookAttacks(square, occupied) & (this.bitboards[PieceCode.make(byColor, PieceCode.ROOK)] | queens));
+    }
+
+    /**
+     * Whether the side to move is in check
+     * @return {@code true} if the king of the side to move is attacked
+     */
+    public boolean isInCheck() {
+        return isSquareAttacked(this.kingSquares[this.sideToMove], this.sideToMove ^ 1);
+    }
+
+    /**
+     * Get the most recent move performed on this board
+     * @return the packed move, or {@link PackedMove#NONE} if no move has been made
+     */
+    public int getLastMove() {
+        return this.ply > 0 ? this.moveStack[this.ply - 1] : PackedMove.NONE;
+    }
+
+    /**
+     * Execute a move on the board. The move is assumed to be legal.
+     * Castling is recognised by the king moving two files and en passant by a pawn
+     * capturing onto the en passant square.
+     * @param move the {@link PackedMove} to perform
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int piece = this.squares[from];
+        int type = PieceCode.type(piece);
+        int captured = this.squares[to];
+
+        // Save what we need to undo the move
+        if(this.ply == this.moveStack.length) {
+            growStacks();
+        }
+        this.moveStack[this.ply] = move;
+        this.capturedStack[this.ply] = captured;
+        this.stateStack[this.ply] = packState();
+        this.keyStack[this.ply] = this.key;
+        this.pawnKeyStack[this.ply] = this.pawnKey;
+        this.ply++;
+
+        // Remove the captured piece
+        if(captured != PieceCode.EMPTY) {
+            removePiece(to);
+        }
+        // En passant capture removes the pawn behind the destination square
+        else if(type == PieceCode.PAWN && to == this.epSquare) {
+            removePiece(this.sideToMove == PieceCode.WHITE ? to - 8 : to + 8);
+        }
+
+        // Move the piece, swapping in the promoted piece if any
+        int promotion = PackedMove.promotion(move);
+        if(promotion != PieceCode.EMPTY) {
+            removePiece(from);
+            addPiece(PieceCode.make(this.sideToMove, promotion), to);
+        } else {
+            movePiece(from, to);
+        }
+
+        if(type == PieceCode.KING) {
+            this.kingSquares[this.sideToMove] = to;
+
+            // If king moved 2 squares, move the corresponding rook as well
+            if(Math.abs(to - from) == 2) {
+                moveCastlingRook(to, false);
+            }
+        }
+
+        // Update game state, removing the old castling / en passant keys and adding the new ones
+        this.key ^= Zobrist.CASTLING[this.castling] ^ (this.epSquare >= 0 ? Zobrist.EN_PASSANT[this.epSquare & 7] : 0);
+        this.castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        this.epSquare = type == PieceCode.PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+        this.key ^= Zobrist.CASTLING[this.castling] ^ (this.epSquare >= 0 ? Zobrist.EN_PASSANT[this.epSquare & 7] : 0);
+        this.halfMoves = type == PieceCode.PAWN || captured != PieceCode.EMPTY ? 0 : this.halfMoves + 1;
+        if(this.sideToMove == PieceCode.BLACK) {
+            this.fullMoves++;
+        }
+        this.sideToMove ^= 1;
+        this.key ^= Zobrist.BLACK_TO_MOVE;
+
+        if(GameSettings.INSTANCE.isEnableDebugging()) {
+            verify();
+        }
+    }
+
+    /**
+     * Undo the most recent move performed with {@link #makeMove(int)}
+     */
+    public void unmakeMove() {
+        this.ply--;
+        int move = this.moveStack[this.ply];
+        int captured = this.capturedStack[this.ply];
+        unpackState(this.stateStack[this.ply]);
+        this.sideToMove ^= 1;
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+
+        // Move the piece back, restoring the pawn if it had promoted
+        if(PackedMove.promotion(move) != PieceCode.EMPTY) {
+            removePiece(to);
+            addPiece(PieceCode.make(this.sideToMove, PieceCode.PAWN), from);
+        } else {
+            movePiece(to, from);
+        }
+        int type = PieceCode.type(this.squares[from]);
+
+        // Restore the captured piece
+        if(captured != PieceCode.EMPTY) {
+            addPiece(captured, to);
+        } else if(type == PieceCode.PAWN && to == this.epSquare) {
+            addPiece(PieceCode.make(this.sideToMove ^ 1, PieceCode.PAWN), this.sideToMove == PieceCode.WHITE ? to - 8 : to + 8);
+        }
+
+        if(type == PieceCode.KING) {
+            this.kingSquares[this.sideToMove] = from;
+            if(Math.abs(to - from) == 2) {
+                moveCastlingRook(to, true);
+            }
+        }
+
+        // Keys are restored rather than recomputed
+        this.key = this.keyStack[this.ply];
+        this.pawnKey = this.pawnKeyStack[this.ply];
+
+        if(GameSettings.INSTANCE.isEnableDebugging()) {
+            verify();
+        }
+    }
+
+    /**
+     * Put a piece on an empty square, updating bitboards, keys, evaluation and accumulator
+     * @param piece the piece code
+     * @param square the square index
+     */
+    private void addPiece(int piece, int square) {
+        long bit = 1L << square;
+        this.squares[square] = piece;
+        this.bitboards[piece] |= bit;
+        this.occupancy[PieceCode.color(piece)] |= bit;
+        this.key ^= Zobrist.PIECES[piece][square];
+        if(PieceCode.type(piece) == PieceCode.PAWN) {
+            this.pawnKey ^= Zobrist.PIECES[piece][square];
+        }
+        this.evaluation.addPiece(piece, square);
+        if(this.accumulator != null) {
+            this.accumulator.addPiece(piece, square);
+        }
+    }
+
+    /**
+     * Remove the piece from a square, updating bitboards, keys, evaluation and accumulator
+     * @param square the square index
+     */
+    private void removePiece(int square) {
+        int piece = this.squares[square];
+        long bit = 1L << square;
+        this.squares[square] = PieceCode.EMPTY;
+        this.bitboards[piece] &= ~bit;
+        this.occupancy[PieceCode.color(piece)] &= ~bit;
+        this.key ^= Zobrist.PIECES[piece][square];
+        if(PieceCode.type(piece) == PieceCode.PAWN) {
+            this.pawnKey ^= Zobrist.PIECES[piece][square];
+        }
+        this.evaluation.removePiece(piece, square);
+        if(this.accumulator != null) {
+            this.accumulator.removePiece(piece, square);
+        }
+    }
+
+    /**
+     * Move a piece to an empty square, updating bitboards, keys, evaluation and accumulator
+     * @param from the square index to move from
+     * @param to the square index to move to
+     */
+    private void movePiece(int from, int to) {
+        int piece = this.squares[from];
+        long bits = (1L << from) | (1L << to);
+        this.squares[from] = PieceCode.EMPTY;
+        this.squares[to] = piece;
+        this.bitboards[piece] ^= bits;
+        this.occupancy[PieceCode.color(piece)] ^= bits;
+        long keyChange = Zobrist.PIECES[piece][from] ^ Zobrist.PIECES[piece][to];
+        this.key ^= keyChange;
+        if(PieceCode.type(piece) == PieceCode.PAWN) {
+            this.pawnKey ^= keyChange;
+        }
+        this.evaluation.movePiece(piece, from, to);
+        if(this.accumulator != null) {
+            this.accumulator.movePiece(piece, from, to);
+        }
+    }
+
+    /**
+     * Move the rook when castling, or move it back when undoing a castle
+     * @param kingTarget the square the king castled to
+     * @param undo {@code true} to move the rook back to its corner
+     */
+    private void moveCastlingRook(int kingTarget, boolean undo) {
+        boolean kingSide = (kingTarget & 7) == 6;
+        int corner = kingSide ? kingTarget + 1 : kingTarget - 2;
+        int castled = kingSide ? kingTarget - 1 : kingTarget + 1;
+        movePiece(undo ? castled : corner, undo ? corner : castled);
+    }
+
+    /**
+     * Debug check that the incrementally updated evaluation, keys and accumulator match a full recomputation
+     * @throws IllegalStateException if they do not match
+     */
+    public void verify() {
+        Evaluation full = Evaluation.compute(this, this.evaluation.getParams());
+        if(!full.equals(this.evaluation)) {
+            throw new IllegalStateException("Incremental evaluation [" + this.evaluation
+                    + "] does not match full evaluation [" + full + "] for " + FenUtils.getFen(this));
+        }
+        if(this.key != Zobrist.computeKey(this) || this.pawnKey != Zobrist.computePawnKey(this)) {
+            throw new IllegalStateException("Incremental keys do not match computed keys for " + FenUtils.getFen(this));
+        }
+        if(this.accumulator != null && !this.accumulator.equals(new NnueAccumulator(this.accumulator.getNetwork(), this))) {
+            throw new IllegalStateException("Incremental accumulator does not match computed accumulator for " + FenUtils.getFen(this));
+        }
+    }
+
+    /**
+     * Pack castling, en passant and move counters into one value for the undo stack and snapshots
+     * @return the packed game state
+     */
+    long packState() {
+        return PackedState.pack(this.castling, this.epSquare, this.halfMoves, this.fullMoves);
+    }
+
+    /**
+     * Restore castling, en passant and move counters from a packed value
+     * @param state the packed game state
+     */
+    private void unpackState(long state) {
+        this.castling = PackedState.castling(state);
+        this.epSquare = PackedState.epSquare(state);
+        this.halfMoves = PackedState.halfMoves(state);
+        this.fullMoves = PackedState.fullMoves(state);
+    }
+
+    /**
+     * Double the size of the undo stacks
+     */
+    private void growStacks() {
+        int size = this.moveStack.length * 2;
+        this.moveStack = Arrays.copyOf(this.moveStack, size);
+        this.capturedStack = Arrays.copyOf(this.capturedStack, size);
+        this.stateStack = Arrays.copyOf(this.stateStack, size);
+        this.keyStack = Arrays.copyOf(this.keyStack, size);
+        this.pawnKeyStack = Arrays.copyOf(this.pawnKeyStack, size);
+    }
+
+    /**
+     * String representation of the board, rank 8 first
+     * @return can be used to print out the board in a string representation
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for(int row = 7; row >= 0; row--) {
+            builder.append(row + 1).append(" ");
+            for(int col = 0; col < 8; col++) {
+                int piece = this.squares[row * 8 + col];
+                builder.append('[').append(piece == PieceCode.EMPTY ? ' ' : PieceCode.toChar(piece)).append(']');
+            }
+            builder.append("\n");
+        }
+        builder.append("   a  b  c  d  e  f  g  h");
+        return builder.toString();
+    }
+}
@@ -2,8 +2,11 @@ package com.chess.engine.board;
 
 import com.chess.engine.Position;
 import com.chess.engine.moves.Move;
+import com.chess.engine.moves.MoveGenerator;
 import com.chess.engine.moves.MoveHistory;
 import com.chess.engine.moves.MoveUtils;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -84,11 +87,36 @@ public class PGNUtils {
      */
     public static String getPGN(MoveHistory history) {
         StringBuilder builder = new StringBuilder();
-        List<Move> moveHistory = history.getMoves(Objects::nonNull).collect(Collectors.toList());
+        List<String> notation = history.getNotation();
 
-        for(int i = 0; i < moveHistory.size(); i++) {
-            Move move = moveHistory.get(i);
-            builder.append(i+1).append(". ").append(history.getNotationEntry(move)).append(" ");
+        for(int i = 0; i < notation.size(); i++) {
+            builder.append(i+1).append(". ").append(notation.get(i)).append(" ");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Get the PGN of the game on a board, with its time control and the clock after each move
+     * @param board the board whose game to write
+     * @return the PGN, with a {@code TimeControl} tag and {@code [%clk]} comments for timed games
+     */
+    public static String getPGN(Board board) {
+        MoveHistory history = board.getMoveHistory();
+        GameClock clock = board.getGameState().getClock();
+        StringBuilder builder = new StringBuilder();
+        builder.append("[TimeControl \"").append(clock.getTimeControl()).append("\"]\n\n");
+
+        List<String> notation = history.getNotation();
+        for(int i = 0; i < notation.size(); i++) {
+            if(i % 2 == 0) {
+                builder.append(i / 2 + 1).append(". ");
+            }
+            builder.append(notation.get(i)).append(" ");
+            long remaining = clock.getRemainingAfterMove(i);
+            if(clock.isTimed() && remaining >= 0) {
+                builder.append("{").append(GameClock.formatPgnClock(remaining)).append("} ");
+            }
         }
 
         return builder.toString();
@@ -104,4 +132,137 @@ public class PGNUtils {
         List<Move> moves = history.getMoves(Objects::nonNull).collect(Collectors.toList());
         moves.forEach(move -> MoveUtils.executeActualMove(board, tileMap.get(move.getOrigin().getPosition()), tileMap.get(move.getDestination().getPosition()), true));
     }
+
+    /**
+     * Write a legal move in standard algebraic notation, the reverse of {@link #parseSan(HeadlessBoard, String)}
+     * @param board the board the move is to be made on (left unchanged)
+     * @param move the legal move
+     * @return the move, e.g. "Nbd7", "exd6", "e8=Q+" or "O-O"
+     */
+    public static String toSan(HeadlessBoard board, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int piece = board.getPiece(from);
+        int type = PieceCode.type(piece);
+        StringBuilder builder = new StringBuilder();
+
+        if(type == PieceCode.KING && Math.abs(to - from) == 2) {
+            builder.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = board.getPiece(to) != PieceCode.EMPTY || (type == PieceCode.PAWN && to == board.getEpSquare());
+            if(type == PieceCode.PAWN) {
+                if(capture) {
+                    builder.append((char) ('a' + (from & 7)));
+                }
+            } else {
+                builder.append(Character.toUpperCase(PieceCode.toChar(piece)));
+
+                // Name the file, rank or both when another piece of the same type can move to the same square
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                int count = MoveGenerator.generateLegalMoves(board, moves);
+                boolean ambiguous = false;
+                boolean sameFile = false;
+                boolean sameRank = false;
+                for(int i = 0; i < count; i++) {
+                    int other = PackedMove.from(moves[i]);
+                    if(other != from && PackedMove.to(moves[i]) == to && board.getPiece(other) == piece) {
+                        ambiguous = true;
+                        sameFile |= (other & 7) == (from & 7);
+                        sameRank |= (other >>> 3) == (from >>> 3);
+                    }
+                }
+                if(ambiguous && (!sameFile || sameRank)) {
+                    builder.append((char) ('a' + (from & 7)));
+                }
+                if(ambiguous && sameFile) {
+                    builder.append((char) ('1' + (from >>> 3)));
+                }
+            }
+            if(capture) {
+                builder.append('x');
+            }
+            builder.append(PackedMove.squareName(to));
+            if(PackedMove.promotion(move) != PieceCode.EMPTY) {
+                builder.append('=').append(Character.toUpperCase(PieceCode.toChar(PieceCode.make(PieceCode.WHITE, PackedMove.promotion(move)))));
+            }
+        }
+
+        // Check or mate
+        board.makeMove(move);
+        if(board.isInCheck()) {
+            builder.append(MoveGenerator.hasLegalMove(board) ? '+' : '#');
+        }
+        board.unmakeMove();
+        return builder.toString();
+    }
+
+    /**
+     * Find the legal move on a headless board matching a move in standard algebraic notation
+     * @param board the board to find the move on
+     * @param san the move, e.g. "Nbd7", "exd6", "e8=Q+" or "O-O"
+     * @return the {@link PackedMove}, or {@link PackedMove#NONE} if no legal move (or more than one) matches
+     */
+    public static int parseSan(HeadlessBoard board, String san) {
+        String move = san.trim();
+        while(move.length() > 0 && "+#!?".indexOf(move.charAt(move.length() - 1)) >= 0) {
+            move = move.substring(0, move.length() - 1);
+        }
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(board, moves);
+
+        // Castling
+        if(move.startsWith("O-O") || move.startsWith("0-0")) {
+            int king = board.getKingSquare(board.getSideToMove());
+            int target = move.length() > 3 ? king - 2 : king + 2;
+            for(int i = 0; i < count; i++) {
+                if(PackedMove.from(moves[i]) == king && PackedMove.to(moves[i]) == target) {
+                    return moves[i];
+                }
+            }
+            return PackedMove.NONE;
+        }
+
+        // Piece letter, then disambiguation, then destination square, then promotion
+        int type = PieceCode.PAWN;
+        if(move.length() > 0 && "NBRQK".indexOf(move.charAt(0)) >= 0) {
+            type = PieceCode.type(PieceCode.fromChar(move.charAt(0)));
+            move = move.substring(1);
+        }
+        int promotion = PieceCode.EMPTY;
+        if(type == PieceCode.PAWN && move.length() > 2 && "NBRQnbrq".indexOf(move.charAt(move.length() - 1)) >= 0) {
+            promotion = PieceCode.type(PieceCode.fromChar(Character.toUpperCase(move.charAt(move.length() - 1))));
+            move = move.substring(0, move.length() - (move.charAt(move.length() - 2) == '=' ? 2 : 1));
+        }
+        if(move.length() < 2) {
+            return PackedMove.NONE;
+        }
+        int toFile = move.charAt(move.length() - 2) - 'a';
+        int toRank = move.charAt(move.length() - 1) - '1';
+        if(toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return PackedMove.NONE;
+        }
+        int to = toRank * 8 + toFile;
+        int fromFile = -1;
+        int fromRank = -1;
+        for(char ch : move.substring(0, move.length() - 2).toCharArray()) {
+            if(ch >= 'a' && ch <= 'h') fromFile = ch - 'a';
+            else if(ch >= '1' && ch <= '8') fromRank = ch - '1';
+        }
+
+        int found = PackedMove.NONE;
+        for(int i = 0; i < count; i++) {
+            int candidate = moves[i];
+            int from = PackedMove.from(candidate);
+            if(PackedMove.to(candidate) == to && PackedMove.promotion(candidate) == promotion
+                    && PieceCode.type(board.getPiece(from)) == type
+                    && (fromFile < 0 || (from & 7) == fromFile) && (fromRank < 0 || (from >>> 3) == fromRank)) {
+                if(found != PackedMove.NONE) {
+                    return PackedMove.NONE;
+                }
+                found = candidate;
+            }
+        }
+        return found;
+    }
 }
@@ -0,0 +1,39 @@
+package com.chess.engine.board;
+
+/**
+ * Layout of castling rights, en passant square and move counters packed into one long, shared by the undo stack of
+ * a {@link HeadlessBoard}, {@link BoardSnapshot} and {@link GameState} so the three always agree.
+ *
+ * Bits 0-3 hold the castling bits, 4-10 the en passant square index plus one (0 for none),
+ * 11-26 the half move clock and 27 upwards the full move number.
+ */
+final class PackedState {
+
+    private static final int EP_SHIFT = 4;
+    private static final int HALF_MOVES_SHIFT = 11;
+    private static final int FULL_MOVES_SHIFT = 27;
+
+    private PackedState() {
+    }
+
+    /**
+     * Pack a game state into one value
+     * @param castling the castling bits
+     * @param epSquare the en passant square index, -1 for none
+     * @param halfMoves the half move clock
+     * @param fullMoves the full move number
+     * @return the packed state
+     */
+    static long pack(int castling, int epSquare, int halfMoves, int fullMoves) {
+        return castling
+                | (long) (epSquare + 1) << EP_SHIFT
+                | (long) halfMoves << HALF_MOVES_SHIFT
+                | (long) fullMoves << FULL_MOVES_SHIFT;
+    }
+
+    // Fields of a packed state
+    static int castling(long state) { return (int) (state & 15); }
+    static int epSquare(long state) { return (int) ((state >>> EP_SHIFT) & 127) - 1; }
+    static int halfMoves(long state) { return (int) ((state >>> HALF_MOVES_SHIFT) & 0xFFFF); }
+    static int fullMoves(long state) { return (int) (state >>> FULL_MOVES_SHIFT); }
+}
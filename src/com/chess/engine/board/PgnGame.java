@@ -0,0 +1,82 @@
+package com.chess.engine.board;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game read from a PGN file: its tag pairs and the moves of the main line in SAN
+ */
+public class PgnGame {
+
+    // Game results as written in PGN
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNKNOWN = "*";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<String> moves = new ArrayList<>();
+
+    void addTag(String name, String value) {
+        this.tags.put(name, value);
+    }
+
+    void addMove(String san) {
+        this.moves.add(san);
+    }
+
+    /**
+     * Get the value of a tag
+     * @param name the tag name, e.g. "White"
+     * @return the value, or null if the game does not have the tag
+     */
+    public String getTag(String name) {
+        return this.tags.get(name);
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(this.tags);
+    }
+
+    /**
+     * Moves of the main line in standard algebraic notation, without move numbers or annotations
+     * @return the moves
+     */
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(this.moves);
+    }
+
+    /**
+     * The result of the game
+     * @return one of {@link #WHITE_WINS}, {@link #BLACK_WINS}, {@link #DRAW} or {@link #UNKNOWN}
+     */
+    public String getResult() {
+        String result = this.tags.get("Result");
+        return result == null ? UNKNOWN : result;
+    }
+
+    /**
+     * The result of the game as a score for white
+     * @return 1 for a white win, 0.5 for a draw, 0 for a black win or -1 if the result is unknown
+     */
+    public double getWhiteScore() {
+        switch(getResult()) {
+            case WHITE_WINS: return 1;
+            case DRAW: return 0.5;
+            case BLACK_WINS: return 0;
+            default: return -1;
+        }
+    }
+
+    /**
+     * The position the game started from
+     * @return the fen string from the FEN tag, or the default position
+     */
+    public String getStartFen() {
+        String fen = this.tags.get("FEN");
+        return fen == null ? FenUtils.DEFAULT_POSITION : fen;
+    }
+}
@@ -0,0 +1,142 @@
+package com.chess.engine.board;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams games one at a time from PGN text, so files of any size can be read without holding them in memory.
+ * Comments, variations, NAGs and move numbers are skipped, leaving the main line of each game.
+ */
+public class PgnReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    // First tag line of the next game, read while looking for the end of the previous one
+    private String pendingLine = null;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    public PgnReader(String fileName) throws IOException {
+        this(new FileReader(fileName));
+    }
+
+    /**
+     * Read the next game
+     * @return the game, or null when there are no more games
+     * @throws IOException if reading failed
+     */
+    public PgnGame next() throws IOException {
+        PgnGame game = null;
+        boolean inMoves = false;
+        boolean inComment = false;
+        int variationDepth = 0;
+        StringBuilder token = new StringBuilder();
+
+        String line;
+        while((line = nextLine()) != null) {
+            // Tag pairs, a tag after move text starts the next game (for games without a result)
+            if(!inComment && variationDepth == 0 && line.startsWith("[")) {
+                if(inMoves) {
+                    this.pendingLine = line;
+                    return game;
+                }
+                if(game == null) {
+                    game = new PgnGame();
+                }
+                parseTag(game, line);
+                continue;
+            }
+            if(line.startsWith("%")) {
+                continue;
+            }
+            if(game == null) {
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                game = new PgnGame();
+            }
+
+            // Move text
+            for(int i = 0; i <= line.length(); i++) {
+                char ch = i < line.length() ? line.charAt(i) : ' ';
+                if(inComment) {
+                    inComment = ch != '}';
+                    continue;
+                }
+                if(ch == '{' || ch == ';' || ch == '(' || ch == ')' || Character.isWhitespace(ch)) {
+                    if(token.length() > 0) {
+                        inMoves = true;
+                        if(variationDepth == 0 && endOfGame(game, token.toString())) {
+                            return game;
+                        }
+                        token.setLength(0);
+                    }
+                    if(ch == '{') inComment = true;
+                    else if(ch == '(') variationDepth++;
+                    else if(ch == ')') variationDepth = Math.max(0, variationDepth - 1);
+                    else if(ch == ';') break;
+                } else {
+                    token.append(ch);
+                }
+            }
+        }
+
+        return game;
+    }
+
+    /**
+     * Add a token from the move text to the game
+     * @return {@code true} if the token was the game termination marker
+     */
+    private static boolean endOfGame(PgnGame game, String token) {
+        if(PgnGame.WHITE_WINS.equals(token) || PgnGame.BLACK_WINS.equals(token)
+                || PgnGame.DRAW.equals(token) || PgnGame.UNKNOWN.equals(token)) {
+            if(game.getTag("Result") == null) {
+                game.addTag("Result", token);
+            }
+            return true;
+        }
+
+        // Strip move numbers ("12." or "12...") and annotations ("!?", "+"), and skip NAGs ("$1")
+        int start = token.lastIndexOf('.') + 1;
+        int end = token.length();
+        while(end > start && "!?+#".indexOf(token.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if(start < end && token.charAt(start) != '$') {
+            game.addMove(token.substring(start, end));
+        }
+        return false;
+    }
+
+    /**
+     * Parse a tag pair such as [White "Fischer, Robert J."]
+     */
+    private static void parseTag(PgnGame game, String line) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if(space > 1 && open > space && close > open) {
+            game.addTag(line.substring(1, space), line.substring(open + 1, close).replace("\\\"", "\"").replace("\\\\", "\\"));
+        }
+    }
+
+    private String nextLine() throws IOException {
+        if(this.pendingLine != null) {
+            String line = this.pendingLine;
+            this.pendingLine = null;
+            return line;
+        }
+        return this.reader.readLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
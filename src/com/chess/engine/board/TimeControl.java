@@ -0,0 +1,127 @@
+package com.chess.engine.board;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time allowed for a game: a base time for each player, an increment added after every move and a
+ * simple (US) delay, which is the time each move may take before the clock starts counting down.
+ * Written as seconds in the style of the PGN {@code TimeControl} tag, e.g. "300+2" or "600", with the
+ * delay as a "d" suffix ("300d5") since PGN has no way to express it. "-" or empty is an untimed game.
+ * Fractions of a second are allowed for the fast games of engine testing, e.g. "10+0.1".
+ */
+public final class TimeControl {
+
+    // A game without clocks
+    public static final TimeControl NONE = new TimeControl(0, 0, 0);
+
+    private final long baseNanos;
+    private final long incrementNanos;
+    private final long delayNanos;
+
+    private TimeControl(long baseNanos, long incrementNanos, long delayNanos) {
+        this.baseNanos = baseNanos;
+        this.incrementNanos = incrementNanos;
+        this.delayNanos = delayNanos;
+    }
+
+    /**
+     * Create a time control
+     * @param baseSeconds the starting time for each player, 0 for an untimed game
+     * @param incrementSeconds the time added after each move
+     * @param delaySeconds the time each move may take before the clock counts down
+     * @return the {@code TimeControl}
+     */
+    public static TimeControl of(long baseSeconds, long incrementSeconds, long delaySeconds) {
+        if(baseSeconds < 0 || incrementSeconds < 0 || delaySeconds < 0) {
+            throw new IllegalArgumentException("Times can not be negative");
+        }
+        if(baseSeconds == 0) {
+            return NONE;
+        }
+        return new TimeControl(TimeUnit.SECONDS.toNanos(baseSeconds), TimeUnit.SECONDS.toNanos(incrementSeconds),
+                TimeUnit.SECONDS.toNanos(delaySeconds));
+    }
+
+    /**
+     * Create a time control from times in nanoseconds
+     * @param baseNanos the starting time for each player, 0 for an untimed game
+     * @param incrementNanos the time added after each move
+     * @param delayNanos the time each move may take before the clock counts down
+     * @return the {@code TimeControl}
+     */
+    public static TimeControl ofNanos(long baseNanos, long incrementNanos, long delayNanos) {
+        if(baseNanos < 0 || incrementNanos < 0 || delayNanos < 0) {
+            throw new IllegalArgumentException("Times can not be negative");
+        }
+        return baseNanos == 0 ? NONE : new TimeControl(baseNanos, incrementNanos, delayNanos);
+    }
+
+    /**
+     * Parse a time control such as "300+2", "600", "300d5" or "-"
+     * @param text the time control
+     * @return the {@code TimeControl}
+     * @throws IllegalArgumentException if the text is not a valid time control
+     */
+    public static TimeControl parse(String text) {
+        String value = text == null ? "" : text.trim();
+        if(value.isEmpty() || value.equals("-")) {
+            return NONE;
+        }
+        try {
+            long delay = 0;
+            int d = value.indexOf('d');
+            if(d >= 0) {
+                delay = parseSeconds(value.substring(d + 1));
+                value = value.substring(0, d);
+            }
+            long increment = 0;
+            int plus = value.indexOf('+');
+            if(plus >= 0) {
+                increment = parseSeconds(value.substring(plus + 1));
+                value = value.substring(0, plus);
+            }
+            return ofNanos(parseSeconds(value), increment, delay);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time control: " + text);
+        }
+    }
+
+    /**
+     * Seconds, possibly with a fraction, as nanoseconds
+     */
+    private static long parseSeconds(String seconds) {
+        return new BigDecimal(seconds.trim()).movePointRight(9).longValue();
+    }
+
+    /**
+     * Nanoseconds as seconds, with a fraction only if needed
+     */
+    private static String formatSeconds(long nanos) {
+        return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+    }
+
+    public boolean isTimed() { return this.baseNanos > 0; }
+    public long getBaseNanos() { return this.baseNanos; }
+    public long getIncrementNanos() { return this.incrementNanos; }
+    public long getDelayNanos() { return this.delayNanos; }
+
+    /**
+     * The time control in the format accepted by {@link #parse(String)}, which is the PGN tag value
+     * unless there is a delay
+     */
+    @Override
+    public String toString() {
+        if(!isTimed()) {
+            return "-";
+        }
+        StringBuilder builder = new StringBuilder().append(formatSeconds(baseNanos));
+        if(incrementNanos > 0) {
+            builder.append('+').append(formatSeconds(incrementNanos));
+        }
+        if(delayNanos > 0) {
+            builder.append('d').append(formatSeconds(delayNanos));
+        }
+        return builder.toString();
+    }
+}
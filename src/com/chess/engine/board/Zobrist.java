@@ -0,0 +1,80 @@
+package com.chess.engine.board;
+
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.Random;
+
+/**
+ * Random keys used to hash positions on a {@link HeadlessBoard}.
+ * A position's key is the XOR of the keys for each piece on its square, the castling rights,
+ * the en passant file and the side to move, so it can be updated incrementally as moves are made.
+ */
+public final class Zobrist {
+
+    private Zobrist() { /*Static construct*/ }
+
+    // Keys indexed by [piece code][square index]
+    static final long[][] PIECES = new long[PieceCode.NUM_CODES][64];
+
+    // Keys indexed by castling rights mask
+    static final long[] CASTLING = new long[16];
+
+    // Keys indexed by file of the en passant square
+    static final long[] EN_PASSANT = new long[8];
+
+    // Key for black to move
+    static final long BLACK_TO_MOVE;
+
+    static {
+        // Fixed seed so keys are the same every run
+        Random random = new Random(0x5EEDC0FFEEL);
+        for(int piece = 0; piece < PieceCode.NUM_CODES; piece++) {
+            for(int square = 0; square < 64; square++) {
+                PIECES[piece][square] = PieceCode.type(piece) == PieceCode.EMPTY ? 0 : random.nextLong();
+            }
+        }
+        for(int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = i == 0 ? 0 : random.nextLong();
+        }
+        for(int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    /**
+     * Compute the key of a position from scratch
+     * @param board the {@code HeadlessBoard} to hash
+     * @return the key of the position
+     */
+    public static long computeKey(HeadlessBoard board) {
+        long key = 0;
+        for(int square = 0; square < 64; square++) {
+            key ^= PIECES[board.getPiece(square)][square];
+        }
+        key ^= CASTLING[board.getCastling()];
+        if(board.getEpSquare() >= 0) {
+            key ^= EN_PASSANT[board.getEpSquare() & 7];
+        }
+        if(board.getSideToMove() == PieceCode.BLACK) {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    /**
+     * Compute the key of the pawns of a position from scratch
+     * @param board the {@code HeadlessBoard} to hash
+     * @return the key of the pawns only
+     */
+    public static long computePawnKey(HeadlessBoard board) {
+        long key = 0;
+        for(int square = 0; square < 64; square++) {
+            int piece = board.getPiece(square);
+            if(PieceCode.type(piece) == PieceCode.PAWN) {
+                key ^= PIECES[piece][square];
+            }
+        }
+        return key;
+    }
+}
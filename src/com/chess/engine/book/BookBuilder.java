@@ -0,0 +1,430 @@
+package com.chess.engine.book;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.board.PgnGame;
+import com.chess.engine.board.PgnReader;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds a Polyglot opening book from PGN files.
+ * Games are read on the calling thread and replayed on worker threads up to a maximum ply, each worker
+ * counting games and points per (position, move) in its own {@link MoveStatsMap}. When a map reaches its
+ * share of the memory cap it is spilled to disk as a sorted run, so collections of any size can be processed.
+ * The runs are then merged, moves below the minimum count or score dropped, and the book written sorted by key.
+ *
+ * Usage: BookBuilder output.bin [-plies n] [-min-count n] [-min-score fraction] [-memory mb] [-threads n] input.pgn...
+ *        BookBuilder -check, which builds a book from a few games and checks the moves and weights read back from it
+ */
+public class BookBuilder {
+
+    // Games handed to a worker at a time
+    private static final int BATCH_SIZE = 256;
+
+    // Games for the check, and the moves with weights the book built from them should give after each line
+    private static final String CHECK_PGN =
+            "[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 1-0\n\n"
+            + "[Result \"1-0\"]\n\n1. e4 e5 2. Nf3 Nc6 1-0\n\n"
+            + "[Result \"0-1\"]\n\n1. e4 c5 0-1\n\n"
+            + "[Result \"1/2-1/2\"]\n\n1. d4 d5 1/2-1/2\n";
+    private static final String[][] CHECK_LINES = { {}, {"e4"}, {"e4", "e5"}, {"e4", "e5", "Nf3"}, {"d4"} };
+    private static final String[] CHECK_MOVES = {
+            "[e2e4 (4), d2d4 (1)]", "[c7c5 (2)]", "[g1f3 (4)]", "[]", "[d7d5 (1)]"
+    };
+
+    // Marks the end of the games for a worker
+    private static final List<PgnGame> END = Collections.emptyList();
+
+    private final PolyglotKeys keys;
+    private final int maxPlies;
+    private final int minCount;
+    private final double minScore;
+    private final long memoryBytes;
+    private final int threads;
+
+    // Sorted runs spilled by the workers
+    private final List<File> runs = Collections.synchronizedList(new ArrayList<>());
+    private File tempDirectory;
+
+    // Statistics
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong positions = new AtomicLong();
+    private long entriesWritten = 0;
+
+    /**
+     * Create a book builder
+     * @param keys the Polyglot keys for positions
+     * @param maxPlies number of plies of each game to add to the book
+     * @param minCount minimum number of games a move must have been played in
+     * @param minScore minimum fraction of points a move must have scored for the side playing it
+     * @param memoryBytes memory cap for the statistics of all workers together
+     * @param threads number of worker threads
+     */
+    public BookBuilder(PolyglotKeys keys, int maxPlies, int minCount, double minScore, long memoryBytes, int threads) {
+        this.keys = keys;
+        this.maxPlies = maxPlies;
+        this.minCount = minCount;
+        this.minScore = minScore;
+        this.memoryBytes = memoryBytes;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length == 1 && args[0].equals("-check")) {
+            System.exit(runCheck() ? 0 : 1);
+        }
+
+        int maxPlies = 20;
+        int minCount = 2;
+        double minScore = 0;
+        long memoryMb = 256;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> inputs = new ArrayList<>();
+
+        for(int i = 1; i < args.length; i++) {
+            switch(args[i]) {
+                case "-plies": maxPlies = Integer.parseInt(args[++i]); break;
+                case "-min-count": minCount = Integer.parseInt(args[++i]); break;
+                case "-min-score": minScore = Double.parseDouble(args[++i]); break;
+                case "-memory": memoryMb = Long.parseLong(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                default: inputs.add(args[i]); break;
+            }
+        }
+        if(args.length < 2 || inputs.isEmpty()) {
+            System.err.println("Usage: BookBuilder output.bin [-plies n] [-min-count n] [-min-score fraction] [-memory mb] [-threads n] input.pgn...");
+            return;
+        }
+
+        long start = System.nanoTime();
+        BookBuilder builder = new BookBuilder(PolyglotKeys.getDefault(), maxPlies, minCount, minScore, memoryMb << 20, threads);
+        builder.build(inputs, args[0]);
+        System.out.println(builder + String.format(" in %.1fs", (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * Build a book from a few games and check the moves and weights read back from it for each position,
+     * covering the weights given for wins, losses and draws and the dropping of moves that scored nothing.
+     * @return {@code true} if every position gave the expected moves
+     * @throws IOException if the files could not be written or read
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static boolean runCheck() throws IOException, InterruptedException {
+        File pgn = File.createTempFile("check", ".pgn");
+        File book = File.createTempFile("check", ".bin");
+        try {
+            Files.write(pgn.toPath(), CHECK_PGN.getBytes(StandardCharsets.UTF_8));
+            BookBuilder builder = new BookBuilder(PolyglotKeys.getDefault(), 20, 1, 0, 1 << 20, 1);
+            builder.build(Collections.singletonList(pgn.getPath()), book.getPath());
+            System.out.println(builder);
+
+            boolean passed = true;
+            try(PolyglotBook opened = PolyglotBook.open(book.getPath())) {
+                for(int i = 0; i < CHECK_LINES.length; i++) {
+                    HeadlessBoard board = new HeadlessBoard();
+                    for(String move : CHECK_LINES[i]) {
+                        board.makeMove(PGNUtils.parseSan(board, move));
+                    }
+                    String moves = opened.getMoves(board).toString();
+                    passed &= moves.equals(CHECK_MOVES[i]);
+                    System.out.printf("After %s: %s%s%n", CHECK_LINES[i].length == 0 ? "start" : String.join(" ", CHECK_LINES[i]),
+                            moves, moves.equals(CHECK_MOVES[i]) ? "" : " (expected " + CHECK_MOVES[i] + ")");
+                }
+            }
+            return passed;
+        } finally {
+            pgn.delete();
+            book.delete();
+        }
+    }
+
+    /**
+     * Build a book from PGN files
+     * @param inputs the paths of the PGN files
+     * @param output the path of the book to write
+     * @throws IOException if a file could not be read or written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public void build(List<String> inputs, String output) throws IOException, InterruptedException {
+        this.tempDirectory = Files.createTempDirectory("book").toFile();
+        try {
+            replayGames(inputs);
+            mergeRuns(output);
+        } finally {
+            for(File run : this.runs) {
+                run.delete();
+            }
+            this.tempDirectory.delete();
+        }
+    }
+
+    /**
+     * Read the games and have the workers replay them, until every worker has spilled its statistics
+     */
+    private void replayGames(List<String> inputs) throws IOException, InterruptedException {
+        BlockingQueue<List<PgnGame>> queue = new ArrayBlockingQueue<>(this.threads * 4);
+        List<Worker> workers = new ArrayList<>();
+        for(int i = 0; i < this.threads; i++) {
+            Worker worker = new Worker(queue, new MoveStatsMap(this.memoryBytes / this.threads));
+            workers.add(worker);
+            worker.start();
+        }
+
+        try {
+            List<PgnGame> batch = new ArrayList<>(BATCH_SIZE);
+            for(String input : inputs) {
+                try(PgnReader reader = new PgnReader(input)) {
+                    PgnGame game;
+                    while((game = reader.next()) != null) {
+                        batch.add(game);
+                        if(batch.size() == BATCH_SIZE) {
+                            queue.put(batch);
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                }
+            }
+            queue.put(batch);
+        } finally {
+            for(int i = 0; i < workers.size(); i++) {
+                queue.put(END);
+            }
+            for(Worker worker : workers) {
+                worker.join();
+            }
+        }
+
+        for(Worker worker : workers) {
+            if(worker.failure instanceof IOException) {
+                throw (IOException) worker.failure;
+            } else if(worker.failure != null) {
+                throw (RuntimeException) worker.failure;
+            }
+        }
+    }
+
+    /**
+     * Replays games from the queue, adding the moves played in each position to its map
+     */
+    private class Worker extends Thread {
+        private final BlockingQueue<List<PgnGame>> queue;
+        private final MoveStatsMap map;
+        private final HeadlessBoard board = new HeadlessBoard();
+        // The IOException or RuntimeException that stopped the worker
+        private Exception failure = null;
+
+        Worker(BlockingQueue<List<PgnGame>> queue, MoveStatsMap map) {
+            super("Book builder worker");
+            this.queue = queue;
+            this.map = map;
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<PgnGame> batch;
+                while((batch = this.queue.take()) != END) {
+                    for(PgnGame game : batch) {
+                        replay(game);
+                    }
+                }
+                spill();
+            } catch (IOException | RuntimeException e) {
+                this.failure = e;
+                // Keep taking games so the reader is not blocked
+                try {
+                    while(this.queue.take() != END) { /* Discard */ }
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void replay(PgnGame game) throws IOException {
+            double whiteScore = game.getWhiteScore();
+            if(whiteScore < 0) {
+                return;
+            }
+            try {
+                this.board.setFen(game.getStartFen());
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            games.incrementAndGet();
+
+            int ply = 0;
+            for(String san : game.getMoves()) {
+                if(ply++ >= maxPlies) {
+                    break;
+                }
+                int move = PGNUtils.parseSan(this.board, san);
+                if(move == PackedMove.NONE) {
+                    break;
+                }
+
+                int score = (int) Math.round(2 * (this.board.getSideToMove() == PieceCode.WHITE ? whiteScore : 1 - whiteScore));
+                this.map.add(keys.getKey(this.board), PolyglotBook.toPolyglotMove(this.board, move), score);
+                positions.incrementAndGet();
+                if(this.map.isFull()) {
+                    spill();
+                }
+                this.board.makeMove(move);
+            }
+        }
+
+        private void spill() throws IOException {
+            if(this.map.size() > 0) {
+                File run = File.createTempFile("run", ".dat", tempDirectory);
+                runs.add(run);
+                this.map.spill(run);
+            }
+        }
+    }
+
+    /**
+     * Merge the sorted runs, combining the statistics of the same move, and write the book
+     */
+    private void mergeRuns(String output) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16))) {
+            for(File run : this.runs) {
+                RunReader reader = new RunReader(run);
+                if(reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            // Moves of the position currently being merged
+            List<long[]> moves = new ArrayList<>();
+            long currentKey = 0;
+            while(!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if(!moves.isEmpty() && reader.key != currentKey) {
+                    writePosition(out, currentKey, moves);
+                    moves.clear();
+                }
+                currentKey = reader.key;
+
+                long[] last = moves.isEmpty() ? null : moves.get(moves.size() - 1);
+                if(last != null && last[0] == reader.move) {
+                    last[1] += reader.count;
+                    last[2] += reader.score;
+                } else {
+                    moves.add(new long[] { reader.move, reader.count, reader.score });
+                }
+
+                if(reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            if(!moves.isEmpty()) {
+                writePosition(out, currentKey, moves);
+            }
+        } finally {
+            for(RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Write the moves of one position that pass the filters, highest weight first.
+     * The weight is the points scored, scaled down if needed to fit in 16 bits.
+     * @param moves move, count and score of each move
+     */
+    private void writePosition(DataOutputStream out, long key, List<long[]> moves) throws IOException {
+        List<long[]> kept = new ArrayList<>();
+        long maxScore = 0;
+        for(long[] move : moves) {
+            if(move[1] >= this.minCount && move[2] >= this.minScore * 2 * move[1] && move[2] > 0) {
+                kept.add(move);
+                maxScore = Math.max(maxScore, move[2]);
+            }
+        }
+        kept.sort((a, b) -> Long.compare(b[2], a[2]));
+
+        for(long[] move : kept) {
+            long weight = maxScore > 0xFFFF ? Math.max(1, move[2] * 0xFFFF / maxScore) : move[2];
+            out.writeLong(key);
+            out.writeShort((int) move[0]);
+            out.writeShort((int) weight);
+            out.writeInt(0);
+            this.entriesWritten++;
+        }
+    }
+
+    /**
+     * Reads the records of a run file in order
+     */
+    private static class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream in;
+        private long key;
+        private int move;
+        private int count;
+        private int score;
+
+        RunReader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        }
+
+        /**
+         * Read the next record
+         * @return {@code false} at the end of the run
+         */
+        boolean next() throws IOException {
+            try {
+                this.key = this.in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            this.move = this.in.readShort() & 0xFFFF;
+            this.count = this.in.readInt();
+            this.score = this.in.readInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader other) {
+            int result = Long.compareUnsigned(this.key, other.key);
+            return result != 0 ? result : Integer.compare(this.move, other.move);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d games, %,d positions, %d runs, %,d book entries",
+                this.games.get(), this.positions.get(), this.runs.size(), this.entriesWritten);
+    }
+}
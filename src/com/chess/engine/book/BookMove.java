@@ -0,0 +1,42 @@
+package com.chess.engine.book;
+
+import com.chess.engine.moves.PackedMove;
+
+/**
+ * A move found in an opening book for a position, with the weight the book gives it
+ */
+public class BookMove {
+
+    private final int move;
+    private final int weight;
+    private final int learn;
+
+    BookMove(int move, int weight, int learn) {
+        this.move = move;
+        this.weight = weight;
+        this.learn = learn;
+    }
+
+    /**
+     * The move
+     * @return the {@link PackedMove}
+     */
+    public int getMove() { return this.move; }
+
+    /**
+     * How often the move should be chosen relative to the other moves for the position
+     * @return the weight, 0 to 65535
+     */
+    public int getWeight() { return this.weight; }
+
+    /**
+     * Learning data stored with the move, unused by most books
+     * @return the learn value
+     */
+    public int getLearn() { return this.learn; }
+
+    @Override
+    public String toString() {
+        return PackedMove.toString(this.move) + " (" + this.weight + ")";
+    }
+}
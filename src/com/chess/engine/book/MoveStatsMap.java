@@ -0,0 +1,154 @@
+package com.chess.engine.book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from (position key, Polyglot move) to the number of games and points scored,
+ * held in primitive arrays so tens of millions of entries fit in a fixed amount of memory.
+ * When full the entries are sorted and spilled to a run file, and the map is emptied for reuse.
+ * Not thread safe, each book builder worker has its own map.
+ */
+final class MoveStatsMap {
+
+    // Bytes used by each slot of the map
+    static final int BYTES_PER_SLOT = 8 + 2 + 4 + 4;
+
+    // Size of an entry in a run file (key, move, count, score)
+    static final int RUN_RECORD_SIZE = 8 + 2 + 4 + 4;
+
+    private final long[] keys;
+    private final short[] moves; // 0 marks an empty slot, as a1a1 is never a move
+    private final int[] counts;
+    private final int[] scores;
+    private final int mask;
+    private int size = 0;
+
+    /**
+     * Create a map using at most the given amount of memory
+     * @param memoryBytes the memory for the map
+     */
+    MoveStatsMap(long memoryBytes) {
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(1024, memoryBytes / BYTES_PER_SLOT)));
+        this.keys = new long[capacity];
+        this.moves = new short[capacity];
+        this.counts = new int[capacity];
+        this.scores = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Add a game to the statistics of a move
+     * @param key Polyglot key of the position
+     * @param move Polyglot move played
+     * @param score points for the side to move in half points (2 = win, 1 = draw, 0 = loss)
+     */
+    void add(long key, int move, int score) {
+        int slot = (int) (key ^ (key >>> 32) ^ move * 0x9E3779B9) & this.mask;
+        while(this.moves[slot] != 0) {
+            if(this.keys[slot] == key && this.moves[slot] == (short) move) {
+                this.counts[slot]++;
+                this.scores[slot] += score;
+                return;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.moves[slot] = (short) move;
+        this.counts[slot] = 1;
+        this.scores[slot] = score;
+        this.size++;
+    }
+
+    /**
+     * Whether the map should be spilled before adding more, keeping probes short
+     * @return {@code true} when more than half the slots are used
+     */
+    boolean isFull() {
+        return this.size > (this.mask + 1) / 2;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Write all entries to a run file sorted by key (unsigned) and move, then empty the map
+     * @param file the run file to write
+     * @throws IOException if the file could not be written
+     */
+    void spill(File file) throws IOException {
+        // Move the entries to the front of the arrays and sort them there
+        int count = 0;
+        for(int slot = 0; slot <= this.mask; slot++) {
+            if(this.moves[slot] != 0) {
+                swap(count++, slot);
+            }
+        }
+        sort(0, count - 1);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            for(int i = 0; i < count; i++) {
+                out.writeLong(this.keys[i]);
+                out.writeShort(this.moves[i]);
+                out.writeInt(this.counts[i]);
+                out.writeInt(this.scores[i]);
+            }
+        }
+
+        Arrays.fill(this.moves, (short) 0);
+        this.size = 0;
+    }
+
+    /**
+     * Quicksort of the entries between two indices (inclusive), falling back to insertion sort for short ranges
+     */
+    private void sort(int low, int high) {
+        while(high - low > 16) {
+            // Median of three as pivot, moved to the end of the range
+            int middle = (low + high) >>> 1;
+            if(compare(middle, low) < 0) swap(middle, low);
+            if(compare(high, low) < 0) swap(high, low);
+            if(compare(high, middle) < 0) swap(high, middle);
+            swap(middle, high);
+
+            int store = low;
+            for(int i = low; i < high; i++) {
+                if(compare(i, high) < 0) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, high);
+
+            // Recurse into the smaller half to bound the stack depth
+            if(store - low < high - store) {
+                sort(low, store - 1);
+                low = store + 1;
+            } else {
+                sort(store + 1, high);
+                high = store - 1;
+            }
+        }
+        for(int i = low + 1; i <= high; i++) {
+            for(int j = i; j > low && compare(j, j - 1) < 0; j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        int result = Long.compareUnsigned(this.keys[a], this.keys[b]);
+        return result != 0 ? result : Integer.compare(this.moves[a] & 0xFFFF, this.moves[b] & 0xFFFF);
+    }
+
+    private void swap(int a, int b) {
+        long key = this.keys[a]; this.keys[a] = this.keys[b]; this.keys[b] = key;
+        short move = this.moves[a]; this.moves[a] = this.moves[b]; this.moves[b] = move;
+        int count = this.counts[a]; this.counts[a] = this.counts[b]; this.counts[b] = count;
+        int score = this.scores[a]; this.scores[a] = this.scores[b]; this.scores[b] = score;
+    }
+}
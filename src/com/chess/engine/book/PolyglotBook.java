@@ -0,0 +1,212 @@
+package com.chess.engine.book;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Polyglot (.bin) opening book, memory-mapped rather than read into the heap.
+ * The book is a sorted array of 16 byte big endian entries (key, move, weight, learn),
+ * so the moves for a position are found by binary search on its {@link PolyglotKeys Polyglot key}.
+ * Safe to use from several threads, as lookups only read absolute positions of the mapped buffer.
+ */
+public class PolyglotBook implements Closeable {
+
+    // Size of a book entry in bytes
+    public static final int ENTRY_SIZE = 16;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final PolyglotKeys keys;
+    private final int entries;
+
+    private PolyglotBook(RandomAccessFile file, MappedByteBuffer buffer, PolyglotKeys keys) {
+        this.file = file;
+        this.buffer = buffer;
+        this.keys = keys;
+        this.entries = buffer.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * Open a book using the default Polyglot random number table
+     * @param fileName the path of the book
+     * @return the book
+     * @throws IOException if the book or the random number table could not be read
+     */
+    public static PolyglotBook open(String fileName) throws IOException {
+        return open(fileName, PolyglotKeys.getDefault());
+    }
+
+    /**
+     * Open a book
+     * @param fileName the path of the book
+     * @param keys the Polyglot keys to look positions up with
+     * @return the book
+     * @throws IOException if the book could not be read
+     */
+    public static PolyglotBook open(String fileName, PolyglotKeys keys) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            long length = file.length();
+            if(length % ENTRY_SIZE != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a Polyglot book (or larger than 2GB): " + fileName);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new PolyglotBook(file, buffer, keys);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Number of entries in the book
+     * @return the number of entries
+     */
+    public int size() {
+        return this.entries;
+    }
+
+    /**
+     * The legal moves the book has for the position on the board
+     * @param board the board to look up
+     * @return the book moves, in book order (usually highest weight first), or an empty list if out of book
+     */
+    public List<BookMove> getMoves(HeadlessBoard board) {
+        List<BookMove> moves = new ArrayList<>();
+        long key = this.keys.getKey(board);
+
+        int[] pseudoLegal = null;
+        int count = 0;
+        for(int index = findFirst(key); index < this.entries && keyAt(index) == key; index++) {
+            int offset = index * ENTRY_SIZE;
+            int move = toPackedMove(board, this.buffer.getShort(offset + 8) & 0xFFFF);
+            int weight = this.buffer.getShort(offset + 10) & 0xFFFF;
+            int learn = this.buffer.getInt(offset + 12);
+
+            // Books can have bad entries (or key collisions), so only accept legal moves
+            if(pseudoLegal == null) {
+                pseudoLegal = new int[MoveGenerator.MAX_MOVES];
+                count = MoveGenerator.generateMoves(board, pseudoLegal);
+            }
+            for(int i = 0; i < count; i++) {
+                if(pseudoLegal[i] == move && MoveGenerator.isLegal(board, move)) {
+                    moves.add(new BookMove(move, weight, learn));
+                    break;
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * The book move with the highest weight
+     * @param board the board to look up
+     * @return the {@link PackedMove}, or {@link PackedMove#NONE} if out of book
+     */
+    public int getBestMove(HeadlessBoard board) {
+        BookMove best = null;
+        for(BookMove move : getMoves(board)) {
+            if(best == null || move.getWeight() > best.getWeight()) {
+                best = move;
+            }
+        }
+        return best == null ? PackedMove.NONE : best.getMove();
+    }
+
+    /**
+     * A book move chosen at random in proportion to the weights
+     * @param board the board to look up
+     * @param random source of randomness
+     * @return the {@link PackedMove}, or {@link PackedMove#NONE} if out of book
+     */
+    public int getWeightedMove(HeadlessBoard board, Random random) {
+        List<BookMove> moves = getMoves(board);
+        long total = 0;
+        for(BookMove move : moves) {
+            total += move.getWeight();
+        }
+        if(total == 0) {
+            return moves.isEmpty() ? PackedMove.NONE : moves.get(random.nextInt(moves.size())).getMove();
+        }
+
+        long choice = (long) (random.nextDouble() * total);
+        for(BookMove move : moves) {
+            choice -= move.getWeight();
+            if(choice < 0) {
+                return move.getMove();
+            }
+        }
+        return moves.get(moves.size() - 1).getMove();
+    }
+
+    /**
+     * Index of the first entry with a key not less than the given key (keys are compared unsigned)
+     */
+    private int findFirst(long key) {
+        int low = 0;
+        int high = this.entries;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return this.buffer.getLong(index * ENTRY_SIZE);
+    }
+
+    /**
+     * Convert a Polyglot move to a {@link PackedMove}.
+     * Polyglot packs to file, to rank, from file, from rank and promotion in 3 bits each,
+     * and writes castling as the king taking its own rook.
+     */
+    static int toPackedMove(HeadlessBoard board, int polyglotMove) {
+        int to = ((polyglotMove >>> 3) & 7) * 8 + (polyglotMove & 7);
+        int from = ((polyglotMove >>> 9) & 7) * 8 + ((polyglotMove >>> 6) & 7);
+        int promotion = (polyglotMove >>> 12) & 7;
+
+        int piece = board.getPiece(from);
+        if(PieceCode.type(piece) == PieceCode.KING && board.getPiece(to) == PieceCode.make(PieceCode.color(piece), PieceCode.ROOK)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+        return PackedMove.of(from, to, promotion == 0 ? PieceCode.EMPTY : PieceCode.PAWN + promotion);
+    }
+
+    /**
+     * Convert a {@link PackedMove} to a Polyglot move, writing castling as the king taking its own rook
+     * @param board the board the move is for, before the move is made
+     * @param move the move
+     * @return the Polyglot move
+     */
+    static int toPolyglotMove(HeadlessBoard board, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if(PieceCode.type(board.getPiece(from)) == PieceCode.KING && Math.abs(to - from) == 2) {
+            to = to > from ? from + 3 : from - 4;
+        }
+        int promotion = PackedMove.promotion(move);
+        return (to & 7) | (to >>> 3) << 3 | (from & 7) << 6 | (from >>> 3) << 9
+                | (promotion == PieceCode.EMPTY ? 0 : promotion - PieceCode.PAWN) << 12;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
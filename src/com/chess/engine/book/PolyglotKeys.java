@@ -0,0 +1,208 @@
+package com.chess.engine.book;
+
+import com.chess.engine.board.Board;
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Zobrist keys computed exactly as Polyglot does, so positions can be looked up in Polyglot opening books.
+ * These differ from the board's own keys: Polyglot numbers pieces differently and only includes the en passant
+ * file when a pawn can actually capture en passant.
+ *
+ * The 781 random numbers are read from a text file holding the Polyglot Random64 array, {@link #DEFAULT_FILE}
+ * unless another is given; any file containing 781 hex constants (e.g. "0x9D39247E33776D41") in order will do.
+ * The table is checked against the key test values from the Polyglot book format documentation when loaded.
+ *
+ * Usage: PolyglotKeys [table], which loads the table and prints the key of each documented test position
+ */
+public final class PolyglotKeys {
+
+    // Default location of the random number table
+    public static final String DEFAULT_FILE = "files/book/polyglot_random.txt";
+
+    // Offsets of each part of the key in the random number table
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final int SIZE = 781;
+
+    private static final Pattern HEX_CONSTANT = Pattern.compile("0[xX]([0-9A-Fa-f]{16})");
+
+    // Positions (as moves from the start) and keys given by the Polyglot book format documentation
+    private static final String[][] TEST_MOVES = {
+            {},
+            { "e2e4" },
+            { "e2e4", "d7d5" },
+            { "e2e4", "d7d5", "e4e5" },
+            { "e2e4", "d7d5", "e4e5", "f7f5" },
+            { "e2e4", "d7d5", "e4e5", "f7f5", "e1e2" },
+            { "e2e4", "d7d5", "e4e5", "f7f5", "e1e2", "e8f7" },
+            { "a2a4", "b7b5", "h2h4", "b5b4", "c2c4" },
+            { "a2a4", "b7b5", "h2h4", "b5b4", "c2c4", "b4c3", "a1a3" }
+    };
+    private static final long[] TEST_KEYS = {
+            0x463b96181691fc9cL,
+            0x823c9b50fd114196L,
+            0x0756b94461c50fb0L,
+            0x662fafb965db29d4L,
+            0x22a48b5a8e47ff78L,
+            0x652a607ca3f242c1L,
+            0x00fdd303c946bdd9L,
+            0x3c8123ea7b067637L,
+            0x5c3f9b829b279560L
+    };
+
+    private static PolyglotKeys defaultKeys = null;
+
+    private final long[] random;
+
+    PolyglotKeys(long[] random) {
+        this.random = random;
+    }
+
+    /**
+     * Load the random number table from a file and check it produces the documented keys
+     * @param fileName the path of the table
+     * @return the keys
+     * @throws IOException if the file is missing, does not hold 781 numbers or gives the wrong keys
+     */
+    public static PolyglotKeys load(String fileName) throws IOException {
+        String text;
+        try {
+            text = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.US_ASCII);
+        } catch (NoSuchFileException e) {
+            throw new IOException("Polyglot random number table not found at " + fileName);
+        }
+
+        long[] random = new long[SIZE];
+        int count = 0;
+        Matcher matcher = HEX_CONSTANT.matcher(text);
+        while(matcher.find()) {
+            if(count == SIZE) {
+                throw new IOException("More than " + SIZE + " numbers in Polyglot random number table " + fileName);
+            }
+            random[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+        }
+        if(count != SIZE) {
+            throw new IOException("Expected " + SIZE + " numbers in Polyglot random number table " + fileName + " but found " + count);
+        }
+
+        PolyglotKeys keys = new PolyglotKeys(random);
+        keys.verify();
+        return keys;
+    }
+
+    /**
+     * The keys from the table at {@link #DEFAULT_FILE}, loaded the first time they are asked for
+     * @return the keys
+     * @throws IOException if the table could not be loaded
+     */
+    public static synchronized PolyglotKeys getDefault() throws IOException {
+        if(defaultKeys == null) {
+            defaultKeys = load(DEFAULT_FILE);
+        }
+        return defaultKeys;
+    }
+
+    public static void main(String[] args) {
+        String fileName = args.length > 0 ? args[0] : DEFAULT_FILE;
+        PolyglotKeys keys;
+        try {
+            keys = load(fileName);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // Loading has checked every key, so these match the documentation
+        for(String[] moves : TEST_MOVES) {
+            HeadlessBoard board = new HeadlessBoard();
+            for(String move : moves) {
+                board.makeMove(PackedMove.of(square(move, 0), square(move, 2)));
+            }
+            System.out.printf("%016x  %s%n", keys.getKey(board), moves.length == 0 ? "start position" : String.join(" ", moves));
+        }
+    }
+
+    /**
+     * Check the table against the keys given in the Polyglot documentation
+     * @throws IOException if any key does not match
+     */
+    private void verify() throws IOException {
+        for(int i = 0; i < TEST_MOVES.length; i++) {
+            HeadlessBoard board = new HeadlessBoard();
+            for(String move : TEST_MOVES[i]) {
+                board.makeMove(PackedMove.of(square(move, 0), square(move, 2)));
+            }
+            long key = getKey(board);
+            if(key != TEST_KEYS[i]) {
+                throw new IOException(String.format("Polyglot random number table gives key %016x instead of %016x for %s",
+                        key, TEST_KEYS[i], String.join(" ", TEST_MOVES[i])));
+            }
+        }
+    }
+
+    private static int square(String move, int index) {
+        return (move.charAt(index + 1) - '1') * 8 + move.charAt(index) - 'a';
+    }
+
+    /**
+     * Polyglot key of the position on a board
+     * @param board the board
+     * @return the key
+     */
+    public long getKey(Board board) {
+        return getKey(board.getHeadlessBoard());
+    }
+
+    /**
+     * Polyglot key of the position on a headless board
+     * @param board the board
+     * @return the key
+     */
+    public long getKey(HeadlessBoard board) {
+        long key = 0;
+
+        // Pieces, numbered black pawn = 0, white pawn = 1, black knight = 2, ... white king = 11
+        long occupied = board.getOccupied();
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int piece = board.getPiece(square);
+            int kind = 2 * (PieceCode.type(piece) - 1) + (PieceCode.color(piece) == PieceCode.WHITE ? 1 : 0);
+            key ^= this.random[64 * kind + square];
+        }
+
+        // Castling rights, in the same order as the board's bits
+        int castling = board.getCastling();
+        for(int i = 0; i < 4; i++) {
+            if((castling & (1 << i)) != 0) {
+                key ^= this.random[CASTLING_OFFSET + i];
+            }
+        }
+
+        // En passant file, only if a pawn of the side to move is next to the pawn that just moved two squares
+        int epSquare = board.getEpSquare();
+        int color = board.getSideToMove();
+        if(epSquare >= 0 && (Bitboards.PAWN_ATTACKS[color ^ 1][epSquare]
+                & board.getBitboard(PieceCode.make(color, PieceCode.PAWN))) != 0) {
+            key ^= this.random[EN_PASSANT_OFFSET + (epSquare & 7)];
+        }
+
+        if(color == PieceCode.WHITE) {
+            key ^= this.random[TURN_OFFSET];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,164 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Squares attacked by each player for a single position, computed once per evaluation from bitboards.
+ * While the attacks are generated the mobility of each piece and the attacks into each king's zone are
+ * accumulated as well, so neither needs a second pass over the pieces.
+ * The arrays are reused between positions, so each evaluator has its own table.
+ */
+final class AttackTable {
+
+    // Weights for mobility and king safety
+    private final EvalParams params;
+
+    // Mobility bonus per safe square above a baseline, indexed by type of piece (middle game, end game)
+    static final int[] MOBILITY_MG = { 0, 0, 4, 5, 2, 1, 0 };
+    static final int[] MOBILITY_EG = { 0, 0, 4, 5, 4, 2, 0 };
+    static final int[] MOBILITY_BASELINE = { 0, 0, 4, 6, 6, 12, 0 };
+
+    // Weight of an attack on a square in the enemy king's zone, indexed by type of piece
+    static final int[] KING_ATTACK_WEIGHT = { 0, 0, 2, 2, 3, 5, 0 };
+
+    // Middle game penalty indexed by the total attack weight on the king zone (only with 2+ attackers)
+    static final int[] KING_DANGER = new int[64];
+    static {
+        for(int i = 0; i < KING_DANGER.length; i++) {
+            KING_DANGER[i] = Math.min(500, i * i * 2);
+        }
+    }
+
+    // Middle game penalty for open and semi-open files next to the king
+    static final int[] KING_FILE = { 25, 10 };
+
+    // Squares attacked by each color, by each type of piece of a color, and by at least two pieces of a color
+    private final long[] attacked = new long[2];
+    private final long[][] attackedBy = new long[2][PieceCode.KING + 1];
+    private final long[] attackedTwice = new long[2];
+
+    // Accumulated while computing attacks
+    private final int[] mobilityMiddleGame = new int[2];
+    private final int[] mobilityEndGame = new int[2];
+    private final int[] kingAttackers = new int[2];
+    private final int[] kingAttackWeight = new int[2];
+
+    AttackTable(EvalParams params) {
+        this.params = params;
+    }
+
+    /**
+     * Compute all attacks for the position on the board
+     * @param board the {@code HeadlessBoard} to compute attacks for
+     */
+    void compute(HeadlessBoard board) {
+        long occupied = board.getOccupied();
+
+        // Pawns and kings first, pawn attacks decide which squares are safe for the other pieces
+        for(int color = PieceCode.WHITE; color <= PieceCode.BLACK; color++) {
+            long pawnAttacks = Bitboards.pawnAttacks(board.getBitboard(PieceCode.make(color, PieceCode.PAWN)), color);
+            long kingAttacks = Bitboards.KING_ATTACKS[board.getKingSquare(color)];
+            this.attackedBy[color][PieceCode.PAWN] = pawnAttacks;
+            this.attackedBy[color][PieceCode.KING] = kingAttacks;
+            this.attackedTwice[color] = pawnAttacks & kingAttacks;
+            this.attacked[color] = pawnAttacks | kingAttacks;
+            this.mobilityMiddleGame[color] = 0;
+            this.mobilityEndGame[color] = 0;
+            this.kingAttackers[color] = 0;
+            this.kingAttackWeight[color] = 0;
+        }
+
+        for(int color = PieceCode.WHITE; color <= PieceCode.BLACK; color++) {
+            int enemy = color ^ 1;
+            long safe = ~board.getOccupancy(color) & ~this.attackedBy[enemy][PieceCode.PAWN];
+            long enemyKingZone = kingZone(board.getKingSquare(enemy), enemy);
+
+            for(int type = PieceCode.KNIGHT; type <= PieceCode.QUEEN; type++) {
+                long pieces = board.getBitboard(PieceCode.make(color, type));
+                long typeAttacks = 0;
+                while(pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+
+                    long attacks;
+                    switch(type) {
+                        case PieceCode.KNIGHT: attacks = Bitboards.KNIGHT_ATTACKS[square]; break;
+                        case PieceCode.BISHOP: attacks = Bitboards.bishopAttacks(square, occupied); break;
+                        case PieceCode.ROOK: attacks = Bitboards.rookAttacks(square, occupied); break;
+                        default: attacks = Bitboards.queenAttacks(square, occupied); break;
+                    }
+
+                    this.attackedTwice[color] |= this.attacked[color] & attacks;
+                    this.attacked[color] |= attacks;
+                    typeAttacks |= attacks;
+
+                    // Mobility counts squares the piece could move to without being taken by a pawn
+                    int mobility = Long.bitCount(attacks & safe) - MOBILITY_BASELINE[type];
+                    this.mobilityMiddleGame[color] += mobility * this.params.mobilityMg[type];
+                    this.mobilityEndGame[color] += mobility * this.params.mobilityEg[type];
+
+                    // Attacks into the enemy king's zone
+                    long zoneAttacks = attacks & enemyKingZone;
+                    if(zoneAttacks != 0) {
+                        this.kingAttackers[color]++;
+                        this.kingAttackWeight[color] += this.params.kingAttackWeight[type] * Long.bitCount(zoneAttacks);
+                    }
+                }
+                this.attackedBy[color][type] = typeAttacks;
+            }
+        }
+    }
+
+    /**
+     * Squares around the king, plus the squares two ranks in front of it
+     * @param kingSquare the square of the king
+     * @param color the color of the king
+     * @return the bitboard of the king's zone
+     */
+    static long kingZone(int kingSquare, int color) {
+        long zone = Bitboards.KING_ATTACKS[kingSquare] | (1L << kingSquare);
+        return zone | Bitboards.forward(zone, color);
+    }
+
+    /**
+     * Middle game score for the safety of a player's king, from the attacks of the enemy and the files around it
+     * @param board the {@code HeadlessBoard} the attacks were computed for
+     * @param color the color of the king
+     * @return the (usually negative) score from that player's point of view
+     */
+    int kingSafety(HeadlessBoard board, int color) {
+        int enemy = color ^ 1;
+        int score = 0;
+
+        // Danger grows quickly with the weight of the attack, but a single attacker is rarely dangerous
+        if(this.kingAttackers[enemy] >= 2) {
+            score -= KING_DANGER[Math.min(this.kingAttackWeight[enemy], KING_DANGER.length - 1)];
+        }
+
+        // Open files next to the king, only worth worrying about while the enemy has rooks or queens
+        if(board.getBitboard(PieceCode.make(enemy, PieceCode.ROOK)) != 0
+                || board.getBitboard(PieceCode.make(enemy, PieceCode.QUEEN)) != 0) {
+            long ownPawns = board.getBitboard(PieceCode.make(color, PieceCode.PAWN));
+            long enemyPawns = board.getBitboard(PieceCode.make(enemy, PieceCode.PAWN));
+            int kingFile = board.getKingSquare(color) & 7;
+            for(int file = Math.max(0, kingFile - 1); file <= Math.min(7, kingFile + 1); file++) {
+                if((Bitboards.FILES[file] & ownPawns) == 0) {
+                    score -= (Bitboards.FILES[file] & enemyPawns) == 0 ? this.params.kingFile[0] : this.params.kingFile[1];
+                }
+            }
+        }
+
+        return score;
+    }
+
+    // Getters
+    long getAttacked(int color) { return this.attacked[color]; }
+    long getAttackedBy(int color, int type) { return this.attackedBy[color][type]; }
+    long getAttackedTwice(int color) { return this.attackedTwice[color]; }
+    int getMobilityMiddleGame(int color) { return this.mobilityMiddleGame[color]; }
+    int getMobilityEndGame(int color) { return this.mobilityEndGame[color]; }
+    int getKingAttackers(int color) { return this.kingAttackers[color]; }
+    int getKingAttackWeight(int color) { return this.kingAttackWeight[color]; }
+}
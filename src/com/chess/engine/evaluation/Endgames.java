@@ -0,0 +1,205 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+import com.chess.engine.tablebase.Tablebases;
+
+/**
+ * Knowledge of specific endings, consulted before the general evaluation:
+ * exact results from the endgame {@link Tablebases} when they cover the position, draws by insufficient material
+ * and other trivially drawn material, king and pawn versus king from the {@link KpkBitbase}, and scorers that
+ * drive the defending king to the edge (or the right corner) so mates with a lone king left are found by the search.
+ */
+public final class Endgames {
+
+    private Endgames() { /*Static construct*/ }
+
+    // Returned when no specific knowledge applies
+    public static final int NONE = Integer.MIN_VALUE;
+
+    // Base score of a position known to be won, above anything the general evaluation gives
+    public static final int KNOWN_WIN = 2000;
+
+    // Base score of a win found in the tablebases, less the plies to mate so quicker mates score higher
+    public static final int TABLEBASE_WIN = 2 * KNOWN_WIN;
+
+    /**
+     * Set up the KPK bitbase now, rather than in the first evaluation that needs it
+     * @return the time taken to load or compute the bitbase in nanoseconds
+     */
+    public static long initialize() {
+        return KpkBitbase.getLoadNanos();
+    }
+
+    /**
+     * Evaluate the position if it is a recognised ending
+     * @param board the board to evaluate
+     * @return the score in centipawns from the point of view of the side to move, or {@link #NONE}
+     */
+    public static int evaluate(HeadlessBoard board) {
+        if(Long.bitCount(board.getOccupied()) <= Tablebases.MAX_PIECES) {
+            int result = Tablebases.probe(board);
+            if(result != Tablebases.NOT_FOUND) {
+                return Tablebases.isWin(result) ? TABLEBASE_WIN - Tablebases.getPliesToMate(result)
+                        : Tablebases.isLoss(result) ? -TABLEBASE_WIN + Tablebases.getPliesToMate(result) : 0;
+            }
+        }
+
+        long pawns = board.getBitboard(PieceCode.make(PieceCode.WHITE, PieceCode.PAWN))
+                | board.getBitboard(PieceCode.make(PieceCode.BLACK, PieceCode.PAWN));
+        long majors = majors(board, PieceCode.WHITE) | majors(board, PieceCode.BLACK);
+
+        // A lone king against anything with mating material
+        for(int strong = PieceCode.WHITE; strong <= PieceCode.BLACK; strong++) {
+            if(Long.bitCount(board.getOccupancy(strong ^ 1)) == 1 && Long.bitCount(board.getOccupancy(strong)) > 1) {
+                int score = loneKing(board, strong, pawns);
+                if(score != NONE) {
+                    return board.getSideToMove() == strong ? score : -score;
+                }
+            }
+        }
+
+        if(pawns == 0 && majors == 0 && isDrawnWithMinorPieces(board)) {
+            return 0;
+        }
+        return NONE;
+    }
+
+    /**
+     * Whether neither side can possibly mate: no pawns, rooks or queens, and either a single minor piece
+     * or only bishops all on squares of the same color
+     * @param board the board
+     * @return {@code true} if the position is a draw by insufficient material
+     */
+    public static boolean isInsufficientMaterial(HeadlessBoard board) {
+        long kings = board.getBitboard(PieceCode.make(PieceCode.WHITE, PieceCode.KING))
+                | board.getBitboard(PieceCode.make(PieceCode.BLACK, PieceCode.KING));
+        long others = board.getOccupied() & ~kings;
+        if(Long.bitCount(others) <= 1) {
+            return (others & (minors(board, PieceCode.WHITE) | minors(board, PieceCode.BLACK))) == others;
+        }
+        long bishops = board.getBitboard(PieceCode.make(PieceCode.WHITE, PieceCode.BISHOP))
+                | board.getBitboard(PieceCode.make(PieceCode.BLACK, PieceCode.BISHOP));
+        return others == bishops && ((bishops & Bitboards.DARK_SQUARES) == 0 || (bishops & ~Bitboards.DARK_SQUARES) == 0);
+    }
+
+    /**
+     * Whether a side has the material to mate at all, which decides a game where the opponent's flag falls:
+     * a pawn, rook or queen, or at least two minor pieces
+     * @param board the board
+     * @param color the color of the side
+     * @return {@code true} if the side could mate, {@code false} if running out of time against it is a draw
+     */
+    public static boolean hasMatingMaterial(HeadlessBoard board, int color) {
+        return board.getBitboard(PieceCode.make(color, PieceCode.PAWN)) != 0 || majors(board, color) != 0
+                || Long.bitCount(minors(board, color)) >= 2;
+    }
+
+    /**
+     * Endings with only minor pieces that cannot be won by force: insufficient material, two knights
+     * against a king, and a single minor piece each
+     */
+    private static boolean isDrawnWithMinorPieces(HeadlessBoard board) {
+        if(isInsufficientMaterial(board)) {
+            return true;
+        }
+        int white = Long.bitCount(minors(board, PieceCode.WHITE));
+        int black = Long.bitCount(minors(board, PieceCode.BLACK));
+        if(white == 1 && black == 1) {
+            return true;
+        }
+        for(int color = PieceCode.WHITE; color <= PieceCode.BLACK; color++) {
+            long knights = board.getBitboard(PieceCode.make(color, PieceCode.KNIGHT));
+            if(Long.bitCount(knights) == 2 && minors(board, color) == knights && minors(board, color ^ 1) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Score for the strong side against a lone king
+     * @return the score for the strong side, or {@link #NONE} to leave it to the general evaluation
+     */
+    private static int loneKing(HeadlessBoard board, int strong, long pawns) {
+        int strongKing = board.getKingSquare(strong);
+        int weakKing = board.getKingSquare(strong ^ 1);
+        long bishops = board.getBitboard(PieceCode.make(strong, PieceCode.BISHOP));
+        long knights = board.getBitboard(PieceCode.make(strong, PieceCode.KNIGHT));
+        int pieces = Long.bitCount(board.getOccupancy(strong)) - 1;
+
+        // King and pawn versus king
+        if(pieces == 1 && pawns != 0) {
+            return kingPawnKing(board, strong, Long.numberOfTrailingZeros(pawns));
+        }
+
+        // King, bishop and knight: mate only in a corner of the bishop's color
+        if(pieces == 2 && Long.bitCount(bishops) == 1 && Long.bitCount(knights) == 1) {
+            boolean dark = (bishops & Bitboards.DARK_SQUARES) != 0;
+            int corner = dark ? Math.min(Bitboards.distance(weakKing, 0), Bitboards.distance(weakKing, 63))
+                    : Math.min(Bitboards.distance(weakKing, 7), Bitboards.distance(weakKing, 56));
+            return KNOWN_WIN + PieceSquareTables.EG_VALUE[PieceCode.BISHOP] + PieceSquareTables.EG_VALUE[PieceCode.KNIGHT]
+                    + 40 * (7 - corner) + closeness(strongKing, weakKing);
+        }
+
+        // Queen, rook or a bishop pair: push the king to any edge
+        boolean bishopPair = (bishops & Bitboards.DARK_SQUARES) != 0 && (bishops & ~Bitboards.DARK_SQUARES) != 0;
+        if(majors(board, strong) == 0 && !bishopPair) {
+            return NONE;
+        }
+        int material = 0;
+        for(int type = PieceCode.PAWN; type <= PieceCode.QUEEN; type++) {
+            material += PieceSquareTables.EG_VALUE[type] * Long.bitCount(board.getBitboard(PieceCode.make(strong, type)));
+        }
+        return KNOWN_WIN + material + edge(weakKing) + closeness(strongKing, weakKing);
+    }
+
+    /**
+     * King and pawn versus king, looked up in the bitbase after normalising to a white pawn on files a-d
+     */
+    private static int kingPawnKing(HeadlessBoard board, int strong, int pawn) {
+        int strongKing = board.getKingSquare(strong);
+        int weakKing = board.getKingSquare(strong ^ 1);
+        int sideToMove = board.getSideToMove();
+        if(strong == PieceCode.BLACK) {
+            strongKing ^= 56;
+            weakKing ^= 56;
+            pawn ^= 56;
+            sideToMove ^= 1;
+        }
+        if((pawn & 7) > 3) {
+            strongKing ^= 7;
+            weakKing ^= 7;
+            pawn ^= 7;
+        }
+        if(!KpkBitbase.isWin(strongKing, pawn, weakKing, sideToMove)) {
+            return 0;
+        }
+        return KNOWN_WIN + PieceSquareTables.EG_VALUE[PieceCode.PAWN] + 10 * (pawn >>> 3);
+    }
+
+    /**
+     * Bonus for the defending king being near the edge of the board
+     */
+    private static int edge(int square) {
+        int file = square & 7;
+        int rank = square >>> 3;
+        return 20 * (6 - Math.min(file, 7 - file) - Math.min(rank, 7 - rank));
+    }
+
+    /**
+     * Bonus for the kings being close, as the attacking king is needed to mate
+     */
+    private static int closeness(int a, int b) {
+        return 20 * (7 - Bitboards.distance(a, b));
+    }
+
+    private static long minors(HeadlessBoard board, int color) {
+        return board.getBitboard(PieceCode.make(color, PieceCode.KNIGHT)) | board.getBitboard(PieceCode.make(color, PieceCode.BISHOP));
+    }
+
+    private static long majors(HeadlessBoard board, int color) {
+        return board.getBitboard(PieceCode.make(color, PieceCode.ROOK)) | board.getBitboard(PieceCode.make(color, PieceCode.QUEEN));
+    }
+}
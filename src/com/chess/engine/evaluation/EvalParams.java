@@ -0,0 +1,261 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of weights for the handcrafted evaluation, by name, so they can be tuned and saved to a parameter file
+ * and read back from it. Each {@link Evaluator} evaluates with its own set, so engines with different weights can
+ * play each other; evaluators not given one share the {@link #getDefault() default set}, read from the parameter
+ * file in the game settings when the engine starts.
+ *
+ * Parameter files have one table per line, "NAME: value, value, ...", with the values in table order.
+ * Each table also has a range of entries that are worth tuning (e.g. not pawns on the first rank),
+ * and those entries are numbered 0 to {@link #size()} - 1 for {@link #get(int)} and {@link #set(int, int)}.
+ */
+public final class EvalParams {
+
+    private static final String[] PIECE_NAMES = { null, "PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING" };
+
+    // Built in value of each table, copied into every set of weights
+    private static final Map<String, int[]> BUILT_IN = new LinkedHashMap<>();
+
+    // Table and index within the table of each tunable entry
+    private static final List<String> TUNABLE_TABLES = new ArrayList<>();
+    private static final List<Integer> TUNABLE_INDICES = new ArrayList<>();
+
+    static {
+        register("MG_VALUE", PieceSquareTables.MG_VALUE, 1, 6);
+        register("EG_VALUE", PieceSquareTables.EG_VALUE, 1, 6);
+        for(int type = 1; type < PIECE_NAMES.length; type++) {
+            // Pawns are never on the first or last rank
+            int from = type == 1 ? 8 : 0;
+            int to = type == 1 ? 56 : 64;
+            register("MG_" + PIECE_NAMES[type], PieceSquareTables.MG_TABLES[type], from, to);
+            register("EG_" + PIECE_NAMES[type], PieceSquareTables.EG_TABLES[type], from, to);
+        }
+        register("DOUBLED", PawnStructure.DOUBLED, 0, 2);
+        register("ISOLATED", PawnStructure.ISOLATED, 0, 2);
+        register("BACKWARD", PawnStructure.BACKWARD, 0, 2);
+        register("PASSED_MG", PawnStructure.PASSED_MG, 1, 7);
+        register("PASSED_EG", PawnStructure.PASSED_EG, 1, 7);
+        register("SHIELD", PawnStructure.SHIELD, 0, 2);
+        register("KING_DISTANCE", PawnStructure.KING_DISTANCE, 0, 2);
+        register("MOBILITY_MG", AttackTable.MOBILITY_MG, 2, 6);
+        register("MOBILITY_EG", AttackTable.MOBILITY_EG, 2, 6);
+        register("KING_ATTACK_WEIGHT", AttackTable.KING_ATTACK_WEIGHT, 2, 6);
+        register("KING_FILE", AttackTable.KING_FILE, 0, 2);
+    }
+
+    private static void register(String name, int[] table, int from, int to) {
+        BUILT_IN.put(name, table);
+        for(int i = from; i < to; i++) {
+            TUNABLE_TABLES.add(name);
+            TUNABLE_INDICES.add(i);
+        }
+    }
+
+    // Weights of evaluators not given their own
+    private static final EvalParams DEFAULT = new EvalParams();
+
+    // The tables of this set by name
+    private final Map<String, int[]> tables = new LinkedHashMap<>();
+
+    // The same tables, for the evaluation terms to read
+    final int[] mgValue;
+    final int[] egValue;
+    final int[][] mgTables = new int[PIECE_NAMES.length][];
+    final int[][] egTables = new int[PIECE_NAMES.length][];
+    final int[] doubled;
+    final int[] isolated;
+    final int[] backward;
+    final int[] passedMg;
+    final int[] passedEg;
+    final int[] shield;
+    final int[] kingDistance;
+    final int[] mobilityMg;
+    final int[] mobilityEg;
+    final int[] kingAttackWeight;
+    final int[] kingFile;
+
+    // Material + piece-square value indexed by [piece code][square index], from white's point of view
+    final int[][] mg = new int[PieceCode.NUM_CODES][64];
+    final int[][] eg = new int[PieceCode.NUM_CODES][64];
+
+    /**
+     * Create a set of weights with the built in values
+     */
+    public EvalParams() {
+        for(Map.Entry<String, int[]> entry : BUILT_IN.entrySet()) {
+            this.tables.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.mgValue = this.tables.get("MG_VALUE");
+        this.egValue = this.tables.get("EG_VALUE");
+        for(int type = 1; type < PIECE_NAMES.length; type++) {
+            this.mgTables[type] = this.tables.get("MG_" + PIECE_NAMES[type]);
+            this.egTables[type] = this.tables.get("EG_" + PIECE_NAMES[type]);
+        }
+        this.doubled = this.tables.get("DOUBLED");
+        this.isolated = this.tables.get("ISOLATED");
+        this.backward = this.tables.get("BACKWARD");
+        this.passedMg = this.tables.get("PASSED_MG");
+        this.passedEg = this.tables.get("PASSED_EG");
+        this.shield = this.tables.get("SHIELD");
+        this.kingDistance = this.tables.get("KING_DISTANCE");
+        this.mobilityMg = this.tables.get("MOBILITY_MG");
+        this.mobilityEg = this.tables.get("MOBILITY_EG");
+        this.kingAttackWeight = this.tables.get("KING_ATTACK_WEIGHT");
+        this.kingFile = this.tables.get("KING_FILE");
+        rebuild();
+    }
+
+    /**
+     * The weights of evaluators not given their own, which {@link #loadDefault()} reads at startup
+     * @return the default set
+     */
+    public static EvalParams getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Combine material values and tables into the lookups, after any of them have changed
+     */
+    private void rebuild() {
+        for(int type = PieceCode.PAWN; type <= PieceCode.KING; type++) {
+            int white = PieceCode.make(PieceCode.WHITE, type);
+            int black = PieceCode.make(PieceCode.BLACK, type);
+            for(int square = 0; square < 64; square++) {
+                // Tables have rank 8 first, so white squares are flipped vertically
+                this.mg[white][square] = this.mgValue[type] + this.mgTables[type][square ^ 56];
+                this.eg[white][square] = this.egValue[type] + this.egTables[type][square ^ 56];
+                this.mg[black][square] = -(this.mgValue[type] + this.mgTables[type][square]);
+                this.eg[black][square] = -(this.egValue[type] + this.egTables[type][square]);
+            }
+        }
+    }
+
+    /**
+     * Number of tunable entries
+     * @return the number of entries
+     */
+    public static int size() {
+        return TUNABLE_INDICES.size();
+    }
+
+    /**
+     * Name of a tunable entry, e.g. "MG_KNIGHT[18]"
+     * @param index the entry number
+     * @return the name
+     */
+    public static String getName(int index) {
+        return TUNABLE_TABLES.get(index) + "[" + TUNABLE_INDICES.get(index) + "]";
+    }
+
+    /**
+     * Value of a tunable entry
+     * @param index the entry number
+     * @return the value
+     */
+    public int get(int index) {
+        return this.tables.get(TUNABLE_TABLES.get(index))[TUNABLE_INDICES.get(index)];
+    }
+
+    /**
+     * Change a tunable entry. Boards set up before the change keep their old incremental evaluation.
+     * @param index the entry number
+     * @param value the new value
+     */
+    public void set(int index, int value) {
+        this.tables.get(TUNABLE_TABLES.get(index))[TUNABLE_INDICES.get(index)] = value;
+        rebuild();
+    }
+
+    /**
+     * Read the parameter file named by the "evaluation:" game setting into the default set, if one is named,
+     * keeping the built in weights if it fails to load. Called once when the engine starts, before any board is set up.
+     */
+    public static void loadDefault() {
+        String path = GameSettings.INSTANCE.getEvaluationPath();
+        if(path == null || path.isEmpty()) {
+            return;
+        }
+        try {
+            DEFAULT.load(path);
+        } catch (IOException e) {
+            System.err.println("Could not load evaluation parameters, using built in values: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read weights from a parameter file. Tables not in the file keep their values.
+     * @param fileName the path of the parameter file
+     * @throws IOException if the file could not be read or a table is malformed
+     */
+    public void load(String fileName) throws IOException {
+        Map<String, int[]> values = new LinkedHashMap<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                int[] table = colon > 0 ? this.tables.get(line.substring(0, colon).trim()) : null;
+                if(table == null) {
+                    throw new IOException("Unknown evaluation parameter: " + line);
+                }
+                String[] tokens = line.substring(colon + 1).split(",");
+                if(tokens.length != table.length) {
+                    throw new IOException("Expected " + table.length + " values for " + line.substring(0, colon));
+                }
+                int[] parsed = new int[table.length];
+                try {
+                    for(int i = 0; i < tokens.length; i++) {
+                        parsed[i] = Integer.parseInt(tokens[i].trim());
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad value for " + line.substring(0, colon) + ": " + e.getMessage());
+                }
+                values.put(line.substring(0, colon).trim(), parsed);
+            }
+        }
+
+        // Only change anything once the whole file has been read successfully
+        for(Map.Entry<String, int[]> entry : values.entrySet()) {
+            int[] table = this.tables.get(entry.getKey());
+            System.arraycopy(entry.getValue(), 0, table, 0, table.length);
+        }
+        rebuild();
+    }
+
+    /**
+     * Write all weights to a parameter file
+     * @param fileName the path of the parameter file
+     * @throws IOException if the file could not be written
+     */
+    public void save(String fileName) throws IOException {
+        try(PrintWriter writer = new PrintWriter(fileName)) {
+            for(Map.Entry<String, int[]> entry : this.tables.entrySet()) {
+                StringBuilder builder = new StringBuilder(entry.getKey()).append(':');
+                int[] table = entry.getValue();
+                for(int i = 0; i < table.length; i++) {
+                    builder.append(i == 0 ? " " : ", ").append(table[i]);
+                }
+                writer.println(builder);
+            }
+            if(writer.checkError()) {
+                throw new IOException("Could not write " + fileName);
+            }
+        }
+    }
+}
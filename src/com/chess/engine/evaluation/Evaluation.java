@@ -0,0 +1,167 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.Player;
+import com.chess.engine.board.Board;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.Tile;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Material and piece-square totals for a position, kept up to date incrementally
+ * as pieces are added, removed and moved rather than recomputed from the whole board.
+ * Totals are from white's point of view, for one set of {@link EvalParams}, and tapered between middle game and
+ * end game by the game phase.
+ */
+public class Evaluation {
+
+    // Weights the totals are for
+    private final EvalParams params;
+
+    // Middle game and end game totals (white - black)
+    private int middleGame;
+    private int endGame;
+
+    // Remaining non-pawn material, see PieceSquareTables.PHASE_WEIGHT
+    private int phase;
+
+    public Evaluation() {
+        this(EvalParams.getDefault());
+    }
+
+    public Evaluation(EvalParams params) {
+        this.params = params;
+        this.middleGame = 0;
+        this.endGame = 0;
+        this.phase = 0;
+    }
+
+    public Evaluation(Evaluation other) {
+        this.params = other.params;
+        this.middleGame = other.middleGame;
+        this.endGame = other.endGame;
+        this.phase = other.phase;
+    }
+
+    /**
+     * A piece was added to the board
+     * @param piece the piece code
+     * @param square the square index the piece was added to
+     */
+    public void addPiece(int piece, int square) {
+        this.middleGame += this.params.mg[piece][square];
+        this.endGame += this.params.eg[piece][square];
+        this.phase += PieceSquareTables.PHASE_WEIGHT[PieceCode.type(piece)];
+    }
+
+    /**
+     * A piece was removed from the board
+     * @param piece the piece code
+     * @param square the square index the piece was removed from
+     */
+    public void removePiece(int piece, int square) {
+        this.middleGame -= this.params.mg[piece][square];
+        this.endGame -= this.params.eg[piece][square];
+        this.phase -= PieceSquareTables.PHASE_WEIGHT[PieceCode.type(piece)];
+    }
+
+    /**
+     * A piece moved from one square to another (material and phase are unchanged)
+     * @param piece the piece code
+     * @param from the square index moved from
+     * @param to the square index moved to
+     */
+    public void movePiece(int piece, int from, int to) {
+        this.middleGame += this.params.mg[piece][to] - this.params.mg[piece][from];
+        this.endGame += this.params.eg[piece][to] - this.params.eg[piece][from];
+    }
+
+    // Getters
+    public EvalParams getParams() { return this.params; }
+    public int getMiddleGame() { return this.middleGame; }
+    public int getEndGame() { return this.endGame; }
+    public int getPhase() { return Math.min(this.phase, PieceSquareTables.MAX_PHASE); }
+
+    /**
+     * Tapered score of the position from the point of view of the given color
+     * @param color {@link PieceCode#WHITE} or {@link PieceCode#BLACK}
+     * @return the score in centipawns, positive if the given color is better
+     */
+    public int score(int color) {
+        int score = taper(this.middleGame, this.endGame, getPhase());
+        return color == PieceCode.WHITE ? score : -score;
+    }
+
+    /**
+     * Blend a middle game and end game score by the game phase
+     * @param middleGame the middle game score
+     * @param endGame the end game score
+     * @param phase the game phase (0 = bare kings and pawns, {@link PieceSquareTables#MAX_PHASE} = full board)
+     * @return the blended score
+     */
+    public static int taper(int middleGame, int endGame, int phase) {
+        return (middleGame * phase + endGame * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+    }
+
+    /**
+     * Compute the evaluation from scratch by scanning every square of a headless board
+     * @param board the {@code HeadlessBoard} to evaluate
+     * @param params the weights to total
+     * @return a new {@code Evaluation} for the position
+     */
+    public static Evaluation compute(HeadlessBoard board, EvalParams params) {
+        Evaluation evaluation = new Evaluation(params);
+        for(int square = 0; square < 64; square++) {
+            int piece = board.getPiece(square);
+            if(piece != PieceCode.EMPTY) {
+                evaluation.addPiece(piece, square);
+            }
+        }
+        return evaluation;
+    }
+
+    /**
+     * Compute the evaluation from scratch by scanning the tiles of the board.
+     * The game phase is taken from the pieces each player still controls.
+     * @param board the {@code Board} to evaluate
+     * @return a new {@code Evaluation} for the position
+     */
+    public static Evaluation compute(Board board) {
+        Evaluation evaluation = new Evaluation();
+        board.getTileMap().values().stream().filter(Tile::isOccupied).forEach(tile -> {
+            int piece = tile.getPiece().getCode();
+            int square = tile.getPosition().getIndex();
+            evaluation.middleGame += evaluation.params.mg[piece][square];
+            evaluation.endGame += evaluation.params.eg[piece][square];
+        });
+
+        for(Player player : board.getPlayers().values()) {
+            player.getPieces().forEach(piece ->
+                    evaluation.phase += PieceSquareTables.PHASE_WEIGHT[PieceCode.type(piece.getCode())]);
+        }
+
+        return evaluation;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * this.middleGame + this.endGame) + this.phase;
+    }
+
+    /**
+     * Compare the totals of this evaluation against another
+     * @param other the other evaluation to compare
+     * @return true if middle game, end game and phase totals all match
+     */
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof Evaluation)) return false;
+        Evaluation eval = (Evaluation) other;
+        return this.middleGame == eval.middleGame && this.endGame == eval.endGame && this.phase == eval.phase;
+    }
+
+    @Override
+    public String toString() {
+        return "Middle game: " + getMiddleGame() + ", End game: " + getEndGame()
+                + ", Phase: " + getPhase() + ", Score: " + score(PieceCode.WHITE);
+    }
+}
@@ -0,0 +1,118 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures evaluations per second of the handcrafted evaluation against an NNUE network, on one core.
+ * Each evaluation follows a move being made, as in a search, so the cost of the incremental
+ * updates is included.
+ *
+ * Usage: EvaluationBenchmark [network file] [seconds per evaluator]
+ * Without a network file a random network with 256 hidden neurons is used, which costs the same to run.
+ */
+public final class EvaluationBenchmark {
+
+    private EvaluationBenchmark() { /*Static construct*/ }
+
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "4k3/8/8/3q4/8/8/3Q4/4K3 w - - 0 1"
+    };
+
+    public static void main(String[] args) throws IOException {
+        NnueNetwork network = args.length > 0 ? NnueNetwork.load(args[0]) : NnueNetwork.random(1, 256);
+        long millis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : 3000;
+
+        List<HeadlessBoard> boards = new ArrayList<>();
+        List<int[]> moves = new ArrayList<>();
+        for(String fen : POSITIONS) {
+            HeadlessBoard board = new HeadlessBoard(fen);
+            boards.add(board);
+            moves.add(quietMoves(board));
+        }
+
+        Evaluator handcrafted = new Evaluator(new PawnHashTable(), null);
+        Evaluator nnue = new Evaluator(new PawnHashTable(), network);
+
+        // Warm up both before measuring so the JIT compiler has done its work
+        run(handcrafted, boards, moves, millis / 3);
+        run(nnue, boards, moves, millis / 3);
+
+        double handcraftedRate = run(handcrafted, boards, moves, millis);
+        double nnueRate = run(nnue, boards, moves, millis);
+        System.out.printf("Handcrafted: %,.0f evals/sec%n", handcraftedRate);
+        System.out.printf("NNUE (%d hidden): %,.0f evals/sec (%.2fx)%n", network.getHiddenSize(), nnueRate, nnueRate / handcraftedRate);
+    }
+
+    /**
+     * Make, evaluate and unmake moves in each position until the time is up
+     * @return evaluations per second
+     */
+    private static double run(Evaluator evaluator, List<HeadlessBoard> boards, List<int[]> moves, long millis) {
+        long count = 0;
+        long checksum = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        while(System.nanoTime() < end) {
+            for(int i = 0; i < boards.size(); i++) {
+                HeadlessBoard board = boards.get(i);
+                for(int move : moves.get(i)) {
+                    board.makeMove(move);
+                    checksum += evaluator.evaluate(board);
+                    board.unmakeMove();
+                }
+                count += moves.get(i).length;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if(checksum == Long.MIN_VALUE) {
+            System.out.println(checksum); // Keep the evaluations from being optimised away
+        }
+        return count * 1e9 / elapsed;
+    }
+
+    /**
+     * Knight, bishop, rook and queen moves to empty squares for the side to move.
+     * Legality does not matter for timing the evaluation.
+     */
+    private static int[] quietMoves(HeadlessBoard board) {
+        int color = board.getSideToMove();
+        long occupied = board.getOccupied();
+        List<Integer> moves = new ArrayList<>();
+        for(int type = PieceCode.KNIGHT; type <= PieceCode.QUEEN; type++) {
+            long pieces = board.getBitboard(PieceCode.make(color, type));
+            while(pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long targets;
+                switch(type) {
+                    case PieceCode.KNIGHT: targets = Bitboards.KNIGHT_ATTACKS[from]; break;
+                    case PieceCode.BISHOP: targets = Bitboards.bishopAttacks(from, occupied); break;
+                    case PieceCode.ROOK: targets = Bitboards.rookAttacks(from, occupied); break;
+                    default: targets = Bitboards.queenAttacks(from, occupied); break;
+                }
+                targets &= ~occupied;
+                while(targets != 0) {
+                    moves.add(PackedMove.of(from, Long.numberOfTrailingZeros(targets)));
+                    targets &= targets - 1;
+                }
+            }
+        }
+        int[] result = new int[moves.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = moves.get(i);
+        }
+        return result;
+    }
+}
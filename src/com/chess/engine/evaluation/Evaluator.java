@@ -0,0 +1,210 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Entry point for evaluating positions, with either the handcrafted evaluation and its {@link EvalParams} or an
+ * {@link NnueNetwork}. Each evaluator has its own caches, so use one evaluator per thread.
+ */
+public class Evaluator {
+
+    // Attack based terms (mobility, king safety) are skipped when the rest of the score is this far from equal
+    public static final int LAZY_MARGIN = 700;
+
+    // Target average cost of a single evaluation
+    public static final long BUDGET_NANOS = 1000;
+
+    // Only every 64th evaluation is timed, so timing itself stays cheap
+    private static final int SAMPLE_MASK = 63;
+
+    // Cache of pawn structure evaluations
+    private final PawnHashTable pawnHashTable;
+
+    // Weights of the handcrafted evaluation
+    private final EvalParams params;
+
+    // Attacks for the position currently being evaluated
+    private final AttackTable attackTable;
+
+    // Network used instead of the handcrafted evaluation, if any
+    private final NnueNetwork network;
+
+    // Statistics
+    private long evaluations = 0;
+    private long lazyEvaluations = 0;
+    private long endgameEvaluations = 0;
+    private long sampledEvaluations = 0;
+    private long sampledNanos = 0;
+
+    public Evaluator() {
+        this(new PawnHashTable());
+    }
+
+    public Evaluator(PawnHashTable pawnHashTable) {
+        this(pawnHashTable, NnueNetwork.getDefault());
+    }
+
+    /**
+     * Create an evaluator
+     * @param pawnHashTable the cache of pawn structure evaluations
+     * @param network the network to evaluate with, or null for the handcrafted evaluation
+     */
+    public Evaluator(PawnHashTable pawnHashTable, NnueNetwork network) {
+        this(pawnHashTable, network, EvalParams.getDefault());
+    }
+
+    /**
+     * Create an evaluator with its own weights
+     * @param pawnHashTable the cache of pawn structure evaluations, only used by this evaluator
+     * @param network the network to evaluate with, or null for the handcrafted evaluation
+     * @param params the weights of the handcrafted evaluation
+     */
+    public Evaluator(PawnHashTable pawnHashTable, NnueNetwork network, EvalParams params) {
+        this.pawnHashTable = pawnHashTable;
+        this.network = network;
+        this.params = params;
+        this.attackTable = new AttackTable(params);
+    }
+
+    /**
+     * Evaluate the position on the board
+     * @param board the {@code HeadlessBoard} to evaluate
+     * @return the score in centipawns from the point of view of the side to move
+     */
+    public int evaluate(HeadlessBoard board) {
+        if((this.evaluations++ & SAMPLE_MASK) != 0) {
+            return computeScore(board);
+        }
+
+        long start = System.nanoTime();
+        int score = computeScore(board);
+        this.sampledNanos += System.nanoTime() - start;
+        this.sampledEvaluations++;
+
+        // Warn when debugging if evaluation has become too expensive
+        if(GameSettings.INSTANCE.isEnableDebugging() && (this.sampledEvaluations & 0xFFF) == 0 && !isWithinBudget()) {
+            System.err.println("Evaluation over budget: " + this);
+        }
+
+        return score;
+    }
+
+    /**
+     * Compute the score for the position on the board
+     * @param board the {@code HeadlessBoard} to evaluate
+     * @return the score in centipawns from the point of view of the side to move
+     */
+    private int computeScore(HeadlessBoard board) {
+        // Knowledge of specific endings beats any general evaluation
+        int endgame = Endgames.evaluate(board);
+        if(endgame != Endgames.NONE) {
+            this.endgameEvaluations++;
+            return endgame;
+        }
+
+        if(this.network != null) {
+            return computeNetworkScore(board);
+        }
+
+        // Boards keep totals for one set of weights, so switch the board over to these weights if needed
+        Evaluation evaluation = board.getEvaluation();
+        if(evaluation.getParams() != this.params) {
+            evaluation = Evaluation.compute(board, this.params);
+            board.setEvaluation(evaluation);
+        }
+        int phase = evaluation.getPhase();
+        int middleGame = evaluation.getMiddleGame();
+        int endGame = evaluation.getEndGame();
+
+        // Pawn structure (cached) and the terms depending on both pawns and kings
+        PawnHashTable.Entry pawns = pawnHashTable.probe(board, this.params);
+        middleGame += pawns.getMiddleGame() + PawnStructure.kingShield(board, PieceCode.WHITE, this.params)
+                - PawnStructure.kingShield(board, PieceCode.BLACK, this.params);
+        endGame += pawns.getEndGame()
+                + PawnStructure.passedPawnKingDistance(board, pawns.getPassed(PieceCode.WHITE), PieceCode.WHITE, this.params)
+                - PawnStructure.passedPawnKingDistance(board, pawns.getPassed(PieceCode.BLACK), PieceCode.BLACK, this.params);
+
+        // Mobility and king safety from attack tables, unless the position is already decided
+        int score = Evaluation.taper(middleGame, endGame, phase);
+        if(Math.abs(score) < LAZY_MARGIN) {
+            attackTable.compute(board);
+            middleGame += attackTable.getMobilityMiddleGame(PieceCode.WHITE) - attackTable.getMobilityMiddleGame(PieceCode.BLACK)
+                    + attackTable.kingSafety(board, PieceCode.WHITE) - attackTable.kingSafety(board, PieceCode.BLACK);
+            endGame += attackTable.getMobilityEndGame(PieceCode.WHITE) - attackTable.getMobilityEndGame(PieceCode.BLACK);
+            score = Evaluation.taper(middleGame, endGame, phase);
+        } else {
+            this.lazyEvaluations++;
+        }
+
+        return board.getSideToMove() == PieceCode.WHITE ? score : -score;
+    }
+
+    /**
+     * Compute the score for the position on the board with the network.
+     * The first evaluation of a board attaches an accumulator to it, which the board then keeps up to date.
+     * @param board the {@code HeadlessBoard} to evaluate
+     * @return the score in centipawns from the point of view of the side to move
+     */
+    private int computeNetworkScore(HeadlessBoard board) {
+        NnueAccumulator accumulator = board.getAccumulator();
+        if(accumulator == null || accumulator.getNetwork() != this.network) {
+            accumulator = new NnueAccumulator(this.network, board);
+            board.setAccumulator(accumulator);
+        }
+        return this.network.evaluate(accumulator, board.getSideToMove());
+    }
+
+    /**
+     * The network used by this evaluator
+     * @return the {@code NnueNetwork}, or null if using the handcrafted evaluation
+     */
+    public NnueNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * The weights of the handcrafted evaluation used by this evaluator
+     * @return the {@code EvalParams}
+     */
+    public EvalParams getParams() {
+        return this.params;
+    }
+
+    /**
+     * The pawn hash table used by this evaluator
+     * @return the {@code PawnHashTable}
+     */
+    public PawnHashTable getPawnHashTable() {
+        return this.pawnHashTable;
+    }
+
+    /**
+     * Average cost of an evaluation, from the timed sample of evaluations
+     * @return the average time taken in nanoseconds
+     */
+    public long getAverageNanos() {
+        return this.sampledEvaluations == 0 ? 0 : this.sampledNanos / this.sampledEvaluations;
+    }
+
+    /**
+     * Whether evaluations are on average within {@link #BUDGET_NANOS}
+     * @return {@code true} if within budget
+     */
+    public boolean isWithinBudget() {
+        return getAverageNanos() <= BUDGET_NANOS;
+    }
+
+    // Statistics
+    public long getEvaluations() { return this.evaluations; }
+    public long getLazyEvaluations() { return this.lazyEvaluations; }
+    public long getEndgameEvaluations() { return this.endgameEvaluations; }
+
+    @Override
+    public String toString() {
+        return String.format("%s evaluations: %d (%d lazy, %d endgame), average %d ns (budget %d ns)%n%s",
+                this.network != null ? "NNUE (" + this.network.getHiddenSize() + " hidden)" : "Handcrafted",
+                getEvaluations(), getLazyEvaluations(), getEndgameEvaluations(), getAverageNanos(), BUDGET_NANOS, getPawnHashTable());
+    }
+}
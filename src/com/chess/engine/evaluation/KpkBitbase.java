@@ -0,0 +1,217 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Win or draw for every king and pawn versus king position, one bit each, set up when the class is loaded.
+ * Positions are normalised to a white pawn on files a-d, so the table covers 2 sides to move x 64 x 64 king
+ * squares x 24 pawn squares (24KB). The result is found by repeatedly classifying unknown positions from their
+ * children until nothing changes. That takes around 100ms before the JIT has warmed up, so the result is
+ * cached in a file and read back in a few milliseconds on later startups.
+ */
+final class KpkBitbase {
+
+    private KpkBitbase() { /*Static construct*/ }
+
+    private static final int SIZE = 2 * 64 * 64 * 24;
+
+    // Classification while computing, as flags so the results of children can be combined with or
+    private static final byte INVALID = 0;
+    private static final byte UNKNOWN = 1;
+    private static final byte DRAW = 2;
+    private static final byte WIN = 4;
+
+    // Cache of the computed bitbase, starting with a marker of the format
+    static final String CACHE_FILE = "files/cache/kpk.bin";
+    private static final long CACHE_MAGIC = 0x4B504B4269746231L;
+
+    private static final long[] WINS = new long[SIZE / 64];
+
+    // Time taken to load or compute the bitbase
+    private static final long LOAD_NANOS;
+
+    static {
+        long start = System.nanoTime();
+        File cache = new File(CACHE_FILE);
+        if(!load(cache)) {
+            compute();
+            save(cache);
+        }
+        LOAD_NANOS = System.nanoTime() - start;
+    }
+
+    /**
+     * Whether white wins a king and pawn versus king position
+     * @param whiteKing square of the white king
+     * @param pawn square of the white pawn, on files a-d
+     * @param blackKing square of the black king
+     * @param sideToMove the color to move
+     * @return {@code true} if white wins, {@code false} if it is a draw
+     */
+    static boolean isWin(int whiteKing, int pawn, int blackKing, int sideToMove) {
+        int index = index(sideToMove, whiteKing, blackKing, pawn);
+        return (WINS[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static long getLoadNanos() {
+        return LOAD_NANOS;
+    }
+
+    private static int index(int sideToMove, int whiteKing, int blackKing, int pawn) {
+        return whiteKing | blackKing << 6 | sideToMove << 12 | (pawn & 7) << 13 | ((pawn >>> 3) - 1) << 15;
+    }
+
+    private static void compute() {
+        byte[] results = new byte[SIZE];
+        int[] unknown = new int[SIZE];
+        int count = 0;
+        for(int index = 0; index < SIZE; index++) {
+            results[index] = classifyStatic(index);
+            if(results[index] == UNKNOWN) {
+                unknown[count++] = index;
+            }
+        }
+
+        // Each pass only revisits the positions still unknown
+        int previous = -1;
+        while(count != previous) {
+            previous = count;
+            count = 0;
+            for(int i = 0; i < previous; i++) {
+                int index = unknown[i];
+                results[index] = classify(index, results);
+                if(results[index] == UNKNOWN) {
+                    unknown[count++] = index;
+                }
+            }
+        }
+
+        for(int index = 0; index < SIZE; index++) {
+            if(results[index] == WIN) {
+                WINS[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    /**
+     * Read the bitbase from the cache file
+     * @return {@code false} if there is no valid cache
+     */
+    private static boolean load(File cache) {
+        if(cache.length() != 8L * (WINS.length + 1)) {
+            return false;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+            if(in.readLong() != CACHE_MAGIC) {
+                return false;
+            }
+            for(int i = 0; i < WINS.length; i++) {
+                WINS[i] = in.readLong();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the bitbase to the cache file, which is only an optimisation, so failures are ignored
+     */
+    private static void save(File cache) {
+        File directory = cache.getParentFile();
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cache)))) {
+            out.writeLong(CACHE_MAGIC);
+            for(long wins : WINS) {
+                out.writeLong(wins);
+            }
+        } catch (IOException e) {
+            cache.delete();
+        }
+    }
+
+    /**
+     * Classify the positions decided without looking at children: illegal positions, safe promotions,
+     * stalemates and the pawn being captured
+     */
+    private static byte classifyStatic(int index) {
+        int whiteKing = index & 63;
+        int blackKing = (index >>> 6) & 63;
+        int sideToMove = (index >>> 12) & 1;
+        int pawn = pawnSquare(index);
+
+        if(Bitboards.distance(whiteKing, blackKing) <= 1 || whiteKing == pawn || blackKing == pawn
+                || (sideToMove == PieceCode.WHITE && (Bitboards.PAWN_ATTACKS[PieceCode.WHITE][pawn] & (1L << blackKing)) != 0)) {
+            return INVALID;
+        }
+
+        if(sideToMove == PieceCode.WHITE) {
+            // Promotes without the new queen being captured
+            int promotion = pawn + 8;
+            if(pawn >= 48 && whiteKing != promotion && blackKing != promotion
+                    && (Bitboards.distance(blackKing, promotion) > 1 || Bitboards.distance(whiteKing, promotion) == 1)) {
+                return WIN;
+            }
+        } else {
+            long blackMoves = Bitboards.KING_ATTACKS[blackKing]
+                    & ~(Bitboards.KING_ATTACKS[whiteKing] | Bitboards.PAWN_ATTACKS[PieceCode.WHITE][pawn]);
+            boolean capturesPawn = Bitboards.distance(blackKing, pawn) == 1 && Bitboards.distance(whiteKing, pawn) > 1;
+            if(blackMoves == 0 || capturesPawn) {
+                return DRAW;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Classify a position from its children: white wins if any move wins, black draws if any move draws
+     */
+    private static byte classify(int index, byte[] results) {
+        int whiteKing = index & 63;
+        int blackKing = (index >>> 6) & 63;
+        int sideToMove = (index >>> 12) & 1;
+        int pawn = pawnSquare(index);
+        int combined = 0;
+
+        if(sideToMove == PieceCode.WHITE) {
+            long moves = Bitboards.KING_ATTACKS[whiteKing] & ~Bitboards.KING_ATTACKS[blackKing] & ~(1L << pawn);
+            for(; moves != 0; moves &= moves - 1) {
+                combined |= results[index(PieceCode.BLACK, Long.numberOfTrailingZeros(moves), blackKing, pawn)];
+            }
+            // Pushes to the last rank were classified statically
+            int push = pawn + 8;
+            if(pawn < 48 && push != whiteKing && push != blackKing) {
+                combined |= results[index(PieceCode.BLACK, whiteKing, blackKing, push)];
+                int doublePush = push + 8;
+                if(pawn < 16 && doublePush != whiteKing && doublePush != blackKing) {
+                    combined |= results[index(PieceCode.BLACK, whiteKing, blackKing, doublePush)];
+                }
+            }
+            return (combined & WIN) != 0 ? WIN : (combined & UNKNOWN) != 0 ? UNKNOWN : DRAW;
+        }
+
+        long moves = Bitboards.KING_ATTACKS[blackKing] & ~Bitboards.KING_ATTACKS[whiteKing];
+        for(; moves != 0; moves &= moves - 1) {
+            combined |= results[index(PieceCode.WHITE, whiteKing, Long.numberOfTrailingZeros(moves), pawn)];
+        }
+        return (combined & DRAW) != 0 ? DRAW : (combined & UNKNOWN) != 0 ? UNKNOWN : WIN;
+    }
+
+    private static int pawnSquare(int index) {
+        int file = (index >>> 13) & 3;
+        int rank = (index >>> 15) + 1;
+        return rank * 8 + file;
+    }
+}
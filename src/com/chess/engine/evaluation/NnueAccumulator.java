@@ -0,0 +1,119 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * The hidden layer of an {@link NnueNetwork} for both perspectives of one position.
+ * A move only changes a few inputs, so the board adds and subtracts their weights as pieces are
+ * added, removed and moved instead of recomputing the layer for every evaluation.
+ */
+public class NnueAccumulator {
+
+    private final NnueNetwork network;
+
+    // Hidden layer indexed by [perspective][neuron]
+    private final short[][] values;
+
+    /**
+     * Create an accumulator for the position on a board
+     * @param network the network the accumulator is for
+     * @param board the {@code HeadlessBoard} to compute the accumulator from
+     */
+    public NnueAccumulator(NnueNetwork network, HeadlessBoard board) {
+        this.network = network;
+        this.values = new short[2][network.getHiddenSize()];
+        refresh(board);
+    }
+
+    /**
+     * Copy another accumulator
+     * @param other the accumulator to copy
+     */
+    public NnueAccumulator(NnueAccumulator other) {
+        this.network = other.network;
+        this.values = new short[][] { other.values[0].clone(), other.values[1].clone() };
+    }
+
+    /**
+     * Recompute the accumulator from scratch for the position on a board
+     * @param board the {@code HeadlessBoard} to compute the accumulator from
+     */
+    public void refresh(HeadlessBoard board) {
+        this.network.reset(this.values[PieceCode.WHITE]);
+        this.network.reset(this.values[PieceCode.BLACK]);
+        long occupied = board.getOccupied();
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            addPiece(board.getPiece(square), square);
+        }
+    }
+
+    /**
+     * Add the inputs for a piece placed on a square
+     * @param piece the piece code
+     * @param square the square index
+     */
+    public void addPiece(int piece, int square) {
+        for(int perspective = PieceCode.WHITE; perspective <= PieceCode.BLACK; perspective++) {
+            this.network.update(this.values[perspective], NnueNetwork.featureIndex(perspective, piece, square), 1);
+        }
+    }
+
+    /**
+     * Remove the inputs for a piece taken off a square
+     * @param piece the piece code
+     * @param square the square index
+     */
+    public void removePiece(int piece, int square) {
+        for(int perspective = PieceCode.WHITE; perspective <= PieceCode.BLACK; perspective++) {
+            this.network.update(this.values[perspective], NnueNetwork.featureIndex(perspective, piece, square), -1);
+        }
+    }
+
+    /**
+     * Update the inputs for a piece moving between squares
+     * @param piece the piece code
+     * @param from the square index moved from
+     * @param to the square index moved to
+     */
+    public void movePiece(int piece, int from, int to) {
+        for(int perspective = PieceCode.WHITE; perspective <= PieceCode.BLACK; perspective++) {
+            this.network.move(this.values[perspective],
+                    NnueNetwork.featureIndex(perspective, piece, from), NnueNetwork.featureIndex(perspective, piece, to));
+        }
+    }
+
+    /**
+     * The hidden layer seen from one side's perspective
+     * @param perspective the color
+     * @return the accumulated values, not to be modified
+     */
+    short[] get(int perspective) {
+        return this.values[perspective];
+    }
+
+    /**
+     * The network this accumulator is for
+     * @return the {@code NnueNetwork}
+     */
+    public NnueNetwork getNetwork() {
+        return this.network;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof NnueAccumulator)) return false;
+        NnueAccumulator other = (NnueAccumulator) o;
+        return this.network == other.network && Arrays.deepEquals(this.values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(this.values);
+    }
+}
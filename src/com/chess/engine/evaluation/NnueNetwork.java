@@ -0,0 +1,232 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * A small efficiently updatable neural network (NNUE) for evaluating positions on the CPU.
+ * 768 inputs (piece type and color relative to the perspective x 64 squares) feed a hidden layer
+ * computed separately for each side's perspective (the accumulator, see {@link NnueAccumulator}).
+ * The clipped hidden layers of the side to move and its opponent feed a single output.
+ *
+ * Network files are little endian:
+ * - magic "CNUE", int version (1), int number of inputs (768), int hidden layer size
+ * - int16 feature weights [inputs x hidden], int16 feature biases [hidden]
+ * - int16 output weights [2 x hidden] (side to move first), int32 output bias
+ */
+public class NnueNetwork {
+
+    public static final int INPUTS = 768;
+    private static final int MAGIC = 0x45554E43; // "CNUE" little endian
+    private static final int VERSION = 1;
+
+    // Quantisation of the hidden layer and output weights, and scaling of the output to centipawns
+    static final int QA = 255;
+    static final int QB = 64;
+    static final int SCALE = 400;
+
+    // Network shared by all evaluators, loaded once from the path in the game settings
+    private static NnueNetwork defaultNetwork = null;
+    private static boolean defaultLoaded = false;
+
+    private final int hiddenSize;
+    private final short[] featureWeights;
+    private final short[] featureBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    private NnueNetwork(int hiddenSize, short[] featureWeights, short[] featureBiases, short[] outputWeights, int outputBias) {
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Load a network from a file
+     * @param fileName the path of the network file
+     * @return the loaded network
+     * @throws IOException if the file could not be read or is not a valid network
+     */
+    public static NnueNetwork load(String fileName) throws IOException {
+        try(InputStream in = new BufferedInputStream(new FileInputStream(fileName))) {
+            ByteBuffer header = ByteBuffer.wrap(readFully(in, 16)).order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " network file: " + fileName);
+            }
+            int inputs = header.getInt();
+            int hiddenSize = header.getInt();
+            if(inputs != INPUTS || hiddenSize <= 0 || hiddenSize > 4096) {
+                throw new IOException("Unsupported network shape " + inputs + "x" + hiddenSize + ": " + fileName);
+            }
+
+            short[] featureWeights = readShorts(in, INPUTS * hiddenSize);
+            short[] featureBiases = readShorts(in, hiddenSize);
+            short[] outputWeights = readShorts(in, 2 * hiddenSize);
+            int outputBias = ByteBuffer.wrap(readFully(in, 4)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+            // The output is summed in an int, so make sure it can not overflow
+            long maxOutputWeight = 0;
+            for(short weight : outputWeights) {
+                maxOutputWeight = Math.max(maxOutputWeight, Math.abs(weight));
+            }
+            if(maxOutputWeight * QA * 2 * hiddenSize >= Integer.MAX_VALUE) {
+                throw new IOException("Output weights too large for the quantisation: " + fileName);
+            }
+
+            return new NnueNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias);
+        }
+    }
+
+    /**
+     * Create a network with random weights, which is useless for playing but has the same cost to run
+     * @param seed seed for the random weights
+     * @param hiddenSize size of the hidden layer
+     * @return the random network
+     */
+    public static NnueNetwork random(long seed, int hiddenSize) {
+        Random random = new Random(seed);
+        short[] featureWeights = new short[INPUTS * hiddenSize];
+        short[] featureBiases = new short[hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        for(int i = 0; i < featureWeights.length; i++) featureWeights[i] = (short) (random.nextGaussian() * 16);
+        for(int i = 0; i < featureBiases.length; i++) featureBiases[i] = (short) (random.nextGaussian() * 16);
+        for(int i = 0; i < outputWeights.length; i++) outputWeights[i] = (short) (random.nextGaussian() * 32);
+        return new NnueNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, 0);
+    }
+
+    /**
+     * The network named by the "nnue:" game setting, loaded the first time it is asked for
+     * @return the network, or null if none is configured or it failed to load
+     */
+    public static synchronized NnueNetwork getDefault() {
+        if(!defaultLoaded) {
+            defaultLoaded = true;
+            String path = GameSettings.INSTANCE.getNnuePath();
+            if(path != null && !path.isEmpty()) {
+                try {
+                    defaultNetwork = load(path);
+                } catch (IOException e) {
+                    System.err.println("Could not load network, using handcrafted evaluation: " + e.getMessage());
+                }
+            }
+        }
+        return defaultNetwork;
+    }
+
+    /**
+     * Index of the input for a piece on a square, seen from one side's perspective.
+     * From black's perspective the board is flipped and colors swapped, so both sides see "their" pieces the same way.
+     * @param perspective the color whose perspective to use
+     * @param piece the piece code
+     * @param square the square index
+     * @return the input index
+     */
+    static int featureIndex(int perspective, int piece, int square) {
+        int relativeColor = PieceCode.color(piece) ^ perspective;
+        int relativeSquare = perspective == PieceCode.WHITE ? square : square ^ 56;
+        return ((relativeColor * 6 + PieceCode.type(piece) - 1) << 6) + relativeSquare;
+    }
+
+    /**
+     * Add (or subtract) the weights of an input to an accumulator.
+     * Written as a plain loop over short arrays which the JIT compiler vectorises.
+     * @param accumulator the hidden layer for one perspective
+     * @param feature the input index
+     * @param sign 1 to add the input, -1 to remove it
+     */
+    void update(short[] accumulator, int feature, int sign) {
+        int offset = feature * this.hiddenSize;
+        short[] weights = this.featureWeights;
+        if(sign > 0) {
+            for(int i = 0; i < this.hiddenSize; i++) {
+                accumulator[i] += weights[offset + i];
+            }
+        } else {
+            for(int i = 0; i < this.hiddenSize; i++) {
+                accumulator[i] -= weights[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Move an input to another input in an accumulator, in a single pass
+     * @param accumulator the hidden layer for one perspective
+     * @param fromFeature the input index to remove
+     * @param toFeature the input index to add
+     */
+    void move(short[] accumulator, int fromFeature, int toFeature) {
+        int fromOffset = fromFeature * this.hiddenSize;
+        int toOffset = toFeature * this.hiddenSize;
+        short[] weights = this.featureWeights;
+        for(int i = 0; i < this.hiddenSize; i++) {
+            accumulator[i] += weights[toOffset + i] - weights[fromOffset + i];
+        }
+    }
+
+    /**
+     * Reset an accumulator to the feature biases (an empty board)
+     * @param accumulator the hidden layer for one perspective
+     */
+    void reset(short[] accumulator) {
+        System.arraycopy(this.featureBiases, 0, accumulator, 0, this.hiddenSize);
+    }
+
+    /**
+     * Run the output layer on the accumulated hidden layers
+     * @param accumulator the accumulator for the position
+     * @param sideToMove the color to move
+     * @return the score in centipawns from the point of view of the side to move
+     */
+    public int evaluate(NnueAccumulator accumulator, int sideToMove) {
+        short[] us = accumulator.get(sideToMove);
+        short[] them = accumulator.get(sideToMove ^ 1);
+        short[] weights = this.outputWeights;
+        int hidden = this.hiddenSize;
+
+        int sum = 0;
+        for(int i = 0; i < hidden; i++) {
+            sum += Math.min(Math.max(us[i], 0), QA) * weights[i];
+        }
+        for(int i = 0; i < hidden; i++) {
+            sum += Math.min(Math.max(them[i], 0), QA) * weights[hidden + i];
+        }
+
+        return (int) (((long) sum + this.outputBias) * SCALE / (QA * QB));
+    }
+
+    /**
+     * Size of the hidden layer for each perspective
+     * @return the number of hidden neurons
+     */
+    public int getHiddenSize() {
+        return this.hiddenSize;
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while(read < length) {
+            int count = in.read(bytes, read, length - read);
+            if(count < 0) throw new EOFException("Network file is truncated");
+            read += count;
+        }
+        return bytes;
+    }
+
+    private static short[] readShorts(InputStream in, int count) throws IOException {
+        short[] values = new short[count];
+        ByteBuffer.wrap(readFully(in, count * 2)).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(values);
+        return values;
+    }
+}
@@ -0,0 +1,113 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Fixed size cache of pawn structure scores and passed pawn masks, indexed by the board's pawn key.
+ * Pawn structure rarely changes from one position to the next so most lookups are hits.
+ * Not thread safe, each evaluator has its own table, holding scores for that evaluator's weights.
+ */
+public class PawnHashTable {
+
+    // Default number of entries (must be a power of 2)
+    public static final int DEFAULT_SIZE = 1 << 14;
+
+    /**
+     * A cached pawn structure evaluation
+     */
+    static final class Entry {
+        private long key;
+        private boolean filled;
+        private int middleGame;
+        private int endGame;
+        private final long[] passed = new long[2];
+
+        void set(int middleGame, int endGame, long whitePassed, long blackPassed) {
+            this.middleGame = middleGame;
+            this.endGame = endGame;
+            this.passed[PieceCode.WHITE] = whitePassed;
+            this.passed[PieceCode.BLACK] = blackPassed;
+        }
+
+        // Getters
+        int getMiddleGame() { return this.middleGame; }
+        int getEndGame() { return this.endGame; }
+        long getPassed(int color) { return this.passed[color]; }
+    }
+
+    private final Entry[] entries;
+    private final int mask;
+
+    // Statistics
+    private long probes = 0;
+    private long hits = 0;
+
+    /**
+     * Create a pawn hash table with the default size
+     */
+    public PawnHashTable() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a pawn hash table
+     * @param size number of entries, must be a power of 2
+     */
+    public PawnHashTable(int size) {
+        if(Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Pawn hash table size must be a power of 2: " + size);
+        }
+        this.entries = new Entry[size];
+        for(int i = 0; i < size; i++) {
+            this.entries[i] = new Entry();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get the pawn structure evaluation for the board, computing and storing it if not cached
+     * @param board the {@code HeadlessBoard} to look up
+     * @param params the weights to evaluate with when not cached
+     * @return the entry for the board's pawns
+     */
+    Entry probe(HeadlessBoard board, EvalParams params) {
+        long key = board.getPawnKey();
+        Entry entry = this.entries[(int) key & this.mask];
+        this.probes++;
+
+        if(entry.filled && entry.key == key) {
+            this.hits++;
+            return entry;
+        }
+
+        // Replace whatever was in this slot
+        PawnStructure.evaluate(board.getBitboard(PieceCode.make(PieceCode.WHITE, PieceCode.PAWN)),
+                board.getBitboard(PieceCode.make(PieceCode.BLACK, PieceCode.PAWN)), params, entry);
+        entry.key = key;
+        entry.filled = true;
+        return entry;
+    }
+
+    /**
+     * Remove all entries and reset statistics
+     */
+    public void clear() {
+        for(Entry entry : this.entries) {
+            entry.filled = false;
+        }
+        this.probes = 0;
+        this.hits = 0;
+    }
+
+    // Statistics
+    public long getProbes() { return this.probes; }
+    public long getHits() { return this.hits; }
+    public double getHitRate() { return this.probes == 0 ? 0 : (double) this.hits / this.probes; }
+
+    @Override
+    public String toString() {
+        return String.format("Pawn hash: %d entries, %d probes, %d hits (%.1f%%)",
+                this.entries.length, getProbes(), getHits(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,131 @@
+package com.chess.engine.evaluation;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Pawn structure terms: doubled, isolated, backward and passed pawns, which depend only on pawns
+ * and are cached by {@link PawnHashTable}, plus the king's pawn shield and passed pawn king distance,
+ * which also depend on the kings and are computed from the cached masks on every evaluation.
+ */
+final class PawnStructure {
+
+    private PawnStructure() { /*Static construct*/ }
+
+    // Penalties for weak pawns (middle game, end game)
+    static final int[] DOUBLED = { -11, -22 };
+    static final int[] ISOLATED = { -6, -13 };
+    static final int[] BACKWARD = { -9, -11 };
+
+    // Passed pawn bonus indexed by rank relative to the pawn's owner
+    static final int[] PASSED_MG = { 0, 2, 8, 12, 28, 55, 90, 0 };
+    static final int[] PASSED_EG = { 0, 10, 15, 25, 45, 85, 140, 0 };
+
+    // Bonus for each pawn directly in front of the king, and two ranks in front
+    static final int[] SHIELD = { 12, 6 };
+
+    // End game bonus per square of distance between a passed pawn's stop square and the enemy king, and own king
+    static final int[] KING_DISTANCE = { 5, 2 };
+
+    /**
+     * Evaluate the structure of both players' pawns into a pawn hash table entry
+     * @param whitePawns bitboard of white pawns
+     * @param blackPawns bitboard of black pawns
+     * @param params the weights to evaluate with
+     * @param entry the entry to fill in
+     */
+    static void evaluate(long whitePawns, long blackPawns, EvalParams params, PawnHashTable.Entry entry) {
+        int middleGame = 0;
+        int endGame = 0;
+        long[] pawns = { whitePawns, blackPawns };
+        long[] passed = new long[2];
+
+        for(int color = PieceCode.WHITE; color <= PieceCode.BLACK; color++) {
+            int sign = color == PieceCode.WHITE ? 1 : -1;
+            long own = pawns[color];
+            long enemy = pawns[color ^ 1];
+            long enemyAttacks = Bitboards.pawnAttacks(enemy, color ^ 1);
+
+            long remaining = own;
+            while(remaining != 0) {
+                int square = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                int file = square & 7;
+                int relativeRank = color == PieceCode.WHITE ? square >>> 3 : 7 - (square >>> 3);
+
+                // Doubled if another friendly pawn is in front on the same file
+                if((Bitboards.FORWARD_FILE_MASKS[color][square] & own) != 0) {
+                    middleGame += sign * params.doubled[0];
+                    endGame += sign * params.doubled[1];
+                }
+
+                // Isolated if no friendly pawns on adjacent files
+                boolean isolated = (Bitboards.ADJACENT_FILES[file] & own) == 0;
+                if(isolated) {
+                    middleGame += sign * params.isolated[0];
+                    endGame += sign * params.isolated[1];
+                }
+                // Backward if no friendly pawns beside or behind it can support it and its stop square is attacked
+                else {
+                    long support = Bitboards.ADJACENT_FILES[file] & ~Bitboards.PASSED_PAWN_MASKS[color][square];
+                    long stop = Bitboards.forward(1L << square, color);
+                    if((support & own) == 0 && (stop & enemyAttacks) != 0) {
+                        middleGame += sign * params.backward[0];
+                        endGame += sign * params.backward[1];
+                    }
+                }
+
+                // Passed if no enemy pawns in front on the same or adjacent files, and not behind a friendly pawn
+                if((Bitboards.PASSED_PAWN_MASKS[color][square] & enemy) == 0
+                        && (Bitboards.FORWARD_FILE_MASKS[color][square] & own) == 0) {
+                    passed[color] |= 1L << square;
+                    middleGame += sign * params.passedMg[relativeRank];
+                    endGame += sign * params.passedEg[relativeRank];
+                }
+            }
+        }
+
+        entry.set(middleGame, endGame, passed[PieceCode.WHITE], passed[PieceCode.BLACK]);
+    }
+
+    /**
+     * Middle game bonus for the pawns sheltering a player's king
+     * @param board the board to evaluate
+     * @param color the color of the king
+     * @param params the weights to evaluate with
+     * @return the shield bonus from that player's point of view
+     */
+    static int kingShield(HeadlessBoard board, int color, EvalParams params) {
+        int kingSquare = board.getKingSquare(color);
+        long pawns = board.getBitboard(PieceCode.make(color, PieceCode.PAWN));
+        int file = kingSquare & 7;
+        long files = Bitboards.FILES[file] | Bitboards.ADJACENT_FILES[file];
+        long near = Bitboards.forward(Bitboards.RANKS[kingSquare >>> 3], color) & files;
+        long far = Bitboards.forward(near, color);
+        return Long.bitCount(pawns & near) * params.shield[0] + Long.bitCount(pawns & far) * params.shield[1];
+    }
+
+    /**
+     * End game bonus for passed pawns whose stop square is far from the enemy king and close to their own
+     * @param board the board to evaluate
+     * @param passed bitboard of passed pawns of a given color
+     * @param color the color of the passed pawns
+     * @param params the weights to evaluate with
+     * @return the bonus from that player's point of view
+     */
+    static int passedPawnKingDistance(HeadlessBoard board, long passed, int color, EvalParams params) {
+        int bonus = 0;
+        int ownKing = board.getKingSquare(color);
+        int enemyKing = board.getKingSquare(color ^ 1);
+        while(passed != 0) {
+            int square = Long.numberOfTrailingZeros(passed);
+            passed &= passed - 1;
+            int stop = color == PieceCode.WHITE ? square + 8 : square - 8;
+            int relativeRank = color == PieceCode.WHITE ? square >>> 3 : 7 - (square >>> 3);
+            bonus += relativeRank * (Bitboards.distance(enemyKing, stop) * params.kingDistance[0]
+                    - Bitboards.distance(ownKing, stop) * params.kingDistance[1]);
+        }
+        return bonus;
+    }
+}
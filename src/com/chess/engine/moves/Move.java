@@ -1,5 +1,6 @@
 package com.chess.engine.moves;
 
+import com.chess.engine.GameSettings;
 import com.chess.engine.Player;
 import com.chess.engine.Position;
 import com.chess.engine.board.Board;
@@ -8,6 +9,7 @@ import com.chess.engine.board.Tile;
 import com.chess.engine.pieces.King;
 import com.chess.engine.pieces.Pawn;
 import com.chess.engine.pieces.Piece;
+import com.chess.engine.pieces.PieceCode;
 import com.chess.engine.pieces.Queen;
 
 import java.util.Map;
@@ -60,6 +62,14 @@ public class Move {
         return this.toTile;
     }
 
+    /**
+     * Choose the piece a pawn promotes to before the move is executed, instead of asking the player
+     * @param piece the {@code Piece} to promote to
+     */
+    void setPromotionSelection(Piece piece) {
+        this.promotionSelection = piece;
+    }
+
     /**
      * Determine whether the given move is enpassant move
      * @return {@code true} if moved piece was a pawn and moved 2 squares, {@code false} if not
@@ -195,7 +205,10 @@ public class Move {
         // Add piece to dragged to tile and remove from originating tile
         if(isPromotion()) {
             // TODO -> If on test board and the move is a promotion, need better way to generate multiple boards
-            this.promotionSelection = isTestBoard ? new Queen(currentPlayer) : new PromotionSelection().displaySelections(board, currentPlayer);
+            // Ask the player unless the piece was chosen beforehand, e.g. by the engine
+            if(this.promotionSelection == null) {
+                this.promotionSelection = isTestBoard ? new Queen(currentPlayer) : new PromotionSelection().displaySelections(board, currentPlayer);
+            }
             getDestination().setPiece(promotionSelection);
             currentPlayer.getPieces().remove(movedPiece);
             currentPlayer.getPieces().add(promotionSelection);
@@ -206,6 +219,13 @@ public class Move {
         // Remove piece from originating tile
         getOrigin().setPiece(null);
 
+        // Perform the same move on the headless board, which keeps the evaluation up to date
+        int promotion = promotionSelection != null ? PieceCode.type(promotionSelection.getCode()) : PieceCode.EMPTY;
+        board.getHeadlessBoard().makeMove(PackedMove.of(moveFromPosition.getIndex(), targetPosition.getIndex(), promotion));
+        if(GameSettings.INSTANCE.isEnableDebugging()) {
+            board.verifyEvaluation();
+        }
+
         // Add our move to the move history
         board.getMoveHistory().update(this);
 
@@ -0,0 +1,316 @@
+package com.chess.engine.moves;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Generates {@link PackedMove}s for a {@link HeadlessBoard} from its bitboards.
+ * Moves are written into a caller supplied array, so generating moves does not allocate. All moves can be generated
+ * at once, or in stages (captures and promotions, quiet moves, castling) for callers that may not need them all;
+ * {@link MoveIterator} pulls moves through the stages one at a time. In check, only the moves that can answer the
+ * check are generated.
+ */
+public final class MoveGenerator {
+
+    private MoveGenerator() { /*Static construct*/ }
+
+    // Upper bound on the number of moves in any position
+    public static final int MAX_MOVES = 256;
+
+    // Squares a pawn promotes on
+    private static final long LAST_RANKS = Bitboards.RANKS[0] | Bitboards.RANKS[7];
+
+    /**
+     * Generate all pseudo-legal moves for the side to move: moves that may leave the king in check.
+     * Castling is only generated when fully legal.
+     * @param board the board to generate moves for
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @return the number of moves written
+     */
+    public static int generateMoves(HeadlessBoard board, int[] moves) {
+        int count = generateCaptures(board, moves, 0);
+        count = generateQuiets(board, moves, count);
+        return generateCastling(board, moves, count);
+    }
+
+    /**
+     * Generate the pseudo-legal captures (including en passant) and promotions for the side to move
+     * @param board the board to generate moves for
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @param count the number of moves already in the array, written after
+     * @return the number of moves in the array
+     */
+    public static int generateCaptures(HeadlessBoard board, int[] moves, int count) {
+        int color = board.getSideToMove();
+        long own = board.getOccupancy(color);
+        long enemy = board.getOccupancy(color ^ 1);
+        long occupied = own | enemy;
+
+        // Pawn pushes to the last rank
+        long pawns = board.getBitboard(PieceCode.make(color, PieceCode.PAWN));
+        int forward = color == PieceCode.WHITE ? 8 : -8;
+        long promotions = Bitboards.forward(pawns, color) & ~occupied & LAST_RANKS;
+        while(promotions != 0) {
+            int to = Long.numberOfTrailingZeros(promotions);
+            promotions &= promotions - 1;
+            count = addPawnMove(moves, count, to - forward, to);
+        }
+
+        // Pawn captures, including en passant
+        long targets = enemy | (board.getEpSquare() >= 0 ? 1L << board.getEpSquare() : 0);
+        while(pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long attacks = Bitboards.PAWN_ATTACKS[color][from] & targets;
+            while(attacks != 0) {
+                count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(attacks));
+                attacks &= attacks - 1;
+            }
+        }
+
+        // Pieces
+        return addPieceMoves(board, moves, count, color, occupied, enemy);
+    }
+
+    /**
+     * Generate the pseudo-legal moves for the side to move that neither capture nor promote, other than castling
+     * @param board the board to generate moves for
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @param count the number of moves already in the array, written after
+     * @return the number of moves in the array
+     */
+    public static int generateQuiets(HeadlessBoard board, int[] moves, int count) {
+        int color = board.getSideToMove();
+        long occupied = board.getOccupied();
+
+        // Pawn pushes, one or two squares
+        long pawns = board.getBitboard(PieceCode.make(color, PieceCode.PAWN));
+        int forward = color == PieceCode.WHITE ? 8 : -8;
+        long single = Bitboards.forward(pawns, color) & ~occupied;
+        long twice = Bitboards.forward(single & Bitboards.RANKS[color == PieceCode.WHITE ? 2 : 5], color) & ~occupied;
+        single &= ~LAST_RANKS;
+        while(single != 0) {
+            int to = Long.numberOfTrailingZeros(single);
+            single &= single - 1;
+            moves[count++] = PackedMove.of(to - forward, to);
+        }
+        while(twice != 0) {
+            int to = Long.numberOfTrailingZeros(twice);
+            twice &= twice - 1;
+            moves[count++] = PackedMove.of(to - 2 * forward, to);
+        }
+
+        // Pieces
+        return addPieceMoves(board, moves, count, color, occupied, ~occupied);
+    }
+
+    /**
+     * Add the moves of the knights, bishops, rooks, queens and king of a color to a set of target squares
+     */
+    private static int addPieceMoves(HeadlessBoard board, int[] moves, int count, int color, long occupied, long targets) {
+        for(int type = PieceCode.KNIGHT; type <= PieceCode.KING; type++) {
+            long pieces = board.getBitboard(PieceCode.make(color, type));
+            while(pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long attacks = attacks(type, from, occupied) & targets;
+                while(attacks != 0) {
+                    moves[count++] = PackedMove.of(from, Long.numberOfTrailingZeros(attacks));
+                    attacks &= attacks - 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generate all legal moves for the side to move
+     * @param board the board to generate moves for
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @return the number of moves written
+     */
+    public static int generateLegalMoves(HeadlessBoard board, int[] moves) {
+        boolean inCheck = board.isInCheck();
+        int count = inCheck ? generateEvasions(board, moves) : generateMoves(board, moves);
+
+        // King moves out of check are already known to be legal
+        int king = board.getKingSquare(board.getSideToMove());
+        int legal = 0;
+        for(int i = 0; i < count; i++) {
+            if((inCheck && PackedMove.from(moves[i]) == king) || isLegal(board, moves[i])) {
+                moves[legal++] = moves[i];
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Generate the moves out of check for the side to move: king moves to squares the opponent does not attack and,
+     * unless in double check, captures of the checking piece and moves onto the squares between it and the king.
+     * The king moves are legal; the others may still be illegal by moving a pinned piece.
+     * @param board the board to generate moves for, with the side to move in check
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @return the number of moves written
+     */
+    public static int generateEvasions(HeadlessBoard board, int[] moves) {
+        int color = board.getSideToMove();
+        int king = board.getKingSquare(color);
+        long own = board.getOccupancy(color);
+        long occupied = board.getOccupied();
+        int count = 0;
+
+        // King moves, tested without the king so that it can not step back along the ray of a checking slider
+        long kingMoves = Bitboards.KING_ATTACKS[king] & ~own;
+        long withoutKing = occupied & ~(1L << king);
+        while(kingMoves != 0) {
+            int to = Long.numberOfTrailingZeros(kingMoves);
+            kingMoves &= kingMoves - 1;
+            if(board.attackersOf(to, color ^ 1, withoutKing) == 0) {
+                moves[count++] = PackedMove.of(king, to);
+            }
+        }
+
+        // Only the king can move out of a double check
+        long checkers = board.attackersOf(king, color ^ 1, occupied);
+        if((checkers & (checkers - 1)) != 0) {
+            return count;
+        }
+        int checker = Long.numberOfTrailingZeros(checkers);
+        long blocks = Bitboards.BETWEEN[king][checker];
+
+        // Pawn pushes onto the checking ray, including promotions
+        long pawns = board.getBitboard(PieceCode.make(color, PieceCode.PAWN));
+        int forward = color == PieceCode.WHITE ? 8 : -8;
+        long single = Bitboards.forward(pawns, color) & ~occupied;
+        long twice = Bitboards.forward(single & Bitboards.RANKS[color == PieceCode.WHITE ? 2 : 5], color) & ~occupied & blocks;
+        single &= blocks;
+        while(single != 0) {
+            int to = Long.numberOfTrailingZeros(single);
+            single &= single - 1;
+            count = addPawnMove(moves, count, to - forward, to);
+        }
+        while(twice != 0) {
+            int to = Long.numberOfTrailingZeros(twice);
+            twice &= twice - 1;
+            moves[count++] = PackedMove.of(to - 2 * forward, to);
+        }
+
+        // Pawn captures of the checker, including en passant when the checker is the pawn that just moved two squares
+        long captures = checkers;
+        int epSquare = board.getEpSquare();
+        if(epSquare >= 0 && epSquare - forward == checker) {
+            captures |= 1L << epSquare;
+        }
+        while(pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long attacks = Bitboards.PAWN_ATTACKS[color][from] & captures;
+            while(attacks != 0) {
+                count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(attacks));
+                attacks &= attacks - 1;
+            }
+        }
+
+        // Other pieces capturing the checker or blocking
+        long targets = checkers | blocks;
+        for(int type = PieceCode.KNIGHT; type <= PieceCode.QUEEN; type++) {
+            long pieces = board.getBitboard(PieceCode.make(color, type));
+            while(pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long attacks = attacks(type, from, occupied) & targets;
+                while(attacks != 0) {
+                    moves[count++] = PackedMove.of(from, Long.numberOfTrailingZeros(attacks));
+                    attacks &= attacks - 1;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether the side to move has any legal move, stopping at the first one found
+     * @param board the board to check (left unchanged)
+     * @return {@code false} if the side to move is mated or stalemated
+     */
+    public static boolean hasLegalMove(HeadlessBoard board) {
+        return new MoveIterator().reset(board, true, false).next() != PackedMove.NONE;
+    }
+
+    /**
+     * Whether a pseudo-legal move leaves the mover's king safe
+     * @param board the board the move is for
+     * @param move the pseudo-legal {@link PackedMove}
+     * @return {@code true} if the move is legal
+     */
+    public static boolean isLegal(HeadlessBoard board, int move) {
+        int color = board.getSideToMove();
+        board.makeMove(move);
+        boolean legal = !board.isSquareAttacked(board.getKingSquare(color), color ^ 1);
+        board.unmakeMove();
+        return legal;
+    }
+
+    /**
+     * Squares attacked by a knight, bishop, rook, queen or king
+     * @param type the type of piece
+     * @param square the square of the piece
+     * @param occupied bitboard of occupied squares
+     * @return the bitboard of attacked squares
+     */
+    static long attacks(int type, int square, long occupied) {
+        switch(type) {
+            case PieceCode.KNIGHT: return Bitboards.KNIGHT_ATTACKS[square];
+            case PieceCode.BISHOP: return Bitboards.bishopAttacks(square, occupied);
+            case PieceCode.ROOK: return Bitboards.rookAttacks(square, occupied);
+            case PieceCode.QUEEN: return Bitboards.queenAttacks(square, occupied);
+            default: return Bitboards.KING_ATTACKS[square];
+        }
+    }
+
+    /**
+     * Add a pawn move, expanding it into the four promotions when it reaches the last rank
+     */
+    private static int addPawnMove(int[] moves, int count, int from, int to) {
+        if(to >= 56 || to < 8) {
+            for(int promotion = PieceCode.QUEEN; promotion >= PieceCode.KNIGHT; promotion--) {
+                moves[count++] = PackedMove.of(from, to, promotion);
+            }
+        } else {
+            moves[count++] = PackedMove.of(from, to);
+        }
+        return count;
+    }
+
+    /**
+     * Generate castling moves where the rights remain, the squares between king and rook are empty,
+     * and the king is not in check and does not pass through or land on an attacked square
+     * @param board the board to generate moves for
+     * @param moves array of at least {@link #MAX_MOVES} entries to write moves to
+     * @param count the number of moves already in the array, written after
+     * @return the number of moves in the array
+     */
+    public static int generateCastling(HeadlessBoard board, int[] moves, int count) {
+        int color = board.getSideToMove();
+        int rights = board.getCastling() >> (color == PieceCode.WHITE ? 0 : 2);
+        if((rights & 3) == 0) {
+            return count;
+        }
+
+        int king = color == PieceCode.WHITE ? 4 : 60;
+        long occupied = board.getOccupied();
+        if(board.isSquareAttacked(king, color ^ 1)) {
+            return count;
+        }
+        if((rights & HeadlessBoard.WHITE_KING_SIDE) != 0 && (occupied & (3L << (king + 1))) == 0
+                && !board.isSquareAttacked(king + 1, color ^ 1) && !board.isSquareAttacked(king + 2, color ^ 1)) {
+            moves[count++] = PackedMove.of(king, king + 2);
+        }
+        if((rights & HeadlessBoard.WHITE_QUEEN_SIDE) != 0 && (occupied & (7L << (king - 3))) == 0
+                && !board.isSquareAttacked(king - 1, color ^ 1) && !board.isSquareAttacked(king - 2, color ^ 1)) {
+            moves[count++] = PackedMove.of(king, king - 2);
+        }
+        return count;
+    }
+}
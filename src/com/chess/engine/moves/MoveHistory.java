@@ -1,12 +1,12 @@
 package com.chess.engine.moves;
 
 import com.chess.ChessConsts;
-import com.chess.engine.Player;
 import com.chess.engine.PlayerColor;
 import com.chess.engine.Position;
 import com.chess.engine.board.Board;
 import com.chess.engine.board.BoardUtils;
 import com.chess.engine.board.GameState;
+import com.chess.engine.board.GameStatus;
 import com.chess.engine.board.Tile;
 import com.chess.engine.pieces.King;
 import com.chess.engine.pieces.Pawn;
@@ -30,6 +30,7 @@ import java.awt.Dimension;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -47,37 +48,62 @@ public class MoveHistory extends JPanel {
 
     private final List<Move> undoRedoMoves;
 
-    // Move history table / scrolling
-    private final JTable moveHistory = new JTable(new DefaultTableModel()) {
-        @Override
-        public boolean isCellEditable(int row, int column) { return false; }
+    // Notation of each move, written when the move is made as the check or mate it gives depends on the position
+    private final List<String> notation;
 
-        @Override
-        public boolean getRowSelectionAllowed() { return false; }
-    };
-    private final JScrollPane scrollPane = new JScrollPane(moveHistory);
+    // Move history table / scrolling, null for a board without UI
+    private final JTable moveHistory;
+    private final JScrollPane scrollPane;
 
-    // Captured pieces
-    private final JPanel blackPieces = new JPanel();
-    private final JPanel whitePieces = new JPanel();
+    // Captured pieces, null for a board without UI
+    private final JPanel blackPieces;
+    private final JPanel whitePieces;
 
     /**
      * Creates a new instance for a given board
      * @param board the {@code Board} this move history represents
      */
     public MoveHistory(Board board) {
+        this(board, true);
+    }
+
+    /**
+     * Creates a new instance for a given board, only keeping the moves if the board is never displayed
+     * @param board the {@code Board} this move history represents
+     * @param withUI true if the move table and captured pieces should be created, false if not
+     */
+    public MoveHistory(Board board, boolean withUI) {
         super();
 
         // Backend information
         this.board = board;
         this.allMoves = new ArrayList<>();
         this.undoRedoMoves = new ArrayList<>();
-
-        // UI components for Move History
-        this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
-        this.setPreferredSize(new Dimension(ChessConsts.HISTORY_WIDTH, ChessConsts.HISTORY_HEIGHT));
-        addMoveHistoryPanel();
-        addCapturedPiecesPanel();
+        this.notation = new ArrayList<>();
+
+        if(withUI) {
+            this.moveHistory = new JTable(new DefaultTableModel()) {
+                @Override
+                public boolean isCellEditable(int row, int column) { return false; }
+
+                @Override
+                public boolean getRowSelectionAllowed() { return false; }
+            };
+            this.scrollPane = new JScrollPane(moveHistory);
+            this.blackPieces = new JPanel();
+            this.whitePieces = new JPanel();
+
+            // UI components for Move History
+            this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+            this.setPreferredSize(new Dimension(ChessConsts.HISTORY_WIDTH, ChessConsts.HISTORY_HEIGHT));
+            addMoveHistoryPanel();
+            addCapturedPiecesPanel();
+        } else {
+            this.moveHistory = null;
+            this.scrollPane = null;
+            this.blackPieces = null;
+            this.whitePieces = null;
+        }
     }
 
     /**
@@ -94,6 +120,12 @@ public class MoveHistory extends JPanel {
      */
     public Stream<Move> getMoves(Predicate<Move> filter) { return this.allMoves.stream().filter(filter); }
 
+    /**
+     * Get the notation of every move performed, in order
+     * @return the notation of each move, e.g. "Nf3" or "Qxf7#"
+     */
+    public List<String> getNotation() { return Collections.unmodifiableList(this.notation); }
+
     /**
      * Add undo / redo to history panel
      * Add move history table to panel
@@ -202,7 +234,6 @@ public class MoveHistory extends JPanel {
      */
     void update(Move latestMove) {
         GameState currentState = board.getGameState();
-        DefaultTableModel model = (DefaultTableModel) this.moveHistory.getModel();
 
         // Check that we have a move
         if(latestMove == null) {
@@ -213,17 +244,26 @@ public class MoveHistory extends JPanel {
         this.lastMove = latestMove;
         this.allMoves.add(latestMove);
         this.undoRedoMoves.clear();
+        String entry = getNotationEntry(latestMove);
+        this.notation.add(entry);
+        board.publishMove(entry);
+
+        // Nothing to display without UI
+        if(this.moveHistory == null) {
+            return;
+        }
 
         // History is updated after the move is performed so if current player is white, then it was black who just moved
+        DefaultTableModel model = (DefaultTableModel) this.moveHistory.getModel();
         if(currentState.getPlayerTurn().getColor().equals(PlayerColor.WHITE)) {
             int rowCount = model.getRowCount();
             if(rowCount == 0) {
-                model.addRow(new Object[] {currentState.getFullMoves() + ".", "", getNotationEntry(latestMove)});
+                model.addRow(new Object[] {currentState.getFullMoves() + ".", "", entry});
             } else {
-                model.setValueAt(getNotationEntry(latestMove), rowCount - 1, 2);
+                model.setValueAt(entry, rowCount - 1, 2);
             }
         } else {
-            model.addRow(new Object[] {currentState.getFullMoves() + ".", getNotationEntry(latestMove), ""});
+            model.addRow(new Object[] {currentState.getFullMoves() + ".", entry, ""});
         }
 
         // Scroll to bottom of move history
@@ -249,7 +289,11 @@ public class MoveHistory extends JPanel {
         // Clean up moves
         this.allMoves.clear();
         this.undoRedoMoves.clear();
+        this.notation.clear();
         this.lastMove = null;
+        if(this.moveHistory == null) {
+            return;
+        }
 
         // Remove all rows from move history
         DefaultTableModel model = (DefaultTableModel) this.moveHistory.getModel();
@@ -349,14 +393,9 @@ public class MoveHistory extends JPanel {
             builder.append(movedTo);
         }
 
-        Player movingPlayer = movedPiece.getOwner();
-        if(MoveUtils.isKingInCheck(board, movingPlayer, movingPlayer.opposite(board)) != null) {
-            // User still has valid moves
-            if(movingPlayer.opposite(board).hasValidMove(board)) {
-                builder.append("+");
-            } else {
-                builder.append("#");
-            }
+        // Check or mate, from the status of the position after the move
+        if(board.getHeadlessBoard().isInCheck()) {
+            builder.append(board.getStatus() == GameStatus.CHECKMATE ? "#" : "+");
         }
 
 
@@ -0,0 +1,82 @@
+package com.chess.engine.moves;
+
+import com.chess.engine.board.HeadlessBoard;
+
+/**
+ * Pulls the moves of a position one at a time, generating them in stages as they are needed: captures and
+ * promotions first, then quiet moves, then castling. A caller that stops early, e.g. at the first legal move or the
+ * first capture, only pays for the stages it reached. In check, all the moves out of check are generated in a single
+ * stage instead. Only legal moves are returned if asked for, each checked as it
+ * is pulled. An iterator can be reset for another position, so iterating does not allocate.
+ * The board must not change while iterating, other than moves made and unmade again.
+ */
+public final class MoveIterator {
+
+    // Stages of generation, in order
+    private enum Stage { EVASIONS, CAPTURES, QUIETS, CASTLING, DONE }
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private HeadlessBoard board;
+    private boolean legalOnly;
+    private boolean capturesOnly;
+
+    // Next stage to generate, and the moves of the current one still to be returned
+    private Stage stage = Stage.DONE;
+    private int index = 0;
+    private int count = 0;
+
+    /**
+     * Start iterating over the moves of a position
+     * @param board the board to generate moves for
+     * @param legalOnly {@code true} to skip moves that leave the king in check
+     * @param capturesOnly {@code true} to stop after the captures and promotions
+     * @return this iterator
+     */
+    public MoveIterator reset(HeadlessBoard board, boolean legalOnly, boolean capturesOnly) {
+        this.board = board;
+        this.legalOnly = legalOnly;
+        this.capturesOnly = capturesOnly;
+        this.stage = !capturesOnly && board.isInCheck() ? Stage.EVASIONS : Stage.CAPTURES;
+        this.index = 0;
+        this.count = 0;
+        return this;
+    }
+
+    /**
+     * Get the next move, generating the next stage if the current one is used up
+     * @return the move, or {@link PackedMove#NONE} once there are no more
+     */
+    public int next() {
+        while(true) {
+            while(this.index < this.count) {
+                int move = this.moves[this.index++];
+                if(!this.legalOnly || MoveGenerator.isLegal(this.board, move)) {
+                    return move;
+                }
+            }
+
+            this.index = 0;
+            switch(this.stage) {
+                case EVASIONS:
+                    this.count = MoveGenerator.generateEvasions(this.board, this.moves);
+                    this.stage = Stage.DONE;
+                    break;
+                case CAPTURES:
+                    this.count = MoveGenerator.generateCaptures(this.board, this.moves, 0);
+                    this.stage = this.capturesOnly ? Stage.DONE : Stage.QUIETS;
+                    break;
+                case QUIETS:
+                    this.count = MoveGenerator.generateQuiets(this.board, this.moves, 0);
+                    this.stage = Stage.CASTLING;
+                    break;
+                case CASTLING:
+                    this.count = MoveGenerator.generateCastling(this.board, this.moves, 0);
+                    this.stage = Stage.DONE;
+                    break;
+                default:
+                    this.count = 0;
+                    return PackedMove.NONE;
+            }
+        }
+    }
+}
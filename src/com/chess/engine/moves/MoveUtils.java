@@ -3,13 +3,13 @@ package com.chess.engine.moves;
 import com.chess.engine.Player;
 import com.chess.engine.Position;
 import com.chess.engine.board.Board;
+import com.chess.engine.board.BoardSnapshot;
 import com.chess.engine.board.BoardUtils;
 import com.chess.engine.board.GameState;
 import com.chess.engine.board.Tile;
-import com.chess.engine.pieces.King;
 import com.chess.engine.pieces.Pawn;
 import com.chess.engine.pieces.Piece;
-import com.chess.engine.pieces.Rook;
+import com.chess.engine.pieces.PieceCode;
 
 import java.util.Collection;
 import java.util.function.Predicate;
@@ -24,7 +24,19 @@ public class MoveUtils {
      * @return {@code true} if move can be performed, {@code false} if move cannot be performed
      */
     public static boolean executeTestMove(Board board, Tile originatingTile, Tile targetTile) {
-        Board testBoard = new Board(board);
+        return executeTestMove(BoardSnapshot.of(board), originatingTile, targetTile);
+    }
+
+    /**
+     * Performs a test move on a new board made from a snapshot, to determine whether it is valid to actually do that move.
+     * A snapshot can be shared, so several test moves of one position can be made at once.
+     * @param snapshot the {@code BoardSnapshot} of the position to test a move against
+     * @param originatingTile the {@code Tile} to move from
+     * @param targetTile the {@code Tile} to move to
+     * @return {@code true} if move can be performed, {@code false} if move cannot be performed
+     */
+    public static boolean executeTestMove(BoardSnapshot snapshot, Tile originatingTile, Tile targetTile) {
+        Board testBoard = snapshot.toBoard();
         Tile originTile = testBoard.getTileMap().get(originatingTile.getPosition());
         Piece draggedPiece = originTile.getPiece();
         Player currentPlayer = draggedPiece.getOwner();
@@ -64,6 +76,39 @@ public class MoveUtils {
         return true;
     }
 
+    /**
+     * Execute a move given in packed form, such as one chosen by the engine, through the same path as a move made
+     * with the mouse
+     * @param board the {@code Board} to execute the move on
+     * @param packedMove the {@link PackedMove} to execute, including the piece promoted to if any
+     * @param testMove {@code true} when replaying moves already known to be legal, which are not checked again
+     * @return {@code true} if move was performed, {@code false} if move was not performed
+     */
+    public static boolean executeActualMove(Board board, int packedMove, boolean testMove) {
+        Tile originatingTile = board.getTileMap().get(BoardUtils.indexToPosition(PackedMove.from(packedMove)));
+        Tile targetTile = board.getTileMap().get(BoardUtils.indexToPosition(PackedMove.to(packedMove)));
+
+        Move move = testMove ? new Move(originatingTile.getPiece(), originatingTile, targetTile.getPiece(), targetTile)
+                             : canMovePiece(board, originatingTile, targetTile);
+        if(move == null || move.getMovedPiece() == null) {
+            MoveType.INVALID.playSound();
+            return false;
+        }
+
+        // The promotion piece is part of the move, so there is nobody to ask
+        int promotion = PackedMove.promotion(packedMove);
+        if(promotion != PieceCode.EMPTY) {
+            Player owner = move.getMovedPiece().getOwner();
+            char ch = PieceCode.toChar(PieceCode.make(PieceCode.WHITE, promotion));
+            move.setPromotionSelection(BoardUtils.getTypeOfPieceToCreate(ch, owner));
+        }
+
+        // Perform the actual piece move
+        updateBoard(board, move, testMove);
+
+        return true;
+    }
+
     /**
      * Updates the game board by executing the move
      * @param board the current {@code Board}
@@ -80,6 +125,12 @@ public class MoveUtils {
 
         // The type of move we performed (Standard, Capture, Check, or Castle)
         move.execute(board, isEP, isTestBoard);
+
+        // Stop the mover's clock once the move is complete, including choosing a promotion piece
+        if(!isTestBoard) {
+            board.getGameState().getClock().press(move.getMovedPiece().getOwner().getColor());
+            board.firePositionChanged();
+        }
     }
 
     /**
@@ -92,7 +143,8 @@ public class MoveUtils {
     private static Move canMovePiece(Board board, Tile originatingTile, Tile draggedToTile) {
         // If originating tile or piece are null..
         // Or if the dragged to tile is null or the same as original, just exit
-        if(originatingTile == null || originatingTile.getPiece() == null
+        // Nor can anything move once the game is over, e.g. on time
+        if(board.getGameState().isGameOver() || originatingTile == null || originatingTile.getPiece() == null
         || draggedToTile == null   || draggedToTile.equals(originatingTile)) {
             return null;
         }
@@ -140,22 +192,13 @@ public class MoveUtils {
             gameState.setFullMoves(prevFullMoves + 1);
         }
 
-        // Sets en passant square if last move was pawn move that spanned 2 rows
-        if (move.isEnpassantMove()) {
-            // En passant position is multiplied by -1 because dragged piece is opposite color of what we desire
-            int rowOffset = ((Pawn) draggedPiece).getEnpassantDirection() * -1;
-            gameState.setEnpassantSquare(BoardUtils.getOffSetPosition(move.getDestination().getPosition(), 0, rowOffset));
-        }
-        // Clear en passant square
-        else {
-            gameState.setEnpassantSquare(null);
-        }
+        // Sets en passant square if last move was pawn move that spanned 2 rows, between the two
+        int from = move.getOrigin().getPosition().getIndex();
+        int to = move.getDestination().getPosition().getIndex();
+        gameState.setEpIndex(move.isEnpassantMove() ? (from + to) / 2 : -1);
 
-        // If moving the rook or king, then castling is no longer allowed
-        if (draggedPiece instanceof King || draggedPiece instanceof Rook) {
-            // TODO -> If moving rook, determine which side and don't allow castling to that side anymore
-            updateCastling(gameState, opposingPlayer);
-        }
+        // Moving the king or a rook, or capturing a rook, loses the castling rights of those pieces
+        gameState.updateCastling(from, to);
     }
 
     /**
@@ -184,29 +227,4 @@ public class MoveUtils {
     public static Piece isKingInCheck(Board board, Player targetingPlayer, Player ownerOfKing) {
         return isTileTargeted(board, targetingPlayer, board.getKingPosition(ownerOfKing));
     }
-
-    /**
-     * Update the castling fen value for the current board state
-     * @param state the current {@code GameState}
-     * @param player the opposing {@code Player}
-     */
-    private static void updateCastling(GameState state, Player player) {
-        StringBuilder castlingAbility = new StringBuilder();
-        boolean canCastleKing = state.canCastleKingSide(player);
-        boolean canCastleQueen = state.canCastleQueenSide(player);
-        // TODO make this suck less
-        if(!canCastleKing && !canCastleQueen) {
-            castlingAbility.append("-");
-        } else {
-            if(canCastleKing) {
-                castlingAbility.append(player.isWhite() ? "K" : "k");
-            }
-            if(canCastleQueen) {
-                castlingAbility.append(player.isWhite() ? "Q" : "q");
-            }
-        }
-
-        // Update game state's castling ability
-        state.setCastlingAbility(castlingAbility.toString());
-    }
 }
@@ -0,0 +1,86 @@
+package com.chess.engine.moves;
+
+import com.chess.engine.pieces.PieceCode;
+
+/**
+ * Moves used by the headless engine board are packed into a single int:
+ * - bits 0-5: origin square index
+ * - bits 6-11: destination square index
+ * - bits 12-14: type of piece promoted to (or {@link PieceCode#EMPTY})
+ */
+public final class PackedMove {
+
+    private PackedMove() { /*Static construct*/ }
+
+    // Value used when there is no move (a1 -> a1 can never be played)
+    public static final int NONE = 0;
+
+    /**
+     * Pack a move without promotion
+     * @param from the origin square index
+     * @param to the destination square index
+     * @return the packed move
+     */
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    /**
+     * Pack a move with a promotion
+     * @param from the origin square index
+     * @param to the destination square index
+     * @param promotion the type of piece promoted to, or {@link PieceCode#EMPTY}
+     * @return the packed move
+     */
+    public static int of(int from, int to, int promotion) {
+        return from | (to << 6) | (promotion << 12);
+    }
+
+    /**
+     * Get the origin square of the move
+     * @param move the packed move
+     * @return the origin square index
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * Get the destination square of the move
+     * @param move the packed move
+     * @return the destination square index
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * Get the type of piece promoted to
+     * @param move the packed move
+     * @return the type of piece, or {@link PieceCode#EMPTY} if not a promotion
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    /**
+     * Coordinate notation of a square index such as e4
+     * @param square the square index
+     * @return the square name
+     */
+    public static String squareName(int square) {
+        return (char)('a' + (square & 7)) + "" + (char)('1' + (square >>> 3));
+    }
+
+    /**
+     * Coordinate notation of the move such as e2e4 or e7e8q
+     * @param move the packed move
+     * @return the string representation of the move
+     */
+    public static String toString(int move) {
+        String notation = squareName(from(move)) + squareName(to(move));
+        int promotion = promotion(move);
+        return promotion == PieceCode.EMPTY ? notation
+                : notation + Character.toLowerCase(PieceCode.toChar(promotion));
+    }
+}
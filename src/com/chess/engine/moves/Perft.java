@@ -0,0 +1,378 @@
+package com.chess.engine.moves;
+
+import com.chess.engine.board.FenUtils;
+import com.chess.engine.board.HeadlessBoard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the leaf positions of the legal move tree to a depth, to check move generation against known counts.
+ * The first plies are split into tasks run by a {@link ForkJoinPool}, each task on its own copy of the board;
+ * below them each task counts on its own, with the moves of the last ply counted rather than made. Counts of
+ * subtrees are cached by key and depth in a table shared by all threads, so transpositions are only counted once.
+ *
+ * Usage: Perft [-fen fen] [-depth n] [-threads n] [-hash mb] [-split plies] [-divide]
+ *        Perft -suite [max depth], which checks the standard test positions against their known counts
+ *        Perft -evasions [depth], which times legal move generation in the positions in check of the test positions'
+ *        trees, with the check evasion generator against filtering all pseudo-legal moves
+ */
+public class Perft {
+
+    // Standard test positions and their counts at depths 1, 2, ...
+    private static final String[] SUITE_POSITIONS = {
+            FenUtils.DEFAULT_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    private static final long[][] SUITE_COUNTS = {
+            {20, 400, 8902, 197281, 4865609, 119060324, 3195901860L},
+            {48, 2039, 97862, 4085603, 193690690, 8031647685L},
+            {14, 191, 2812, 43238, 674624, 11030083, 178633661},
+            {6, 264, 9467, 422333, 15833292, 706045033},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551, 6923051137L}
+    };
+
+    private final ForkJoinPool pool;
+    private final Table table;
+    private final int splitPlies;
+
+    /**
+     * Create a perft counter
+     * @param threads the number of threads to count with
+     * @param hashMb the size of the shared table of subtree counts, or 0 for none
+     * @param splitPlies the number of plies from the root that are split into tasks
+     */
+    public Perft(int threads, int hashMb, int splitPlies) {
+        this.pool = new ForkJoinPool(threads);
+        this.table = hashMb > 0 ? new Table(hashMb) : null;
+        this.splitPlies = splitPlies;
+    }
+
+    public static void main(String[] args) {
+        String fen = FenUtils.DEFAULT_POSITION;
+        int depth = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMb = 64;
+        int splitPlies = 2;
+        boolean divide = false;
+        int suiteDepth = 0;
+        int evasionDepth = 0;
+
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-fen": fen = args[++i]; break;
+                case "-depth": depth = Integer.parseInt(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "-split": splitPlies = Integer.parseInt(args[++i]); break;
+                case "-divide": divide = true; break;
+                case "-suite": suiteDepth = i + 1 < args.length && !args[i + 1].startsWith("-") ? Integer.parseInt(args[++i]) : 5; break;
+                case "-evasions": evasionDepth = i + 1 < args.length && !args[i + 1].startsWith("-") ? Integer.parseInt(args[++i]) : 4; break;
+                default:
+                    System.err.println("Usage: Perft [-fen fen] [-depth n] [-threads n] [-hash mb] [-split plies] [-divide]");
+                    System.err.println("       Perft -suite [max depth]");
+                    System.err.println("       Perft -evasions [depth]");
+                    return;
+            }
+        }
+        if(evasionDepth > 0) {
+            System.out.println(benchmarkEvasions(evasionDepth) ? "Evasion counts agree" : "EVASION COUNTS WRONG");
+            return;
+        }
+
+        Perft perft = new Perft(threads, hashMb, splitPlies);
+        try {
+            if(suiteDepth > 0) {
+                boolean passed = perft.runSuite(suiteDepth);
+                System.out.println(passed ? "All counts correct" : "COUNTS WRONG");
+                return;
+            }
+
+            HeadlessBoard board = new HeadlessBoard(fen);
+            long start = System.nanoTime();
+            long nodes;
+            if(divide) {
+                nodes = 0;
+                for(Map.Entry<Integer, Long> entry : perft.divide(board, depth).entrySet()) {
+                    System.out.println(PackedMove.toString(entry.getKey()) + ": " + entry.getValue());
+                    nodes += entry.getValue();
+                }
+            } else {
+                nodes = perft.count(board, depth);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Depth %d: %,d nodes in %.2f s (%.1f M nodes/s), %d threads%s%n", depth, nodes, nanos / 1e9,
+                    nodes * 1e3 / Math.max(1, nanos), threads, perft.table != null ? ", " + perft.table : "");
+        } finally {
+            perft.close();
+        }
+    }
+
+    /**
+     * Check the counts of the standard test positions up to a depth
+     * @param maxDepth the deepest count to check
+     * @return {@code true} if every count was correct
+     */
+    public boolean runSuite(int maxDepth) {
+        boolean passed = true;
+        for(int i = 0; i < SUITE_POSITIONS.length; i++) {
+            HeadlessBoard board = new HeadlessBoard(SUITE_POSITIONS[i]);
+            for(int depth = 1; depth <= Math.min(maxDepth, SUITE_COUNTS[i].length); depth++) {
+                long start = System.nanoTime();
+                long nodes = count(board, depth);
+                long expected = SUITE_COUNTS[i][depth - 1];
+                passed &= nodes == expected;
+                System.out.printf("Position %d depth %d: %,d nodes%s in %.2f s%n", i + 1, depth, nodes,
+                        nodes == expected ? "" : " (expected " + expected + ")", (System.nanoTime() - start) / 1e9);
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Time legal move generation in check over the trees of the standard test positions, on the calling thread.
+     * Each position in check is generated with {@link MoveGenerator#generateEvasions} and by filtering every
+     * pseudo-legal move, a number of times each so that reading the clock costs little against generating.
+     * @param depth the depth of the trees
+     * @return {@code true} if both ways found the same number of legal moves in every position
+     */
+    public static boolean benchmarkEvasions(int depth) {
+        // Positions in check, and the nanoseconds and legal moves of each way: evasions first, then filtering all moves
+        long[] stats = new long[5];
+        int[][] moves = new int[Math.max(1, depth)][MoveGenerator.MAX_MOVES];
+        for(String fen : SUITE_POSITIONS) {
+            benchmarkEvasions(new HeadlessBoard(fen), depth, moves, stats);
+        }
+        long positions = Math.max(1, stats[0]);
+        System.out.printf("%,d positions in check: evasions %.0f ns and %.2f legal moves per position, " +
+                        "all moves filtered %.0f ns per position (%.1fx)%n", stats[0], (double) stats[1] / positions / EVASION_REPEATS,
+                (double) stats[2] / positions / EVASION_REPEATS, (double) stats[3] / positions / EVASION_REPEATS,
+                (double) stats[3] / Math.max(1, stats[1]));
+        return stats[2] == stats[4];
+    }
+
+    // Times each position in check is generated by each way in the evasion benchmark
+    private static final int EVASION_REPEATS = 8;
+
+    private static void benchmarkEvasions(HeadlessBoard board, int depth, int[][] moves, long[] stats) {
+        int[] moveList = moves[depth - 1];
+        if(board.isInCheck()) {
+            stats[0]++;
+            long start = System.nanoTime();
+            for(int i = 0; i < EVASION_REPEATS; i++) {
+                int count = MoveGenerator.generateEvasions(board, moveList);
+                for(int j = 0; j < count; j++) {
+                    stats[2] += MoveGenerator.isLegal(board, moveList[j]) ? 1 : 0;
+                }
+            }
+            long middle = System.nanoTime();
+            for(int i = 0; i < EVASION_REPEATS; i++) {
+                int count = MoveGenerator.generateMoves(board, moveList);
+                for(int j = 0; j < count; j++) {
+                    stats[4] += MoveGenerator.isLegal(board, moveList[j]) ? 1 : 0;
+                }
+            }
+            stats[1] += middle - start;
+            stats[3] += System.nanoTime() - middle;
+        }
+        if(depth == 1) {
+            return;
+        }
+        int count = MoveGenerator.generateLegalMoves(board, moveList);
+        for(int i = 0; i < count; i++) {
+            board.makeMove(moveList[i]);
+            benchmarkEvasions(board, depth - 1, moves, stats);
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Count the leaf positions of the legal move tree
+     * @param position the root position (not changed)
+     * @param depth the number of plies
+     * @return the number of positions at that depth
+     */
+    public long count(HeadlessBoard position, int depth) {
+        return this.pool.invoke(new Task(new HeadlessBoard(position), depth, 0));
+    }
+
+    /**
+     * Count the leaf positions below each root move, to find the move whose count is wrong
+     * @param position the root position (not changed)
+     * @param depth the number of plies, including the root move
+     * @return the count for each legal move of the root, in generation order
+     */
+    public Map<Integer, Long> divide(HeadlessBoard position, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(position, moves);
+        List<Task> tasks = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            HeadlessBoard child = new HeadlessBoard(position);
+            child.makeMove(moves[i]);
+            tasks.add(new Task(child, depth - 1, 1));
+        }
+
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        this.pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for(int i = 0; i < count; i++) {
+            counts.put(moves[i], tasks.get(i).join());
+        }
+        return counts;
+    }
+
+    /**
+     * Count the leaf positions below one position with a single thread, without the table
+     * @param board the position, left unchanged
+     * @param depth the number of plies
+     * @return the number of positions at that depth
+     */
+    public static long perft(HeadlessBoard board, int depth) {
+        return perft(board, depth, new int[Math.max(1, depth)][MoveGenerator.MAX_MOVES], null);
+    }
+
+    /**
+     * Count the leaf positions below one position on the calling thread, with bulk counting at the last ply
+     * @param moves a move list for each remaining ply
+     * @param table the table of subtree counts, or null for none
+     */
+    private static long perft(HeadlessBoard board, int depth, int[][] moves, Table table) {
+        if(depth == 0) {
+            return 1;
+        }
+        int[] moveList = moves[depth - 1];
+        int count = MoveGenerator.generateLegalMoves(board, moveList);
+        if(depth == 1) {
+            return count;
+        }
+
+        long key = board.getKey();
+        long cached = table != null ? table.probe(key, depth) : -1;
+        if(cached >= 0) {
+            return cached;
+        }
+        long nodes = 0;
+        for(int i = 0; i < count; i++) {
+            board.makeMove(moveList[i]);
+            nodes += perft(board, depth - 1, moves, table);
+            board.unmakeMove();
+        }
+        if(table != null) {
+            table.store(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the subtree of one position: split into a task per move in the first plies, counted on one thread below
+     */
+    private class Task extends RecursiveTask<Long> {
+        private final HeadlessBoard board;
+        private final int depth;
+        private final int ply;
+
+        Task(HeadlessBoard board, int depth, int ply) {
+            this.board = board;
+            this.depth = depth;
+            this.ply = ply;
+        }
+
+        @Override
+        protected Long compute() {
+            if(this.ply >= splitPlies || this.depth <= 2) {
+                return perft(this.board, this.depth, new int[Math.max(1, this.depth)][MoveGenerator.MAX_MOVES], table);
+            }
+
+            long key = this.board.getKey();
+            long cached = table != null ? table.probe(key, this.depth) : -1;
+            if(cached >= 0) {
+                return cached;
+            }
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegalMoves(this.board, moves);
+            List<Task> tasks = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                HeadlessBoard child = new HeadlessBoard(this.board);
+                child.makeMove(moves[i]);
+                tasks.add(new Task(child, this.depth - 1, this.ply + 1));
+            }
+            long nodes = 0;
+            for(Task task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            if(table != null) {
+                table.store(key, this.depth, nodes);
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Release the threads
+     */
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Fixed size cache of subtree counts by key and depth, shared by all threads without locking. As in the
+     * search's transposition table, each entry stores the key xor-ed with the data, so an entry torn by two
+     * threads writing at once no longer matches its key. The data is the depth in the low 8 bits and the count
+     * above them.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final long[] data;
+        private final int mask;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder probes = new LongAdder();
+
+        Table(int sizeMb) {
+            int entries = Integer.highestOneBit((int) Math.min(1L << 30, (sizeMb * 1024L * 1024L) / 16));
+            this.keys = new long[entries];
+            this.data = new long[entries];
+            this.mask = entries - 1;
+        }
+
+        /**
+         * @return the count, or -1 if the table does not have the position at that depth
+         */
+        long probe(long key, int depth) {
+            this.probes.increment();
+            int index = (int) (key ^ depth) & this.mask;
+            long entry = this.data[index];
+            if((this.keys[index] ^ entry) == key && (entry & 0xFF) == depth) {
+                this.hits.increment();
+                return entry >>> 8;
+            }
+            return -1;
+        }
+
+        void store(long key, int depth, long nodes) {
+            int index = (int) (key ^ depth) & this.mask;
+            long entry = nodes << 8 | depth;
+            this.data[index] = entry;
+            this.keys[index] = key ^ entry;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("table hits %,d of %,d", this.hits.sum(), this.probes.sum());
+        }
+    }
+}
@@ -18,28 +18,44 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class Piece extends JLabel {
 
     private final Player owner;
-    private final JLabel scaledImg;
+    private final ImageIcon[] icons;
+
+    // Scaled image shown with the captured pieces, only created once the piece is captured on a displayed board
+    private JLabel scaledImg = null;
+
+    // Icon and scaled icon of each image, read once and shared by all pieces with that image
+    private static final Map<String, ImageIcon[]> ICONS = new ConcurrentHashMap<>();
 
     Piece(Player color, String pieceImagePath) {
         super();
         this.owner = color;
-        JLabel testImg = null;
+        this.icons = ICONS.computeIfAbsent(color.toString() + pieceImagePath, Piece::readIcons);
+        if(this.icons != null) {
+            setIcon(this.icons[0]);
+        }
+    }
 
+    /**
+     * Read the image of a piece
+     * @param imagePath the path of the image within the images folder
+     * @return the icon and the scaled icon, or null if the image could not be read
+     */
+    private static ImageIcon[] readIcons(String imagePath) {
         try {
-            BufferedImage myPicture = ImageIO.read(new File("files/images/" + color.toString() + pieceImagePath));
+            BufferedImage myPicture = ImageIO.read(new File("files/images/" + imagePath));
             ImageIcon pieceIcon = new ImageIcon(myPicture);
-            setIcon(pieceIcon);
-            testImg = new JLabel(new ImageIcon(pieceIcon.getImage().getScaledInstance(
-                    pieceIcon.getIconWidth() - 30, pieceIcon.getIconWidth() - 30, Image.SCALE_SMOOTH)));
+            ImageIcon scaledIcon = new ImageIcon(pieceIcon.getImage().getScaledInstance(
+                    pieceIcon.getIconWidth() - 30, pieceIcon.getIconWidth() - 30, Image.SCALE_SMOOTH));
+            return new ImageIcon[] {pieceIcon, scaledIcon};
         } catch (IOException e) {
             e.printStackTrace();
+            return null;
         }
-
-        scaledImg = testImg;
     }
 
     /**
@@ -222,6 +238,14 @@ public abstract class Piece extends JLabel {
         return this.owner;
     }
 
+    /**
+     * Get the engine code for this piece
+     * @return the {@link PieceCode} combining the type of piece and the color of its owner
+     */
+    public final int getCode() {
+        return PieceCode.fromChar(toString().charAt(0));
+    }
+
     /**
      * Whether a piece is on the same side as another piece
      * @return true if same player, false if not
@@ -244,6 +268,9 @@ public abstract class Piece extends JLabel {
      * @return the scaled down image as a JLabel for the given piece
      */
     public final JLabel getScaledImg() {
+        if(this.scaledImg == null && this.icons != null) {
+            this.scaledImg = new JLabel(this.icons[1]);
+        }
         return this.scaledImg;
     }
 }
@@ -0,0 +1,76 @@
+package com.chess.engine.pieces;
+
+/**
+ * Integer codes for pieces used by the headless engine board.
+ * A code combines the type of piece (low 3 bits) with the color of its owner (4th bit).
+ */
+public final class PieceCode {
+
+    private PieceCode() { /*Static construct*/ }
+
+    // Colors
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Types of piece
+    public static final int EMPTY = 0;
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+
+    // Largest possible code (black king) + 1, useful for sizing lookup tables
+    public static final int NUM_CODES = 15;
+
+    // Fen characters indexed by piece code
+    private static final String FEN_CHARS = ".PNBRQK..pnbrqk";
+
+    /**
+     * Create a piece code for a given color and type
+     * @param color {@link #WHITE} or {@link #BLACK}
+     * @param type the type of piece ({@link #PAWN} through {@link #KING})
+     * @return the piece code
+     */
+    public static int make(int color, int type) {
+        return type | (color << 3);
+    }
+
+    /**
+     * Get the type of piece for a given code
+     * @param piece the piece code
+     * @return the type of piece, or {@link #EMPTY}
+     */
+    public static int type(int piece) {
+        return piece & 7;
+    }
+
+    /**
+     * Get the color of the owner for a given code
+     * @param piece the piece code (must not be empty)
+     * @return {@link #WHITE} or {@link #BLACK}
+     */
+    public static int color(int piece) {
+        return piece >>> 3;
+    }
+
+    /**
+     * Get the piece code for a fen character
+     * @param ch the fen character such as 'P' or 'k'
+     * @return the piece code, or {@link #EMPTY} if not a valid piece character
+     */
+    public static int fromChar(char ch) {
+        int index = FEN_CHARS.indexOf(ch);
+        return index > 0 ? index : EMPTY;
+    }
+
+    /**
+     * Get the fen character for a piece code
+     * @param piece the piece code
+     * @return the fen character, or '.' if empty
+     */
+    public static char toChar(int piece) {
+        return FEN_CHARS.charAt(piece);
+    }
+}
@@ -0,0 +1,42 @@
+package com.chess.engine.search;
+
+import java.util.List;
+
+/**
+ * A snapshot of the analysis of a position, published after each completed iteration
+ */
+public final class Analysis {
+
+    private final long key;
+    private final List<PvLine> lines;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    /**
+     * Create a snapshot
+     * @param key the Zobrist key of the position analysed
+     * @param lines the best lines found, best first
+     * @param nodes the nodes searched by all threads
+     * @param elapsedNanos the time since the analysis started
+     */
+    public Analysis(long key, List<PvLine> lines, long nodes, long elapsedNanos) {
+        this.key = key;
+        this.lines = lines;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getKey() { return this.key; }
+    public List<PvLine> getLines() { return this.lines; }
+    public long getNodes() { return this.nodes; }
+    public long getElapsedNanos() { return this.elapsedNanos; }
+    public int getDepth() { return this.lines.isEmpty() ? 0 : this.lines.get(0).getDepth(); }
+
+    /**
+     * Nodes searched per second
+     * @return the search speed
+     */
+    public long getNodesPerSecond() {
+        return this.elapsedNanos > 0 ? this.nodes * 1_000_000_000L / this.elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,122 @@
+package com.chess.engine.search;
+
+import com.chess.engine.board.HeadlessBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Analyses a position until told otherwise, on background threads. The first thread finds the best few lines
+ * and reports them after each iteration; any others search the same position to fill the shared transposition
+ * table, which the reporting thread then profits from. Starting on a new position stops the old analysis first.
+ */
+public class Analyzer {
+
+    private final TranspositionTable table;
+    private final List<Search> searches = new ArrayList<>();
+    private final List<TimeManager> timeManagers = new ArrayList<>();
+    private final ExecutorService workers;
+
+    // Searches of the current analysis
+    private final List<Future<?>> running = new ArrayList<>();
+
+    /**
+     * Create an analyzer using all but one of the processors, leaving one for the UI
+     */
+    public Analyzer() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new TranspositionTable());
+    }
+
+    /**
+     * Create an analyzer
+     * @param threads the number of threads to search with
+     * @param table the transposition table shared by the threads
+     */
+    public Analyzer(int threads, TranspositionTable table) {
+        this.table = table;
+        for(int i = 0; i < threads; i++) {
+            TimeManager timeManager = new TimeManager();
+            this.timeManagers.add(timeManager);
+            this.searches.add(new Search(table, timeManager));
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Analysis-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Start analysing a position, replacing any current analysis
+     * @param position the position to analyse (not changed)
+     * @param lines the number of best lines to find
+     * @param listener told each new {@link Analysis} on an analysis thread
+     */
+    public synchronized void analyze(HeadlessBoard position, int lines, Consumer<Analysis> listener) {
+        stop();
+        HeadlessBoard copy = new HeadlessBoard(position);
+        long key = copy.getKey();
+        long start = System.nanoTime();
+
+        Search main = searches.get(0);
+        main.setMultiPv(lines);
+        main.setIterationListener(found -> listener.accept(new Analysis(key, found, getNodes(), System.nanoTime() - start)));
+        for(int i = 0; i < searches.size(); i++) {
+            Search search = searches.get(i);
+            timeManagers.get(i).startInfinite();
+            running.add(workers.submit(() -> search.search(copy, Search.MAX_PLY)));
+        }
+    }
+
+    /**
+     * Stop analysing, waiting until all threads have finished
+     */
+    public synchronized void stop() {
+        timeManagers.forEach(TimeManager::abort);
+        for(Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        running.clear();
+    }
+
+    /**
+     * Stop analysing and release the threads
+     */
+    public synchronized void close() {
+        stop();
+        workers.shutdown();
+    }
+
+    /**
+     * Whether any thread is still analysing
+     * @return {@code true} until the analysis reaches its maximum depth, finds a forced mate or is stopped
+     */
+    public synchronized boolean isRunning() {
+        return running.stream().anyMatch(future -> !future.isDone());
+    }
+
+    private long getNodes() {
+        long nodes = 0;
+        for(Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    public TranspositionTable getTable() { return this.table; }
+    public int getThreads() { return this.searches.size(); }
+}
@@ -0,0 +1,219 @@
+package com.chess.engine.search;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.book.PolyglotBook;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An engine player: searches on its own worker thread so callers (such as the UI) are never blocked, and
+ * ponders on the opponent's time. After the engine moves, {@link #ponder(HeadlessBoard)} starts searching the
+ * position after the reply its principal variation expects. When the opponent's move is known,
+ * {@link #think} either converts that search into a normal one under the clock (a ponder hit) or abandons it
+ * (a miss) and searches the real position. Either way the transposition table keeps what was learnt, so
+ * the move comes back faster. While the position is in its opening book (if it has one), the engine plays a book
+ * move chosen by weight straight away instead of searching.
+ */
+public class Engine {
+
+    private final TranspositionTable table;
+    private final TimeManager timeManager = new TimeManager();
+    private final Search search;
+
+    // Searches run one at a time on this thread
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The search currently running or queued
+    private CompletableFuture<Integer> current = null;
+
+    // Key of the position being pondered on (after the expected reply), if pondering
+    private boolean pondering = false;
+    private long ponderKey;
+
+    // Opening book to play from before searching, or null for none
+    private PolyglotBook book = null;
+    private final Random random = new Random();
+
+    // Statistics
+    private long ponderHits = 0;
+    private long ponderMisses = 0;
+    private long bookMoves = 0;
+
+    public Engine() {
+        this(new TranspositionTable());
+    }
+
+    /**
+     * Create an engine
+     * @param table the transposition table to search with
+     */
+    public Engine(TranspositionTable table) {
+        this.table = table;
+        this.search = new Search(table, timeManager);
+    }
+
+    /**
+     * Find the best move for a position under a clock
+     * @param position the position, with the engine to move (not changed)
+     * @param remainingNanos the time left on the engine's clock
+     * @param incrementNanos the time added after the move
+     * @param delayNanos the time the move may take before the clock starts counting
+     * @return a book move, or else the best move when the search completes, or {@link PackedMove#NONE} if there is
+     * no legal move
+     */
+    public synchronized CompletableFuture<Integer> think(HeadlessBoard position, long remainingNanos, long incrementNanos, long delayNanos) {
+        CompletableFuture<Integer> bookMove = probeBook(position);
+        if(bookMove != null) {
+            return bookMove;
+        }
+        if(isPonderHit(position)) {
+            timeManager.ponderHit(remainingNanos, incrementNanos, delayNanos, 0);
+            return current;
+        }
+        stop();
+        timeManager.start(remainingNanos, incrementNanos, delayNanos, 0);
+        return submit(position);
+    }
+
+    /**
+     * Find the best move for a position, searching for a fixed time
+     * @param position the position, with the engine to move (not changed)
+     * @param moveNanos the time to search
+     * @return a book move, or else the best move when the search completes, or {@link PackedMove#NONE} if there is
+     * no legal move
+     */
+    public synchronized CompletableFuture<Integer> think(HeadlessBoard position, long moveNanos) {
+        CompletableFuture<Integer> bookMove = probeBook(position);
+        if(bookMove != null) {
+            return bookMove;
+        }
+        if(isPonderHit(position)) {
+            timeManager.ponderHit(moveNanos);
+            return current;
+        }
+        stop();
+        timeManager.startFixed(moveNanos);
+        return submit(position);
+    }
+
+    /**
+     * Think on the opponent's time about the reply the last search expected
+     * @param position the position after the engine's move, with the opponent to move (not changed)
+     * @return {@code true} if pondering started, {@code false} if no reply was expected
+     */
+    public synchronized boolean ponder(HeadlessBoard position) {
+        int[] pv = search.getPv();
+        if(pv.length < 2 || pv[0] != position.getLastMove() || !isLegal(position, pv[1])) {
+            return false;
+        }
+        stop();
+
+        HeadlessBoard expected = new HeadlessBoard(position);
+        expected.makeMove(pv[1]);
+        timeManager.startInfinite();
+        submit(expected);
+        pondering = true;
+        ponderKey = expected.getKey();
+        return true;
+    }
+
+    /**
+     * Stop any search, waiting until the worker thread has finished with it
+     */
+    public synchronized void stop() {
+        pondering = false;
+        if(current != null) {
+            timeManager.abort();
+            current.join();
+            current = null;
+        }
+    }
+
+    /**
+     * Stop searching and release the worker thread
+     */
+    public synchronized void close() {
+        stop();
+        worker.shutdown();
+    }
+
+    /**
+     * Play from an opening book rather than searching while the position is in it
+     * @param book the book, or {@code null} to always search. The engine does not close it.
+     */
+    public synchronized void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    /**
+     * A move from the opening book for the position, chosen by weight, stopping any search as it is not needed
+     * @return the move, already complete, or {@code null} if there is no book or the position is out of book
+     */
+    private CompletableFuture<Integer> probeBook(HeadlessBoard position) {
+        if(book == null) {
+            return null;
+        }
+        int move = book.getWeightedMove(position, random);
+        if(move == PackedMove.NONE) {
+            return null;
+        }
+        stop();
+        bookMoves++;
+        return CompletableFuture.completedFuture(move);
+    }
+
+    /**
+     * Whether the position to think about is the one being pondered on, counting hits and misses
+     */
+    private boolean isPonderHit(HeadlessBoard position) {
+        if(!pondering) {
+            return false;
+        }
+        pondering = false;
+        if(position.getKey() == ponderKey) {
+            ponderHits++;
+            return true;
+        }
+        ponderMisses++;
+        return false;
+    }
+
+    private CompletableFuture<Integer> submit(HeadlessBoard position) {
+        HeadlessBoard copy = new HeadlessBoard(position);
+        this.current = CompletableFuture.supplyAsync(() -> search.search(copy, Search.MAX_PLY), worker);
+        return this.current;
+    }
+
+    private static boolean isLegal(HeadlessBoard position, int move) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(position, moves);
+        for(int i = 0; i < count; i++) {
+            if(moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean isPondering() { return this.pondering; }
+    public long getPonderHits() { return this.ponderHits; }
+    public long getPonderMisses() { return this.ponderMisses; }
+    public long getBookMoves() { return this.bookMoves; }
+    public Search getSearch() { return this.search; }
+    public TimeManager getTimeManager() { return this.timeManager; }
+    public TranspositionTable getTable() { return this.table; }
+
+    @Override
+    public String toString() {
+        return String.format("%s, ponder %d hits / %d misses, %d book moves\n%s", search, ponderHits, ponderMisses, bookMoves, timeManager);
+    }
+}
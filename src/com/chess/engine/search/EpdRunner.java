@@ -0,0 +1,231 @@
+package com.chess.engine.search;
+
+import com.chess.engine.board.EpdPosition;
+import com.chess.engine.board.FenUtils;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.moves.PackedMove;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the engine on the positions of an EPD test suite, to measure tactical strength per unit of CPU.
+ * Each position is searched for a fixed time or number of nodes, several at once, each thread with its own
+ * {@link Search} and {@link TranspositionTable} (cleared between positions, so results do not depend on the
+ * order). A position is solved if the search ends on one of its {@code bm} moves, or on none of its {@code am}
+ * moves. The time and nodes to solution are those when the search first reported the move it kept to the end.
+ *
+ * Usage: EpdRunner suite.epd [-time ms] [-nodes n] [-threads n] [-hash mb]
+ */
+public class EpdRunner {
+
+    private final List<EpdPosition> positions;
+    private final long moveNanos;
+    private final long nodeLimit;
+    private final int threads;
+    private final int hashMb;
+
+    // Positions handed out to the threads
+    private final AtomicInteger nextPosition = new AtomicInteger();
+
+    // Totals, guarded by this
+    private int solved = 0;
+    private long solutionNanos = 0;
+    private long solutionNodes = 0;
+    private long totalNanos = 0;
+    private long totalNodes = 0;
+
+    /**
+     * Create a runner
+     * @param positions the positions to search, each with {@code bm} or {@code am} moves
+     * @param moveNanos the time to search each position, or {@link Long#MAX_VALUE} to search until the node limit
+     * @param nodeLimit the nodes to search each position, or {@link Long#MAX_VALUE} to search until the time is up
+     * @param threads the number of positions to search at once
+     * @param hashMb the size of each thread's transposition table
+     */
+    public EpdRunner(List<EpdPosition> positions, long moveNanos, long nodeLimit, int threads, int hashMb) {
+        this.positions = positions;
+        this.moveNanos = moveNanos;
+        this.nodeLimit = nodeLimit;
+        this.threads = threads;
+        this.hashMb = hashMb;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long millis = 0;
+        long nodes = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMb = TranspositionTable.DEFAULT_SIZE_MB;
+        boolean valid = args.length > 0;
+
+        for(int i = 1; i < args.length; i++) {
+            switch(args[i]) {
+                case "-time": millis = Long.parseLong(args[++i]); break;
+                case "-nodes": nodes = Long.parseLong(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-hash": hashMb = Integer.parseInt(args[++i]); break;
+                default: valid = false; break;
+            }
+        }
+        if(!valid) {
+            System.err.println("Usage: EpdRunner suite.epd [-time ms] [-nodes n] [-threads n] [-hash mb]");
+            return;
+        }
+        if(millis == 0 && nodes == 0) {
+            millis = 1000;
+        }
+
+        // Only positions with moves to find or avoid can be solved
+        List<EpdPosition> positions = new ArrayList<>();
+        for(EpdPosition position : readSuite(args[0])) {
+            if(position.getBestMoves().length > 0 || position.getAvoidMoves().length > 0) {
+                positions.add(position);
+            } else {
+                System.err.println("Skipping position without legal bm or am moves: " + position);
+            }
+        }
+        EpdRunner runner = new EpdRunner(positions, millis > 0 ? TimeUnit.MILLISECONDS.toNanos(millis) : Long.MAX_VALUE,
+                nodes > 0 ? nodes : Long.MAX_VALUE, threads, hashMb);
+        System.out.printf("%d positions, %s per position, %d threads%n", positions.size(),
+                millis > 0 ? millis + " ms" + (nodes > 0 ? " or " + nodes + " nodes" : "") : nodes + " nodes", threads);
+        runner.run();
+        System.out.println(runner);
+    }
+
+    /**
+     * Read the positions of an EPD file, skipping any that can not be parsed
+     * @param fileName the path of the EPD file
+     * @return the positions
+     * @throws IOException if the file could not be read
+     */
+    public static List<EpdPosition> readSuite(String fileName) throws IOException {
+        List<EpdPosition> positions = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                try {
+                    positions.add(FenUtils.parseEpd(line));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping position: " + e.getMessage());
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Search every position, reporting each as it is done
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void run() throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for(int i = 0; i < this.threads; i++) {
+            Thread worker = new Thread(this::work, "EPD worker");
+            workers.add(worker);
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Search positions on one thread until there are none left
+     */
+    private void work() {
+        TranspositionTable table = new TranspositionTable(this.hashMb);
+        TimeManager timeManager = new TimeManager();
+        Search search = new Search(table, timeManager);
+        search.setNodeLimit(this.nodeLimit);
+
+        int index;
+        while((index = this.nextPosition.getAndIncrement()) < this.positions.size()) {
+            EpdPosition position = this.positions.get(index);
+            int[] best = position.getBestMoves();
+            int[] avoid = position.getAvoidMoves();
+
+            // Time and nodes when the search first reported the move it kept to the end, or -1 while the move is wrong
+            long[] solution = {-1, -1};
+            long start = System.nanoTime();
+            search.setIterationListener(lines -> {
+                int[] pv = lines.get(0).getMoves();
+                if(pv.length == 0 || !isCorrect(pv[0], best, avoid)) {
+                    solution[0] = -1;
+                } else if(solution[0] < 0) {
+                    solution[0] = System.nanoTime() - start;
+                    solution[1] = search.getNodes();
+                }
+            });
+
+            table.clear();
+            if(this.moveNanos == Long.MAX_VALUE) {
+                timeManager.startInfinite();
+            } else {
+                timeManager.startFixed(this.moveNanos);
+            }
+            HeadlessBoard board = new HeadlessBoard(position.getFen());
+            int move = search.search(board, Search.MAX_PLY);
+            long elapsed = System.nanoTime() - start;
+
+            boolean correct = move != PackedMove.NONE && isCorrect(move, best, avoid) && solution[0] >= 0;
+            record(index, position, board, move, correct, correct ? solution : null, elapsed, search);
+        }
+    }
+
+    private static boolean isCorrect(int move, int[] best, int[] avoid) {
+        for(int avoided : avoid) {
+            if(move == avoided) {
+                return false;
+            }
+        }
+        if(best.length == 0) {
+            return true;
+        }
+        for(int wanted : best) {
+            if(move == wanted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count and report the result of one position
+     */
+    private synchronized void record(int index, EpdPosition position, HeadlessBoard board, int move, boolean correct,
+                                     long[] solution, long elapsed, Search search) {
+        this.totalNanos += elapsed;
+        this.totalNodes += search.getNodes();
+        String id = position.getId() != null ? position.getId() : "#" + (index + 1);
+        String played = move == PackedMove.NONE ? "none" : PGNUtils.toSan(board, move);
+        String expected = !position.getOperands("bm").isEmpty() ? "bm " + String.join(" ", position.getOperands("bm"))
+                                                                  : "am " + String.join(" ", position.getOperands("am"));
+        if(correct) {
+            this.solved++;
+            this.solutionNanos += solution[0];
+            this.solutionNodes += solution[1];
+            System.out.printf("%-16s solved  %-8s (%s) in %d ms, %,d nodes; depth %d, score %s%n", id, played, expected,
+                    TimeUnit.NANOSECONDS.toMillis(solution[0]), solution[1], search.getDepth(), Search.scoreToString(search.getScore()));
+        } else {
+            System.out.printf("%-16s failed  %-8s (%s); depth %d, score %s%n", id, played, expected,
+                    search.getDepth(), Search.scoreToString(search.getScore()));
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Solved %d of %d; to solution %.1f s and %,d nodes in total (%.0f ms and %,d nodes per solution); searched %,d nodes, %,.0f nodes per second per thread",
+                this.solved, this.positions.size(), this.solutionNanos / 1e9, this.solutionNodes,
+                this.solved > 0 ? this.solutionNanos / 1e6 / this.solved : 0, this.solved > 0 ? this.solutionNodes / this.solved : 0,
+                this.totalNodes, this.totalNanos > 0 ? this.totalNodes * 1e9 / this.totalNanos : 0);
+    }
+}
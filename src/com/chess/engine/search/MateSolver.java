@@ -0,0 +1,400 @@
+package com.chess.engine.search;
+
+import com.chess.engine.board.EpdPosition;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.evaluation.Endgames;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds forced mates by depth-first proof-number search (df-pn), far more efficiently than alpha-beta for
+ * composed problems and mating puzzles. The side to move is the attacker, trying to mate; the defender tries to
+ * avoid it, and escapes by stalemate, repetition or the fifty move rule as well. Every position has a proof number,
+ * the least number of positions still to be solved to prove it won for the side to move, and a disproof number for
+ * proving it lost; the search always expands the most proving position, working below a parent only until its
+ * numbers pass thresholds, with the numbers of positions searched kept in a {@link ProofTable}.
+ * A search can be limited to mates in a number of moves, and stops after a number of nodes or when
+ * {@link #stop()} is called. Once a mate is proven, the mating line is read from the table: the attacker choosing
+ * the quickest mate and the defender the longest resistance.
+ * A solver works on its own copy of the board, so use one solver per thread.
+ *
+ * Usage: MateSolver suite.epd [-nodes n] [-hash mb]
+ * Each position is searched for a mate in its {@code dm} operand's number of moves, or any mate without one.
+ */
+public class MateSolver {
+
+    // Outcome of a search
+    public enum Result { MATE, NO_MATE, UNKNOWN }
+
+    // Proof and disproof numbers of a solved position, and the default node budget
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    public static final long DEFAULT_NODE_LIMIT = 10_000_000;
+
+    // Deepest the search can go, beyond which the attacker is taken to have failed
+    private static final int MAX_DEPTH = 200;
+
+    private final ProofTable table;
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+
+    // Set to abandon the search, by the node limit or another thread
+    private volatile boolean stopped;
+    private long nodes;
+
+    // Board being searched, a copy of the one given, and the color trying to mate
+    private HeadlessBoard board;
+    private int attacker;
+
+    // Moves at each ply, with the table keys of the positions they lead to and whether those are draws
+    private final int[][] moves = new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+    private final long[][] childKeys = new long[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+    private final boolean[][] childDraws = new boolean[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+
+    // Result of the last search
+    private Result result = Result.UNKNOWN;
+    private int[] line = new int[0];
+    private long elapsedNanos;
+
+    /**
+     * Create a solver with a table of the default size
+     */
+    public MateSolver() {
+        this(TranspositionTable.DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * Create a solver
+     * @param hashMb the size of its table in megabytes
+     */
+    public MateSolver(int hashMb) {
+        this.table = new ProofTable(hashMb);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long nodeLimit = DEFAULT_NODE_LIMIT;
+        int hashMb = 64;
+        boolean valid = args.length > 0;
+        for(int i = 1; i < args.length; i++) {
+            switch(args[i]) {
+                case "-nodes": nodeLimit = Long.parseLong(args[++i]); break;
+                case "-hash": hashMb = Integer.parseInt(args[++i]); break;
+                default: valid = false; break;
+            }
+        }
+        if(!valid) {
+            System.err.println("Usage: MateSolver suite.epd [-nodes n] [-hash mb]");
+            return;
+        }
+
+        MateSolver solver = new MateSolver(hashMb);
+        solver.setNodeLimit(nodeLimit);
+        int solved = 0;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        List<EpdPosition> positions = EpdRunner.readSuite(args[0]);
+        for(int i = 0; i < positions.size(); i++) {
+            EpdPosition position = positions.get(i);
+            String mateIn = position.getOperand("dm");
+            HeadlessBoard board = new HeadlessBoard(position.getFen());
+            Result found = solver.solve(board, mateIn != null ? Integer.parseInt(mateIn) : 0);
+
+            // A mate in more moves than asked for (or a different first move) does not solve a problem
+            int[] best = position.getBestMoves();
+            boolean correct = found == Result.MATE && (mateIn == null || solver.getMateMoves() <= Integer.parseInt(mateIn))
+                    && (best.length == 0 || Arrays.stream(best).anyMatch(move -> move == solver.getLine()[0]));
+            solved += correct ? 1 : 0;
+            totalNodes += solver.getNodes();
+            totalNanos += solver.elapsedNanos;
+            System.out.printf("%-16s %-7s %s%n", position.getId() != null ? position.getId() : "#" + (i + 1),
+                    correct ? "solved" : "failed", solver.toString(board));
+        }
+        System.out.printf("Solved %d of %d; %,d nodes in %.1f s, %,.0f nodes per second%n", solved, positions.size(),
+                totalNodes, totalNanos / 1e9, totalNanos > 0 ? totalNodes * 1e9 / totalNanos : 0);
+    }
+
+    /**
+     * Search for a forced mate by the side to move. Once a mate is found, mates in fewer moves are searched for
+     * until there are none, so the line found is the shortest.
+     * @param position the position to search, which is not changed
+     * @param maxMoves the most moves the mate may take, or 0 for any mate
+     * @return {@link Result#MATE} if a mate was proven, {@link Result#NO_MATE} if there is none (within the moves
+     *         given), or {@link Result#UNKNOWN} if the search was stopped first
+     */
+    public Result solve(HeadlessBoard position, int maxMoves) {
+        long start = System.nanoTime();
+        this.board = new HeadlessBoard(position);
+        this.attacker = board.getSideToMove();
+        this.stopped = false;
+        this.nodes = 0;
+        this.line = new int[0];
+        table.clear();
+
+        // Positions with different limits have different keys, so each search reuses what the last one proved
+        this.result = prove(maxMoves);
+        Result shorter = this.result;
+        while(shorter == Result.MATE && getMateMoves() > 1) {
+            shorter = prove(getMateMoves() - 1);
+        }
+        this.elapsedNanos = System.nanoTime() - start;
+        return this.result;
+    }
+
+    /**
+     * Search for a mate within a number of moves, keeping the line if one is found
+     * @param maxMoves the most moves the mate may take, or 0 for any mate
+     */
+    private Result prove(int maxMoves) {
+        // The attacker's last move is the one that mates
+        int remaining = maxMoves > 0 ? 2 * maxMoves - 1 : -1;
+        long key = tableKey(board.getKey(), remaining);
+        search(0, remaining, key, INFINITY, INFINITY);
+
+        int index = table.find(key);
+        if(index >= 0 && table.getPhi(index) == 0) {
+            this.line = readLine(remaining);
+            return Result.MATE;
+        }
+        return index >= 0 && table.getDelta(index) == 0 ? Result.NO_MATE : Result.UNKNOWN;
+    }
+
+    /**
+     * Stop the search as soon as possible, from another thread
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Search the current position until it is solved or its numbers reach the thresholds. The proof number phi is
+     * that of the side to move winning (for the attacker, mating; for the defender, escaping), and the disproof
+     * number delta that of it losing: phi is the least delta of the moves, and delta the sum of their phi.
+     * @param remaining plies left for the attacker to mate in, or -1 for no limit
+     * @param key the table key of the position
+     */
+    private void search(int ply, int remaining, long key, int phiThreshold, int deltaThreshold) {
+        long startNodes = nodes;
+        if((++nodes & (TimeManager.CHECK_INTERVAL - 1)) == 0 && nodes >= nodeLimit) {
+            stopped = true;
+        }
+
+        boolean attacking = board.getSideToMove() == attacker;
+        int[] moveList = moves[ply];
+        int count = MoveGenerator.generateLegalMoves(board, moveList);
+        if(count == 0) {
+            // Mated or stalemated: the attacker has failed either way, and the defender only loses if mated
+            boolean won = !attacking && !board.isInCheck();
+            table.store(key, won ? 0 : INFINITY, won ? INFINITY : 0, 0, 1);
+            return;
+        }
+        if(remaining == 0) {
+            // Out of moves without mating
+            table.store(key, attacking ? INFINITY : 0, attacking ? 0 : INFINITY, 0, 1);
+            return;
+        }
+
+        int childRemaining = remaining < 0 ? -1 : remaining - 1;
+        for(int i = 0; i < count; i++) {
+            board.makeMove(moveList[i]);
+            childKeys[ply][i] = tableKey(board.getKey(), childRemaining);
+            childDraws[ply][i] = board.isRepetition(1) || board.getHalfMoves() >= 100 || ply + 1 >= MAX_DEPTH
+                    || Endgames.isInsufficientMaterial(board);
+            board.unmakeMove();
+        }
+
+        while(true) {
+            // The move to search is the one most likely to prove the position won, the one with the least delta
+            int phi = INFINITY;
+            int delta = 0;
+            int bestIndex = 0;
+            int bestPhi = 0;
+            int secondDelta = INFINITY;
+            for(int i = 0; i < count; i++) {
+                int childPhi = childPhi(ply, i, attacking);
+                int childDelta = childDelta(ply, i, attacking);
+                if(childDelta < phi) {
+                    secondDelta = phi;
+                    phi = childDelta;
+                    bestIndex = i;
+                    bestPhi = childPhi;
+                } else if(childDelta < secondDelta) {
+                    secondDelta = childDelta;
+                }
+                // Only a move that can not be won makes delta infinite: a large sum is not a proof
+                delta = childPhi >= INFINITY || delta >= INFINITY ? INFINITY : Math.min(INFINITY - 1, delta + childPhi);
+            }
+
+            if(phi >= phiThreshold || delta >= deltaThreshold || stopped) {
+                table.store(key, phi, delta, mateDistance(ply, count, attacking, phi, delta), nodes - startNodes);
+                return;
+            }
+
+            // The move may use our margin on delta for its phi, and must stop once it is no longer the best
+            int childPhiThreshold = deltaThreshold >= INFINITY ? INFINITY : Math.min(INFINITY - 1, deltaThreshold - delta + bestPhi);
+            int childDeltaThreshold = Math.min(phiThreshold, secondDelta >= INFINITY - 1 ? secondDelta : secondDelta + 1);
+            board.makeMove(moveList[bestIndex]);
+            search(ply + 1, childRemaining, childKeys[ply][bestIndex], childPhiThreshold, childDeltaThreshold);
+            board.unmakeMove();
+        }
+    }
+
+    /**
+     * Proof number of the position after a move, for its side to move. Unknown positions start at 1.
+     */
+    private int childPhi(int ply, int i, boolean attacking) {
+        if(childDraws[ply][i]) {
+            // The defender is to move after the attacker's move, and escapes by the draw
+            return attacking ? 0 : INFINITY;
+        }
+        int index = table.find(childKeys[ply][i]);
+        return index >= 0 ? table.getPhi(index) : 1;
+    }
+
+    private int childDelta(int ply, int i, boolean attacking) {
+        if(childDraws[ply][i]) {
+            return attacking ? INFINITY : 0;
+        }
+        int index = table.find(childKeys[ply][i]);
+        return index >= 0 ? table.getDelta(index) : 1;
+    }
+
+    /**
+     * Plies to mate from a position just solved as a mate: the quickest mate for the attacker, the longest
+     * resistance for the defender
+     */
+    private int mateDistance(int ply, int count, boolean attacking, int phi, int delta) {
+        if(attacking ? phi != 0 : delta != 0) {
+            return 0;
+        }
+        int distance = attacking ? Integer.MAX_VALUE : 0;
+        for(int i = 0; i < count; i++) {
+            int index = childDraws[ply][i] ? -1 : table.find(childKeys[ply][i]);
+            boolean mates = index >= 0 && (attacking ? table.getDelta(index) == 0 : table.getPhi(index) == 0);
+            if(mates) {
+                distance = attacking ? Math.min(distance, table.getDistance(index)) : Math.max(distance, table.getDistance(index));
+            }
+        }
+        return distance == Integer.MAX_VALUE ? 0 : distance + 1;
+    }
+
+    /**
+     * Follow the proven moves from the root through the table to the mate. A position whose entry has been
+     * replaced is proven again, with a node budget of its own.
+     */
+    private int[] readLine(int remaining) {
+        List<Integer> found = new ArrayList<>();
+        int ply = 0;
+        while(ply < MAX_DEPTH) {
+            boolean attacking = board.getSideToMove() == attacker;
+            int count = MoveGenerator.generateLegalMoves(board, moves[ply]);
+            int move = PackedMove.NONE;
+            for(int attempt = 0; attempt < 2 && move == PackedMove.NONE && count > 0; attempt++) {
+                if(attempt > 0) {
+                    long limit = this.nodeLimit;
+                    this.nodeLimit = this.nodes + limit;
+                    this.stopped = false;
+                    search(ply, remaining, tableKey(board.getKey(), remaining), INFINITY, INFINITY);
+                    this.nodeLimit = limit;
+                    count = MoveGenerator.generateLegalMoves(board, moves[ply]);
+                }
+                move = provenMove(moves[ply], count, remaining < 0 ? -1 : remaining - 1, attacking);
+            }
+            if(move == PackedMove.NONE) {
+                break;
+            }
+            found.add(move);
+            board.makeMove(move);
+            remaining = remaining < 0 ? -1 : remaining - 1;
+            ply++;
+        }
+        while(ply-- > 0) {
+            board.unmakeMove();
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The move keeping to the mate: for the attacker the quickest mate, for the defender the longest resistance
+     * @return the move, or {@link PackedMove#NONE} if the table does not have one
+     */
+    private int provenMove(int[] moveList, int count, int childRemaining, boolean attacking) {
+        int best = PackedMove.NONE;
+        int bestDistance = attacking ? Integer.MAX_VALUE : -1;
+        for(int i = 0; i < count; i++) {
+            board.makeMove(moveList[i]);
+            int index = board.isRepetition(1) ? -1 : table.find(tableKey(board.getKey(), childRemaining));
+            board.unmakeMove();
+            if(index < 0 || (attacking ? table.getDelta(index) : table.getPhi(index)) != 0) {
+                if(!attacking) {
+                    // A defence the table does not know is mated can not be followed
+                    return PackedMove.NONE;
+                }
+                continue;
+            }
+            int distance = table.getDistance(index);
+            if(attacking ? distance < bestDistance : distance > bestDistance) {
+                best = moveList[i];
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Key of a position in the table: positions with different numbers of plies left to mate in are different
+     */
+    private static long tableKey(long key, int remaining) {
+        return key ^ (remaining + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Stop searching after a number of nodes
+     * @param nodeLimit the number of nodes, checked every {@link TimeManager#CHECK_INTERVAL} nodes
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    public Result getResult() { return this.result; }
+    public int[] getLine() { return this.line; }
+    public long getNodes() { return this.nodes; }
+    public long getElapsedNanos() { return this.elapsedNanos; }
+
+    /**
+     * Number of moves of the attacker to mate
+     * @return the moves, or 0 if no mate was found
+     */
+    public int getMateMoves() {
+        return (this.line.length + 1) / 2;
+    }
+
+    /**
+     * Describe the result of the last search, with the mating line in standard algebraic notation
+     * @param position the position searched
+     * @return the description
+     */
+    public String toString(HeadlessBoard position) {
+        StringBuilder sb = new StringBuilder();
+        if(this.result == Result.MATE) {
+            HeadlessBoard replay = new HeadlessBoard(position);
+            sb.append("mate in ").append(getMateMoves()).append(':');
+            for(int move : this.line) {
+                sb.append(' ').append(PGNUtils.toSan(replay, move));
+                replay.makeMove(move);
+            }
+        } else {
+            sb.append(this.result == Result.NO_MATE ? "no mate" : "unknown");
+        }
+        return sb.append(String.format("; %,d nodes in %d ms", this.nodes, TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos))).toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.board == null ? "No search" : toString(this.board);
+    }
+}
@@ -0,0 +1,84 @@
+package com.chess.engine.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size cache of proof and disproof numbers for the {@link MateSolver}, indexed by key. Entries are kept in
+ * buckets of two; a new position replaces the entry of its bucket that took the least work to compute, so the
+ * results of large subtrees, the most costly to find again, survive longest.
+ * A table is used by one solver at a time.
+ */
+final class ProofTable {
+
+    // Bytes per entry: key, proof and disproof numbers, mate distance and work
+    private static final int ENTRY_BYTES = 24;
+
+    private final long[] keys;
+    private final int[] phi;
+    private final int[] delta;
+    private final int[] distance;
+    private final int[] work;
+    private final int mask;
+
+    /**
+     * Create a table
+     * @param sizeMb the size in megabytes, rounded down to a power of 2 number of buckets
+     */
+    ProofTable(int sizeMb) {
+        if(sizeMb < 1) {
+            throw new IllegalArgumentException("Proof table size must be at least 1MB: " + sizeMb);
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1L << 30, (sizeMb * 1024L * 1024L) / ENTRY_BYTES));
+        this.keys = new long[entries];
+        this.phi = new int[entries];
+        this.delta = new int[entries];
+        this.distance = new int[entries];
+        this.work = new int[entries];
+        this.mask = (entries - 1) & ~1;
+    }
+
+    /**
+     * Look up a position
+     * @param key the key of the position
+     * @return the index of its entry, or -1 if it is not in the table
+     */
+    int find(long key) {
+        int index = (int) key & this.mask;
+        if(this.keys[index] == key && this.work[index] > 0) {
+            return index;
+        }
+        return this.keys[index + 1] == key && this.work[index + 1] > 0 ? index + 1 : -1;
+    }
+
+    /**
+     * Store the numbers of a position
+     * @param key the key of the position
+     * @param phi the proof number of the side to move
+     * @param delta the disproof number of the side to move
+     * @param distance the plies to mate, if proven to be a mate
+     * @param work the nodes spent on the position, at least 1
+     */
+    void store(long key, int phi, int delta, int distance, long work) {
+        int index = (int) key & this.mask;
+        if(this.keys[index] != key && (this.keys[index + 1] == key || this.work[index + 1] < this.work[index])) {
+            index++;
+        }
+        this.keys[index] = key;
+        this.phi[index] = phi;
+        this.delta[index] = delta;
+        this.distance[index] = distance;
+        this.work[index] = (int) Math.max(1, Math.min(work, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Remove all entries
+     */
+    void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.work, 0);
+    }
+
+    int getPhi(int index) { return this.phi[index]; }
+    int getDelta(int index) { return this.delta[index]; }
+    int getDistance(int index) { return this.distance[index]; }
+}
@@ -0,0 +1,50 @@
+package com.chess.engine.search;
+
+import com.chess.engine.moves.PackedMove;
+
+/**
+ * One line of play found by a search: its moves from the root, score and the depth it was searched to
+ */
+public final class PvLine {
+
+    private final int depth;
+    private final int score;
+    private final int[] moves;
+
+    /**
+     * Create a line
+     * @param depth the depth searched
+     * @param score the score from the point of view of the side to move at the root
+     * @param moves the moves, starting from the root
+     */
+    public PvLine(int depth, int score, int[] moves) {
+        this.depth = depth;
+        this.score = score;
+        this.moves = moves.clone();
+    }
+
+    public int getDepth() { return this.depth; }
+    public int getScore() { return this.score; }
+    public int getMove() { return this.moves.length > 0 ? this.moves[0] : PackedMove.NONE; }
+    public int[] getMoves() { return this.moves.clone(); }
+
+    /**
+     * The moves in coordinate notation
+     * @return the moves separated by spaces, e.g. "e2e4 e7e5 g1f3"
+     */
+    public String getMovesString() {
+        StringBuilder builder = new StringBuilder();
+        for(int move : this.moves) {
+            if(builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(PackedMove.toString(move));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return Search.scoreToString(score) + " (depth " + depth + ") " + getMovesString();
+    }
+}
@@ -0,0 +1,561 @@
+package com.chess.engine.search;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.evaluation.Endgames;
+import com.chess.engine.evaluation.Evaluator;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+import com.chess.engine.tablebase.Tablebases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Finds the best move for a {@link HeadlessBoard}: iterative deepening of a principal variation alpha-beta
+ * search, with a quiescence search of captures at the leaves. Results are cached in a
+ * {@link TranspositionTable}, and moves are ordered by the table's move, captures (most valuable victim first),
+ * killer moves and history. How long to search is left to a {@link TimeManager}, checked every few thousand
+ * nodes, and the search can be stopped from another thread with {@link #stop()}. For analysis it can find the
+ * best few lines rather than just the best move: each further line is a search of the root without the moves
+ * of the lines already found. Positions in the endgame tablebases are not searched: their exact result is
+ * turned into a mate or draw score.
+ * A search works on its own copy of the board and has its own evaluator, so use one search per thread.
+ */
+public class Search {
+
+    // Deepest the search can go, including the quiescence search
+    public static final int MAX_PLY = 100;
+
+    // Scores: larger than any evaluation, and mate scores counting down with the distance to mate. A mate can be
+    // as far as the deepest ply plus the longest mate in the tablebases, and the bound leaves room for both
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MATE_BOUND = MATE - MAX_PLY - Tablebases.MAX_PLIES_TO_MATE;
+
+    // Move ordering: table move, then captures and promotions, then killers, then quiet moves by history
+    private static final int TABLE_MOVE_ORDER = 1 << 30;
+    private static final int CAPTURE_ORDER = 1 << 28;
+    private static final int KILLER_ORDER = 1 << 27;
+
+    private final TranspositionTable table;
+    private final TimeManager timeManager;
+    private final Evaluator evaluator;
+
+    // Board being searched, a copy of the one given
+    private HeadlessBoard board;
+
+    // Set to abandon the search, by the time manager or another thread
+    private volatile boolean stopped;
+    private long nodes;
+    private long tablebaseHits;
+
+    // Nodes after which to stop, checked as often as the time
+    private long nodeLimit = Long.MAX_VALUE;
+
+    // Move lists and their ordering scores for each ply, so searching does not allocate
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] order = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+
+    // Quiet moves that caused cutoffs: two per ply, and by origin and destination square
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[64][64];
+
+    // Principal variation found at each ply
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    // Result of the last completed iteration
+    private int bestMove = PackedMove.NONE;
+    private int score = 0;
+    private int depth = 0;
+    private int[] pv = new int[0];
+    private List<PvLine> lines = Collections.emptyList();
+
+    // Number of lines to find, and the root moves of the lines found so far in the current iteration
+    private int multiPv = 1;
+    private final int[] excluded = new int[MoveGenerator.MAX_MOVES];
+    private int excludedCount = 0;
+
+    // Told the lines found after each completed iteration, if set
+    private Consumer<List<PvLine>> iterationListener = null;
+
+    /**
+     * Create a search
+     * @param table the transposition table, which may be shared with other searches
+     * @param timeManager the time manager, started by the caller before each search
+     */
+    public Search(TranspositionTable table, TimeManager timeManager) {
+        this(table, timeManager, new Evaluator());
+    }
+
+    /**
+     * Create a search with its own evaluation, e.g. to play one network against another
+     * @param table the transposition table, which may be shared with other searches
+     * @param timeManager the time manager, started by the caller before each search
+     * @param evaluator the evaluator for the positions searched, used by this search only
+     */
+    public Search(TranspositionTable table, TimeManager timeManager, Evaluator evaluator) {
+        this.table = table;
+        this.timeManager = timeManager;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Search for the best move until the time manager says to stop, the depth is reached or {@link #stop()} is called
+     * @param position the position to search, which is not changed
+     * @param maxDepth the deepest iteration to search
+     * @return the best move, or {@link PackedMove#NONE} if there are no legal moves
+     */
+    public int search(HeadlessBoard position, int maxDepth) {
+        this.board = new HeadlessBoard(position);
+        this.stopped = false;
+        this.nodes = 0;
+        this.tablebaseHits = 0;
+        this.bestMove = PackedMove.NONE;
+        this.score = 0;
+        this.depth = 0;
+        this.pv = new int[0];
+        this.lines = Collections.emptyList();
+        for(int[] killer : killers) {
+            Arrays.fill(killer, PackedMove.NONE);
+        }
+        for(int[] fromSquare : history) {
+            for(int to = 0; to < 64; to++) {
+                fromSquare[to] >>= 1;
+            }
+        }
+        table.newSearch();
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(board, rootMoves);
+        if(count == 0) {
+            timeManager.finish();
+            return PackedMove.NONE;
+        }
+        this.bestMove = rootMoves[0];
+        if(count == 1) {
+            timeManager.onSingleReply();
+        }
+
+        iterations:
+        for(int iteration = 1; iteration <= Math.min(maxDepth, MAX_PLY - 1); iteration++) {
+            List<PvLine> found = new ArrayList<>(multiPv);
+            excludedCount = 0;
+            for(int line = 0; line < Math.min(multiPv, count); line++) {
+                int value = alphaBeta(iteration, -INFINITY, INFINITY, 0);
+                if(stopped) {
+                    break iterations;
+                }
+                found.add(new PvLine(iteration, value, Arrays.copyOfRange(pvTable[0], 0, pvLength[0])));
+                excluded[excludedCount++] = pvTable[0][0];
+            }
+            excludedCount = 0;
+
+            // A later line can come out ahead, as each line is searched on its own
+            found.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+            PvLine best = found.get(0);
+            this.score = best.getScore();
+            this.depth = iteration;
+            this.pv = best.getMoves();
+            this.lines = Collections.unmodifiableList(found);
+            if(pv.length > 0) {
+                this.bestMove = pv[0];
+            }
+            if(iterationListener != null) {
+                iterationListener.accept(this.lines);
+            }
+            timeManager.onIteration(iteration, bestMove, score);
+
+            // A mate within the depth searched can not be improved on by searching deeper, and neither can one
+            // beyond the deepest ply, which the search only finds through the tablebases
+            int mateDistance = MATE - Math.abs(score);
+            if(timeManager.shouldStop() || nodes >= nodeLimit
+                    || (Math.abs(score) >= MATE_BOUND && (mateDistance <= iteration || mateDistance >= MAX_PLY))) {
+                break;
+            }
+        }
+        timeManager.finish();
+        return this.bestMove;
+    }
+
+    /**
+     * Stop the search as soon as possible, keeping the result of the last completed iteration
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Alpha-beta search of the current position
+     * @return the score from the point of view of the side to move
+     */
+    private int alphaBeta(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        boolean pvNode = beta - alpha > 1;
+        if(ply > 0) {
+            // Any repetition is as good as a draw, as the side that repeated could do so again
+            if(board.getHalfMoves() >= 100 || board.isRepetition(1) || Endgames.isInsufficientMaterial(board)) {
+                return 0;
+            }
+
+            // No mate found from here can be better than one already found closer to the root
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+            if(alpha >= beta) {
+                return alpha;
+            }
+
+            // Few enough pieces left for the tablebases to know the result exactly
+            if(Long.bitCount(board.getOccupied()) <= Tablebases.MAX_PIECES) {
+                int result = Tablebases.probe(board);
+                if(result != Tablebases.NOT_FOUND) {
+                    tablebaseHits++;
+                    return tablebaseScore(result, ply);
+                }
+            }
+        }
+
+        // Look further in check, as there are few replies and they are forced
+        boolean inCheck = board.isInCheck();
+        if(inCheck) {
+            depth++;
+        }
+        if(depth <= 0) {
+            return quiesce(alpha, beta, ply);
+        }
+        if(ply >= MAX_PLY) {
+            return evaluator.evaluate(board);
+        }
+        countNode();
+
+        long key = board.getKey();
+        long entry = table.probe(key);
+        int tableMove = PackedMove.NONE;
+        if(entry != 0) {
+            tableMove = TranspositionTable.getMove(entry);
+            if(!pvNode && TranspositionTable.getDepth(entry) >= depth) {
+                int tableScore = TranspositionTable.fromStored(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if(bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && tableScore >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && tableScore <= alpha)) {
+                    return tableScore;
+                }
+            }
+        }
+
+        int count = inCheck ? MoveGenerator.generateEvasions(board, moves[ply]) : MoveGenerator.generateMoves(board, moves[ply]);
+        orderMoves(ply, count, tableMove);
+
+        int color = board.getSideToMove();
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        int legal = 0;
+        for(int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            if(ply == 0 && isExcluded(move)) {
+                continue;
+            }
+            boolean quiet = isQuiet(move);
+            board.makeMove(move);
+            if(board.isSquareAttacked(board.getKingSquare(color), color ^ 1)) {
+                board.unmakeMove();
+                continue;
+            }
+            legal++;
+
+            // The first move gets the full window, later ones are expected to fail low and only re-searched if not.
+            // Late quiet moves are searched a ply shallower first.
+            int value;
+            if(legal == 1) {
+                value = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                int reduction = depth >= 3 && legal > 4 && quiet && !inCheck && !board.isInCheck() ? 1 : 0;
+                value = -alphaBeta(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if(value > alpha && (reduction > 0 || value < beta)) {
+                    value = -alphaBeta(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            board.unmakeMove();
+            if(stopped) {
+                return 0;
+            }
+
+            if(value > best) {
+                best = value;
+                bestMove = move;
+                if(value > alpha) {
+                    alpha = value;
+                    updatePv(ply, move);
+                    if(alpha >= beta) {
+                        if(quiet) {
+                            updateQuietCutoff(ply, move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        if(legal == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        // The root without some of its moves is not the position the table knows it as
+        if(ply > 0 || excludedCount == 0) {
+            int bound = best >= beta ? TranspositionTable.BOUND_LOWER
+                    : best > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+            table.store(key, bestMove, TranspositionTable.toStored(best, ply), depth, bound);
+        }
+        return best;
+    }
+
+    /**
+     * Convert a tablebase result to a score: a mate score counting the plies to mate from the root, or a draw
+     */
+    private static int tablebaseScore(int result, int ply) {
+        if(Tablebases.isWin(result)) {
+            return MATE - ply - Tablebases.getPliesToMate(result);
+        } else if(Tablebases.isLoss(result)) {
+            return -MATE + ply + Tablebases.getPliesToMate(result);
+        }
+        return 0;
+    }
+
+    /**
+     * Search captures and queen promotions only, until the position is quiet
+     * @return the score from the point of view of the side to move
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        countNode();
+        if(stopped) {
+            return 0;
+        }
+
+        // The side to move can usually do at least as well as the static evaluation by not capturing
+        int best = evaluator.evaluate(board);
+        if(ply >= MAX_PLY || best >= beta) {
+            return best;
+        }
+        alpha = Math.max(alpha, best);
+
+        // Quiet moves are not generated at all, and under promotions are dropped
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateCaptures(board, list, 0);
+        int captures = 0;
+        for(int i = 0; i < count; i++) {
+            int promotion = PackedMove.promotion(list[i]);
+            if(promotion == PieceCode.QUEEN || promotion == PieceCode.EMPTY) {
+                list[captures++] = list[i];
+            }
+        }
+        orderMoves(ply, captures, PackedMove.NONE);
+
+        int color = board.getSideToMove();
+        for(int i = 0; i < captures; i++) {
+            int move = pickMove(ply, i, captures);
+            board.makeMove(move);
+            if(board.isSquareAttacked(board.getKingSquare(color), color ^ 1)) {
+                board.unmakeMove();
+                continue;
+            }
+            int value = -quiesce(-beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if(stopped) {
+                return 0;
+            }
+
+            if(value > best) {
+                best = value;
+                if(value > alpha) {
+                    alpha = value;
+                    if(alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Count a node, and every {@link TimeManager#CHECK_INTERVAL} nodes check whether time is up
+     */
+    private void countNode() {
+        if((++nodes & (TimeManager.CHECK_INTERVAL - 1)) == 0 && (timeManager.isHardLimitReached() || nodes >= nodeLimit)) {
+            stopped = true;
+        }
+    }
+
+    private boolean isExcluded(int move) {
+        for(int i = 0; i < excludedCount; i++) {
+            if(excluded[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a move neither captures nor promotes
+     */
+    private boolean isQuiet(int move) {
+        int to = PackedMove.to(move);
+        return board.getPiece(to) == PieceCode.EMPTY && PackedMove.promotion(move) == PieceCode.EMPTY
+                && !(to == board.getEpSquare() && PieceCode.type(board.getPiece(PackedMove.from(move))) == PieceCode.PAWN);
+    }
+
+    /**
+     * Give each move at a ply a score to order it by
+     */
+    private void orderMoves(int ply, int count, int tableMove) {
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        for(int i = 0; i < count; i++) {
+            int move = list[i];
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            if(move == tableMove) {
+                scores[i] = TABLE_MOVE_ORDER;
+            } else if(!isQuiet(move)) {
+                int victim = PieceCode.type(board.getPiece(to));
+                int attacker = PieceCode.type(board.getPiece(from));
+                scores[i] = CAPTURE_ORDER + (victim == PieceCode.EMPTY ? PieceCode.PAWN : victim) * 16
+                        - attacker + PackedMove.promotion(move) * 8;
+            } else if(move == killers[ply][0]) {
+                scores[i] = KILLER_ORDER + 1;
+            } else if(move == killers[ply][1]) {
+                scores[i] = KILLER_ORDER;
+            } else {
+                scores[i] = history[from][to];
+            }
+        }
+    }
+
+    /**
+     * Move the best remaining move at a ply to the given index and return it
+     */
+    private int pickMove(int ply, int index, int count) {
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        int best = index;
+        for(int i = index + 1; i < count; i++) {
+            if(scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+        return move;
+    }
+
+    /**
+     * Remember a quiet move that caused a cutoff, to try it early in similar positions
+     */
+    private void updateQuietCutoff(int ply, int move, int depth) {
+        if(killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] fromSquare = history[PackedMove.from(move)];
+        int to = PackedMove.to(move);
+        fromSquare[to] = Math.min(KILLER_ORDER - 1, fromSquare[to] + depth * depth);
+    }
+
+    /**
+     * The move is the best at this ply so far: the variation is the move followed by the best reply's variation
+     */
+    private void updatePv(int ply, int move) {
+        pvTable[ply][ply] = move;
+        int length = pvLength[ply + 1];
+        System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = Math.max(length, ply + 1);
+    }
+
+    /**
+     * Set how many lines to find, the best first
+     * @param multiPv the number of lines, at least 1
+     */
+    public void setMultiPv(int multiPv) {
+        this.multiPv = Math.max(1, multiPv);
+    }
+
+    /**
+     * Stop searching after a number of nodes, as well as when the time manager says to, so results do not depend
+     * on the speed of the machine. The limit is checked every {@link TimeManager#CHECK_INTERVAL} nodes.
+     * @param nodeLimit the number of nodes, or {@link Long#MAX_VALUE} for no limit
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Set a listener told the lines found after each completed iteration, on the searching thread
+     * @param listener the listener, or null for none
+     */
+    public void setIterationListener(Consumer<List<PvLine>> listener) {
+        this.iterationListener = listener;
+    }
+
+    /**
+     * Format a score for display
+     * @param score the score in centipawns, or a mate score
+     * @return e.g. "+0.35", "-1.20", "#3" (mate in 3) or "#-2" (mated in 2)
+     */
+    public static String scoreToString(int score) {
+        if(Math.abs(score) >= MATE_BOUND) {
+            int moves = (MATE - Math.abs(score) + 1) / 2;
+            return score > 0 ? "#" + moves : "#-" + moves;
+        }
+        return String.format("%+.2f", score / 100.0);
+    }
+
+    // Results of the last completed iteration
+    public int getBestMove() { return this.bestMove; }
+    public int getScore() { return this.score; }
+    public int getDepth() { return this.depth; }
+    public long getNodes() { return this.nodes; }
+    public long getTablebaseHits() { return this.tablebaseHits; }
+    public List<PvLine> getLines() { return this.lines; }
+    public TimeManager getTimeManager() { return this.timeManager; }
+    public TranspositionTable getTable() { return this.table; }
+
+    /**
+     * Get the principal variation, the best line of play found
+     * @return the moves of the line, starting with the best move
+     */
+    public int[] getPv() {
+        return this.pv.clone();
+    }
+
+    /**
+     * Get the principal variation in coordinate notation
+     * @return the moves of the line separated by spaces, e.g. "e2e4 e7e5 g1f3"
+     */
+    public String getPvString() {
+        StringBuilder builder = new StringBuilder();
+        for(int move : this.pv) {
+            if(builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(PackedMove.toString(move));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Depth %d, score %s, %d nodes, %d tablebase hits, pv %s", depth, scoreToString(score), nodes,
+                tablebaseHits, getPvString());
+    }
+}
@@ -0,0 +1,236 @@
+package com.chess.engine.search;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long a search may think. Each search gets a soft limit, the time it is expected to use,
+ * and a hard limit it must never pass. After every iteration the soft limit is scaled: up when the best
+ * move keeps changing or the score drops, down when the best move has been stable for a while, and the
+ * search ends at once with a single legal move. The hard limit is checked while searching, but only every
+ * {@link #CHECK_INTERVAL} nodes so reading the clock stays cheap. How far searches overran is recorded.
+ * A time manager is used by one search at a time, but the limits may be changed or the search aborted from
+ * another thread, e.g. when a ponder search becomes a real one.
+ */
+public class TimeManager {
+
+    // Nodes searched between checks of the hard limit (a power of 2)
+    public static final int CHECK_INTERVAL = 2048;
+
+    // Moves assumed to be left in the game when the time control does not say
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+
+    // Time kept back for the overhead of making the move, e.g. updating the UI
+    public static final long MOVE_OVERHEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+
+    // The hard limit is at most this many times the soft limit
+    private static final int HARD_LIMIT_FACTOR = 5;
+
+    // A new iteration is only started if this fraction of the soft limit is left, as it would not finish
+    private static final double NEXT_ITERATION_FRACTION = 0.6;
+
+    // A drop in score (centipawns) from one iteration to the next that is worth thinking longer about
+    private static final int SCORE_DROP = 30;
+
+    // Iterations with the same best move after which it is considered stable
+    private static final int STABLE_ITERATIONS = 4;
+
+    // Limits for the current search, in nanoseconds from its start
+    private volatile long start;
+    private volatile long softNanos;
+    private volatile long hardNanos;
+    private volatile boolean aborted;
+    private double scale;
+
+    // History of the current search's iterations
+    private int previousBestMove;
+    private int previousScore;
+    private double instability;
+    private int stableIterations;
+    private boolean singleReply;
+
+    // Statistics over all searches
+    private long searches = 0;
+    private long overruns = 0;
+    private long totalOverrunNanos = 0;
+    private long maxOverrunNanos = 0;
+    private long totalUsedNanos = 0;
+    private long totalSoftNanos = 0;
+
+    /**
+     * Start a search under a clock
+     * @param remainingNanos the time left on the engine's clock
+     * @param incrementNanos the time added after the move
+     * @param delayNanos the time the move may take before the clock starts counting
+     * @param movesToGo moves until the next time control, or 0 if the rest of the game is played in this time
+     */
+    public void start(long remainingNanos, long incrementNanos, long delayNanos, int movesToGo) {
+        begin(0, 0);
+        setLimits(remainingNanos, incrementNanos, delayNanos, movesToGo, 0);
+    }
+
+    /**
+     * The move being pondered on was played: from now on, search under the clock instead of indefinitely,
+     * keeping what the search has learnt so far about the stability of its best move. Half the time spent
+     * pondering counts as already used, up to half the soft limit, as the deeper search already done
+     * makes the move more reliable.
+     * @param remainingNanos the time left on the engine's clock
+     * @param incrementNanos the time added after the move
+     * @param delayNanos the time the move may take before the clock starts counting
+     * @param movesToGo moves until the next time control, or 0 if the rest of the game is played in this time
+     */
+    public void ponderHit(long remainingNanos, long incrementNanos, long delayNanos, int movesToGo) {
+        setLimits(remainingNanos, incrementNanos, delayNanos, movesToGo, getElapsedNanos() / 2);
+    }
+
+    /**
+     * The move being pondered on was played in a game without a clock: from now on, search for a fixed time,
+     * with half the time spent pondering (up to half the move time) counting as already used
+     * @param moveNanos the time to search
+     */
+    public void ponderHit(long moveNanos) {
+        // Start first, so a running search never measures the old start against the new limits
+        this.start = System.nanoTime() - Math.min(getElapsedNanos() / 2, moveNanos / 2);
+        this.hardNanos = moveNanos;
+        this.softNanos = moveNanos;
+    }
+
+    private void setLimits(long remainingNanos, long incrementNanos, long delayNanos, int movesToGo, long creditNanos) {
+        long available = Math.max(0, remainingNanos - MOVE_OVERHEAD_NANOS);
+        int moves = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+
+        // Never plan to use more than is on the clock, but the delay is always free
+        long soft = available / moves + incrementNanos * 3 / 4 + delayNanos;
+        long hard = Math.min(soft * HARD_LIMIT_FACTOR, available + delayNanos);
+        if(movesToGo == 1) {
+            soft = hard;
+        }
+        soft = Math.min(soft, hard);
+
+        // Start first, so a running search never measures the old start against the new limits
+        this.start = System.nanoTime() - Math.min(creditNanos, soft / 2);
+        this.hardNanos = hard;
+        this.softNanos = soft;
+    }
+
+    /**
+     * Start a search that uses a fixed time for the move
+     * @param moveNanos the time to search
+     */
+    public void startFixed(long moveNanos) {
+        begin(moveNanos, moveNanos);
+    }
+
+    /**
+     * Start a search that runs until it reaches its depth or is stopped, e.g. analysis or pondering
+     */
+    public void startInfinite() {
+        begin(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    private void begin(long soft, long hard) {
+        this.start = System.nanoTime();
+        this.softNanos = soft;
+        this.hardNanos = hard;
+        this.scale = 1.0;
+        this.previousBestMove = 0;
+        this.previousScore = 0;
+        this.instability = 0;
+        this.stableIterations = 0;
+        this.singleReply = false;
+        this.aborted = false;
+    }
+
+    /**
+     * Stop the search as soon as it next checks the time, e.g. when the position it searches is no longer wanted
+     */
+    public void abort() {
+        this.aborted = true;
+    }
+
+    /**
+     * The root position has a single legal move, so there is nothing to think about
+     */
+    public void onSingleReply() {
+        this.singleReply = true;
+    }
+
+    /**
+     * Adjust the soft limit after an iteration of the search has completed
+     * @param depth the depth searched
+     * @param bestMove the best move found
+     * @param score the score of the best move
+     */
+    public void onIteration(int depth, int bestMove, int score) {
+        if(depth > 1) {
+            boolean changed = bestMove != this.previousBestMove;
+            this.instability = this.instability * 0.5 + (changed ? 1 : 0);
+            this.stableIterations = changed ? 0 : this.stableIterations + 1;
+
+            double factor = 1 + 0.6 * this.instability;
+            int drop = this.previousScore - score;
+            if(drop > SCORE_DROP) {
+                factor *= 1 + Math.min(drop, 150) / 150.0;
+            } else if(this.stableIterations >= STABLE_ITERATIONS) {
+                factor *= 0.6;
+            }
+            this.scale = factor;
+        }
+        this.previousBestMove = bestMove;
+        this.previousScore = score;
+    }
+
+    /**
+     * Whether the search should stop rather than start another iteration
+     * @return {@code true} to stop
+     */
+    public boolean shouldStop() {
+        if(this.singleReply || this.aborted) {
+            return true;
+        }
+        if(this.softNanos == Long.MAX_VALUE) {
+            return false;
+        }
+        long target = (long) Math.min(this.softNanos * this.scale, this.hardNanos);
+        return getElapsedNanos() >= target * NEXT_ITERATION_FRACTION;
+    }
+
+    /**
+     * Whether the search has run out of time (or been aborted) and must be stopped now. Only call every {@link #CHECK_INTERVAL} nodes.
+     * @return {@code true} once the hard limit has passed
+     */
+    public boolean isHardLimitReached() {
+        return this.aborted || (this.hardNanos != Long.MAX_VALUE && getElapsedNanos() >= this.hardNanos);
+    }
+
+    /**
+     * Record the time taken when the search has finished
+     */
+    public void finish() {
+        long used = getElapsedNanos();
+        this.searches++;
+        this.totalUsedNanos += used;
+        if(this.softNanos != Long.MAX_VALUE) {
+            this.totalSoftNanos += this.softNanos;
+            long overrun = used - this.hardNanos;
+            if(overrun > 0) {
+                this.overruns++;
+                this.totalOverrunNanos += overrun;
+                this.maxOverrunNanos = Math.max(this.maxOverrunNanos, overrun);
+            }
+        }
+    }
+
+    public long getElapsedNanos() { return System.nanoTime() - this.start; }
+    public long getSoftNanos() { return this.softNanos; }
+    public long getHardNanos() { return this.hardNanos; }
+    public long getSearches() { return this.searches; }
+    public long getOverruns() { return this.overruns; }
+    public long getMaxOverrunNanos() { return this.maxOverrunNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("Time: %d searches, %dms used of %dms planned, %d overruns (%dms total, %dms max)",
+                searches, TimeUnit.NANOSECONDS.toMillis(totalUsedNanos), TimeUnit.NANOSECONDS.toMillis(totalSoftNanos),
+                overruns, TimeUnit.NANOSECONDS.toMillis(totalOverrunNanos), TimeUnit.NANOSECONDS.toMillis(maxOverrunNanos));
+    }
+}
@@ -0,0 +1,149 @@
+package com.chess.engine.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size cache of search results, indexed by the board's Zobrist key. Each entry is two longs:
+ * the key xor-ed with the data, and the data packed as
+ * - bits 0-15: best move ({@link com.chess.engine.moves.PackedMove})
+ * - bits 16-31: score
+ * - bits 32-39: depth
+ * - bits 40-41: bound
+ * - bits 42-49: generation (search the entry was stored in)
+ * Storing the key xor-ed with the data means an entry torn by two threads writing at once no longer
+ * matches its key, so the table can be shared by searches on several threads without locking.
+ */
+public class TranspositionTable {
+
+    // Default size of the table
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    // Kinds of score stored
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    // Incremented for each search, so entries from old searches are replaced first
+    private int generation = 0;
+
+    /**
+     * Create a transposition table with the default size
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * Create a transposition table
+     * @param sizeMb the size in megabytes, rounded down to a power of 2 number of entries
+     */
+    public TranspositionTable(int sizeMb) {
+        if(sizeMb < 1) {
+            throw new IllegalArgumentException("Transposition table size must be at least 1MB: " + sizeMb);
+        }
+        int entries = Integer.highestOneBit((int) Math.min(1L << 30, (sizeMb * 1024L * 1024L) / 16));
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * Look up a position
+     * @param key the Zobrist key of the position
+     * @return the packed entry, or 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int index = (int) key & this.mask;
+        long entry = this.data[index];
+        return (this.keys[index] ^ entry) == key ? entry : 0;
+    }
+
+    /**
+     * Store the result of searching a position, unless it would replace a deeper result of the current search
+     * @param key the Zobrist key of the position
+     * @param move the best move, or {@link com.chess.engine.moves.PackedMove#NONE}
+     * @param score the score, with mate scores relative to the position (see {@link #toStored(int, int)})
+     * @param depth the depth searched
+     * @param bound {@link #BOUND_UPPER}, {@link #BOUND_LOWER} or {@link #BOUND_EXACT}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & this.mask;
+        long existing = this.data[index];
+        boolean sameKey = (this.keys[index] ^ existing) == key;
+        if(existing != 0 && getGeneration(existing) == this.generation && bound != BOUND_EXACT
+                && getDepth(existing) > depth + 2) {
+            return;
+        }
+
+        // Keep the old best move if this search did not find one
+        if(move == 0 && sameKey) {
+            move = getMove(existing);
+        }
+        long entry = (move & 0xFFFFL) | ((score & 0xFFFFL) << 16) | ((long) Math.max(0, Math.min(depth, 255)) << 32)
+                | ((long) bound << 40) | ((long) this.generation << 42);
+        this.data[index] = entry;
+        this.keys[index] = key ^ entry;
+    }
+
+    /**
+     * Start a new search, making all current entries older
+     */
+    public void newSearch() {
+        this.generation = (this.generation + 1) & 0xFF;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.data, 0);
+        this.generation = 0;
+    }
+
+    /**
+     * Estimate how full the table is from its first entries
+     * @return the number of the first 1000 entries used by the current search
+     */
+    public int getHashFull() {
+        int used = 0;
+        for(int i = 0; i < 1000 && i < this.data.length; i++) {
+            if(this.data[i] != 0 && getGeneration(this.data[i]) == this.generation) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    // Fields of a packed entry
+    public static int getMove(long entry) { return (int) (entry & 0xFFFF); }
+    public static int getScore(long entry) { return (short) (entry >>> 16); }
+    public static int getDepth(long entry) { return (int) ((entry >>> 32) & 0xFF); }
+    public static int getBound(long entry) { return (int) ((entry >>> 40) & 3); }
+    private static int getGeneration(long entry) { return (int) ((entry >>> 42) & 0xFF); }
+
+    /**
+     * Convert a mate score from distance to the root to distance to the position, so it is correct wherever
+     * the position is found again
+     * @param score the score in the search
+     * @param ply the distance of the position from the root
+     * @return the score to store
+     */
+    public static int toStored(int score, int ply) {
+        return score >= Search.MATE_BOUND ? score + ply : score <= -Search.MATE_BOUND ? score - ply : score;
+    }
+
+    /**
+     * Convert a stored mate score back to distance from the root
+     * @param score the stored score
+     * @param ply the distance of the position from the root
+     * @return the score in the search
+     */
+    public static int fromStored(int score, int ply) {
+        return score >= Search.MATE_BOUND ? score - ply : score <= -Search.MATE_BOUND ? score + ply : score;
+    }
+}
@@ -0,0 +1,513 @@
+package com.chess.engine.tablebase;
+
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates win/draw/loss and distance to mate tables for endings with 3 and 4 pieces by retrograde analysis.
+ *
+ * Every index of a table is first set up and its legal moves generated: mates and stalemates are final,
+ * and moves that capture or promote leave the table, so their results are read from the smaller tables
+ * generated before. Then positions are resolved in order of plies to mate. In iteration n, the positions
+ * resolved in iteration n - 1 un-make every possible move to mark their predecessors, and each marked
+ * position is decided again from its children: a win if a child is lost, a loss if every child is won.
+ * Resolving strictly by distance makes the stored distances exact. Positions never resolved are draws.
+ * Each pass runs in parallel over ranges of the index space.
+ *
+ * Castling and en passant are not part of the tables, as for other tablebases.
+ *
+ * Usage: TablebaseGenerator [-dir directory] [-threads n] [signature...], e.g. KQvKR. Without signatures every
+ * 3 and 4 piece table is generated. Tables already in the directory are reused, missing smaller ones are generated.
+ */
+public class TablebaseGenerator {
+
+    // Markers in the working values, which otherwise hold plies to mate plus one
+    private static final int UNKNOWN = 0;
+    private static final int STALEMATE = 254;
+    private static final int INVALID = 255;
+
+    // Smallest range of indices processed as one task
+    private static final int TASK_SIZE = 1 << 14;
+
+    private final File directory;
+    private final ForkJoinPool pool;
+    private final Map<String, TablebaseTable> tables = new HashMap<>();
+
+    /**
+     * Create a generator
+     * @param directory the directory to write the tables to
+     * @param threads number of threads to generate with
+     */
+    public TablebaseGenerator(File directory, int threads) {
+        this.directory = directory;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String directory = Tablebases.DEFAULT_DIRECTORY;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> signatures = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            switch(args[i]) {
+                case "-dir": directory = args[++i]; break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                default: signatures.add(canonical(args[i])); break;
+            }
+        }
+        if(signatures.isEmpty()) {
+            signatures = allSignatures();
+        }
+
+        File output = new File(directory);
+        if(!output.isDirectory() && !output.mkdirs()) {
+            System.err.println("Could not create " + output);
+            return;
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(output, threads);
+        for(String signature : signatures) {
+            generator.ensure(signature);
+        }
+    }
+
+    /**
+     * Signatures of every ending with 3 or 4 pieces
+     */
+    static List<String> allSignatures() {
+        String types = TablebaseIndex.TYPE_ORDER;
+        List<String> signatures = new ArrayList<>();
+        for(int a = 0; a < types.length(); a++) {
+            signatures.add(canonical("K" + types.charAt(a) + "vK"));
+        }
+        for(int a = 0; a < types.length(); a++) {
+            for(int b = a; b < types.length(); b++) {
+                signatures.add(canonical("K" + types.charAt(a) + types.charAt(b) + "vK"));
+                signatures.add(canonical("K" + types.charAt(a) + "vK" + types.charAt(b)));
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * Write a signature in canonical form: each side's pieces in {@link TablebaseIndex#TYPE_ORDER}
+     * and the stronger side first
+     * @param signature a signature such as "KRvKQ"
+     * @return the canonical signature, such as "KQvKR"
+     * @throws IllegalArgumentException if the signature is not valid
+     */
+    static String canonical(String signature) {
+        String upper = signature.toUpperCase();
+        int separator = upper.indexOf('V');
+        if(!upper.startsWith("K") || separator < 0 || !upper.startsWith("K", separator + 1)) {
+            throw new IllegalArgumentException("Not a material signature: " + signature);
+        }
+        String white = sortPieces(upper.substring(1, separator));
+        String black = sortPieces(upper.substring(separator + 2));
+        if(2 + white.length() + black.length() > Tablebases.MAX_PIECES) {
+            throw new IllegalArgumentException("Too many pieces: " + signature);
+        }
+        return TablebaseIndex.isStronger(white, black) ? "K" + white + "vK" + black : "K" + black + "vK" + white;
+    }
+
+    private static String sortPieces(String pieces) {
+        StringBuilder builder = new StringBuilder();
+        for(char type : TablebaseIndex.TYPE_ORDER.toCharArray()) {
+            for(char piece : pieces.toCharArray()) {
+                if(piece == type) {
+                    builder.append(piece);
+                }
+            }
+        }
+        if(builder.length() != pieces.length()) {
+            throw new IllegalArgumentException("Unknown pieces: " + pieces);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The tables a table's captures and promotions lead to
+     */
+    static List<String> dependencies(String signature) {
+        List<String> dependencies = new ArrayList<>();
+        for(int i = 0; i < signature.length(); i++) {
+            char piece = signature.charAt(i);
+            if(piece == 'K' || piece == 'v') {
+                continue;
+            }
+            String before = signature.substring(0, i);
+            String after = signature.substring(i + 1);
+            if(signature.length() > 4) {
+                dependencies.add(canonical(before + after));
+            }
+            if(piece == 'P') {
+                for(char promotion : "QRBN".toCharArray()) {
+                    dependencies.add(canonical(before + promotion + after));
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Make sure the table for a signature is available, reading it from the directory or generating it
+     * (and the tables it depends on)
+     * @param signature a canonical signature
+     * @throws IOException if a table could not be read or written
+     */
+    public void ensure(String signature) throws IOException {
+        if(this.tables.containsKey(signature)) {
+            return;
+        }
+        File file = new File(this.directory, signature + Tablebases.EXTENSION);
+        if(!file.isFile()) {
+            for(String dependency : dependencies(signature)) {
+                ensure(dependency);
+            }
+            generate(signature, file);
+        }
+        this.tables.put(signature, TablebaseTable.open(file, signature));
+    }
+
+    /**
+     * Generate one table, whose dependencies must be available
+     */
+    private void generate(String signature, File file) throws IOException {
+        long start = System.nanoTime();
+        Generation generation = new Generation(new TablebaseIndex(signature));
+        int size = generation.index.size();
+
+        run(generation::initialize, size);
+        int plies = 0;
+        while(true) {
+            int iteration = plies + 1;
+            if(iteration + 1 >= STALEMATE) {
+                throw new IllegalStateException("Mate too long to store in " + signature);
+            }
+            run((from, to, board) -> generation.markPredecessors(from, to, iteration), size);
+            long resolved = run((from, to, board) -> generation.resolve(from, to, board, iteration), size);
+            if(resolved == 0 && iteration >= generation.lastExitEvent.get()) {
+                break;
+            }
+            plies = iteration;
+        }
+
+        // Draws, stalemates and illegal positions are all stored as 0
+        byte[] values = generation.values;
+        long wins = 0;
+        long losses = 0;
+        long draws = 0;
+        int longest = 0;
+        for(int i = 0; i < size; i++) {
+            int value = values[i] & 0xFF;
+            if(value == INVALID) {
+                values[i] = 0;
+            } else if(value == UNKNOWN || value == STALEMATE) {
+                values[i] = 0;
+                draws++;
+            } else {
+                if(Tablebases.isWin(value)) wins++; else losses++;
+                longest = Math.max(longest, Tablebases.getPliesToMate(value));
+            }
+        }
+        TablebaseTable.write(file, values);
+        System.out.println(String.format("%s: %,d wins, %,d draws, %,d losses, longest mate %d plies, %d iterations in %.1fs",
+                signature, wins, draws, losses, longest, plies, (System.nanoTime() - start) / 1e9));
+    }
+
+    /**
+     * An operation on a range of indices
+     */
+    private interface RangeOperation {
+        /**
+         * @return the number of positions resolved
+         */
+        long apply(int from, int to, HeadlessBoard board);
+    }
+
+    /**
+     * Run an operation over all indices on the pool
+     * @return the total number of positions resolved
+     */
+    private long run(RangeOperation operation, int size) {
+        return this.pool.invoke(new RangeTask(operation, 0, size));
+    }
+
+    private static class RangeTask extends RecursiveTask<Long> {
+        private final RangeOperation operation;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeOperation operation, int from, int to) {
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if(this.to - this.from <= TASK_SIZE) {
+                return this.operation.apply(this.from, this.to, new HeadlessBoard());
+            }
+            int middle = (this.from + this.to) >>> 1;
+            RangeTask left = new RangeTask(this.operation, this.from, middle);
+            left.fork();
+            long right = new RangeTask(this.operation, middle, this.to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Working state while generating one table
+     */
+    private class Generation {
+        private final TablebaseIndex index;
+        private final int[] pieces;
+
+        // Plies to mate plus one of each index, or one of the markers
+        private final byte[] values;
+
+        // Positions with a child resolved in the last iteration
+        private final byte[] marked;
+
+        // Iterations in which a move leaving the table becomes known to win, or the last one to lose
+        private final byte[] exitWin;
+        private final byte[] exitLoss;
+        private final AtomicInteger lastExitEvent = new AtomicInteger();
+
+        Generation(TablebaseIndex index) {
+            this.index = index;
+            this.pieces = index.getPieces();
+            int size = index.size();
+            this.values = new byte[size];
+            this.marked = new byte[size];
+            this.exitWin = new byte[size];
+            this.exitLoss = new byte[size];
+        }
+
+        /**
+         * Set up a board for an index
+         * @return {@code false} if the index is not a legal position, or not the canonical index of its position
+         */
+        private boolean setUp(int position, HeadlessBoard board, int[] squares) {
+            if(!this.index.isCanonical(position, squares)) {
+                return false;
+            }
+            int sideToMove = this.index.decode(position, squares);
+            long occupied = 0;
+            for(int i = 0; i < this.pieces.length; i++) {
+                long bit = 1L << squares[i];
+                if((occupied & bit) != 0 || (PieceCode.type(this.pieces[i]) == PieceCode.PAWN && (squares[i] < 8 || squares[i] >= 56))) {
+                    return false;
+                }
+                occupied |= bit;
+            }
+            if((Bitboards.KING_ATTACKS[squares[0]] & (1L << squares[1])) != 0) {
+                return false;
+            }
+            board.setPosition(this.pieces, squares, this.pieces.length, sideToMove);
+            return !board.isSquareAttacked(board.getKingSquare(sideToMove ^ 1), sideToMove);
+        }
+
+        /**
+         * Whether a move leaves the table, by capturing or promoting
+         */
+        private boolean isExit(HeadlessBoard board, int move) {
+            return board.getPiece(PackedMove.to(move)) != PieceCode.EMPTY || PackedMove.promotion(move) != PieceCode.EMPTY;
+        }
+
+        /**
+         * Result for the opponent after a move leaving the table
+         */
+        private int probeExit(HeadlessBoard board, int move) {
+            board.makeMove(move);
+            int result = Tablebases.probe(board, tables::get);
+            board.unmakeMove();
+            if(result == Tablebases.NOT_FOUND) {
+                throw new IllegalStateException("Missing table for a capture or promotion in " + this.index.getSignature());
+            }
+            return result;
+        }
+
+        /**
+         * Find mates, stalemates and illegal positions, and when the moves leaving the table can decide a position
+         */
+        long initialize(int from, int to, HeadlessBoard board) {
+            int[] squares = new int[Tablebases.MAX_PIECES];
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int lastEvent = 0;
+            long resolved = 0;
+            for(int position = from; position < to; position++) {
+                if(!setUp(position, board, squares)) {
+                    this.values[position] = (byte) INVALID;
+                    continue;
+                }
+                int count = MoveGenerator.generateLegalMoves(board, moves);
+                if(count == 0) {
+                    this.values[position] = (byte) (board.isInCheck() ? 1 : STALEMATE);
+                    resolved++;
+                    continue;
+                }
+
+                int win = 0;
+                int loss = 0;
+                for(int i = 0; i < count; i++) {
+                    if(isExit(board, moves[i])) {
+                        int result = probeExit(board, moves[i]);
+                        if(Tablebases.isLoss(result)) {
+                            int event = Tablebases.getPliesToMate(result) + 1;
+                            win = win == 0 ? event : Math.min(win, event);
+                        } else if(Tablebases.isWin(result)) {
+                            loss = Math.max(loss, Tablebases.getPliesToMate(result) + 1);
+                        }
+                    }
+                }
+                this.exitWin[position] = (byte) win;
+                this.exitLoss[position] = (byte) loss;
+                lastEvent = Math.max(lastEvent, Math.max(win, loss));
+            }
+            this.lastExitEvent.accumulateAndGet(lastEvent, Math::max);
+            return resolved;
+        }
+
+        /**
+         * Mark the positions that can reach the positions resolved in the previous iteration by a move
+         * inside the table: the side that just moved takes back a move without capture or promotion
+         */
+        long markPredecessors(int from, int to, int iteration) {
+            int[] squares = new int[Tablebases.MAX_PIECES];
+            for(int position = from; position < to; position++) {
+                if((this.values[position] & 0xFF) != iteration) {
+                    continue;
+                }
+                int mover = this.index.decode(position, squares) ^ 1;
+                long occupied = 0;
+                for(int i = 0; i < this.pieces.length; i++) {
+                    occupied |= 1L << squares[i];
+                }
+
+                for(int i = 0; i < this.pieces.length; i++) {
+                    int piece = this.pieces[i];
+                    if(PieceCode.color(piece) != mover) {
+                        continue;
+                    }
+                    int square = squares[i];
+                    long origins;
+                    if(PieceCode.type(piece) == PieceCode.PAWN) {
+                        origins = pawnOrigins(square, mover, occupied);
+                    } else {
+                        origins = attacks(PieceCode.type(piece), square, occupied) & ~occupied;
+                    }
+                    for(; origins != 0; origins &= origins - 1) {
+                        squares[i] = Long.numberOfTrailingZeros(origins);
+                        int predecessor = this.index.index(squares, mover);
+                        if(this.values[predecessor] == UNKNOWN) {
+                            this.marked[predecessor] = 1;
+                        }
+                    }
+                    squares[i] = square;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Decide the marked positions, and those whose moves leaving the table are decided now.
+         * Only children resolved before this iteration are counted, so the results are exact distances.
+         */
+        long resolve(int from, int to, HeadlessBoard board, int iteration) {
+            int[] squares = new int[Tablebases.MAX_PIECES];
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            long resolved = 0;
+            for(int position = from; position < to; position++) {
+                if(this.values[position] != UNKNOWN || (this.marked[position] == 0
+                        && (this.exitWin[position] & 0xFF) != iteration && (this.exitLoss[position] & 0xFF) != iteration)) {
+                    continue;
+                }
+                this.marked[position] = 0;
+                setUp(position, board, squares);
+                int sideToMove = board.getSideToMove();
+                int count = MoveGenerator.generateLegalMoves(board, moves);
+
+                boolean win = false;
+                boolean allWon = true;
+                for(int i = 0; i < count && !win; i++) {
+                    int move = moves[i];
+                    int result;
+                    if(isExit(board, move)) {
+                        result = probeExit(board, move);
+                    } else {
+                        result = this.values[childIndex(squares, move, sideToMove)] & 0xFF;
+                        if(result == STALEMATE || result == INVALID) {
+                            result = Tablebases.DRAW;
+                        }
+                    }
+                    if(result == Tablebases.DRAW || result > iteration) {
+                        allWon = false;
+                    } else if(Tablebases.isLoss(result)) {
+                        win = true;
+                    }
+                }
+
+                if(win || allWon) {
+                    this.values[position] = (byte) (iteration + 1);
+                    resolved++;
+                }
+            }
+            return resolved;
+        }
+
+        /**
+         * Index after a move inside the table, which only moves one piece
+         */
+        private int childIndex(int[] squares, int move, int sideToMove) {
+            int from = PackedMove.from(move);
+            int i = 0;
+            while(squares[i] != from) {
+                i++;
+            }
+            squares[i] = PackedMove.to(move);
+            int child = this.index.index(squares, sideToMove ^ 1);
+            squares[i] = from;
+            return child;
+        }
+    }
+
+    /**
+     * Squares a pawn on a square could have been pushed from
+     */
+    private static long pawnOrigins(int square, int color, long occupied) {
+        int direction = color == PieceCode.WHITE ? -8 : 8;
+        int single = square + direction;
+        if(single < 8 || single >= 56 || (occupied & (1L << single)) != 0) {
+            return 0;
+        }
+        long origins = 1L << single;
+        int rank = square >>> 3;
+        if(rank == (color == PieceCode.WHITE ? 3 : 4) && (occupied & (1L << (single + direction))) == 0) {
+            origins |= 1L << (single + direction);
+        }
+        return origins;
+    }
+
+    private static long attacks(int type, int square, long occupied) {
+        switch(type) {
+            case PieceCode.KNIGHT: return Bitboards.KNIGHT_ATTACKS[square];
+            case PieceCode.BISHOP: return Bitboards.bishopAttacks(square, occupied);
+            case PieceCode.ROOK: return Bitboards.rookAttacks(square, occupied);
+            case PieceCode.QUEEN: return Bitboards.queenAttacks(square, occupied);
+            default: return Bitboards.KING_ATTACKS[square];
+        }
+    }
+}
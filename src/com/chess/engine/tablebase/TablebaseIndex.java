@@ -0,0 +1,226 @@
+package com.chess.engine.tablebase;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.Arrays;
+
+/**
+ * Perfect index of the positions with a given material: every placement of the pieces with either side to move
+ * has exactly one index, and every index decodes back to one placement (which may not be legal, or may be the
+ * mirror image of a placement with its own index, see {@link #isCanonical}).
+ *
+ * Positions are first oriented so the table's stronger side is white, then reduced by symmetry using the white king:
+ * without pawns the board can be mirrored and rotated to put the king in the a1-d1-d4 triangle (10 squares),
+ * with pawns it can only be mirrored left to right, putting the king on files a-d (32 squares).
+ * When the king is on the a1-h8 diagonal, the first other piece off the diagonal is put below it.
+ * The index is then side to move, white king, black king and each other piece's square, in that order.
+ */
+final class TablebaseIndex {
+
+    // Order of piece types within each side: queen, rook, bishop, knight, pawn
+    static final String TYPE_ORDER = "QRBNP";
+
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] HALF_BOARD = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+    private static final int[] HALF_BOARD_SQUARES = new int[32];
+    static {
+        Arrays.fill(TRIANGLE, -1);
+        Arrays.fill(HALF_BOARD, -1);
+        int triangle = 0;
+        int half = 0;
+        for(int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int rank = square >>> 3;
+            if(file <= 3) {
+                HALF_BOARD_SQUARES[half] = square;
+                HALF_BOARD[square] = half++;
+                if(rank <= file) {
+                    TRIANGLE_SQUARES[triangle] = square;
+                    TRIANGLE[square] = triangle++;
+                }
+            }
+        }
+    }
+
+    private final String signature;
+
+    // Piece codes in index order: white king, black king, white pieces, black pieces
+    private final int[] pieces;
+    private final boolean pawns;
+    private final int positionsPerSide;
+
+    /**
+     * Create the index for a material signature such as "KQvKR", stronger side first
+     * @param signature the signature
+     */
+    TablebaseIndex(String signature) {
+        int separator = signature.indexOf('v');
+        String white = signature.substring(1, separator);
+        String black = signature.substring(separator + 2);
+        this.signature = signature;
+        this.pieces = new int[2 + white.length() + black.length()];
+        this.pieces[0] = PieceCode.make(PieceCode.WHITE, PieceCode.KING);
+        this.pieces[1] = PieceCode.make(PieceCode.BLACK, PieceCode.KING);
+        for(int i = 0; i < white.length(); i++) {
+            this.pieces[2 + i] = PieceCode.fromChar(white.charAt(i));
+        }
+        for(int i = 0; i < black.length(); i++) {
+            this.pieces[2 + white.length() + i] = PieceCode.fromChar(Character.toLowerCase(black.charAt(i)));
+        }
+        this.pawns = signature.indexOf('P') >= 0;
+
+        int size = this.pawns ? HALF_BOARD_SQUARES.length : TRIANGLE_SQUARES.length;
+        for(int i = 1; i < this.pieces.length; i++) {
+            size *= 64;
+        }
+        this.positionsPerSide = size;
+    }
+
+    /**
+     * Material signature of the position on a board, as written for the side with more (or more valuable) material
+     * @param board the board
+     * @return the signature, e.g. "KRvKN"
+     */
+    static String signature(HeadlessBoard board) {
+        String white = pieceLetters(board, PieceCode.WHITE);
+        String black = pieceLetters(board, PieceCode.BLACK);
+        return isStronger(white, black) ? "K" + white + "vK" + black : "K" + black + "vK" + white;
+    }
+
+    /**
+     * Whether the table for a position should swap colors: the table has the stronger side as white
+     * @param board the board
+     * @return {@code true} if black is the table's white
+     */
+    static boolean isFlipped(HeadlessBoard board) {
+        return !isStronger(pieceLetters(board, PieceCode.WHITE), pieceLetters(board, PieceCode.BLACK));
+    }
+
+    /**
+     * Letters of a side's pieces other than the king, in {@link #TYPE_ORDER}
+     */
+    private static String pieceLetters(HeadlessBoard board, int color) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < TYPE_ORDER.length(); i++) {
+            int piece = PieceCode.fromChar(TYPE_ORDER.charAt(i));
+            long bitboard = board.getBitboard(PieceCode.make(color, PieceCode.type(piece)));
+            for(int count = Long.bitCount(bitboard); count > 0; count--) {
+                builder.append(TYPE_ORDER.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Whether one side's pieces are at least as strong as the other's: more pieces, or the same number and
+     * the more valuable piece first in {@link #TYPE_ORDER}
+     */
+    static boolean isStronger(String first, String second) {
+        if(first.length() != second.length()) {
+            return first.length() > second.length();
+        }
+        for(int i = 0; i < first.length(); i++) {
+            int a = TYPE_ORDER.indexOf(first.charAt(i));
+            int b = TYPE_ORDER.indexOf(second.charAt(i));
+            if(a != b) {
+                return a < b;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Index of a position on a board with this table's material
+     * @param board the board
+     * @param squares scratch array of at least {@link #getPieceCount()} entries
+     * @return the index
+     */
+    int index(HeadlessBoard board, int[] squares) {
+        boolean flip = isFlipped(board);
+        int[] next = new int[PieceCode.NUM_CODES];
+        for(int i = 0; i < this.pieces.length; i++) {
+            // The table's piece, as the piece on the board
+            int piece = flip ? this.pieces[i] ^ (1 << 3) : this.pieces[i];
+            long bitboard = board.getBitboard(piece);
+            for(int skip = next[piece]++; skip > 0; skip--) {
+                bitboard &= bitboard - 1;
+            }
+            int square = Long.numberOfTrailingZeros(bitboard);
+            squares[i] = flip ? square ^ 56 : square;
+        }
+        return index(squares, flip ? board.getSideToMove() ^ 1 : board.getSideToMove());
+    }
+
+    /**
+     * Index of a position given as squares in the table's orientation
+     * @param squares square of each piece, in index order
+     * @param sideToMove the color to move, in the table's orientation
+     * @return the index
+     */
+    int index(int[] squares, int sideToMove) {
+        int king = squares[0];
+        boolean mirrorFiles = (king & 7) > 3;
+        boolean mirrorRanks = !this.pawns && (king >>> 3) > 3;
+        int oriented = transform(king, mirrorFiles, mirrorRanks, false);
+        boolean diagonal = false;
+        if(!this.pawns) {
+            // With the king on the diagonal, the first piece off the diagonal decides whether to flip
+            for(int i = 0; i < this.pieces.length; i++) {
+                int square = transform(squares[i], mirrorFiles, mirrorRanks, false);
+                if((square >>> 3) != (square & 7)) {
+                    diagonal = (square >>> 3) > (square & 7);
+                    break;
+                }
+            }
+        }
+
+        int index = this.pawns ? HALF_BOARD[oriented] : TRIANGLE[transform(oriented, false, false, diagonal)];
+        for(int i = 1; i < this.pieces.length; i++) {
+            index = index * 64 + transform(squares[i], mirrorFiles, mirrorRanks, diagonal);
+        }
+        return sideToMove * this.positionsPerSide + index;
+    }
+
+    private static int transform(int square, boolean mirrorFiles, boolean mirrorRanks, boolean diagonal) {
+        if(mirrorFiles) square ^= 7;
+        if(mirrorRanks) square ^= 56;
+        return diagonal ? ((square & 7) << 3) | (square >>> 3) : square;
+    }
+
+    /**
+     * Decode an index into the squares of the pieces, in the table's orientation
+     * @param index the index
+     * @param squares array of at least {@link #getPieceCount()} entries to write the squares to
+     * @return the color to move
+     */
+    int decode(int index, int[] squares) {
+        int sideToMove = index / this.positionsPerSide;
+        int remaining = index % this.positionsPerSide;
+        for(int i = this.pieces.length - 1; i > 0; i--) {
+            squares[i] = remaining & 63;
+            remaining >>>= 6;
+        }
+        squares[0] = this.pawns ? HALF_BOARD_SQUARES[remaining] : TRIANGLE_SQUARES[remaining];
+        return sideToMove;
+    }
+
+    /**
+     * Whether an index is the one {@link #index(int[], int)} gives for its placement, rather than a mirror image
+     * of another index that has the king on the diagonal
+     * @param index the index
+     * @param squares array of at least {@link #getPieceCount()} entries, overwritten with the decoded squares
+     * @return {@code true} if the index is canonical
+     */
+    boolean isCanonical(int index, int[] squares) {
+        return index(squares, decode(index, squares)) == index;
+    }
+
+    // Getters
+    String getSignature() { return this.signature; }
+    int[] getPieces() { return this.pieces; }
+    int getPieceCount() { return this.pieces.length; }
+    boolean hasPawns() { return this.pawns; }
+    int size() { return 2 * this.positionsPerSide; }
+}
@@ -0,0 +1,128 @@
+package com.chess.engine.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * One memory-mapped tablebase file, holding the result of every index of a {@link TablebaseIndex}.
+ * The file is a 16 byte header (magic, bits per entry, number of entries) followed by the entries packed
+ * most significant bit first, each entry being 0 for a draw or the number of plies to mate plus one.
+ * The width of the entries is just enough for the longest mate in the table, so drawn tables take no space.
+ * Safe to use from several threads, as lookups only read absolute positions of the mapped buffer.
+ */
+final class TablebaseTable implements Closeable {
+
+    // "CTB1"
+    static final int MAGIC = 0x43544231;
+    static final int HEADER_SIZE = 16;
+
+    private final TablebaseIndex index;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int bits;
+    private final int mask;
+
+    private TablebaseTable(TablebaseIndex index, RandomAccessFile file, MappedByteBuffer buffer, int bits) {
+        this.index = index;
+        this.file = file;
+        this.buffer = buffer;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Map a tablebase file
+     * @param file the file
+     * @param signature the material signature of the table
+     * @return the table
+     * @throws IOException if the file could not be read or does not match the signature
+     */
+    static TablebaseTable open(File file, String signature) throws IOException {
+        TablebaseIndex index = new TablebaseIndex(signature);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            int bits = buffer.getInt(4);
+            long entries = buffer.getLong(8);
+            if(bits < 0 || bits > 8 || entries != index.size() || buffer.capacity() < HEADER_SIZE + (entries * bits + 7) / 8) {
+                throw new IOException("Tablebase file does not match " + signature + ": " + file);
+            }
+            return new TablebaseTable(index, raf, buffer, bits);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the results of a table to a file
+     * @param file the file
+     * @param values result of each index, 0 for a draw or plies to mate plus one (at most 255)
+     * @throws IOException if the file could not be written
+     */
+    static void write(File file, byte[] values) throws IOException {
+        int max = 0;
+        for(byte value : values) {
+            max = Math.max(max, value & 0xFF);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(max);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(bits);
+            out.writeLong(values.length);
+            if(bits == 0) {
+                return;
+            }
+
+            long pending = 0;
+            int pendingBits = 0;
+            for(byte value : values) {
+                pending = (pending << bits) | (value & 0xFF);
+                pendingBits += bits;
+                while(pendingBits >= 8) {
+                    pendingBits -= 8;
+                    out.write((int) (pending >>> pendingBits));
+                }
+            }
+            if(pendingBits > 0) {
+                out.write((int) (pending << (8 - pendingBits)));
+            }
+            // Padding so an entry can always be read with a two byte load
+            out.writeShort(0);
+        }
+    }
+
+    /**
+     * Result stored for an index
+     * @param index the index
+     * @return 0 for a draw, or plies to mate plus one
+     */
+    int get(int index) {
+        if(this.bits == 0) {
+            return 0;
+        }
+        long position = (long) index * this.bits;
+        int word = this.buffer.getShort(HEADER_SIZE + (int) (position >>> 3)) & 0xFFFF;
+        return (word >>> (16 - (int) (position & 7) - this.bits)) & this.mask;
+    }
+
+    TablebaseIndex getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
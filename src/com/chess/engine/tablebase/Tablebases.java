@@ -0,0 +1,164 @@
+package com.chess.engine.tablebase;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.board.Bitboards;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Probes the endgame tablebases written by {@link TablebaseGenerator} for exact results of positions with
+ * up to {@link #MAX_PIECES} pieces. Tables are memory-mapped the first time their material is probed,
+ * after which a probe is a constant time index computation and read. Safe to use from several threads.
+ *
+ * A result is {@link #NOT_FOUND}, {@link #DRAW}, or the number of plies to mate plus one:
+ * an even result is a win for the side to move, an odd result a loss (1 meaning the side to move is mated).
+ */
+public final class Tablebases {
+
+    private Tablebases() { /*Static construct*/ }
+
+    // Largest number of pieces, kings included, the tables cover
+    public static final int MAX_PIECES = 4;
+
+    // Most plies to mate a table can hold, as results are stored in a byte
+    public static final int MAX_PLIES_TO_MATE = 254;
+
+    public static final int NOT_FOUND = -1;
+    public static final int DRAW = 0;
+
+    public static final String DEFAULT_DIRECTORY = "files/tablebases";
+    public static final String EXTENSION = ".ctb";
+
+    // Mapped tables by signature, empty when there is no file for the signature
+    private static final Map<String, Optional<TablebaseTable>> TABLES = new ConcurrentHashMap<>();
+
+    private static volatile File directory = new File(GameSettings.INSTANCE.getTablebasePath().isEmpty()
+            ? DEFAULT_DIRECTORY : GameSettings.INSTANCE.getTablebasePath());
+
+    /**
+     * Change the directory the tables are read from
+     * @param path the directory
+     */
+    public static void setDirectory(String path) {
+        directory = new File(path);
+        for(Optional<TablebaseTable> table : TABLES.values()) {
+            if(table.isPresent()) {
+                try {
+                    table.get().close();
+                } catch (IOException ignored) {
+                    // Nothing more to release
+                }
+            }
+        }
+        TABLES.clear();
+    }
+
+    /**
+     * Look up the exact result of a position
+     * @param board the board, which is not modified
+     * @return the result for the side to move, or {@link #NOT_FOUND} if the position is not in the tables
+     */
+    public static int probe(HeadlessBoard board) {
+        return probe(board, Tablebases::getTable);
+    }
+
+    /**
+     * Look up the exact result of a position in a given set of tables
+     * @param board the board
+     * @param tables the table for a signature, or null if not available
+     * @return the result for the side to move, or {@link #NOT_FOUND}
+     */
+    static int probe(HeadlessBoard board, Function<String, TablebaseTable> tables) {
+        long occupied = board.getOccupied();
+        int pieces = Long.bitCount(occupied);
+        if(pieces > MAX_PIECES || board.getCastling() != 0 || canCaptureEnPassant(board)) {
+            return NOT_FOUND;
+        }
+        if(pieces == 2) {
+            return DRAW;
+        }
+
+        TablebaseTable table = tables.apply(TablebaseIndex.signature(board));
+        if(table == null) {
+            return NOT_FOUND;
+        }
+        return table.get(table.getIndex().index(board, new int[MAX_PIECES]));
+    }
+
+    /**
+     * The tables do not know about en passant, so only probe when no en passant capture is possible
+     */
+    private static boolean canCaptureEnPassant(HeadlessBoard board) {
+        int epSquare = board.getEpSquare();
+        if(epSquare < 0) {
+            return false;
+        }
+        int color = board.getSideToMove();
+        return (Bitboards.PAWN_ATTACKS[color ^ 1][epSquare] & board.getBitboard(PieceCode.make(color, PieceCode.PAWN))) != 0;
+    }
+
+    private static TablebaseTable getTable(String signature) {
+        return TABLES.computeIfAbsent(signature, key -> {
+            File file = new File(directory, key + EXTENSION);
+            if(!file.isFile()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(TablebaseTable.open(file, key));
+            } catch (IOException e) {
+                System.out.println("Could not read tablebase: " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Whether a result is a win for the side to move
+     * @param result a probe result
+     * @return {@code true} if the side to move can force mate
+     */
+    public static boolean isWin(int result) {
+        return result > 0 && (result & 1) == 0;
+    }
+
+    /**
+     * Whether a result is a loss for the side to move
+     * @param result a probe result
+     * @return {@code true} if the side to move is mated with best play
+     */
+    public static boolean isLoss(int result) {
+        return result > 0 && (result & 1) == 1;
+    }
+
+    /**
+     * Plies until mate with best play from both sides
+     * @param result a probe result that is a win or loss
+     * @return the number of plies, 0 if the side to move is already mated
+     */
+    public static int getPliesToMate(int result) {
+        return result - 1;
+    }
+
+    /**
+     * Describe a probe result
+     * @param result a probe result
+     * @return e.g. "Win, mate in 8" or "Draw"
+     */
+    public static String toString(int result) {
+        if(result == NOT_FOUND) {
+            return "Not found";
+        } else if(result == DRAW) {
+            return "Draw";
+        } else if(isWin(result)) {
+            return "Win, mate in " + (getPliesToMate(result) + 1) / 2;
+        }
+        return "Loss, mated in " + getPliesToMate(result) / 2;
+    }
+}
@@ -0,0 +1,47 @@
+package com.chess.engine.tournament;
+
+/**
+ * When a self-play game is ended early: as a win once both engines agree one side is far ahead, as a draw once
+ * both agree the position is level late in the game, and as a draw at a maximum length. Scores are as reported by
+ * the searches, in centipawns.
+ */
+public final class Adjudication {
+
+    // Adjudication as engine testing usually uses it
+    public static final Adjudication DEFAULT = new Adjudication(1000, 3, 10, 8, 40, 400);
+
+    // No adjudication other than the maximum length
+    public static final Adjudication NONE = new Adjudication(Integer.MAX_VALUE, 0, -1, 0, 0, 600);
+
+    private final int resignScore;
+    private final int resignMoves;
+    private final int drawScore;
+    private final int drawMoves;
+    private final int drawMoveNumber;
+    private final int maxPlies;
+
+    /**
+     * Create adjudication settings
+     * @param resignScore the advantage at which the losing side is adjudicated lost
+     * @param resignMoves the number of moves in a row, by each side, both must see that advantage
+     * @param drawScore the largest score, either way, of a level position
+     * @param drawMoves the number of moves in a row, by each side, both must see a level position
+     * @param drawMoveNumber the move number from which level positions count towards a draw
+     * @param maxPlies the length, in plies, at which the game is drawn
+     */
+    public Adjudication(int resignScore, int resignMoves, int drawScore, int drawMoves, int drawMoveNumber, int maxPlies) {
+        this.resignScore = resignScore;
+        this.resignMoves = resignMoves;
+        this.drawScore = drawScore;
+        this.drawMoves = drawMoves;
+        this.drawMoveNumber = drawMoveNumber;
+        this.maxPlies = maxPlies;
+    }
+
+    public int getResignScore() { return this.resignScore; }
+    public int getResignMoves() { return this.resignMoves; }
+    public int getDrawScore() { return this.drawScore; }
+    public int getDrawMoves() { return this.drawMoves; }
+    public int getDrawMoveNumber() { return this.drawMoveNumber; }
+    public int getMaxPlies() { return this.maxPlies; }
+}
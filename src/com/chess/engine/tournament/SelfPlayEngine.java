@@ -0,0 +1,65 @@
+package com.chess.engine.tournament;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.TimeControl;
+import com.chess.engine.evaluation.EvalParams;
+import com.chess.engine.evaluation.Evaluator;
+import com.chess.engine.evaluation.NnueNetwork;
+import com.chess.engine.evaluation.PawnHashTable;
+import com.chess.engine.search.Search;
+import com.chess.engine.search.TimeManager;
+import com.chess.engine.search.TranspositionTable;
+
+/**
+ * One player of self-play games, searching on the calling thread with its own transposition table and evaluation.
+ * Each tournament thread has one for each of the engines being compared.
+ */
+final class SelfPlayEngine {
+
+    private final String name;
+    private final TranspositionTable table;
+    private final TimeManager timeManager = new TimeManager();
+    private final Search search;
+
+    /**
+     * Create a player
+     * @param name the name written to the PGN
+     * @param network the network to evaluate with, or null for the handcrafted evaluation
+     * @param params the weights of the handcrafted evaluation
+     * @param hashMb the size of its transposition table
+     */
+    SelfPlayEngine(String name, NnueNetwork network, EvalParams params, int hashMb) {
+        this.name = name;
+        this.table = new TranspositionTable(hashMb);
+        this.search = new Search(table, timeManager, new Evaluator(new PawnHashTable(), network, params));
+    }
+
+    /**
+     * Forget the previous game, so games do not depend on the order they were played in
+     */
+    void newGame() {
+        table.clear();
+    }
+
+    /**
+     * Find a move under the clock
+     * @param position the position, with this engine to move (not changed)
+     * @param timeControl the time control of the game
+     * @param remainingNanos the time left on this engine's clock
+     * @return the move, or {@link com.chess.engine.moves.PackedMove#NONE} if there is no legal move
+     */
+    int think(HeadlessBoard position, TimeControl timeControl, long remainingNanos) {
+        timeManager.start(remainingNanos, timeControl.getIncrementNanos(), timeControl.getDelayNanos(), 0);
+        return search.search(position, Search.MAX_PLY);
+    }
+
+    /**
+     * Stop the current search, from another thread
+     */
+    void abort() {
+        timeManager.abort();
+    }
+
+    String getName() { return this.name; }
+    Search getSearch() { return this.search; }
+}
@@ -0,0 +1,196 @@
+package com.chess.engine.tournament;
+
+import com.chess.engine.board.FenUtils;
+import com.chess.engine.board.GameStatus;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.board.PgnGame;
+import com.chess.engine.board.TimeControl;
+import com.chess.engine.evaluation.Endgames;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+import com.chess.engine.tablebase.Tablebases;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A game between two engines from an opening position, played on the calling thread. Each side's clock is charged
+ * the time its searches actually took; the game ends by the rules, on time or by {@link Adjudication}.
+ * A position the endgame {@link Tablebases} know to be drawn is adjudicated a draw.
+ */
+final class SelfPlayGame {
+
+    private final String openingFen;
+    private final SelfPlayEngine white;
+    private final SelfPlayEngine black;
+    private final TimeControl timeControl;
+    private final Adjudication adjudication;
+
+    // Moves of the game in SAN, and how it ended
+    private final List<String> moves = new ArrayList<>();
+    private String result = PgnGame.UNKNOWN;
+    private String termination = "unterminated";
+    private String reason = "";
+
+    /**
+     * Set up a game
+     * @param openingFen the position to start from
+     * @param white the engine playing white
+     * @param black the engine playing black
+     * @param timeControl the time control for both sides
+     * @param adjudication when to end the game early
+     */
+    SelfPlayGame(String openingFen, SelfPlayEngine white, SelfPlayEngine black, TimeControl timeControl, Adjudication adjudication) {
+        this.openingFen = openingFen;
+        this.white = white;
+        this.black = black;
+        this.timeControl = timeControl;
+        this.adjudication = adjudication;
+    }
+
+    /**
+     * Play the game to the end
+     * @param stopped polled between moves, to abandon the game when the tournament is over
+     * @return {@code true} if the game finished, {@code false} if it was abandoned
+     */
+    boolean play(BooleanSupplier stopped) {
+        HeadlessBoard board = new HeadlessBoard(openingFen);
+        long[] remaining = {timeControl.getBaseNanos(), timeControl.getBaseNanos()};
+        white.newGame();
+        black.newGame();
+
+        // Moves in a row (by both sides) for which the engines saw a decisive advantage or a level position
+        int decisive = 0;
+        int decisiveSign = 0;
+        int level = 0;
+
+        while(!stopped.getAsBoolean()) {
+            GameStatus status = GameStatus.of(board);
+            if(status.isGameOver()) {
+                end(status == GameStatus.CHECKMATE ? winner(board.getSideToMove() ^ 1) : PgnGame.DRAW, "normal", status.getDescription());
+                return true;
+            }
+            if(Tablebases.probe(board) == Tablebases.DRAW) {
+                end(PgnGame.DRAW, "adjudication", "tablebase draw");
+                return true;
+            }
+            if(moves.size() >= adjudication.getMaxPlies()) {
+                end(PgnGame.DRAW, "adjudication", "maximum length");
+                return true;
+            }
+
+            // Search, charging the time taken to the mover's clock
+            int side = board.getSideToMove();
+            SelfPlayEngine engine = side == PieceCode.WHITE ? white : black;
+            long start = System.nanoTime();
+            int move = engine.think(board, timeControl, remaining[side]);
+            remaining[side] -= Math.max(0, System.nanoTime() - start - timeControl.getDelayNanos());
+            if(stopped.getAsBoolean()) {
+                return false;
+            }
+            if(remaining[side] <= 0) {
+                boolean canMate = Endgames.hasMatingMaterial(board, side ^ 1);
+                end(canMate ? winner(side ^ 1) : PgnGame.DRAW, "time forfeit", (side == PieceCode.WHITE ? "White" : "Black") + " lost on time");
+                return true;
+            }
+            remaining[side] += timeControl.getIncrementNanos();
+            if(move == PackedMove.NONE) {
+                end(PgnGame.UNKNOWN, "unterminated", "no move found");
+                return true;
+            }
+
+            // Both engines must agree on the evaluation, so count in plies, from white's point of view
+            int score = engine.getSearch().getScore();
+            int whiteScore = side == PieceCode.WHITE ? score : -score;
+            int sign = Integer.signum(whiteScore);
+            if(Math.abs(whiteScore) >= adjudication.getResignScore() && (decisive == 0 || sign == decisiveSign)) {
+                decisive++;
+                decisiveSign = sign;
+            } else {
+                decisive = 0;
+            }
+            boolean late = board.getFullMoves() >= adjudication.getDrawMoveNumber();
+            level = late && Math.abs(whiteScore) <= adjudication.getDrawScore() ? level + 1 : 0;
+
+            moves.add(PGNUtils.toSan(board, move));
+            board.makeMove(move);
+
+            if(adjudication.getResignMoves() > 0 && decisive >= 2 * adjudication.getResignMoves()) {
+                end(winner(decisiveSign > 0 ? PieceCode.WHITE : PieceCode.BLACK), "adjudication", "decisive score");
+                return true;
+            }
+            if(adjudication.getDrawMoves() > 0 && level >= 2 * adjudication.getDrawMoves()) {
+                end(PgnGame.DRAW, "adjudication", "level score");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void end(String result, String termination, String reason) {
+        this.result = result;
+        this.termination = termination;
+        this.reason = reason;
+    }
+
+    private static String winner(int color) {
+        return color == PieceCode.WHITE ? PgnGame.WHITE_WINS : PgnGame.BLACK_WINS;
+    }
+
+    /**
+     * Write the game in PGN
+     * @param event the name of the event
+     * @param round the number of the game in the tournament
+     * @return the PGN of the game, ending with a blank line
+     */
+    String toPgn(String event, int round) {
+        StringBuilder builder = new StringBuilder();
+        tag(builder, "Event", event);
+        tag(builder, "Site", "?");
+        tag(builder, "Date", new SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+        tag(builder, "Round", String.valueOf(round));
+        tag(builder, "White", white.getName());
+        tag(builder, "Black", black.getName());
+        tag(builder, "Result", result);
+        if(!FenUtils.DEFAULT_POSITION.equals(openingFen)) {
+            tag(builder, "SetUp", "1");
+            tag(builder, "FEN", openingFen);
+        }
+        tag(builder, "TimeControl", timeControl.toString());
+        tag(builder, "Termination", termination);
+        tag(builder, "PlyCount", String.valueOf(moves.size()));
+        builder.append('\n');
+
+        // Move text, numbered from the opening position, wrapped at 80 characters
+        HeadlessBoard start = new HeadlessBoard(openingFen);
+        int number = start.getFullMoves();
+        boolean whiteToMove = start.getSideToMove() == PieceCode.WHITE;
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < moves.size(); i++) {
+            String token = whiteToMove ? number + ". " + moves.get(i) : i == 0 ? number + "... " + moves.get(i) : moves.get(i);
+            if(!whiteToMove) {
+                number++;
+            }
+            whiteToMove = !whiteToMove;
+            if(line.length() + token.length() >= 80) {
+                builder.append(line.toString().trim()).append('\n');
+                line.setLength(0);
+            }
+            line.append(token).append(' ');
+        }
+        line.append('{').append(reason).append("} ").append(result);
+        return builder.append(line).append("\n\n").toString();
+    }
+
+    private static void tag(StringBuilder builder, String name, String value) {
+        builder.append('[').append(name).append(" \"").append(value.replace("\"", "\\\"")).append("\"]\n");
+    }
+
+    public String getResult() { return this.result; }
+    public String getTermination() { return this.termination; }
+    public int getPlies() { return this.moves.size(); }
+}
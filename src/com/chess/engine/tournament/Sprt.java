@@ -0,0 +1,96 @@
+package com.chess.engine.tournament;
+
+/**
+ * Sequential probability ratio test between two hypotheses about the Elo difference of an engine over another:
+ * H0 that it is {@code elo0} (no better), and H1 that it is {@code elo1} (better). After each game the log likelihood
+ * ratio of the results so far is compared with bounds set by the accepted error rates, so a test stops as soon as
+ * either hypothesis is proven, usually long before a fixed number of games would. The ratio uses the normal
+ * approximation over wins, draws and losses, as engine testing frameworks do.
+ */
+public final class Sprt {
+
+    // Outcome of the test
+    public enum Result { CONTINUE, H0, H1 }
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * Create a test
+     * @param elo0 the Elo difference under H0
+     * @param elo1 the Elo difference under H1, larger than elo0
+     * @param alpha the chance of accepting H1 when H0 is true
+     * @param beta the chance of accepting H0 when H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if(elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("SPRT needs elo0 < elo1 and error rates between 0 and 1");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Log likelihood ratio of H1 over H0 for the results so far
+     * @param wins games won by the engine being tested
+     * @param draws games drawn
+     * @param losses games lost
+     * @return the ratio, 0 while the results do not vary
+     */
+    public double llr(long wins, long draws, long losses) {
+        long games = wins + draws + losses;
+        if(games == 0) {
+            return 0;
+        }
+        double mean = (wins + draws / 2.0) / games;
+        double variance = (wins + draws / 4.0) / games - mean * mean;
+        if(variance <= 0) {
+            return 0;
+        }
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+        return games * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * Whether the results so far prove either hypothesis
+     * @param wins games won by the engine being tested
+     * @param draws games drawn
+     * @param losses games lost
+     * @return {@link Result#H1} if it is better, {@link Result#H0} if not, otherwise {@link Result#CONTINUE}
+     */
+    public Result test(long wins, long draws, long losses) {
+        double llr = llr(wins, draws, losses);
+        return llr >= upperBound ? Result.H1 : llr <= lowerBound ? Result.H0 : Result.CONTINUE;
+    }
+
+    /**
+     * Expected score for an Elo difference
+     * @param elo the Elo difference
+     * @return the expected fraction of the points
+     */
+    public static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Elo difference for a score
+     * @param score the fraction of the points, strictly between 0 and 1
+     * @return the Elo difference
+     */
+    public static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    public double getLowerBound() { return this.lowerBound; }
+    public double getUpperBound() { return this.upperBound; }
+
+    @Override
+    public String toString() {
+        return String.format("SPRT elo0 %.1f elo1 %.1f, bounds (%.2f, %.2f)", elo0, elo1, lowerBound, upperBound);
+    }
+}
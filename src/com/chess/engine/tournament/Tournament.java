@@ -0,0 +1,384 @@
+package com.chess.engine.tournament;
+
+import com.chess.engine.GameSettings;
+import com.chess.engine.board.FenUtils;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.board.PgnGame;
+import com.chess.engine.board.PgnReader;
+import com.chess.engine.board.TimeControl;
+import com.chess.engine.evaluation.EvalParams;
+import com.chess.engine.evaluation.NnueNetwork;
+import com.chess.engine.moves.PackedMove;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays self-play games between a new and a base version of the engine to measure whether a change is an
+ * improvement. Games are played concurrently, one per thread, each thread with its own pair of
+ * {@link SelfPlayEngine}s. Each opening is played twice with colors reversed, so neither side profits from a lucky
+ * opening. Every game is written to a PGN file as it finishes, with the score, Elo estimate, {@link Sprt} state and
+ * games per hour reported after it. The tournament ends after a number of games, or as soon as the SPRT accepts
+ * either hypothesis.
+ *
+ * The two versions are compared by evaluation: the handcrafted one with the engine's weights ({@code hce}) or with
+ * the weights of a parameter file (a {@code .txt} file, as written by the tuner), the network in the game settings
+ * ({@code default}) or a network file. Both sides must evaluate differently.
+ *
+ * Usage: Tournament output.pgn [-new eval] [-base eval] [-tc base+inc] [-games n] [-threads n] [-openings file]
+ * [-plies n] [-hash mb] [-sprt elo0 elo1 alpha beta] [-noadjudication]
+ */
+public class Tournament {
+
+    private final Supplier<SelfPlayEngine> newEngine;
+    private final Supplier<SelfPlayEngine> baseEngine;
+    private final TimeControl timeControl;
+    private final Adjudication adjudication;
+    private final List<String> openings;
+    private final int maxGames;
+    private final int threads;
+    private final Sprt sprt;
+
+    // Games handed out to the threads, and whether the tournament is over
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private volatile boolean stopped = false;
+    private final List<SelfPlayEngine> engines = Collections.synchronizedList(new ArrayList<>());
+
+    // Results from the new engine's side, guarded by this
+    private long wins = 0;
+    private long draws = 0;
+    private long losses = 0;
+    private Sprt.Result sprtResult = Sprt.Result.CONTINUE;
+    private long startNanos;
+
+    /**
+     * Create a tournament
+     * @param newEngine creates the engine being tested
+     * @param baseEngine creates the engine it is compared with
+     * @param timeControl the time control of every game
+     * @param adjudication when games are ended early
+     * @param openings the positions to start games from, each played with both colors
+     * @param maxGames the number of games to play if the SPRT does not end the tournament first
+     * @param threads the number of games to play at once
+     * @param sprt the test to stop at, or null to play all games
+     */
+    Tournament(Supplier<SelfPlayEngine> newEngine, Supplier<SelfPlayEngine> baseEngine, TimeControl timeControl,
+               Adjudication adjudication, List<String> openings, int maxGames, int threads, Sprt sprt) {
+        this.newEngine = newEngine;
+        this.baseEngine = baseEngine;
+        this.timeControl = timeControl;
+        this.adjudication = adjudication;
+        this.openings = openings;
+        this.maxGames = maxGames;
+        this.threads = threads;
+        this.sprt = sprt;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String newEval = "default";
+        String baseEval = "hce";
+        TimeControl timeControl = TimeControl.parse("10+0.1");
+        int games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String openingsFile = null;
+        int plies = 8;
+        int hashMb = 16;
+        Sprt sprt = null;
+        Adjudication adjudication = Adjudication.DEFAULT;
+        boolean valid = args.length > 0;
+
+        for(int i = 1; i < args.length; i++) {
+            switch(args[i]) {
+                case "-new": newEval = args[++i]; break;
+                case "-base": baseEval = args[++i]; break;
+                case "-tc": timeControl = TimeControl.parse(args[++i]); break;
+                case "-games": games = Integer.parseInt(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-openings": openingsFile = args[++i]; break;
+                case "-plies": plies = Integer.parseInt(args[++i]); break;
+                case "-hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "-sprt":
+                    sprt = new Sprt(Double.parseDouble(args[++i]), Double.parseDouble(args[++i]),
+                            Double.parseDouble(args[++i]), Double.parseDouble(args[++i]));
+                    break;
+                case "-noadjudication": adjudication = Adjudication.NONE; break;
+                default: valid = false; break;
+            }
+        }
+        if(!valid || !timeControl.isTimed()) {
+            System.err.println("Usage: Tournament output.pgn [-new eval] [-base eval] [-tc base+inc] [-games n] [-threads n] [-openings file] [-plies n] [-hash mb] [-sprt elo0 elo1 alpha beta] [-noadjudication]");
+            System.err.println("eval is hce, default, the path of a network or the path of a .txt evaluation parameter file");
+            return;
+        }
+
+        EvalParams.loadDefault();
+        NnueNetwork newNetwork = loadNetwork(newEval);
+        NnueNetwork baseNetwork = loadNetwork(baseEval);
+        EvalParams newParams = loadParams(newEval);
+        EvalParams baseParams = loadParams(baseEval);
+        String newConfiguration = configuration(newEval, newNetwork);
+        if(newConfiguration.equals(configuration(baseEval, baseNetwork))) {
+            System.err.println("Both sides evaluate with " + newConfiguration + ", choose a different -new or -base");
+            System.exit(1);
+        }
+        String newName = "New (" + newEval + ")";
+        String baseName = "Base (" + baseEval + ")";
+        int hash = hashMb;
+        List<String> openings = openingsFile == null ? Collections.singletonList(FenUtils.DEFAULT_POSITION)
+                                                     : readOpenings(openingsFile, plies);
+        if(openings.isEmpty()) {
+            System.err.println("No openings in " + openingsFile);
+            return;
+        }
+
+        Tournament tournament = new Tournament(() -> new SelfPlayEngine(newName, newNetwork, newParams, hash),
+                () -> new SelfPlayEngine(baseName, baseNetwork, baseParams, hash), timeControl, adjudication, openings, games, threads, sprt);
+        System.out.printf("%s vs %s at %s, %d openings, %d threads%s%n", newName, baseName, timeControl,
+                openings.size(), threads, sprt == null ? "" : ", " + sprt);
+        tournament.play(args[0]);
+        System.out.println(tournament);
+    }
+
+    /**
+     * Load the network of one side
+     * @return the network, or null for the handcrafted evaluation
+     */
+    private static NnueNetwork loadNetwork(String eval) throws IOException {
+        switch(eval) {
+            case "hce": return null;
+            case "default": return NnueNetwork.getDefault();
+            default: return isParamsFile(eval) ? null : NnueNetwork.load(eval);
+        }
+    }
+
+    /**
+     * Load the handcrafted evaluation weights of one side
+     * @return the weights of its parameter file, or the engine's weights
+     */
+    private static EvalParams loadParams(String eval) throws IOException {
+        if(!isParamsFile(eval)) {
+            return EvalParams.getDefault();
+        }
+        EvalParams params = new EvalParams();
+        params.load(eval);
+        return params;
+    }
+
+    private static boolean isParamsFile(String eval) {
+        return eval.endsWith(".txt");
+    }
+
+    /**
+     * What one side evaluates with, so sides that would play the same engine can be told apart
+     * @param network the network the side loaded, or null
+     * @return the kind of evaluation and the canonical path of its network or parameter file
+     */
+    private static String configuration(String eval, NnueNetwork network) throws IOException {
+        if(network != null) {
+            return "the network " + new File(eval.equals("default") ? GameSettings.INSTANCE.getNnuePath() : eval).getCanonicalPath();
+        }
+        File file = new File(isParamsFile(eval) ? eval : GameSettings.INSTANCE.getEvaluationPath());
+        return "the handcrafted evaluation with " + (file.exists() ? file.getCanonicalPath() : "the built in weights");
+    }
+
+    /**
+     * Read the opening positions from a file: the position after the first plies of each game of a PGN file, or
+     * one position per line of a FEN or EPD file
+     * @param fileName the path of the file
+     * @param plies the number of moves of each PGN game to play
+     * @return the positions, in FEN
+     * @throws IOException if the file could not be read
+     */
+    static List<String> readOpenings(String fileName, int plies) throws IOException {
+        List<String> openings = new ArrayList<>();
+        if(fileName.endsWith(".pgn")) {
+            try(PgnReader reader = new PgnReader(fileName)) {
+                PgnGame game;
+                while((game = reader.next()) != null) {
+                    HeadlessBoard board;
+                    try {
+                        board = new HeadlessBoard(game.getStartFen());
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                    for(String san : game.getMoves().subList(0, Math.min(plies, game.getMoves().size()))) {
+                        int move = PGNUtils.parseSan(board, san);
+                        if(move == PackedMove.NONE) {
+                            break;
+                        }
+                        board.makeMove(move);
+                    }
+                    openings.add(FenUtils.getFen(board));
+                }
+            }
+            return openings;
+        }
+
+        // Only the position is used, so EPD operations are ignored
+        try(BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                try {
+                    openings.add(FenUtils.parseEpd(line).getFen());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping opening: " + e.getMessage());
+                }
+            }
+        }
+        return openings;
+    }
+
+    /**
+     * Play the tournament, writing the games to a PGN file as they finish
+     * @param output the path of the PGN file
+     * @throws IOException if the file could not be written
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public void play(String output) throws IOException, InterruptedException {
+        this.startNanos = System.nanoTime();
+        try(Writer writer = new BufferedWriter(new FileWriter(output))) {
+            List<Worker> workers = new ArrayList<>();
+            for(int i = 0; i < this.threads; i++) {
+                Worker worker = new Worker(writer);
+                workers.add(worker);
+                worker.start();
+            }
+            try {
+                for(Worker worker : workers) {
+                    worker.join();
+                }
+            } finally {
+                stop();
+            }
+            for(Worker worker : workers) {
+                if(worker.failure != null) {
+                    throw worker.failure;
+                }
+            }
+        }
+    }
+
+    /**
+     * End the tournament, abandoning the games being played
+     */
+    private void stop() {
+        this.stopped = true;
+        synchronized(this.engines) {
+            for(SelfPlayEngine engine : this.engines) {
+                engine.abort();
+            }
+        }
+    }
+
+    /**
+     * Plays games until there are none left or the tournament is stopped
+     */
+    private class Worker extends Thread {
+        private final Writer writer;
+        private final SelfPlayEngine newPlayer = newEngine.get();
+        private final SelfPlayEngine basePlayer = baseEngine.get();
+        private IOException failure = null;
+
+        Worker(Writer writer) {
+            super("Tournament worker");
+            this.writer = writer;
+            engines.add(this.newPlayer);
+            engines.add(this.basePlayer);
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while(!stopped && (index = nextGame.getAndIncrement()) < maxGames) {
+                // Both games of an opening are handed out one after the other, the new engine white in the first
+                String opening = openings.get(index / 2 % openings.size());
+                boolean newIsWhite = index % 2 == 0;
+                SelfPlayGame game = newIsWhite ? new SelfPlayGame(opening, this.newPlayer, this.basePlayer, timeControl, adjudication)
+                                               : new SelfPlayGame(opening, this.basePlayer, this.newPlayer, timeControl, adjudication);
+                if(!game.play(() -> stopped)) {
+                    return;
+                }
+                try {
+                    record(game, index + 1, newIsWhite, this.writer);
+                } catch (IOException e) {
+                    this.failure = e;
+                    Tournament.this.stop();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write a finished game, count its result and report progress, stopping once the SPRT is decided
+     */
+    private synchronized void record(SelfPlayGame game, int round, boolean newIsWhite, Writer writer) throws IOException {
+        writer.write(game.toPgn("Self-play " + this.timeControl, round));
+        writer.flush();
+
+        switch(game.getResult()) {
+            case PgnGame.WHITE_WINS: if(newIsWhite) this.wins++; else this.losses++; break;
+            case PgnGame.BLACK_WINS: if(newIsWhite) this.losses++; else this.wins++; break;
+            case PgnGame.DRAW: this.draws++; break;
+            default: return;
+        }
+        System.out.printf("Game %d: %s %s (%s, %d plies). %s%n", round, game.getResult(), newIsWhite ? "as white" : "as black",
+                game.getTermination(), game.getPlies(), this);
+
+        if(this.sprt != null) {
+            this.sprtResult = this.sprt.test(this.wins, this.draws, this.losses);
+            if(this.sprtResult != Sprt.Result.CONTINUE) {
+                stop();
+            }
+        }
+    }
+
+    /**
+     * Elo difference of the new engine and the margin of its 95% confidence interval, from the results so far
+     * @return the difference and the margin, NaN while the results do not allow an estimate
+     */
+    private double[] eloEstimate() {
+        long games = this.wins + this.draws + this.losses;
+        double score = games == 0 ? 0 : (this.wins + this.draws / 2.0) / games;
+        if(score <= 0 || score >= 1) {
+            return new double[] { Double.NaN, Double.NaN };
+        }
+        double variance = ((this.wins + this.draws / 4.0) / games - score * score) / games;
+        double margin = 1.96 * Math.sqrt(variance);
+        double low = Sprt.elo(Math.max(1e-6, score - margin));
+        double high = Sprt.elo(Math.min(1 - 1e-6, score + margin));
+        return new double[] { Sprt.elo(score), (high - low) / 2 };
+    }
+
+    @Override
+    public synchronized String toString() {
+        long games = this.wins + this.draws + this.losses;
+        double hours = (System.nanoTime() - this.startNanos) / 3.6e12;
+        double[] elo = eloEstimate();
+        StringBuilder sb = new StringBuilder(String.format("Score of new: +%d =%d -%d, Elo %.1f +/- %.1f, %.0f games/hour",
+                this.wins, this.draws, this.losses, elo[0], elo[1], hours > 0 ? games / hours : 0));
+        if(this.sprt != null) {
+            sb.append(String.format(", LLR %.2f (%.2f, %.2f)", this.sprt.llr(this.wins, this.draws, this.losses),
+                    this.sprt.getLowerBound(), this.sprt.getUpperBound()));
+            if(this.sprtResult == Sprt.Result.H1) {
+                sb.append(", H1 accepted: the new engine is better");
+            } else if(this.sprtResult == Sprt.Result.H0) {
+                sb.append(", H0 accepted: the new engine is not better");
+            }
+        }
+        return sb.toString();
+    }
+}
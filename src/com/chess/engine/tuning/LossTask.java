@@ -0,0 +1,66 @@
+package com.chess.engine.tuning;
+
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.evaluation.Evaluator;
+import com.chess.engine.evaluation.PawnHashTable;
+import com.chess.engine.pieces.PieceCode;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sum of squared errors between game results and the evaluation of positions in a range of a {@link TrainingSet},
+ * split in halves across the fork-join pool until ranges are small enough to evaluate directly
+ */
+class LossTask extends RecursiveTask<Double> {
+
+    // Positions evaluated by a single task
+    private static final int THRESHOLD = 8192;
+
+    private final TrainingSet set;
+    private final double k;
+    private final int from;
+    private final int to;
+
+    LossTask(TrainingSet set, double k, int from, int to) {
+        this.set = set;
+        this.k = k;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected Double compute() {
+        if(this.to - this.from > THRESHOLD) {
+            int middle = (this.from + this.to) >>> 1;
+            LossTask left = new LossTask(this.set, this.k, this.from, middle);
+            left.fork();
+            double right = new LossTask(this.set, this.k, middle, this.to).compute();
+            return left.join() + right;
+        }
+
+        // A fresh evaluator per task, so no pawn hash entries survive from before the weights changed
+        Evaluator evaluator = new Evaluator(new PawnHashTable(1 << 10), null);
+        HeadlessBoard board = new HeadlessBoard();
+        double sum = 0;
+        for(int i = this.from; i < this.to; i++) {
+            board.setSnapshot(this.set.getPosition(i));
+            int score = evaluator.evaluate(board);
+            if(board.getSideToMove() == PieceCode.BLACK) {
+                score = -score;
+            }
+            double error = this.set.getResult(i) - sigmoid(score, this.k);
+            sum += error * error;
+        }
+        return sum;
+    }
+
+    /**
+     * Expected score for white given the evaluation
+     * @param score evaluation in centipawns from white's point of view
+     * @param k scaling constant fitted to the training set
+     * @return the expected score between 0 and 1
+     */
+    static double sigmoid(int score, double k) {
+        return 1 / (1 + Math.pow(10, -k * score / 400));
+    }
+}
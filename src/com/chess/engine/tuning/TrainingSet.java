@@ -0,0 +1,159 @@
+package com.chess.engine.tuning;
+
+import com.chess.engine.board.BoardSnapshot;
+import com.chess.engine.board.HeadlessBoard;
+import com.chess.engine.board.PGNUtils;
+import com.chess.engine.board.PgnGame;
+import com.chess.engine.board.PgnReader;
+import com.chess.engine.moves.MoveGenerator;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.pieces.PieceCode;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quiet positions labelled with the result of the game they came from, for tuning the evaluation.
+ * Positions are kept as {@link BoardSnapshot}s, so evaluating them copies arrays rather than parsing fen strings.
+ */
+public class TrainingSet {
+
+    // Plies skipped at the start of each PGN game, where positions come from opening theory rather than play
+    public static final int OPENING_PLIES = 8;
+
+    // Result in an EPD line: an opcode such as c9 "1-0"; or a bracketed score such as [0.5]
+    private static final Pattern EPD_RESULT = Pattern.compile("\"(1-0|0-1|1/2-1/2)\"|\\[(1\\.0|0\\.5|0\\.0|1|0)]");
+
+    private BoardSnapshot[] positions = new BoardSnapshot[1024];
+    private float[] results = new float[1024];
+    private int size = 0;
+
+    // Getters
+    public int size() { return this.size; }
+    public BoardSnapshot getPosition(int index) { return this.positions[index]; }
+    public float getResult(int index) { return this.results[index]; }
+
+    /**
+     * Add a position
+     * @param position the position
+     * @param whiteScore result of the game for white (1, 0.5 or 0)
+     */
+    public void add(BoardSnapshot position, double whiteScore) {
+        if(this.size == this.positions.length) {
+            this.positions = Arrays.copyOf(this.positions, this.size * 2);
+            this.results = Arrays.copyOf(this.results, this.size * 2);
+        }
+        this.positions[this.size] = position;
+        this.results[this.size] = (float) whiteScore;
+        this.size++;
+    }
+
+    /**
+     * Load positions from a file, as EPD or PGN depending on the file extension
+     * @param fileName the path of the file
+     * @return the number of positions added
+     * @throws IOException if the file could not be read
+     */
+    public int load(String fileName) throws IOException {
+        return fileName.toLowerCase().endsWith(".pgn") ? loadPgn(fileName) : loadEpd(fileName);
+    }
+
+    /**
+     * Load positions from an EPD file, where each line holds the first four fields of a fen string
+     * and the game result. Lines without a result or with an invalid position are skipped.
+     * @param fileName the path of the file
+     * @return the number of positions added
+     * @throws IOException if the file could not be read
+     */
+    public int loadEpd(String fileName) throws IOException {
+        int added = 0;
+        HeadlessBoard board = new HeadlessBoard();
+        try(BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                Matcher matcher = EPD_RESULT.matcher(line);
+                if(fields.length < 4 || !matcher.find()) {
+                    continue;
+                }
+
+                double score;
+                String result = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                switch(result) {
+                    case PgnGame.WHITE_WINS: score = 1; break;
+                    case PgnGame.BLACK_WINS: score = 0; break;
+                    case PgnGame.DRAW: score = 0.5; break;
+                    default: score = Double.parseDouble(result); break;
+                }
+
+                try {
+                    board.setFen(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " 0 1");
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                add(BoardSnapshot.of(board), score);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Load quiet positions from the games in a PGN file: positions not in check where the move played
+     * was not a capture or promotion, after the first {@link #OPENING_PLIES} plies.
+     * Games without a result are skipped, and games with a move that can not be read are cut short.
+     * @param fileName the path of the file
+     * @return the number of positions added
+     * @throws IOException if the file could not be read
+     */
+    public int loadPgn(String fileName) throws IOException {
+        int added = 0;
+        HeadlessBoard board = new HeadlessBoard();
+        try(PgnReader reader = new PgnReader(fileName)) {
+            PgnGame game;
+            while((game = reader.next()) != null) {
+                double score = game.getWhiteScore();
+                if(score < 0) {
+                    continue;
+                }
+                try {
+                    board.setFen(game.getStartFen());
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                int ply = 0;
+                for(String san : game.getMoves()) {
+                    int move = PGNUtils.parseSan(board, san);
+                    if(move == PackedMove.NONE) {
+                        break;
+                    }
+                    if(ply++ >= OPENING_PLIES && isQuiet(board, move) && !board.isInCheck()) {
+                        add(BoardSnapshot.of(board), score);
+                        added++;
+                    }
+                    board.makeMove(move);
+
+                    // The undo stack is not needed, so start a fresh one rather than letting it grow with the game
+                    if(board.getPly() >= MoveGenerator.MAX_MOVES) {
+                        board.setSnapshot(BoardSnapshot.of(board));
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Whether a move neither captures nor promotes
+     */
+    private static boolean isQuiet(HeadlessBoard board, int move) {
+        int to = PackedMove.to(move);
+        boolean enPassant = PieceCode.type(board.getPiece(PackedMove.from(move))) == PieceCode.PAWN && to == board.getEpSquare();
+        return board.getPiece(to) == PieceCode.EMPTY && !enPassant && PackedMove.promotion(move) == PieceCode.EMPTY;
+    }
+}
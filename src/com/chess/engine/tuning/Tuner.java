@@ -0,0 +1,147 @@
+package com.chess.engine.tuning;
+
+import com.chess.engine.evaluation.EvalParams;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Texel style tuning of the handcrafted evaluation: find the weights minimising the squared error between
+ * game results and a logistic function of the evaluation, over quiet positions from EPD and PGN files.
+ * The error is computed in parallel on all cores, and weights are optimised by local search (each weight is
+ * moved up or down by one while that lowers the error). Results are written after every pass to a parameter
+ * file, which the engine reads at startup when named by the "evaluation:" game setting.
+ *
+ * Usage: Tuner output-file [max-passes] input-file...
+ */
+public final class Tuner {
+
+    private final TrainingSet set;
+    private final ForkJoinPool pool;
+    private double k = 1;
+
+    // Statistics
+    private long positionsEvaluated = 0;
+    private long nanos = 0;
+
+    public Tuner(TrainingSet set, ForkJoinPool pool) {
+        this.set = set;
+        this.pool = pool;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: Tuner output-file [max-passes] input-file...");
+            return;
+        }
+
+        String output = args[0];
+        int first = 1;
+        int maxPasses = Integer.MAX_VALUE;
+        if(args[1].matches("\\d+")) {
+            maxPasses = Integer.parseInt(args[1]);
+            first = 2;
+        }
+
+        // Start from the current weights
+        EvalParams.loadDefault();
+
+        TrainingSet set = new TrainingSet();
+        for(int i = first; i < args.length; i++) {
+            int added = set.load(args[i]);
+            System.out.printf("%s: %,d positions%n", args[i], added);
+        }
+        if(set.size() == 0) {
+            System.err.println("No positions to tune with");
+            return;
+        }
+
+        Tuner tuner = new Tuner(set, ForkJoinPool.commonPool());
+        System.out.printf("K = %.3f%n", tuner.fitK());
+        tuner.tune(output, maxPasses);
+    }
+
+    /**
+     * Mean squared error of the evaluation over the training set with the current weights
+     * @return the error
+     */
+    public double loss() {
+        long start = System.nanoTime();
+        double sum = this.pool.invoke(new LossTask(this.set, this.k, 0, this.set.size()));
+        this.nanos += System.nanoTime() - start;
+        this.positionsEvaluated += this.set.size();
+        return sum / this.set.size();
+    }
+
+    /**
+     * Find the scaling constant K which minimises the error for the current weights, by golden section search
+     * @return the fitted K
+     */
+    public double fitK() {
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low = 0.1;
+        double high = 3;
+        while(high - low > 0.001) {
+            double left = high - ratio * (high - low);
+            double right = low + ratio * (high - low);
+            this.k = left;
+            double leftLoss = loss();
+            this.k = right;
+            double rightLoss = loss();
+            if(leftLoss < rightLoss) {
+                high = right;
+            } else {
+                low = left;
+            }
+        }
+        this.k = (low + high) / 2;
+        return this.k;
+    }
+
+    /**
+     * Local search over all tunable weights until a pass makes no improvement
+     * @param output parameter file to write after every pass
+     * @param maxPasses the maximum number of passes
+     * @throws IOException if the parameter file could not be written
+     */
+    public void tune(String output, int maxPasses) throws IOException {
+        double best = loss();
+        System.out.printf("Initial error %.6f (%,.0f positions/sec)%n", best, getPositionsPerSecond());
+
+        // The weights every evaluator of the loss computation uses
+        EvalParams params = EvalParams.getDefault();
+        boolean improved = true;
+        for(int pass = 1; pass <= maxPasses && improved; pass++) {
+            improved = false;
+            for(int i = 0; i < EvalParams.size(); i++) {
+                int original = params.get(i);
+                for(int step : new int[] { 1, -1 }) {
+                    params.set(i, original + step);
+                    double error = loss();
+                    if(error < best) {
+                        best = error;
+                        improved = true;
+                        break;
+                    }
+                    params.set(i, original);
+                }
+            }
+
+            params.save(output);
+            System.out.printf("Pass %d: error %.6f (%,.0f positions/sec), saved to %s%n",
+                    pass, best, getPositionsPerSecond(), output);
+        }
+    }
+
+    /**
+     * Throughput of the error computation so far
+     * @return positions evaluated per second
+     */
+    public double getPositionsPerSecond() {
+        return this.nanos == 0 ? 0 : this.positionsEvaluated * 1e9 / this.nanos;
+    }
+
+    public double getK() {
+        return this.k;
+    }
+}
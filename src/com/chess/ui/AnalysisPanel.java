@@ -0,0 +1,175 @@
+package com.chess.ui;
+
+import com.chess.ChessConsts;
+import com.chess.engine.board.Board;
+import com.chess.engine.board.GamePosition;
+import com.chess.engine.pieces.PieceCode;
+import com.chess.engine.search.Analysis;
+import com.chess.engine.search.Analyzer;
+import com.chess.engine.search.PvLine;
+import com.chess.engine.search.Search;
+import com.chess.engine.tablebase.Tablebases;
+
+import javax.swing.BoxLayout;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.border.TitledBorder;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows the best lines for the current position, found by an {@link Analyzer} on background threads and
+ * restarted whenever the position changes. The analysis threads only publish their latest result; it is
+ * drawn on the event dispatch thread at most every {@link #REFRESH_MILLIS}, however fast results arrive,
+ * so the board stays responsive during deep analysis. When the endgame tablebases know the result of the position
+ * it is shown as well, whether or not analysis is turned on.
+ */
+public class AnalysisPanel extends JPanel {
+
+    // Least time between redraws of the analysis
+    private static final int REFRESH_MILLIS = 250;
+
+    // Most lines that can be shown
+    private static final int MAX_LINES = 5;
+
+    private final Board board;
+    private final Analyzer analyzer = new Analyzer();
+
+    // UI components
+    private final JCheckBox enabled = new JCheckBox("Analyse");
+    private final JSpinner lines = new JSpinner(new SpinnerNumberModel(3, 1, MAX_LINES, 1));
+    private final JLabel status = new JLabel(" ");
+    private final JTextArea text = new JTextArea();
+
+    // Latest analysis published by the analysis threads, and whether a redraw is already on its way
+    private final AtomicReference<Analysis> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Timer refresh = new Timer(REFRESH_MILLIS, e -> refresh());
+    private long lastRefresh = 0;
+
+    // Key of the position being analysed, so results for an old position are ignored
+    private long currentKey;
+
+    // Exact result of the position from the tablebases, or empty if it is not in them
+    private String tablebase = "";
+
+    /**
+     * Create the analysis panel for a board
+     * @param board the {@code Board} whose position to analyse
+     */
+    public AnalysisPanel(Board board) {
+        super();
+        this.board = board;
+        this.setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        this.setPreferredSize(new Dimension(ChessConsts.ANALYSIS_WIDTH, ChessConsts.HISTORY_HEIGHT));
+
+        TitledBorder border = new TitledBorder("Analysis");
+        border.setTitleJustification(TitledBorder.CENTER);
+        border.setTitlePosition(TitledBorder.TOP);
+        this.setBorder(border);
+
+        // Turn analysis on / off and choose the number of lines
+        JPanel options = new JPanel();
+        enabled.addItemListener(e -> restart());
+        lines.addChangeListener(e -> restart());
+        options.add(enabled);
+        options.add(new JLabel("Lines"));
+        options.add(lines);
+        options.setMaximumSize(options.getPreferredSize());
+        this.add(options);
+        this.add(status);
+
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        this.add(new JScrollPane(text));
+
+        refresh.setRepeats(false);
+        board.addPositionListener(this::restart);
+    }
+
+    /**
+     * Analyse the current position, or stop if analysis is turned off
+     */
+    private void restart() {
+        GamePosition position = board.getPosition();
+        tablebase = describeTablebase(position);
+        latest.set(null);
+        text.setText("");
+        status.setText(tablebase.isEmpty() ? " " : tablebase);
+        if(!enabled.isSelected()) {
+            analyzer.stop();
+            return;
+        }
+        currentKey = position.getSnapshot().getKey();
+        analyzer.analyze(position.toHeadlessBoard(), (Integer) lines.getValue(), this::publish);
+    }
+
+    /**
+     * Keep the latest analysis, and make sure a redraw is scheduled. Called on an analysis thread.
+     */
+    private void publish(Analysis analysis) {
+        latest.set(analysis);
+        if(scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                long wait = REFRESH_MILLIS - (System.currentTimeMillis() - lastRefresh);
+                if(wait <= 0) {
+                    refresh();
+                } else {
+                    refresh.setInitialDelay((int) wait);
+                    refresh.restart();
+                }
+            });
+        }
+    }
+
+    /**
+     * Draw the latest analysis
+     */
+    private void refresh() {
+        scheduled.set(false);
+        lastRefresh = System.currentTimeMillis();
+        Analysis analysis = latest.get();
+        if(analysis == null || analysis.getKey() != currentKey) {
+            return;
+        }
+
+        status.setText(String.format("Depth %d   %,d nodes   %,d kN/s%s", analysis.getDepth(), analysis.getNodes(),
+                analysis.getNodesPerSecond() / 1000, tablebase.isEmpty() ? "" : "   " + tablebase));
+
+        // Scores from white's point of view, as is usual for analysis
+        boolean whiteToMove = board.getPosition().getSnapshot().getSideToMove() == PieceCode.WHITE;
+        StringBuilder builder = new StringBuilder();
+        for(PvLine line : analysis.getLines()) {
+            builder.append(String.format("%6s  ", Search.scoreToString(whiteToMove ? line.getScore() : -line.getScore())))
+                    .append(line.getMovesString()).append('\n');
+        }
+        text.setText(builder.toString());
+        text.setCaretPosition(0);
+    }
+
+    /**
+     * Describe the exact result of a position from the tablebases, e.g. "Tablebase: White mates in 8"
+     * @return the description, or an empty string if the position is not in the tablebases
+     */
+    private static String describeTablebase(GamePosition position) {
+        int result = Tablebases.probe(position.getSnapshot().toHeadlessBoard());
+        if(result == Tablebases.NOT_FOUND) {
+            return "";
+        } else if(result == Tablebases.DRAW) {
+            return "Tablebase: draw";
+        }
+        boolean whiteToMove = position.getSnapshot().getSideToMove() == PieceCode.WHITE;
+        boolean whiteWins = whiteToMove == Tablebases.isWin(result);
+        return String.format("Tablebase: %s mates in %d", whiteWins ? "White" : "Black",
+                (Tablebases.getPliesToMate(result) + 1) / 2);
+    }
+}
@@ -19,18 +19,22 @@ public class ChessFrame extends JFrame {
 
     private final BoardPanel boardPanel;
     private final MoveHistory history;
+    private final ClockPanel clock;
+    private final AnalysisPanel analysis;
 
     public ChessFrame(Board board) {
         super("Chess");
-        this.setMinimumSize(new Dimension(ChessConsts.WINDOW_WIDTH, ChessConsts.WINDOW_HEIGHT));
+        this.setMinimumSize(new Dimension(ChessConsts.WINDOW_WIDTH + ChessConsts.ANALYSIS_WIDTH, ChessConsts.WINDOW_HEIGHT));
         JFrame.setDefaultLookAndFeelDecorated(true);
-        this.setSize(ChessConsts.WINDOW_WIDTH, ChessConsts.WINDOW_HEIGHT);
+        this.setSize(ChessConsts.WINDOW_WIDTH + ChessConsts.ANALYSIS_WIDTH, ChessConsts.WINDOW_HEIGHT);
         this.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         this.setResizable(true);
 
         // Initialize board and panel as well as history
         this.boardPanel = new BoardPanel(board);
         this.history = board.getMoveHistory();
+        this.clock = new ClockPanel(board);
+        this.analysis = new AnalysisPanel(board);
 
         // Add game options menu
         JMenuBar menuBar = new JMenuBar();
@@ -49,7 +53,7 @@ public class ChessFrame extends JFrame {
     }
 
     /**
-     * Add the ranks and file headers as well as history / captured pieces and board
+     * Add the ranks and file headers as well as clock / history / captured pieces, analysis and board
      */
     private void addHeadersAndPanels() {
         // Set content to use border layout
@@ -63,12 +67,26 @@ public class ChessFrame extends JFrame {
         // location / sizing for board
         constraints.gridx = 0;
         constraints.gridy = 0;
+        constraints.gridheight = 2;
         constraints.weightx = 0.0;
         getContentPane().add(boardPanel, constraints);
 
-        // location / sizing for history
+        // location / sizing for clock above the history
         constraints.gridx = 1;
+        constraints.gridheight = 1;
         constraints.weightx = 1.0;
+        constraints.weighty = 0.0;
+        getContentPane().add(clock, constraints);
+
+        // location / sizing for history
+        constraints.gridy = 1;
+        constraints.weighty = 1.0;
         getContentPane().add(history, constraints);
+
+        // location / sizing for analysis next to the clock and history
+        constraints.gridx = 2;
+        constraints.gridy = 0;
+        constraints.gridheight = 2;
+        getContentPane().add(analysis, constraints);
     }
 }
@@ -0,0 +1,95 @@
+package com.chess.ui;
+
+import com.chess.ChessConsts;
+import com.chess.engine.PlayerColor;
+import com.chess.engine.board.Board;
+import com.chess.engine.board.GameClock;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
+import javax.swing.border.TitledBorder;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.GridLayout;
+
+/**
+ * Displays both players' clocks. A single Swing timer redraws them a few times a second; it is only a
+ * display, as the clock itself keeps exact time, and labels are only touched when their text changes.
+ * The timer also notices a flag falling while nobody moves, and lets the board end the game.
+ */
+public class ClockPanel extends JPanel {
+
+    // How often the display is refreshed, fine enough for tenths of a second under 10 seconds
+    private static final int TICK_MILLIS = 100;
+
+    private static final Color RUNNING = new Color(50, 205, 50);
+
+    private final Board board;
+    private final JLabel white = createLabel();
+    private final JLabel black = createLabel();
+
+    /**
+     * Create the clock display for a board
+     * @param board the {@code Board} whose game clock to display
+     */
+    public ClockPanel(Board board) {
+        super(new GridLayout(2, 1));
+        this.board = board;
+
+        TitledBorder border = new TitledBorder("Clock");
+        border.setTitleJustification(TitledBorder.CENTER);
+        border.setTitlePosition(TitledBorder.TOP);
+        this.setBorder(border);
+        this.setPreferredSize(new Dimension(ChessConsts.HISTORY_WIDTH, ChessConsts.HISTORY_HEIGHT / 6));
+        this.add(black);
+        this.add(white);
+
+        tick();
+        new Timer(TICK_MILLIS, e -> tick()).start();
+    }
+
+    private static JLabel createLabel() {
+        JLabel label = new JLabel("", SwingConstants.CENTER);
+        label.setFont(label.getFont().deriveFont(Font.BOLD, 18f));
+        label.setOpaque(true);
+        label.setBorder(BorderFactory.createEmptyBorder(2, 2, 2, 2));
+        return label;
+    }
+
+    /**
+     * Refresh the display, and end the game if a flag has fallen
+     */
+    private void tick() {
+        GameClock clock = board.getGameState().getClock();
+        boolean timed = clock.isTimed();
+        if(isVisible() != timed) {
+            setVisible(timed);
+        }
+        if(!timed) {
+            return;
+        }
+
+        PlayerColor running = clock.getRunning();
+        update(white, "White", clock.getRemainingNanos(PlayerColor.WHITE), running == PlayerColor.WHITE);
+        update(black, "Black", clock.getRemainingNanos(PlayerColor.BLACK), running == PlayerColor.BLACK);
+
+        if(!board.getGameState().isGameOver() && clock.getFlagged() != null) {
+            board.displayBoard();
+        }
+    }
+
+    private void update(JLabel label, String name, long nanos, boolean isRunning) {
+        String text = name + "  " + GameClock.format(nanos);
+        if(!text.equals(label.getText())) {
+            label.setText(text);
+        }
+        Color background = isRunning ? RUNNING : getBackground();
+        if(!background.equals(label.getBackground())) {
+            label.setBackground(background);
+        }
+    }
+}
@@ -3,18 +3,40 @@ package com.chess.ui.menus;
 import com.chess.engine.GameSettings;
 import com.chess.engine.board.Board;
 import com.chess.engine.board.FenUtils;
+import com.chess.engine.board.GameClock;
+import com.chess.engine.board.GamePosition;
+import com.chess.engine.board.HeadlessBoard;
 import com.chess.engine.board.PGNUtils;
+import com.chess.engine.book.PolyglotBook;
+import com.chess.engine.evaluation.Evaluator;
 import com.chess.engine.moves.Move;
+import com.chess.engine.moves.PackedMove;
+import com.chess.engine.search.MateSolver;
+import com.chess.engine.search.Search;
+import com.chess.engine.search.TimeManager;
+import com.chess.engine.search.TranspositionTable;
+import com.chess.engine.tablebase.Tablebases;
 
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class DebugOptionsMenu extends JMenu {
 
     private final Board board;
 
+    // Evaluator for printing out the evaluation of the current position
+    private final Evaluator evaluator = new Evaluator();
+
+    // Search for printing out the best move, which keeps its table and time statistics between searches
+    private final Search search = new Search(new TranspositionTable(), new TimeManager());
+
+    // Solver for printing out forced mates
+    private final MateSolver mateSolver = new MateSolver();
+
     public DebugOptionsMenu(Board board) {
         super("Debug options");
         this.board = board;
@@ -47,6 +69,31 @@ public class DebugOptionsMenu extends JMenu {
         parsePGN.addActionListener(e -> parsePGN());
         add(parsePGN);
 
+        // Print evaluation of the current position
+        JMenuItem printEvaluation = new JMenuItem("Print evaluation");
+        printEvaluation.addActionListener(e -> printEvaluation());
+        add(printEvaluation);
+
+        // Print opening book moves for the current position
+        JMenuItem printBookMoves = new JMenuItem("Print book moves");
+        printBookMoves.addActionListener(e -> printBookMoves());
+        add(printBookMoves);
+
+        // Print the tablebase result for the current position
+        JMenuItem printTablebase = new JMenuItem("Print tablebase result");
+        printTablebase.addActionListener(e -> printTablebase());
+        add(printTablebase);
+
+        // Search for the best move in the current position
+        JMenuItem searchBestMove = new JMenuItem("Search best move");
+        searchBestMove.addActionListener(e -> searchBestMove());
+        add(searchBestMove);
+
+        // Search for a forced mate in the current position
+        JMenuItem solveMate = new JMenuItem("Solve mate");
+        solveMate.addActionListener(e -> solveMate());
+        add(solveMate);
+
         // Print all pieces state
         JMenuItem printPieces = new JMenuItem("Print pieces");
         printPieces.addActionListener(e -> printPieces());
@@ -84,13 +131,101 @@ public class DebugOptionsMenu extends JMenu {
      * Print out the PGN from move history
      */
     private void printPGN() {
-        System.out.println(PGNUtils.getPGN(board.getMoveHistory()));
+        System.out.println(PGNUtils.getPGN(board));
     }
 
     private void parsePGN() {
         PGNUtils.parsePGN("files/pgn/sample.pgn");
     }
 
+    /**
+     * Print the evaluation of the current position
+     */
+    private void printEvaluation() {
+        System.out.println(board.getHeadlessBoard().getEvaluation());
+        System.out.println("Side to move: " + evaluator.evaluate(board.getHeadlessBoard()));
+        System.out.println(evaluator);
+    }
+
+    /**
+     * Print the moves the opening book (if any) has for the current position
+     */
+    private void printBookMoves() {
+        String bookPath = GameSettings.INSTANCE.getBookPath();
+        if(bookPath.isEmpty()) {
+            System.out.println("No opening book set in settings");
+            return;
+        }
+        try(PolyglotBook book = PolyglotBook.open(bookPath)) {
+            System.out.println("Book moves: " + book.getMoves(board.getHeadlessBoard()));
+        } catch (IOException e) {
+            System.out.println("Could not read opening book: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Print the exact result of the current position if it is in the endgame tablebases
+     */
+    private void printTablebase() {
+        System.out.println("Tablebase: " + Tablebases.toString(Tablebases.probe(board.getHeadlessBoard())));
+    }
+
+    /**
+     * Search the current position on a background thread and print the best move found.
+     * In a timed game the side to move's clock decides how long to search, otherwise it searches for a second.
+     * A search still running is stopped, and the new one starts once it has finished.
+     */
+    private void searchBestMove() {
+        GameClock clock = board.getGameState().getClock();
+        boolean timed = clock.isTimed();
+        long remainingNanos = timed ? clock.getRemainingNanos(board.getGameState().getPlayerTurn().getColor()) : 0;
+        long incrementNanos = clock.getTimeControl().getIncrementNanos();
+        long delayNanos = clock.getTimeControl().getDelayNanos();
+
+        TimeManager timeManager = search.getTimeManager();
+        timeManager.abort();
+
+        GamePosition game = board.getPosition();
+        Thread thread = new Thread(() -> {
+            HeadlessBoard position = game.toHeadlessBoard();
+
+            // One search at a time, as the search has a single board, tables and time manager
+            synchronized(search) {
+                if(timed) {
+                    timeManager.start(remainingNanos, incrementNanos, delayNanos, 0);
+                } else {
+                    timeManager.startFixed(TimeUnit.SECONDS.toNanos(1));
+                }
+                int move = search.search(position, Search.MAX_PLY);
+                System.out.println("Best move: " + PackedMove.toString(move) + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(timeManager.getElapsedNanos()) + "ms");
+                System.out.println(search);
+                System.out.println(timeManager);
+            }
+        }, "Search");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Search the current position for a forced mate by the side to move on a background thread, and print the
+     * mating line if one is found within the solver's node budget
+     */
+    private void solveMate() {
+        GamePosition game = board.getPosition();
+        Thread thread = new Thread(() -> {
+            HeadlessBoard position = game.toHeadlessBoard();
+
+            // One solve at a time, as the solver has a single board and table
+            synchronized(mateSolver) {
+                mateSolver.solve(position, 0);
+                System.out.println("Mate solver: " + mateSolver.toString(position));
+            }
+        }, "Mate solver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Print the current game state in terms of pieces
      */
@@ -1,11 +1,16 @@
 package com.chess.ui.menus;
 
 import com.chess.engine.GameSettings;
+import com.chess.engine.PlayerColor;
 import com.chess.engine.board.Board;
+import com.chess.engine.board.TimeControl;
 
+import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JRadioButtonMenuItem;
 
 public class GameOptionsMenu extends JMenu {
 
@@ -26,6 +31,35 @@ public class GameOptionsMenu extends JMenu {
         newGame.addActionListener(e -> resetGameState());
         add(newGame);
 
+        // Start a new game from a fen
+        JMenuItem loadFen = new JMenuItem("Load FEN...");
+        loadFen.addActionListener(e -> loadFen());
+        add(loadFen);
+
+        // Choose the time control and start a new game with it
+        JMenuItem timeControl = new JMenuItem("Time control...");
+        timeControl.addActionListener(e -> chooseTimeControl());
+        add(timeControl);
+
+        // Choose which side the engine plays
+        JMenu engine = new JMenu("Engine plays");
+        ButtonGroup engineGroup = new ButtonGroup();
+        addEngineColor(engine, engineGroup, "Neither", null);
+        addEngineColor(engine, engineGroup, "White", PlayerColor.WHITE);
+        addEngineColor(engine, engineGroup, "Black", PlayerColor.BLACK);
+        add(engine);
+
+        // Let the engine think on the user's time
+        JCheckBoxMenuItem pondering = new JCheckBoxMenuItem("Engine ponders?");
+        pondering.setState(GameSettings.INSTANCE.isEnablePondering());
+        pondering.addItemListener(e -> enablePondering());
+        add(pondering);
+
+        // Take back the last move, and the engine's reply
+        JMenuItem takeBack = new JMenuItem("Take back move");
+        takeBack.addActionListener(e -> board.getEnginePlayer().takeBack());
+        add(takeBack);
+
         // Highlight valid moves
         JCheckBoxMenuItem highlighting = new JCheckBoxMenuItem("Highlight valid moves?");
         highlighting.setState(GameSettings.INSTANCE.isEnableHighlighting());
@@ -52,6 +86,66 @@ public class GameOptionsMenu extends JMenu {
         board.reset();
     }
 
+    /**
+     * Ask for a fen, and start a new game from it
+     */
+    private void loadFen() {
+        String fen = JOptionPane.showInputDialog(board, "FEN of the position to start from", "Load FEN", JOptionPane.QUESTION_MESSAGE);
+        if(fen == null || fen.trim().isEmpty()) {
+            return;
+        }
+        try {
+            board.loadFen(fen.trim());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(board, e.getMessage(), "Load FEN", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Ask for a time control, and start a new game with it
+     */
+    private void chooseTimeControl() {
+        GameSettings settings = GameSettings.INSTANCE;
+        Object input = JOptionPane.showInputDialog(board, "Seconds per player, plus increment and delay (e.g. 300+2, 600d5).\n"
+                + "Leave empty for no clock.", "Time control", JOptionPane.QUESTION_MESSAGE, null, null, settings.getTimeControl());
+        if(input == null) {
+            return;
+        }
+        try {
+            settings.setTimeControl(TimeControl.parse(input.toString()));
+            board.reset();
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(board, e.getMessage(), "Time control", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Add a choice of the color the engine plays
+     * @param menu the menu to add to
+     * @param group the group of choices, only one of which is selected
+     * @param name the name of the choice
+     * @param color the {@link PlayerColor} the engine plays, or {@code null} for neither
+     */
+    private void addEngineColor(JMenu menu, ButtonGroup group, String name, PlayerColor color) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(name, GameSettings.INSTANCE.getEngineColor() == color);
+        item.addActionListener(e -> board.getEnginePlayer().setColor(color));
+        group.add(item);
+        menu.add(item);
+    }
+
+    /**
+     * Toggle whether the engine ponders
+     */
+    private void enablePondering() {
+        GameSettings settings = GameSettings.INSTANCE;
+        settings.setEnablePondering(!settings.isEnablePondering());
+
+        // Stop pondering now rather than at the next move
+        if(!settings.isEnablePondering() && !board.getEnginePlayer().isEngineToMove()) {
+            board.getEnginePlayer().cancel();
+        }
+    }
+
     /**
      * Toggle whether to enable highlighting
      */